@@ -0,0 +1,73 @@
+ /*
+  * TeleStax, Open Source Cloud Communications
+  * Copyright 2011-2016, TeleStax Inc. and individual contributors
+  * by the @authors tag.
+  *
+  * This program is free software: you can redistribute it and/or modify
+  * under the terms of the GNU Affero General Public License as
+  * published by the Free Software Foundation; either version 3 of
+  * the License, or (at your option) any later version.
+  *
+  * This program is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Affero General Public License for more details.
+  *
+  * You should have received a copy of the GNU Affero General Public License
+  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+  *
+  * This file incorporates work covered by the following copyright and
+  * permission notice:
+  *
+  *   JBoss, Home of Professional Open Source
+  *   Copyright 2007-2011, Red Hat, Inc. and individual contributors
+  *   by the @authors tag. See the copyright.txt in the distribution for a
+  *   full listing of individual contributors.
+  *
+  *   This is free software; you can redistribute it and/or modify it
+  *   under the terms of the GNU Lesser General Public License as
+  *   published by the Free Software Foundation; either version 2.1 of
+  *   the License, or (at your option) any later version.
+  *
+  *   This software is distributed in the hope that it will be useful,
+  *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+  *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  *   Lesser General Public License for more details.
+  *
+  *   You should have received a copy of the GNU Lesser General Public
+  *   License along with this software; if not, write to the Free
+  *   Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  *   02110-1301 USA, or see the FSF site: http://www.fsf.org.
+  */
+
+package org.jdiameter.api;
+
+import java.util.concurrent.Future;
+
+/**
+ * Result of an asynchronous request. Besides blocking {@link #get()}, the answer can be consumed by listeners,
+ * which are notified by the thread that correlated the answer or expired the request timer, so no thread waits
+ * for the answer.
+ *
+ * {@link #get()} throws {@link java.util.concurrent.ExecutionException} with
+ * {@link java.util.concurrent.TimeoutException} as the cause if the request has timed out.
+ *
+ * @param <R> type of request
+ * @param <A> type of answer
+ */
+public interface AnswerFuture<R extends Message, A extends Message> extends Future<A> {
+
+  /**
+   * Adds listener notified once, when answer is received or request timeout expires. If that has already
+   * happened, listener is notified immediately by the calling thread. Listeners are not notified if the
+   * request is cancelled. Listeners must not block, they run on stack threads.
+   *
+   * @param listener event listener
+   */
+  void addListener(EventListener<R, A> listener);
+
+  /**
+   * @return the request this future waits answer for
+   */
+  R getRequest();
+}
@@ -143,4 +143,30 @@ public interface Session extends BaseSession, Wrapper  {
   Future<Message> send(Message message, long timeOut, TimeUnit timeUnit)
       throws InternalException, IllegalDiameterStateException, RouteException, OverloadException;
 
+  /**
+   * Sends request without waiting for answer, with default timeout. Answer or timeout is delivered to the
+   * returned future by the thread that received the answer or expired the request timer.
+   * @param message request diameter message
+   * @return AnswerFuture result of an asynchronous operation
+   * @throws org.jdiameter.api.InternalException The InternalException signals that internal error is occurred.
+   * @throws org.jdiameter.api.IllegalDiameterStateException The IllegalStateException signals that session has incorrect state (invalid).
+   * @throws org.jdiameter.api.RouteException The NoRouteException signals that no route exist for a given realm.
+   * @throws org.jdiameter.api.OverloadException The OverloadException signals that destination host is overloaded.
+   */
+  AnswerFuture<Request, Answer> sendAsync(Message message) throws InternalException, IllegalDiameterStateException, RouteException, OverloadException;
+
+  /**
+   * Sends request without waiting for answer, with defined timeout
+   * @param message request diameter message
+   * @param timeOut value of timeout
+   * @param timeUnit type of timeOut value
+   * @return AnswerFuture result of an asynchronous operation
+   * @throws org.jdiameter.api.InternalException  The InternalException signals that internal error is occurred.
+   * @throws org.jdiameter.api.IllegalDiameterStateException The IllegalStateException signals that session has incorrect state (invalid).
+   * @throws org.jdiameter.api.RouteException The NoRouteException signals that no route exist for a given realm.
+   * @throws org.jdiameter.api.OverloadException The OverloadException signals that destination host is overloaded.
+   */
+  AnswerFuture<Request, Answer> sendAsync(Message message, long timeOut, TimeUnit timeUnit)
+      throws InternalException, IllegalDiameterStateException, RouteException, OverloadException;
+
 }
\ No newline at end of file
@@ -49,6 +49,7 @@ import org.jdiameter.api.AvpDataException;
 import org.jdiameter.api.Configuration;
 import org.jdiameter.api.IllegalDiameterStateException;
 import org.jdiameter.api.NetworkReqListener;
+import org.jdiameter.api.OverloadException;
 import org.jdiameter.api.RouteException;
 import org.jdiameter.api.Stack;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
@@ -101,8 +102,9 @@ public interface IContainer extends Stack {
    * @throws AvpDataException
    * @throws IllegalDiameterStateException
    * @throws IOException
+   * @throws OverloadException if request is rejected because selected peer is overloaded
    */
-  void sendMessage(IMessage session) throws RouteException, AvpDataException, IllegalDiameterStateException, IOException;
+  void sendMessage(IMessage session) throws RouteException, AvpDataException, IllegalDiameterStateException, IOException, OverloadException;
 
 
   /**
@@ -111,13 +111,26 @@ public interface IMessage extends IRequest, IAnswer {
   int getFlags();
 
   /**
-   * Create timer for request timout procedure
+   * Create timer for request timout procedure. Timer is not running until it is started
+   * by {@link #startTimer()} or claimed by {@link #claimTimer()}
    * @param scheduledFacility timer facility
    * @param timeOut value of timeout
    * @param timeUnit time unit
    */
   void createTimer(ScheduledExecutorService scheduledFacility, long timeOut, TimeUnit timeUnit);
 
+  /**
+   * Start created timer on its timer facility
+   */
+  void startTimer();
+
+  /**
+   * Take over created timer, caller is then responsible for executing it by {@link #runTimer()}
+   * when it expires. Timer can be claimed again, eg. when request is retransmitted to another peer
+   * @return time (in milliseconds) at which timer expires or 0 if there is no timer which can be claimed
+   */
+  long claimTimer();
+
   /**
    * Execute timer task
    */
@@ -76,7 +76,8 @@ public interface IPeer extends Peer {
   long getHopByHopIdentifier();
 
   /**
-   * Append request to peer request storage map
+   * Append request to peer request storage map. Peer takes over answer timeout
+   * of the request (see {@link IMessage#claimTimer()})
    *
    * @param message request instance
    */
@@ -121,6 +122,27 @@ public interface IPeer extends Peer {
    */
   boolean hasValidConnection();
 
+  /**
+   * Return true if peer connection accepts new requests, false while its outbound buffer is above high water mark
+   *
+   * @return true if peer connection is writable
+   */
+  boolean isWritable();
+
+  /**
+   * Return number of requests sent to peer which are waiting for answer
+   *
+   * @return number of pending requests
+   */
+  int getPendingRequestCount();
+
+  /**
+   * Return moving average of time between sending request to peer and receiving its answer
+   *
+   * @return answer latency in microseconds, 0 if no answer was received yet
+   */
+  long getAnswerLatency();
+
   /**
    * Attach peer to realm
    *
@@ -48,6 +48,7 @@ import java.util.Map;
 import org.jdiameter.api.AvpDataException;
 import org.jdiameter.api.IllegalDiameterStateException;
 import org.jdiameter.api.NetworkReqListener;
+import org.jdiameter.api.OverloadException;
 import org.jdiameter.api.PeerTable;
 import org.jdiameter.api.RouteException;
 import org.jdiameter.client.api.IAssembler;
@@ -93,8 +94,9 @@ public interface IPeerTable extends PeerTable {
    * @throws IOException
    * @throws RouteException
    * @throws AvpDataException
+   * @throws OverloadException if request is rejected because selected peer is overloaded
    */
-  void sendMessage(IMessage message) throws IllegalDiameterStateException, IOException, RouteException, AvpDataException;
+  void sendMessage(IMessage message) throws IllegalDiameterStateException, IOException, RouteException, AvpDataException, OverloadException;
 
   /**
    * Register session lister
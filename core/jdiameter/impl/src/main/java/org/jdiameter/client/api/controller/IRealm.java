@@ -84,6 +84,13 @@ public interface IRealm extends Realm {
    */
   boolean hasPeerName(String name);
 
+  /**
+   * Returns counter of changes of peer names list, data derived from peer names are stale once it changes
+   *
+   * @return version of peer names list
+   */
+  int getPeerNamesVersion();
+
   /**
    * Get the processing agent for this realm
    *
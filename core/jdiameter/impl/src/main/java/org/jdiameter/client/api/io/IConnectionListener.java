@@ -87,4 +87,12 @@ public interface IConnectionListener {
    * @param cause generated exceptions
    */
   void internalError(String connKey, IMessage message, TransportException cause);
+
+  /**
+   * Notifies that outbound buffer of connection went above high water mark (connection is not writable)
+   * or dropped below low water mark (connection is writable again)
+   * @param connKey identifier of connection
+   * @param writable true if connection accepts new messages without further buffering
+   */
+  void connectionWritabilityChanged(String connKey, boolean writable);
 }
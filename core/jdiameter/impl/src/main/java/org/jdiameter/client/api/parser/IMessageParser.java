@@ -129,4 +129,19 @@ public interface IMessageParser {
    */
   ByteBuffer encodeMessage(IMessage message) throws ParseException;
 
+  /**
+   * Calculate length of encoded message
+   * @param message diameter message
+   * @return number of bytes needed to encode message
+   */
+  int getMessageLength(IMessage message);
+
+  /**
+   * Encode message into given ByteBuffer, starting at its current position
+   * @param message diameter message
+   * @param buffer destination buffer, with at least getMessageLength(message) bytes remaining
+   * @throws ParseException
+   */
+  void encodeMessage(IMessage message, ByteBuffer buffer) throws ParseException;
+
 }
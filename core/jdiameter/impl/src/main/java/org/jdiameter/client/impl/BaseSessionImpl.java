@@ -44,6 +44,9 @@ package org.jdiameter.client.impl;
 
 import static org.jdiameter.client.impl.helpers.Parameters.MessageTimeOut;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -53,6 +56,7 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.jdiameter.api.Answer;
+import org.jdiameter.api.AnswerFuture;
 import org.jdiameter.api.ApplicationId;
 import org.jdiameter.api.Avp;
 import org.jdiameter.api.AvpSet;
@@ -69,6 +73,8 @@ import org.jdiameter.client.api.IContainer;
 import org.jdiameter.client.api.IEventListener;
 import org.jdiameter.client.api.IMessage;
 import org.jdiameter.client.api.parser.IMessageParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Implementation for {@link BaseSession}.
@@ -79,6 +85,8 @@ import org.jdiameter.client.api.parser.IMessageParser;
  */
 public abstract class BaseSessionImpl implements BaseSession {
 
+  private static final Logger logger = LoggerFactory.getLogger(BaseSessionImpl.class);
+
   protected final long creationTime = System.currentTimeMillis();
   protected long lastAccessedTime = creationTime;
   protected boolean isValid = true;
@@ -168,6 +176,10 @@ public abstract class BaseSessionImpl implements BaseSession {
         message.clearTimer();
         throw e;
       }
+      catch (OverloadException e) {
+        message.clearTimer();
+        throw e;
+      }
       catch (Exception e) {
         message.clearTimer();
         throw new InternalException(e);
@@ -196,6 +208,22 @@ public abstract class BaseSessionImpl implements BaseSession {
     return future;
   }
 
+  @SuppressWarnings("unchecked")
+  protected <R extends Message, A extends Message> AnswerFuture<R, A> genericSendAsync(Message message)
+      throws InternalException, IllegalDiameterStateException, RouteException, OverloadException {
+    MyAnswerFuture<R, A> future = new MyAnswerFuture<R, A>((R) message);
+    genericSend(message, future);
+    return future;
+  }
+
+  @SuppressWarnings("unchecked")
+  protected <R extends Message, A extends Message> AnswerFuture<R, A> genericSendAsync(Message message, long timeOut, TimeUnit timeUnit)
+      throws InternalException, IllegalDiameterStateException, RouteException, OverloadException {
+    MyAnswerFuture<R, A> future = new MyAnswerFuture<R, A>((R) message);
+    genericSend(message, future, timeOut, timeUnit);
+    return future;
+  }
+
   private class MyFuture implements Future<Message> {
 
     private boolean canceled;
@@ -317,6 +345,145 @@ public abstract class BaseSessionImpl implements BaseSession {
     }
   }
 
+  /**
+   * Future completed by the request listener itself, i.e. by the thread which correlated the answer with
+   * the request or expired the request timer. Monitor is held only to change state, threads wait on it
+   * only if they call blocking get().
+   */
+  static class MyAnswerFuture<R extends Message, A extends Message> implements AnswerFuture<R, A>, EventListener<R, A> {
+
+    private static final int PENDING = 0;
+    private static final int ANSWERED = 1;
+    private static final int TIMED_OUT = 2;
+    private static final int CANCELLED = 3;
+
+    private final R request;
+    private volatile int state = PENDING;
+    private A answer;
+    // null until first listener is added, and again once notified
+    private List<EventListener<R, A>> listeners;
+
+    MyAnswerFuture(R request) {
+      this.request = request;
+    }
+
+    @Override
+    public R getRequest() {
+      return request;
+    }
+
+    @Override
+    public void addListener(EventListener<R, A> listener) {
+      synchronized (this) {
+        if (state == PENDING) {
+          if (listeners == null) {
+            listeners = new ArrayList<EventListener<R, A>>(1);
+          }
+          listeners.add(listener);
+          return;
+        }
+      }
+      notifyListener(listener);
+    }
+
+    @Override
+    public void receivedSuccessMessage(R request, A answer) {
+      complete(ANSWERED, answer);
+    }
+
+    @Override
+    public void timeoutExpired(R request) {
+      complete(TIMED_OUT, null);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      if (complete(CANCELLED, null)) {
+        ((IMessage) request).clearTimer();
+        return true;
+      }
+      return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return state == CANCELLED;
+    }
+
+    @Override
+    public boolean isDone() {
+      return state != PENDING;
+    }
+
+    @Override
+    public synchronized A get() throws InterruptedException, ExecutionException {
+      while (state == PENDING) {
+        wait();
+      }
+      return getResult();
+    }
+
+    @Override
+    public synchronized A get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+      while (state == PENDING) {
+        long left = deadline - System.nanoTime();
+        if (left <= 0) {
+          throw new TimeoutException();
+        }
+        TimeUnit.NANOSECONDS.timedWait(this, left);
+      }
+      return getResult();
+    }
+
+    private A getResult() throws ExecutionException {
+      if (state == CANCELLED) {
+        throw new CancellationException();
+      }
+      if (state == TIMED_OUT) {
+        throw new ExecutionException(new TimeoutException("Request timeout expired"));
+      }
+      return answer;
+    }
+
+    /**
+     * @return false if future was already completed
+     */
+    private boolean complete(int newState, A value) {
+      List<EventListener<R, A>> toNotify;
+      synchronized (this) {
+        if (state != PENDING) {
+          return false;
+        }
+        answer = value;
+        state = newState;
+        toNotify = listeners;
+        listeners = null;
+        notifyAll();
+      }
+      if (toNotify != null) {
+        for (EventListener<R, A> listener : toNotify) {
+          notifyListener(listener);
+        }
+      }
+      return true;
+    }
+
+    private void notifyListener(EventListener<R, A> listener) {
+      try {
+        if (state == ANSWERED) {
+          listener.receivedSuccessMessage(request, answer);
+        }
+        else if (state == TIMED_OUT) {
+          listener.timeoutExpired(request);
+        }
+      }
+      catch (Exception e) {
+        logger.error("Failure in listener of request " + request, e);
+      }
+    }
+  }
+
   /**
    * Appends an *-Application-Id AVP to the message, if none is present already.
    *
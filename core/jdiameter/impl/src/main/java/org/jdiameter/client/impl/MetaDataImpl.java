@@ -423,6 +423,21 @@ public class MetaDataImpl implements IMetaData {
       return false;
     }
 
+    @Override
+    public boolean isWritable() {
+      return true;
+    }
+
+    @Override
+    public int getPendingRequestCount() {
+      return 0;
+    }
+
+    @Override
+    public long getAnswerLatency() {
+      return 0;
+    }
+
     @Override
     public void setRealm(String realm) {
     }
@@ -81,12 +81,9 @@ public class SessionFactoryImpl implements ISessionFactory {
 
   @Override
   public String getSessionId(String custom) {
-    long id = uid.nextLong();
-    long high32 = (id & 0xffffffff00000000L) >> 32;
-    long low32 = (id & 0xffffffffL);
-    StringBuilder sb = new StringBuilder();
-    sb.append(stack.getMetaData().getLocalPeer().getUri().getFQDN()).
-    append(";").append(high32).append(";").append(low32);
+    String fqdn = stack.getMetaData().getLocalPeer().getUri().getFQDN();
+    StringBuilder sb = new StringBuilder(fqdn.length() + 32 + (custom != null ? custom.length() : 0));
+    uid.appendNext(sb.append(fqdn).append(';'));
     if (custom != null) {
       //FIXME: add checks for not allowed chars?
       sb.append(";").append(custom);
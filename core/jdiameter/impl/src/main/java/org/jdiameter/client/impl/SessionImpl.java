@@ -45,6 +45,7 @@ package org.jdiameter.client.impl;
 import java.util.concurrent.TimeUnit;
 
 import org.jdiameter.api.Answer;
+import org.jdiameter.api.AnswerFuture;
 import org.jdiameter.api.ApplicationId;
 import org.jdiameter.api.Avp;
 import org.jdiameter.api.EventListener;
@@ -99,6 +100,18 @@ public class SessionImpl extends BaseSessionImpl implements ISession {
     genericSend(message, listener, timeout, timeUnit);
   }
 
+  @Override
+  public AnswerFuture<Request, Answer> sendAsync(Message message)
+      throws InternalException, IllegalDiameterStateException, RouteException, OverloadException {
+    return genericSendAsync(message);
+  }
+
+  @Override
+  public AnswerFuture<Request, Answer> sendAsync(Message message, long timeout, TimeUnit timeUnit)
+      throws InternalException, IllegalDiameterStateException, RouteException, OverloadException {
+    return genericSendAsync(message, timeout, timeUnit);
+  }
+
   @Override
   public void setRequestListener(NetworkReqListener listener) {
     if (listener != null) {
@@ -65,6 +65,7 @@ import org.jdiameter.api.InternalException;
 import org.jdiameter.api.MetaData;
 import org.jdiameter.api.Mode;
 import org.jdiameter.api.NetworkReqListener;
+import org.jdiameter.api.OverloadException;
 import org.jdiameter.api.Peer;
 import org.jdiameter.api.PeerState;
 import org.jdiameter.api.PeerTable;
@@ -85,6 +86,7 @@ import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.jdiameter.common.api.data.ISessionDatasource;
 import org.jdiameter.common.api.statistic.IStatisticProcessor;
 import org.jdiameter.common.api.timer.ITimerFacility;
+import org.jdiameter.common.impl.timer.HashedWheelTimerFacilityImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -333,6 +335,10 @@ public class StackImpl implements IContainer, StackImplMBean {
         }
         assembler.getComponentInstance(ISessionDatasource.class).stop();
         assembler.getComponentInstance(IStatisticProcessor.class).stop();
+        ITimerFacility timerFacility = assembler.getComponentInstance(ITimerFacility.class);
+        if (timerFacility instanceof HashedWheelTimerFacilityImpl) {
+          ((HashedWheelTimerFacilityImpl) timerFacility).stop();
+        }
         try {
           if (peerManager != null) {
             peerManager.stopped();
@@ -341,6 +347,8 @@ public class StackImpl implements IContainer, StackImplMBean {
           if (scheduledFacility != null) {
             concurrentFactory.shutdownNow(scheduledFacility);
           }
+          // Peers are down, release transport threads
+          concurrentFactory.shutdownTransportEventLoopGroup();
         }
         catch (Exception e) {
           log.warn("Stopped error", e);
@@ -376,6 +384,10 @@ public class StackImpl implements IContainer, StackImplMBean {
       if (scheduledFacility != null) {
         concurrentFactory.shutdownNow(scheduledFacility);
       }
+      if (concurrentFactory != null) {
+        concurrentFactory.shutdownTransportEventLoopGroup();
+        concurrentFactory.shutdownSessionExecutorService();
+      }
     }
     catch (Exception e) {
       log.warn("Destroy error", e);
@@ -467,7 +479,8 @@ public class StackImpl implements IContainer, StackImplMBean {
   }
 
   @Override
-  public void sendMessage(IMessage message) throws RouteException, AvpDataException, IllegalDiameterStateException, IOException {
+  public void sendMessage(IMessage message) throws RouteException, AvpDataException, IllegalDiameterStateException, IOException,
+      OverloadException {
     peerManager.sendMessage(message);
   }
 
@@ -529,7 +529,7 @@ public class ClientAuthSessionImpl extends AppAuthSessionImpl implements ClientA
     ad.session = this;
     ad.request = request;
     ad.answer = answer;
-    super.scheduler.execute(ad);
+    super.execute(ad);
   }
 
   @Override
@@ -552,7 +552,7 @@ public class ClientAuthSessionImpl extends AppAuthSessionImpl implements ClientA
     RequestDelivery rd = new RequestDelivery();
     rd.session = this;
     rd.request = request;
-    super.scheduler.execute(rd);
+    super.execute(rd);
 
     return null;
   }
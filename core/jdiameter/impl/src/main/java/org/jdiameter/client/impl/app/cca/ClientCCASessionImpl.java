@@ -565,7 +565,7 @@ public class ClientCCASessionImpl extends AppCCASessionImpl implements ClientCCA
     RequestDelivery rd = new RequestDelivery();
     rd.session = this;
     rd.request = request;
-    super.scheduler.execute(rd);
+    super.execute(rd);
     return null;
   }
 
@@ -575,7 +575,7 @@ public class ClientCCASessionImpl extends AppCCASessionImpl implements ClientCCA
     ad.session = this;
     ad.request = request;
     ad.answer = answer;
-    super.scheduler.execute(ad);
+    super.execute(ad);
 
   }
 
@@ -501,7 +501,7 @@ public class GqClientSessionImpl extends AppAuthSessionImpl implements GqClientS
     ad.session = this;
     ad.request = request;
     ad.answer = answer;
-    super.scheduler.execute(ad);
+    super.execute(ad);
   }
 
   @Override
@@ -520,7 +520,7 @@ public class GqClientSessionImpl extends AppAuthSessionImpl implements GqClientS
     RequestDelivery rd = new RequestDelivery();
     rd.session = this;
     rd.request = request;
-    super.scheduler.execute(rd);
+    super.execute(rd);
 
     return null;
   }
@@ -550,7 +550,7 @@ public class ClientGxSessionImpl extends AppGxSessionImpl implements ClientGxSes
     RequestDelivery rd = new RequestDelivery();
     rd.session = this;
     rd.request = request;
-    super.scheduler.execute(rd);
+    super.execute(rd);
     return null;
   }
 
@@ -560,7 +560,7 @@ public class ClientGxSessionImpl extends AppGxSessionImpl implements ClientGxSes
     ad.session = this;
     ad.request = request;
     ad.answer = answer;
-    super.scheduler.execute(ad);
+    super.execute(ad);
 
   }
 
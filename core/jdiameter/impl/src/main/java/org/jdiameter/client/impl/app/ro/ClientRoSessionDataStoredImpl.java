@@ -0,0 +1,138 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.app.ro;
+
+import java.io.Serializable;
+
+import org.jdiameter.api.Request;
+import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.common.api.app.AppSessionDataStoredImpl;
+import org.jdiameter.common.api.app.ro.ClientRoSessionState;
+import org.jdiameter.common.api.data.ISessionDataStore;
+
+/**
+ * Client Ro session data kept in {@link ISessionDataStore}
+ */
+public class ClientRoSessionDataStoredImpl extends AppSessionDataStoredImpl implements IClientRoSessionData {
+
+  private static final int EVENT_BASED = FIRST_ATTRIBUTE;
+  private static final int REQUEST_TYPE_SET = FIRST_ATTRIBUTE + 1;
+  private static final int STATE = FIRST_ATTRIBUTE + 2;
+  private static final int TXTIMER_ID = FIRST_ATTRIBUTE + 3;
+  private static final int TXTIMER_REQUEST = FIRST_ATTRIBUTE + 4;
+  private static final int BUFFER = FIRST_ATTRIBUTE + 5;
+  private static final int GATHERED_REQUESTED_ACTION = FIRST_ATTRIBUTE + 6;
+  private static final int GATHERED_CCFH = FIRST_ATTRIBUTE + 7;
+  private static final int GATHERED_DDFH = FIRST_ATTRIBUTE + 8;
+
+  public ClientRoSessionDataStoredImpl(String sessionId, ISessionDataStore store, IMessageParser parser) {
+    super(sessionId, store, parser);
+  }
+
+  @Override
+  public boolean isEventBased() {
+    return getBoolean(EVENT_BASED, true);
+  }
+
+  @Override
+  public void setEventBased(boolean isEventBased) {
+    store.put(sessionId, EVENT_BASED, isEventBased);
+  }
+
+  @Override
+  public boolean isRequestTypeSet() {
+    return getBoolean(REQUEST_TYPE_SET, false);
+  }
+
+  @Override
+  public void setRequestTypeSet(boolean requestTypeSet) {
+    store.put(sessionId, REQUEST_TYPE_SET, requestTypeSet);
+  }
+
+  @Override
+  public ClientRoSessionState getClientRoSessionState() {
+    return getEnum(STATE, ClientRoSessionState.values(), ClientRoSessionState.IDLE);
+  }
+
+  @Override
+  public void setClientRoSessionState(ClientRoSessionState state) {
+    setEnum(STATE, state);
+  }
+
+  @Override
+  public Serializable getTxTimerId() {
+    return getTimerId(TXTIMER_ID);
+  }
+
+  @Override
+  public void setTxTimerId(Serializable txTimerId) {
+    setTimerId(TXTIMER_ID, txTimerId);
+  }
+
+  @Override
+  public Request getTxTimerRequest() {
+    return getRequest(TXTIMER_REQUEST);
+  }
+
+  @Override
+  public void setTxTimerRequest(Request txTimerRequest) {
+    setRequest(TXTIMER_REQUEST, txTimerRequest);
+  }
+
+  @Override
+  public Request getBuffer() {
+    return getRequest(BUFFER);
+  }
+
+  @Override
+  public void setBuffer(Request buffer) {
+    setRequest(BUFFER, buffer);
+  }
+
+  @Override
+  public int getGatheredRequestedAction() {
+    return getInt(GATHERED_REQUESTED_ACTION, NON_INITIALIZED);
+  }
+
+  @Override
+  public void setGatheredRequestedAction(int gatheredRequestedAction) {
+    store.put(sessionId, GATHERED_REQUESTED_ACTION, gatheredRequestedAction);
+  }
+
+  @Override
+  public int getGatheredCCFH() {
+    return getInt(GATHERED_CCFH, NON_INITIALIZED);
+  }
+
+  @Override
+  public void setGatheredCCFH(int gatheredCCFH) {
+    store.put(sessionId, GATHERED_CCFH, gatheredCCFH);
+  }
+
+  @Override
+  public int getGatheredDDFH() {
+    return getInt(GATHERED_DDFH, NON_INITIALIZED);
+  }
+
+  @Override
+  public void setGatheredDDFH(int gatheredDDFH) {
+    store.put(sessionId, GATHERED_DDFH, gatheredDDFH);
+  }
+}
@@ -577,7 +577,7 @@ public class ClientRoSessionImpl extends AppRoSessionImpl implements ClientRoSes
     RequestDelivery rd = new RequestDelivery();
     rd.session = this;
     rd.request = request;
-    super.scheduler.execute(rd);
+    super.execute(rd);
     return null;
   }
 
@@ -587,7 +587,7 @@ public class ClientRoSessionImpl extends AppRoSessionImpl implements ClientRoSes
     ad.session = this;
     ad.request = request;
     ad.answer = answer;
-    super.scheduler.execute(ad);
+    super.execute(ad);
 
   }
 
@@ -543,7 +543,7 @@ public class ClientRxSessionImpl extends AppRxSessionImpl implements ClientRxSes
     RequestDelivery rd = new RequestDelivery();
     rd.session = this;
     rd.request = request;
-    super.scheduler.execute(rd);
+    super.execute(rd);
     return null;
   }
 
@@ -553,7 +553,7 @@ public class ClientRxSessionImpl extends AppRxSessionImpl implements ClientRxSes
     ad.session = this;
     ad.request = request;
     ad.answer = answer;
-    super.scheduler.execute(ad);
+    super.execute(ad);
 
   }
 
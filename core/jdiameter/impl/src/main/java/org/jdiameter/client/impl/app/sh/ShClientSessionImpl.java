@@ -119,7 +119,7 @@ public class ShClientSessionImpl extends ShSession implements ClientShSession, E
     RequestDelivery rd = new RequestDelivery();
     rd.session = this;
     rd.request = request;
-    super.scheduler.execute(rd);
+    super.execute(rd);
     return null;
   }
 
@@ -231,7 +231,7 @@ public class ShClientSessionImpl extends ShSession implements ClientShSession, E
     rd.session = this;
     rd.request = request;
     rd.answer = answer;
-    super.scheduler.execute(rd);
+    super.execute(rd);
   }
 
   @Override
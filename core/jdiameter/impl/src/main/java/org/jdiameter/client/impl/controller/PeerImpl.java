@@ -72,8 +72,10 @@ import static org.jdiameter.client.api.fsm.EventTypes.DWR_EVENT;
 import static org.jdiameter.client.api.fsm.EventTypes.INTERNAL_ERROR;
 import static org.jdiameter.client.api.fsm.EventTypes.RECEIVE_MSG_EVENT;
 import static org.jdiameter.client.api.fsm.EventTypes.STOP_EVENT;
+import static org.jdiameter.client.impl.helpers.Parameters.PeerConnectionCount;
 import static org.jdiameter.client.impl.helpers.Parameters.SecurityRef;
 import static org.jdiameter.client.impl.helpers.Parameters.UseUriAsFqdn;
+import static org.jdiameter.common.api.concurrent.IConcurrentFactory.ScheduledExecServices.ConnectionTimer;
 
 import java.io.IOException;
 import java.net.InetAddress;
@@ -82,11 +84,12 @@ import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.jdiameter.api.ApplicationId;
 import org.jdiameter.api.Avp;
@@ -155,13 +158,15 @@ public class PeerImpl extends AbstractPeer implements IPeer {
   protected AtomicLong hopByHopId = new AtomicLong(uid.nextInt());
   protected int rating;
   protected boolean stopping = false;
+  // false while outbound buffer of connection is above high water mark
+  protected volatile boolean writable = true;
   // Members
   protected IMetaData metaData;
   protected PeerTableImpl table;
   // Facilities
   protected IRouter router;
   // XXX: FT/HA // protected Map<String, NetworkReqListener> slc;
-  protected final Map<Long, IMessage> peerRequests = new ConcurrentHashMap<Long, IMessage>();
+  protected final PendingRequestTable peerRequests;
   protected final Dictionary dictionary = DictionarySingleton.getDictionary();
   // FSM layer
   protected IStateMachine fsm;
@@ -174,11 +179,23 @@ public class PeerImpl extends AbstractPeer implements IPeer {
 
   // Transport layer
   protected IConnection connection;
+  // additional connections to peer, application messages are striped between them and main connection by Session-Id,
+  // array is replaced as a whole when connection is added or removed
+  protected volatile StripeConnection[] stripes = new StripeConnection[0];
+  protected ScheduledExecutorService stripeScheduler;
+  // Session-Id hash buckets, messages of a bucket stay on one connection to keep them in order,
+  // owners are read without locking, reassigned only under bucketLock
+  static final int SESSION_BUCKETS = 256;
+  static final long REBALANCE_IDLE_TIME = 1000;
+  private final AtomicReferenceArray<StripeConnection> bucketOwners = new AtomicReferenceArray<StripeConnection>(SESSION_BUCKETS);
+  private final AtomicLongArray bucketLastUse = new AtomicLongArray(SESSION_BUCKETS);
+  private final Object bucketLock = new Object();
   protected IConnectionListener connListener = new IConnectionListener() {
 
     @Override
     public void connectionOpened(String connKey) {
       logger.debug("Connection to {} is open", uri);
+      writable = true;
       try {
         fsm.handleEvent(new FsmEvent(CONNECT_EVENT, connKey));
       }
@@ -190,17 +207,11 @@ public class PeerImpl extends AbstractPeer implements IPeer {
     @Override
     public void connectionClosed(String connKey, List notSent) {
       logger.debug("Connection from {} is closed", uri);
+      writable = true;
       for (IMessage request : peerRequests.values()) {
         if (request.getState() == IMessage.STATE_SENT) {
-          request.setReTransmitted(true);
-          request.setState(IMessage.STATE_NOT_SENT);
-          try {
-            peerRequests.remove(request.getHopByHopIdentifier());
-            table.sendMessage(request);
-          }
-          catch (Throwable exc) {
-            request.setReTransmitted(false);
-          }
+          peerRequests.remove(request.getHopByHopIdentifier());
+          retransmit(request);
         }
       }
       try {
@@ -258,6 +269,20 @@ public class PeerImpl extends AbstractPeer implements IPeer {
         logger.debug("Unable to run internalError procedure", e);
       }
     }
+
+    @Override
+    public void connectionWritabilityChanged(String connKey, boolean isWritable) {
+      if (isWritable) {
+        logger.debug("Connection to {} is writable again", uri);
+      }
+      else {
+        logger.warn("Connection to {} is not writable, outbound buffer is above high water mark", uri);
+        if (statistic != null && statistic.isEnabled()) {
+          statistic.getRecordByName(IStatisticRecord.Counters.TransportUnwritable.name()).inc();
+        }
+      }
+      writable = isWritable;
+    }
   };
 
   public PeerImpl(final PeerTableImpl table, int rating, URI remotePeer, String ip,  String portRange, IMetaData metaData, Configuration config,
@@ -278,6 +303,7 @@ public class PeerImpl extends AbstractPeer implements IPeer {
     this.metaData = metaData;
     // XXX: FT/HA // this.slc = table.getSessionReqListeners();
     this.sessionDataSource = sessionDataSource;
+    this.peerRequests = new PendingRequestTable(concurrentFactory);
 
     int port = remotePeer.getPort();
     InetAddress remoteAddress;
@@ -296,6 +322,10 @@ public class PeerImpl extends AbstractPeer implements IPeer {
             PeerState s = (PeerState) newState;
             if (PeerState.DOWN.equals(s)) {
               stopping = false;
+              disconnectStripes();
+            }
+            else if (PeerState.OKAY.equals(s)) {
+              connectStripes();
             }
           }
         }
@@ -317,49 +347,23 @@ public class PeerImpl extends AbstractPeer implements IPeer {
       }
       int localPort = 0;
       if (portRange != null) {
-        try {
-          String[] rng = portRange.trim().split("-");
-          int startRange = Integer.parseInt(rng[0]);
-          int endRange = Integer.parseInt(rng[1]);
-          boolean portNotAvailable = false;
-          int limit = 0;
-          int maxTries = endRange - startRange + 1;
-          logger.debug("Selecting local port randomly from range '{}-{}'. Doing {} tries (some ports may not be tested, others tested more than once).",
-              new Object[]{startRange, endRange, maxTries});
-
-          do {
-            portNotAvailable = false;
-            limit++;
-            localPort = startRange + new Random().nextInt(endRange - startRange + 1);
-            logger.trace("Checking if port '{}' is available.", localPort);
-            //check if port is open
-            ServerSocket socket = null;
-            try {
-              socket = new ServerSocket(localPort);
-              socket.setReuseAddress(true);
-            }
-            catch (IOException e) {
-              logger.trace("The port '{}' is NOT available.", localPort);
-              portNotAvailable = true;
-            }
-            finally {
-              // Clean up
-              if (socket != null) {
-                logger.trace("The port '{}' is available and will be used.", localPort);
-                socket.close();
-              }
-            }
-          } while (portNotAvailable && (limit < maxTries));
-          if (portNotAvailable) {
-            logger.warn("Unable to find available port in port range.");
-          }
-        }
-        catch (Exception exc) {
-          logger.warn("Unable to get local port.", exc);
-        }
+        localPort = selectLocalPort(portRange);
         logger.debug("Create connection with localAddress=[{}]; localPort=[{}]", localAddress, localPort);
       }
       this.connection = trFactory.createConnection(remoteAddress, concurrentFactory, port, localAddress, localPort, connListener, ref);
+
+      int connectionCount = peerConfig.getIntValue(PeerConnectionCount.ordinal(), (Integer) PeerConnectionCount.defValue());
+      if (connectionCount > 1) {
+        logger.debug("Creating {} additional connections to peer {}", connectionCount - 1, remotePeer);
+        this.stripeScheduler = concurrentFactory.getScheduledExecutorService(ConnectionTimer.name());
+        StripeConnection[] created = new StripeConnection[connectionCount - 1];
+        for (int i = 0; i < created.length; i++) {
+          created[i] = new StripeConnection();
+          created[i].connection = trFactory.createConnection(remoteAddress, concurrentFactory, port, localAddress,
+              portRange != null ? selectLocalPort(portRange) : 0, created[i], ref);
+        }
+        this.stripes = created;
+      }
     }
     else {
       this.connection = connection;
@@ -370,6 +374,57 @@ public class PeerImpl extends AbstractPeer implements IPeer {
     this.useUriAsFQDN = config.getBooleanValue(UseUriAsFqdn.ordinal(), (Boolean) UseUriAsFqdn.defValue());
   }
 
+  /**
+   * Selects random local port from given range, which is not in use at the moment
+   *
+   * @param portRange range of ports, eg. "1345-1346"
+   * @return selected port or 0 if there is no available port in range
+   */
+  protected int selectLocalPort(String portRange) {
+    int localPort = 0;
+    try {
+      String[] rng = portRange.trim().split("-");
+      int startRange = Integer.parseInt(rng[0]);
+      int endRange = Integer.parseInt(rng[1]);
+      boolean portNotAvailable = false;
+      int limit = 0;
+      int maxTries = endRange - startRange + 1;
+      logger.debug("Selecting local port randomly from range '{}-{}'. Doing {} tries (some ports may not be tested, others tested more than once).",
+          new Object[]{startRange, endRange, maxTries});
+
+      do {
+        portNotAvailable = false;
+        limit++;
+        localPort = startRange + new Random().nextInt(endRange - startRange + 1);
+        logger.trace("Checking if port '{}' is available.", localPort);
+        //check if port is open
+        ServerSocket socket = null;
+        try {
+          socket = new ServerSocket(localPort);
+          socket.setReuseAddress(true);
+        }
+        catch (IOException e) {
+          logger.trace("The port '{}' is NOT available.", localPort);
+          portNotAvailable = true;
+        }
+        finally {
+          // Clean up
+          if (socket != null) {
+            logger.trace("The port '{}' is available and will be used.", localPort);
+            socket.close();
+          }
+        }
+      } while (portNotAvailable && (limit < maxTries));
+      if (portNotAvailable) {
+        logger.warn("Unable to find available port in port range.");
+      }
+    }
+    catch (Exception exc) {
+      logger.warn("Unable to get local port.", exc);
+    }
+    return localPort;
+  }
+
   public IContext getContext() {
     return new ActionContext();
   }
@@ -557,7 +612,7 @@ public class PeerImpl extends AbstractPeer implements IPeer {
 
   @Override
   public void addMessage(IMessage message) {
-    peerRequests.put(message.getHopByHopIdentifier(), message);
+    peerRequests.put(message);
   }
 
   @Override
@@ -567,9 +622,7 @@ public class PeerImpl extends AbstractPeer implements IPeer {
 
   @Override
   public IMessage[] remAllMessage() {
-    IMessage[] m = peerRequests.values().toArray(new IMessage[peerRequests.size()]);
-    peerRequests.clear();
-    return m;
+    return peerRequests.removeAll();
   }
 
   @Override
@@ -583,6 +636,10 @@ public class PeerImpl extends AbstractPeer implements IPeer {
       logger.debug("Message validation is ENABLED. Going to validate message before sending.");
       dictionary.validate(message, false);
     }
+    // answers are still sent, peer would retransmit the request otherwise
+    if (!writable && message.isRequest()) {
+      throw new OverloadException("Connection to " + uri + " is not writable");
+    }
     return !stopping && fsm.handleEvent(new FsmEvent(EventTypes.SEND_MSG_EVENT, message));
   }
 
@@ -591,6 +648,21 @@ public class PeerImpl extends AbstractPeer implements IPeer {
     return connection != null && connection.isConnected();
   }
 
+  @Override
+  public boolean isWritable() {
+    return writable;
+  }
+
+  @Override
+  public int getPendingRequestCount() {
+    return peerRequests.size();
+  }
+
+  @Override
+  public long getAnswerLatency() {
+    return peerRequests.getAnswerLatency();
+  }
+
   @Override
   public void setRealm(String realm) {
     realmName = realm;
@@ -712,6 +784,291 @@ public class PeerImpl extends AbstractPeer implements IPeer {
     }
   }
 
+  /**
+   * Sends again request which was sent over connection closed before answer was received
+   *
+   * @param request request removed from pending requests
+   */
+  protected void retransmit(IMessage request) {
+    request.setReTransmitted(true);
+    request.setState(IMessage.STATE_NOT_SENT);
+    try {
+      table.sendMessage(request);
+    }
+    catch (Throwable exc) {
+      logger.debug("Unable to retransmit request " + request, exc);
+      request.setReTransmitted(false);
+      // timer was claimed by pending requests table the request was removed from, arm it for what is left
+      request.startTimer();
+    }
+  }
+
+  /**
+   * Returns additional connection application message has to be sent over. Messages of the same session stay on
+   * the same connection as long as it is ready. When it fails they move to the next ready one and get back only
+   * after session was idle for a while, so they never overtake messages sent before. Messages without Session-Id
+   * (CEx, DWx, DPx) use main connection.
+   *
+   * @param message message to send
+   * @return selected connection or null if message is sent over main connection
+   */
+  protected StripeConnection selectStripe(IMessage message) {
+    StripeConnection[] current = stripes;
+    if (current.length == 0) {
+      return null;
+    }
+    String sessionId = message.getSessionId();
+    if (sessionId == null) {
+      return null;
+    }
+    int bucket = (sessionId.hashCode() & Integer.MAX_VALUE) % SESSION_BUCKETS;
+    long now = System.currentTimeMillis();
+    StripeConnection owner = bucketOwners.get(bucket);
+    if (!isRebalanceNeeded(bucket, owner, now)) {
+      // exact time of last use does not matter, only whether bucket was idle
+      bucketLastUse.lazySet(bucket, now);
+      return owner;
+    }
+    synchronized (bucketLock) {
+      // another sender may have rebalanced bucket meanwhile
+      owner = bucketOwners.get(bucket);
+      if (isRebalanceNeeded(bucket, owner, now)) {
+        owner = selectBucketOwner(bucket, current);
+        bucketOwners.set(bucket, owner);
+      }
+      bucketLastUse.set(bucket, now);
+      return owner;
+    }
+  }
+
+  private boolean isRebalanceNeeded(int bucket, StripeConnection owner, long now) {
+    return (owner != null && !owner.isReady()) || now - bucketLastUse.get(bucket) > REBALANCE_IDLE_TIME;
+  }
+
+  private StripeConnection selectBucketOwner(int bucket, StripeConnection[] current) {
+    // home connection of bucket first, then following ones, main connection (0) is always usable
+    int count = current.length + 1;
+    for (int i = bucket % count; ; i = (i + 1) % count) {
+      if (i == 0) {
+        return null;
+      }
+      if (current[i - 1].isReady()) {
+        return current[i - 1];
+      }
+    }
+  }
+
+  protected synchronized void addStripe(StripeConnection stripe) {
+    StripeConnection[] current = stripes;
+    StripeConnection[] updated = new StripeConnection[current.length + 1];
+    System.arraycopy(current, 0, updated, 0, current.length);
+    updated[current.length] = stripe;
+    stripes = updated;
+  }
+
+  protected synchronized void removeStripe(StripeConnection stripe) {
+    StripeConnection[] current = stripes;
+    List<StripeConnection> updated = new ArrayList<StripeConnection>(current.length);
+    for (StripeConnection c : current) {
+      if (c != stripe) {
+        updated.add(c);
+      }
+    }
+    stripes = updated.toArray(new StripeConnection[updated.size()]);
+  }
+
+  protected void connectStripes() {
+    if (stripeScheduler == null) {
+      return;
+    }
+    stripeScheduler.execute(new Runnable() {
+      @Override
+      public void run() {
+        for (StripeConnection stripe : stripes) {
+          if (getState(PeerState.class) == PeerState.OKAY) {
+            stripe.connect();
+          }
+        }
+      }
+    });
+  }
+
+  protected void disconnectStripes() {
+    for (StripeConnection stripe : stripes) {
+      stripe.disconnect();
+    }
+  }
+
+  /**
+   * Additional connection to peer. It performs its own capabilities exchange and watchdog, other messages
+   * received over it are passed to peer state machine just like messages received over main connection.
+   * Requests still unanswered when it closes are sent again, the same way as for main connection.
+   */
+  protected class StripeConnection implements IConnectionListener {
+
+    protected IConnection connection;
+    protected final ActionContext context = (ActionContext) getContext();
+    // CEA with success received and outbound buffer is not full
+    protected volatile boolean ready;
+    protected volatile boolean writable = true;
+    // DWR sent and nothing received since, checked on next watchdog round of main connection
+    protected volatile boolean dwaPending;
+    // requests sent over this connection by hop-by-hop identifier, answered and expired ones are purged on watchdog,
+    // their timeouts stay with peerRequests
+    protected final PendingRequestTable inFlight = new PendingRequestTable(null);
+
+    public boolean isReady() {
+      return ready && writable;
+    }
+
+    protected void connect() {
+      if (connection.isConnected()) {
+        return;
+      }
+      try {
+        connection.connect();
+      }
+      catch (Exception e) {
+        logger.debug("Unable to open additional connection to peer " + uri, e);
+      }
+    }
+
+    protected void disconnect() {
+      ready = false;
+      dwaPending = false;
+      if (connection.isConnected()) {
+        try {
+          connection.disconnect();
+        }
+        catch (Exception e) {
+          logger.debug("Unable to close additional connection to peer " + uri, e);
+        }
+      }
+      retransmitInFlight();
+    }
+
+    protected void sendDwr() {
+      if (!ready) {
+        return;
+      }
+      if (dwaPending) {
+        logger.debug("DWA not received over additional connection to {}, reopening it", uri);
+        disconnect();
+        return;
+      }
+      for (IMessage request : inFlight.values()) {
+        if (request.getState() != IMessage.STATE_SENT || request.isTimeOut()) {
+          inFlight.remove(request.getHopByHopIdentifier());
+        }
+      }
+      dwaPending = true;
+      send(context.createDwrMessage());
+    }
+
+    protected void retransmitInFlight() {
+      for (IMessage request : inFlight.removeAll()) {
+        if (request.getState() == IMessage.STATE_SENT && peerRequests.remove(request.getHopByHopIdentifier()) != null) {
+          retransmit(request);
+        }
+      }
+    }
+
+    protected void sendMessage(IMessage message) throws TransportException, OverloadException {
+      if (message.isRequest()) {
+        inFlight.add(message);
+      }
+      try {
+        connection.sendMessage(message);
+      }
+      catch (TransportException e) {
+        inFlight.remove(message.getHopByHopIdentifier());
+        throw e;
+      }
+      catch (OverloadException e) {
+        inFlight.remove(message.getHopByHopIdentifier());
+        throw e;
+      }
+    }
+
+    protected void send(IMessage message) {
+      try {
+        connection.sendMessage(message);
+      }
+      catch (Exception e) {
+        logger.debug("Unable to send message over additional connection to peer " + uri, e);
+        disconnect();
+      }
+    }
+
+    @Override
+    public void connectionOpened(String connKey) {
+      logger.debug("Additional connection to {} is open", uri);
+      writable = true;
+      dwaPending = false;
+      send(context.createCerMessage());
+    }
+
+    @Override
+    public void connectionClosed(String connKey, List notSent) {
+      logger.debug("Additional connection to {} is closed", uri);
+      ready = false;
+      dwaPending = false;
+      retransmitInFlight();
+    }
+
+    @Override
+    public void messageReceived(String connKey, IMessage message) {
+      boolean req = message.isRequest();
+      // any message proves connection is alive, not only DWA
+      dwaPending = false;
+      switch (message.getCommandCode()) {
+        case CAPABILITIES_EXCHANGE_REQUEST:
+          if (!req) {
+            try {
+              Avp resultCode = message.getAvps().getAvp(RESULT_CODE);
+              ready = resultCode != null && resultCode.getInteger32() == ResultCode.SUCCESS;
+            }
+            catch (AvpDataException e) {
+              ready = false;
+            }
+            logger.debug("CEA received over additional connection to {}, connection is ready [{}]", uri, ready);
+            if (!ready) {
+              disconnect();
+            }
+          }
+          break;
+        case DEVICE_WATCHDOG_REQUEST:
+          if (req) {
+            send(context.createDwaMessage(message, ResultCode.SUCCESS, null));
+          }
+          break;
+        case DISCONNECT_PEER_REQUEST:
+          if (req) {
+            ready = false;
+            send(context.createDpaMessage(message, ResultCode.SUCCESS, null));
+          }
+          break;
+        default:
+          if (!req) {
+            inFlight.remove(message.getHopByHopIdentifier());
+          }
+          connListener.messageReceived(connKey, message);
+          break;
+      }
+    }
+
+    @Override
+    public void internalError(String connKey, IMessage message, TransportException cause) {
+      logger.debug("Internal error on additional connection to " + uri, cause);
+      disconnect();
+    }
+
+    @Override
+    public void connectionWritabilityChanged(String connKey, boolean isWritable) {
+      logger.debug("Additional connection to {} is writable [{}]", uri, isWritable);
+      writable = isWritable;
+    }
+  }
 
   protected class ActionContext implements IContext {
 
@@ -796,7 +1153,7 @@ public class PeerImpl extends AbstractPeer implements IPeer {
               String[] originInfo = router.getRequestRouteInfo(message);
               if (originInfo != null) {
                 // message.getDuplicationKey() doesn't work because it's answer
-                peerTable.saveToDuplicate(message.getDuplicationKey(originInfo[0], message.getEndToEndIdentifier()), message);
+                peerTable.saveToDuplicate(originInfo[0], message.getEndToEndIdentifier(), message);
               }
             }
           }
@@ -808,7 +1165,13 @@ public class PeerImpl extends AbstractPeer implements IPeer {
       // Send to network
       message.setState(IMessage.STATE_SENT);
       logger.debug("Calling connection to send message [{}] to peer [{}] over the network", message, getUri());
-      connection.sendMessage(message);
+      StripeConnection stripe = selectStripe(message);
+      if (stripe != null) {
+        stripe.sendMessage(message);
+      }
+      else {
+        connection.sendMessage(message);
+      }
       logger.debug("Connection sent message [{}] to peer [{}] over the network", message, getUri());
 
       return true;
@@ -817,6 +1180,10 @@ public class PeerImpl extends AbstractPeer implements IPeer {
     @Override
     public void sendCerMessage() throws TransportException, OverloadException {
       logger.debug("Send CER message");
+      sendMessage(createCerMessage());
+    }
+
+    protected IMessage createCerMessage() {
       IMessage message = parser.createEmptyMessage(CAPABILITIES_EXCHANGE_REQUEST, 0);
       message.setRequest(true);
       message.setHopByHopIdentifier(getHopByHopIdentifier());
@@ -839,7 +1206,7 @@ public class PeerImpl extends AbstractPeer implements IPeer {
       }
       message.getAvps().addAvp(FIRMWARE_REVISION, metaData.getLocalPeer().getFirmware(), true);
       message.getAvps().addAvp(ORIGIN_STATE_ID, metaData.getLocalHostStateId(), true, false, true);
-      sendMessage(message);
+      return message;
     }
 
     @Override
@@ -850,6 +1217,14 @@ public class PeerImpl extends AbstractPeer implements IPeer {
     @Override
     public void sendDwrMessage() throws TransportException, OverloadException {
       logger.debug("Send DWR message");
+      sendMessage(createDwrMessage());
+      for (StripeConnection stripe : stripes) {
+        stripe.sendDwr();
+      }
+      connectStripes();
+    }
+
+    protected IMessage createDwrMessage() {
       IMessage message = parser.createEmptyMessage(DEVICE_WATCHDOG_REQUEST, 0);
       message.setRequest(true);
       message.setHopByHopIdentifier(getHopByHopIdentifier());
@@ -860,13 +1235,16 @@ public class PeerImpl extends AbstractPeer implements IPeer {
       // Remove trash avp
       message.getAvps().removeAvp(DESTINATION_HOST);
       message.getAvps().removeAvp(DESTINATION_REALM);
-      // Send
-      sendMessage(message);
+      return message;
     }
 
     @Override
     public void sendDwaMessage(IMessage dwr, int resultCode, String errorMessage) throws TransportException, OverloadException {
       logger.debug("Send DWA message");
+      sendMessage(createDwaMessage(dwr, resultCode, errorMessage));
+    }
+
+    protected IMessage createDwaMessage(IMessage dwr, int resultCode, String errorMessage) {
       IMessage message = parser.createEmptyMessage(dwr);
       message.setRequest(false);
       message.setHopByHopIdentifier(dwr.getHopByHopIdentifier());
@@ -881,8 +1259,7 @@ public class PeerImpl extends AbstractPeer implements IPeer {
       // Remove trash avp
       message.getAvps().removeAvp(DESTINATION_HOST);
       message.getAvps().removeAvp(DESTINATION_REALM);
-      // Send
-      sendMessage(message);
+      return message;
     }
 
     @Override
@@ -905,6 +1282,10 @@ public class PeerImpl extends AbstractPeer implements IPeer {
     @Override
     public void sendDpaMessage(IMessage dpr, int resultCode, String errorMessage) throws TransportException, OverloadException {
       logger.debug("Send DPA message");
+      sendMessage(createDpaMessage(dpr, resultCode, errorMessage));
+    }
+
+    protected IMessage createDpaMessage(IMessage dpr, int resultCode, String errorMessage) {
       IMessage message = parser.createEmptyMessage(dpr);
       message.setRequest(false);
       message.setHopByHopIdentifier(dpr.getHopByHopIdentifier());
@@ -915,7 +1296,7 @@ public class PeerImpl extends AbstractPeer implements IPeer {
       if (errorMessage != null) {
         message.getAvps().addAvp(ERROR_MESSAGE, errorMessage, false);
       }
-      sendMessage(message);
+      return message;
     }
 
     @Override
@@ -1023,7 +1404,7 @@ public class PeerImpl extends AbstractPeer implements IPeer {
         logger.debug("Message is an answer");
 
         //TODO: check REALMs here?
-        IMessage request = peerRequests.remove(message.getHopByHopIdentifier());
+        IMessage request = peerRequests.removeAnswered(message.getHopByHopIdentifier());
         if (request != null && !request.isTimeOut()) {
           request.clearTimer();
           request.setState(IMessage.STATE_ANSWERED);
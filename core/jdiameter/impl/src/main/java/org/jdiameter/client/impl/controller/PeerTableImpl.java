@@ -65,6 +65,7 @@ import org.jdiameter.api.IllegalDiameterStateException;
 import org.jdiameter.api.InternalException;
 import org.jdiameter.api.MetaData;
 import org.jdiameter.api.NetworkReqListener;
+import org.jdiameter.api.OverloadException;
 import org.jdiameter.api.Peer;
 import org.jdiameter.api.RouteException;
 import org.jdiameter.api.URI;
@@ -175,7 +176,8 @@ public class PeerTableImpl implements IPeerTable {
   }
 
   @Override
-  public void sendMessage(IMessage message) throws IllegalDiameterStateException, RouteException, AvpDataException, IOException {
+  public void sendMessage(IMessage message) throws IllegalDiameterStateException, RouteException, AvpDataException, IOException,
+      OverloadException {
     if (!isStarted) {
       throw new IllegalDiameterStateException("Stack is down");
     }
@@ -201,9 +203,11 @@ public class PeerTableImpl implements IPeerTable {
       logger.debug("Selected peer [{}] for sending message [{}]", peer, message);
       if (peer == metaData.getLocalPeer()) {
         logger.debug("Request [{}] will be processed by local service", message);
+        message.startTimer();
       }
       else {
         message.setHopByHopIdentifier(peer.getHopByHopIdentifier());
+        // peer takes over answer timeout of the request
         peer.addMessage(message);
         message.setPeer(peer);
       }
@@ -242,8 +246,17 @@ public class PeerTableImpl implements IPeerTable {
       }
     }
     catch (Exception e) {
-      logger.error("Can not send message", e);
+      if (e instanceof OverloadException) {
+        // rejections are expected under overload, logging each one would only add to it
+        logger.debug("Request [{}] rejected by overloaded peer [{}]", message, peer);
+      }
+      else {
+        logger.error("Can not send message", e);
+      }
       if (message.isRequest()) {
+        if (e instanceof OverloadException && peer != metaData.getLocalPeer()) {
+          peer.remMessage(message);
+        }
         if (peer.getStatistic().isEnabled()) {
           peer.getStatistic().getRecordByName(IStatisticRecord.Counters.AppGenRejectedRequest.name()).inc();
         }
@@ -257,6 +270,9 @@ public class PeerTableImpl implements IPeerTable {
       if (e instanceof AvpNotAllowedException) {
         throw (AvpNotAllowedException) e;
       }
+      else if (e instanceof OverloadException) {
+        throw (OverloadException) e;
+      }
       else {
         throw new IOException(e.getMessage());
       }
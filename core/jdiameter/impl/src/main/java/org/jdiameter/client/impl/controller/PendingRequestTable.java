@@ -0,0 +1,418 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.controller;
+
+import static org.jdiameter.common.api.concurrent.IConcurrentFactory.ScheduledExecServices.ProcessingMessageTimer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.common.api.concurrent.IConcurrentFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Requests sent to a peer and waiting for answer, keyed by hop-by-hop identifier.
+ * Entries are kept in segmented open addressing tables of primitive keys. Answer timeouts of requests are taken over
+ * from messages (see {@link IMessage#claimTimer()}) and driven by coarse timing wheels of hop-by-hop identifiers, one
+ * per segment and guarded by its lock, which are advanced by a task on ProcessingMessageTimer executor only while
+ * some timer is pending. Requests expired on the same run are removed from the table and their timeouts are executed
+ * in one batch.
+ *
+ * Table also keeps count of pending requests and moving average of answer latency, both readable without locking.
+ */
+public class PendingRequestTable {
+
+  private static final Logger logger = LoggerFactory.getLogger(PendingRequestTable.class);
+
+  // hop-by-hop identifiers are sequential, low bits spread them evenly
+  private static final int SEGMENTS = 16;
+  private static final long TICK = 100;
+  private static final int WHEEL_SIZE = 512;
+  // weight of the last sample in answer latency average is 1 / 2^LATENCY_SHIFT
+  private static final int LATENCY_SHIFT = 3;
+
+  private final IConcurrentFactory concurrentFactory;
+  private final Segment[] segments = new Segment[SEGMENTS];
+  private final AtomicInteger count = new AtomicInteger(0);
+  // identifiers in timing wheels of all segments
+  private final AtomicInteger wheelEntries = new AtomicInteger(0);
+  // microseconds, updates may be lost under contention which is fine for an estimate
+  private volatile long answerLatency;
+
+  private final AtomicBoolean tickScheduled = new AtomicBoolean(false);
+  private final Runnable tickTask = new Runnable() {
+    @Override
+    public void run() {
+      try {
+        expire(System.currentTimeMillis());
+      }
+      catch (Exception e) {
+        logger.warn("Failure processing request timeouts", e);
+      }
+      tickScheduled.set(false);
+      scheduleTick();
+    }
+  };
+
+  /**
+   * @param concurrentFactory source of timer executor, may be null if requests are only added by {@link #add(IMessage)}
+   */
+  public PendingRequestTable(IConcurrentFactory concurrentFactory) {
+    this.concurrentFactory = concurrentFactory;
+    long tick = System.currentTimeMillis() / TICK;
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment(tick);
+    }
+  }
+
+  /**
+   * Adds request under its hop-by-hop identifier and takes over its answer timeout
+   *
+   * @param message request sent to peer
+   */
+  public void put(IMessage message) {
+    long hopByHopId = message.getHopByHopIdentifier();
+    long expirationTime = message.claimTimer();
+    if (segment(hopByHopId).put(hopByHopId, message, expirationTime, System.nanoTime())) {
+      count.incrementAndGet();
+    }
+    if (expirationTime > 0) {
+      wheelEntries.incrementAndGet();
+      scheduleTick();
+    }
+  }
+
+  /**
+   * Adds request under its hop-by-hop identifier, its answer timeout is left to the message or to another table
+   *
+   * @param message request sent to peer
+   */
+  public void add(IMessage message) {
+    long hopByHopId = message.getHopByHopIdentifier();
+    if (segment(hopByHopId).put(hopByHopId, message, 0, System.nanoTime())) {
+      count.incrementAndGet();
+    }
+  }
+
+  /**
+   * @param hopByHopId hop-by-hop identifier
+   * @return removed request or null if there is no request with given identifier
+   */
+  public IMessage remove(long hopByHopId) {
+    IMessage message = segment(hopByHopId).remove(hopByHopId, false);
+    if (message != null) {
+      count.decrementAndGet();
+    }
+    return message;
+  }
+
+  /**
+   * Removes request for which answer was received and adds its round trip time to answer latency average
+   *
+   * @param hopByHopId hop-by-hop identifier of answer
+   * @return removed request or null if there is no request with given identifier
+   */
+  public IMessage removeAnswered(long hopByHopId) {
+    IMessage message = segment(hopByHopId).remove(hopByHopId, true);
+    if (message != null) {
+      count.decrementAndGet();
+    }
+    return message;
+  }
+
+  /**
+   * @return all requests, table is left empty
+   */
+  public IMessage[] removeAll() {
+    List<IMessage> messages = new ArrayList<IMessage>();
+    for (Segment segment : segments) {
+      count.addAndGet(-segment.drainTo(messages));
+    }
+    return messages.toArray(new IMessage[messages.size()]);
+  }
+
+  /**
+   * @return snapshot of requests in the table
+   */
+  public List<IMessage> values() {
+    List<IMessage> messages = new ArrayList<IMessage>();
+    for (Segment segment : segments) {
+      segment.copyTo(messages);
+    }
+    return messages;
+  }
+
+  /**
+   * @return number of requests in the table
+   */
+  public int size() {
+    return count.get();
+  }
+
+  /**
+   * @return moving average of answer latency in microseconds, 0 if no answer was received yet
+   */
+  public long getAnswerLatency() {
+    return answerLatency;
+  }
+
+  private Segment segment(long hopByHopId) {
+    return segments[(int) (hopByHopId & (SEGMENTS - 1))];
+  }
+
+  private void addLatency(long sendTime) {
+    long sample = Math.max(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sendTime), 1);
+    long average = answerLatency;
+    answerLatency = average == 0 ? sample : average + ((sample - average) >> LATENCY_SHIFT);
+  }
+
+  private void scheduleTick() {
+    if (wheelEntries.get() == 0) {
+      return;
+    }
+    if (tickScheduled.compareAndSet(false, true)) {
+      try {
+        concurrentFactory.getScheduledExecutorService(ProcessingMessageTimer.name()).schedule(tickTask, TICK, TimeUnit.MILLISECONDS);
+      }
+      catch (RejectedExecutionException e) {
+        tickScheduled.set(false);
+        logger.debug("Can not schedule request timeouts, executor is stopped", e);
+      }
+    }
+  }
+
+  /**
+   * Removes requests whose timeout expired before given time and executes their timeouts
+   *
+   * @param now current time in milliseconds
+   */
+  void expire(long now) {
+    List<IMessage> expired = new ArrayList<IMessage>(0);
+    for (Segment segment : segments) {
+      segment.expire(now, expired);
+    }
+    if (!expired.isEmpty()) {
+      logger.debug("Executing timeouts of {} requests", expired.size());
+      for (IMessage message : expired) {
+        try {
+          message.runTimer();
+        }
+        catch (Exception e) {
+          logger.debug("Can not process timeout", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Open addressing table with linear probing, removal shifts following entries back so no tombstones are needed.
+   * Timing wheel holds identifiers of the segment's requests with timeout, entries of answered requests are dropped
+   * when their bucket is visited.
+   */
+  private final class Segment {
+
+    private long[] keys = new long[64];
+    private IMessage[] values = new IMessage[64];
+    private long[] expirationTimes = new long[64];
+    private long[] sendTimes = new long[64];
+    private int size;
+
+    private final long[][] wheel = new long[WHEEL_SIZE][];
+    private final int[] wheelSizes = new int[WHEEL_SIZE];
+    private long lastTick;
+
+    Segment(long tick) {
+      this.lastTick = tick;
+    }
+
+    /**
+     * @return true if key was not present
+     */
+    synchronized boolean put(long key, IMessage value, long expirationTime, long sendTime) {
+      int slot = slot(key);
+      boolean added = values[slot] == null;
+      if (added) {
+        size++;
+      }
+      keys[slot] = key;
+      values[slot] = value;
+      expirationTimes[slot] = expirationTime;
+      sendTimes[slot] = sendTime;
+      if (size * 2 > keys.length) {
+        resize(keys.length * 2);
+      }
+      if (expirationTime > 0) {
+        schedule(key, expirationTime);
+      }
+      return added;
+    }
+
+    private void schedule(long key, long expirationTime) {
+      long tick = Math.max((expirationTime + TICK - 1) / TICK, lastTick + 1);
+      int bucket = (int) (tick % WHEEL_SIZE);
+      long[] ids = wheel[bucket];
+      if (ids == null) {
+        ids = new long[16];
+        wheel[bucket] = ids;
+      }
+      else if (wheelSizes[bucket] == ids.length) {
+        long[] grown = new long[ids.length * 2];
+        System.arraycopy(ids, 0, grown, 0, ids.length);
+        ids = grown;
+        wheel[bucket] = ids;
+      }
+      ids[wheelSizes[bucket]++] = key;
+    }
+
+    /**
+     * @param answered if true, round trip time of removed request is added to answer latency average
+     */
+    synchronized IMessage remove(long key, boolean answered) {
+      int slot = slot(key);
+      IMessage value = values[slot];
+      if (value == null) {
+        return null;
+      }
+      if (answered) {
+        addLatency(sendTimes[slot]);
+      }
+      int mask = keys.length - 1;
+      int hole = slot;
+      int next = (hole + 1) & mask;
+      while (values[next] != null) {
+        int home = home(keys[next], mask);
+        // move entry back to the hole unless its home position lies cyclically between the hole and it
+        boolean between = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+        if (!between) {
+          keys[hole] = keys[next];
+          values[hole] = values[next];
+          expirationTimes[hole] = expirationTimes[next];
+          sendTimes[hole] = sendTimes[next];
+          hole = next;
+        }
+        next = (next + 1) & mask;
+      }
+      values[hole] = null;
+      expirationTimes[hole] = 0;
+      size--;
+      return value;
+    }
+
+    /**
+     * Visits buckets of ticks which ended since last run, a full revolution visits every bucket
+     *
+     * @param expired receives removed requests whose timeout expired
+     */
+    synchronized void expire(long now, List<IMessage> expired) {
+      long currentTick = now / TICK;
+      long fromTick = Math.max(lastTick + 1, currentTick - WHEEL_SIZE + 1);
+      for (long tick = fromTick; tick <= currentTick; tick++) {
+        int bucket = (int) (tick % WHEEL_SIZE);
+        long[] ids = wheel[bucket];
+        int entries = wheelSizes[bucket];
+        int kept = 0;
+        for (int i = 0; i < entries; i++) {
+          long hopByHopId = ids[i];
+          int slot = slot(hopByHopId);
+          if (values[slot] == null || expirationTimes[slot] == 0) {
+            // answered or removed
+            continue;
+          }
+          if (expirationTimes[slot] > now) {
+            // due in one of next revolutions
+            ids[kept++] = hopByHopId;
+            continue;
+          }
+          expired.add(remove(hopByHopId, false));
+          count.decrementAndGet();
+        }
+        wheelEntries.addAndGet(kept - entries);
+        wheelSizes[bucket] = kept;
+        if (kept == 0 && ids != null && ids.length > 16) {
+          // release buckets grown by bursts
+          wheel[bucket] = null;
+        }
+      }
+      lastTick = Math.max(lastTick, currentTick);
+    }
+
+    /**
+     * @return number of drained requests
+     */
+    synchronized int drainTo(List<IMessage> messages) {
+      int drained = size;
+      copyTo(messages);
+      keys = new long[64];
+      values = new IMessage[64];
+      expirationTimes = new long[64];
+      sendTimes = new long[64];
+      size = 0;
+      return drained;
+    }
+
+    synchronized void copyTo(List<IMessage> messages) {
+      for (IMessage value : values) {
+        if (value != null) {
+          messages.add(value);
+        }
+      }
+    }
+
+    private int slot(long key) {
+      int mask = keys.length - 1;
+      int slot = home(key, mask);
+      while (values[slot] != null && keys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    private int home(long key, int mask) {
+      // segment index is taken from low bits
+      return (int) (((key >>> 4) * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+    }
+
+    private void resize(int capacity) {
+      long[] oldKeys = keys;
+      IMessage[] oldValues = values;
+      long[] oldExpirationTimes = expirationTimes;
+      long[] oldSendTimes = sendTimes;
+      keys = new long[capacity];
+      values = new IMessage[capacity];
+      expirationTimes = new long[capacity];
+      sendTimes = new long[capacity];
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldValues[i] != null) {
+          int slot = slot(oldKeys[i]);
+          keys[slot] = oldKeys[i];
+          values[slot] = oldValues[i];
+          expirationTimes[slot] = oldExpirationTimes[i];
+          sendTimes[slot] = oldSendTimes[i];
+        }
+      }
+    }
+  }
+}
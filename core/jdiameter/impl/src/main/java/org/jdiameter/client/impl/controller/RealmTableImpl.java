@@ -43,12 +43,12 @@
 package org.jdiameter.client.impl.controller;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.jdiameter.api.ApplicationId;
 import org.jdiameter.api.Avp;
@@ -80,10 +80,11 @@ public class RealmTableImpl implements IRealmTable {
   private static final Logger logger = LoggerFactory.getLogger(RealmTableImpl.class);
 
   // maps name->realms (cause there might be more than one realm defined, with different app id.
+  // Only modified by writers, under lock of this table, readers use published snapshot.
   protected Map<String, RealmSet> realmNameToRealmSet = new HashMap<String, RealmSet>();
 
-  // "cache" so we don't have to combine all realms
-  protected List<String> allRealmsSet = new ArrayList<String>();
+  // immutable view of realms, replaced as a whole on each change, so lookups take no lock
+  private volatile RealmSnapshot snapshot = new RealmSnapshot(0, new HashMap<String, RealmSet>());
 
   protected String localRealmName;
   protected String localHost;
@@ -97,7 +98,8 @@ public class RealmTableImpl implements IRealmTable {
   @Override
   public boolean realmExists(String realmName) {
     // NOTE: this is still valid for local realm
-    return (this.realmNameToRealmSet.containsKey(realmName) &&  this.realmNameToRealmSet.get(realmName).size() > 0);
+    RealmEntries entries = this.snapshot.realms.get(realmName);
+    return entries != null && entries.size() > 0;
   }
 
   @Override
@@ -142,8 +144,8 @@ public class RealmTableImpl implements IRealmTable {
    */
   @Override
   public Realm getRealm(String realmName, ApplicationId applicationId) {
-    RealmSet rs = this.realmNameToRealmSet.get(realmName);
-    return rs == null ? null : rs.getRealm(applicationId);
+    RealmEntries entries = this.snapshot.realms.get(realmName);
+    return entries == null ? null : entries.getRealm(applicationId);
   }
 
   /*
@@ -151,16 +153,15 @@ public class RealmTableImpl implements IRealmTable {
    * @see org.jdiameter.client.api.controller.IRealmTable#removeRealmApplicationId(java.lang.String, org.jdiameter.api.ApplicationId)
    */
   @Override
-  public Realm removeRealmApplicationId(String realmName, ApplicationId appId) {
+  public synchronized Realm removeRealmApplicationId(String realmName, ApplicationId appId) {
     RealmSet set = this.realmNameToRealmSet.get(realmName);
 
     if (set != null) {
-      Realm r = set.getRealm(appId);
-      set.removeRealm(appId);
+      Realm r = set.removeRealm(appId);
       if (set.size() == 0 && !realmName.equals(this.localRealmName)) {
         this.realmNameToRealmSet.remove(realmName);
-        this.allRealmsSet.remove(realmName);
       }
+      publish();
       return r;
     }
 
@@ -172,17 +173,12 @@ public class RealmTableImpl implements IRealmTable {
    * @see org.jdiameter.client.api.controller.IRealmTable#removeRealms(java.lang.String)
    */
   @Override
-  public Collection<Realm> removeRealm(String realmName) {
-    RealmSet set = null;
-    if (realmName.equals(this.localRealmName)) {
-      set = this.realmNameToRealmSet.get(realmName);
-    }
-    else {
-      set = this.realmNameToRealmSet.remove(realmName);
+  public synchronized Collection<Realm> removeRealm(String realmName) {
+    if (!realmName.equals(this.localRealmName)) {
+      RealmSet set = this.realmNameToRealmSet.remove(realmName);
       if (set != null) {
-        Collection<Realm> present = set.values();
-        allRealmsSet.remove(realmName);
-        return new ArrayList<Realm>(present);
+        publish();
+        return new ArrayList<Realm>(set.values());
       }
     }
 
@@ -195,10 +191,9 @@ public class RealmTableImpl implements IRealmTable {
    */
   @Override
   public Collection<Realm> getRealms(String realmName) {
-    RealmSet set = this.realmNameToRealmSet.get(realmName);
-    if (set != null) {
-      Collection<Realm> present = set.values();
-      return new ArrayList<Realm>(present);
+    RealmEntries entries = this.snapshot.realms.get(realmName);
+    if (entries != null) {
+      return new ArrayList<Realm>(Arrays.asList(entries.realms));
     }
     return null;
   }
@@ -209,14 +204,7 @@ public class RealmTableImpl implements IRealmTable {
    */
   @Override
   public Collection<Realm> getRealms() {
-    ArrayList<Realm> rss = new ArrayList<Realm>();
-
-    Set<String> keys = new HashSet<String>(this.realmNameToRealmSet.keySet());
-    for (String key : keys) {
-      RealmSet rs = this.realmNameToRealmSet.get(key);
-      rss.addAll(rs.values());
-    }
-    return rss;
+    return new ArrayList<Realm>(this.snapshot.allRealms);
   }
 
   /*
@@ -254,9 +242,7 @@ public class RealmTableImpl implements IRealmTable {
    */
   @Override
   public String getRealmForPeer(String fqdn) {
-    //
-    Collection<Realm> realms = getRealms();
-    for (Realm r : realms) {
+    for (Realm r : this.snapshot.allRealms) {
       IRealm ir = (IRealm) r;
       if (ir.hasPeerName(fqdn)) {
         return ir.getName();
@@ -269,7 +255,7 @@ public class RealmTableImpl implements IRealmTable {
    * @param appId
    */
   @Override
-  public void addLocalApplicationId(ApplicationId appId) {
+  public synchronized void addLocalApplicationId(ApplicationId appId) {
     RealmSet rs = getRealmSet(localRealmName, false);
     rs.addRealm(new RealmImpl(localRealmName, appId, LocalAction.LOCAL, null, null, true, -1, this.localHost) {
       @Override
@@ -277,17 +263,19 @@ public class RealmTableImpl implements IRealmTable {
         return true;
       }
     });
+    publish();
   }
 
   /**
    * @param appId
    */
   @Override
-  public void removeLocalApplicationId(ApplicationId appId) {
+  public synchronized void removeLocalApplicationId(ApplicationId appId) {
     RealmSet rs = getRealmSet(localRealmName, false);
     Realm realm = rs.getRealm(appId);
     if (realm.isDynamic()) {
       rs.removeRealm(appId);
+      publish();
     }
   }
 
@@ -296,23 +284,30 @@ public class RealmTableImpl implements IRealmTable {
    * @param fqdn
    */
   @Override
-  public void addLocalRealm(String localRealm, String fqdn) {
+  public synchronized void addLocalRealm(String localRealm, String fqdn) {
     this.localRealmName = localRealm;
     this.localHost = fqdn;
     getRealmSet(localRealm, true /* adds realm if not present  */);
+    publish();
   }
 
   // -------------------- helper methods --------------------
 
   protected Realm matchRealm(IMessage message, String realm) {
-    if (realmExists(realm)) {
+    RealmEntries entries = this.snapshot.realms.get(realm);
+    if (entries != null && entries.size() > 0) {
+      // application id in header identifies realm in most cases, so AVPs are not read
+      Realm r = entries.getRealm(message.getHeaderApplicationId());
+      if (r != null) {
+        return r;
+      }
       ApplicationId singleId = message.getSingleApplicationId();
       // check on single app id, than we iterate.
-      Realm r = getRealm(realm, singleId);
+      r = entries.getRealm(singleId);
       if (r == null) {
         List<ApplicationId> appIds = message.getApplicationIdAvps();
         for (int index = 0; index < appIds.size(); index++) {
-          r = getRealm(realm, appIds.get(index));
+          r = entries.getRealm(appIds.get(index));
           if (r != null) {
             break;
           }
@@ -324,10 +319,10 @@ public class RealmTableImpl implements IRealmTable {
     return null;
   }
 
-  protected void addRealm(Realm realm) throws InternalException {
+  protected synchronized void addRealm(Realm realm) throws InternalException {
     RealmSet rs = getRealmSet(realm.getName(), true);
     rs.addRealm(realm);
-    allRealmsSet.add(realm.getName());
+    publish();
   }
 
   protected RealmSet getRealmSet(String pKey, boolean create) {
@@ -339,6 +334,17 @@ public class RealmTableImpl implements IRealmTable {
     return rs;
   }
 
+  /**
+   * Replaces snapshot with one built from current realm sets. Must be called by writer holding the lock.
+   */
+  protected void publish() {
+    RealmSnapshot previous = this.snapshot;
+    this.snapshot = new RealmSnapshot(previous.version + 1, this.realmNameToRealmSet);
+    if (logger.isDebugEnabled()) {
+      logger.debug("Published realm table version {} with {} realm(s)", this.snapshot.version, this.snapshot.allRealms.size());
+    }
+  }
+
   private class RealmSet {
 
     // TODO: use two lists and iterate over index?
@@ -415,6 +421,87 @@ public class RealmTableImpl implements IRealmTable {
     }
   }
 
+  /**
+   * Immutable state of the table, published as a whole.
+   */
+  private static class RealmSnapshot {
+
+    final int version;
+    final Map<String, RealmEntries> realms;
+    final List<Realm> allRealms;
+
+    RealmSnapshot(int version, Map<String, RealmSet> realmSets) {
+      this.version = version;
+      Map<String, RealmEntries> entries = new HashMap<String, RealmEntries>(realmSets.size() * 2);
+      List<Realm> all = new ArrayList<Realm>();
+      for (Map.Entry<String, RealmSet> e : realmSets.entrySet()) {
+        RealmEntries realmEntries = new RealmEntries(e.getValue().appIdToRealm);
+        entries.put(e.getKey(), realmEntries);
+        all.addAll(Arrays.asList(realmEntries.realms));
+      }
+      this.realms = entries;
+      this.allRealms = Collections.unmodifiableList(all);
+    }
+  }
+
+  /**
+   * Realms defined under one name, with lookup by application id and by numeric application id of message header.
+   */
+  private static class RealmEntries {
+
+    final Map<ApplicationId, Realm> appIdToRealm;
+    final Realm[] realms;
+    // auth or acct id of realm, realm is null when more than one realm has the same numeric id
+    final long[] numericIds;
+    final Realm[] numericRealms;
+
+    RealmEntries(Map<ApplicationId, Realm> source) {
+      this.appIdToRealm = new HashMap<ApplicationId, Realm>(source);
+      this.realms = source.values().toArray(new Realm[source.size()]);
+      long[] ids = new long[realms.length];
+      Realm[] idRealms = new Realm[realms.length];
+      int count = 0;
+      for (Realm realm : realms) {
+        ApplicationId appId = realm.getApplicationId();
+        long id = appId.getAuthAppId() != ApplicationId.UNDEFINED_VALUE ? appId.getAuthAppId() : appId.getAcctAppId();
+        int index = 0;
+        while (index < count && ids[index] != id) {
+          index++;
+        }
+        if (index < count) {
+          // ambiguous, AVPs of message have to be checked
+          idRealms[index] = null;
+        }
+        else {
+          ids[count] = id;
+          idRealms[count++] = realm;
+        }
+      }
+      this.numericIds = Arrays.copyOf(ids, count);
+      this.numericRealms = Arrays.copyOf(idRealms, count);
+    }
+
+    int size() {
+      return realms.length;
+    }
+
+    Realm getRealm(ApplicationId appId) {
+      return appIdToRealm.get(appId);
+    }
+
+    /**
+     * @return realm which is the only one with given auth or acct application id, null if there is none or many
+     */
+    Realm getRealm(long applicationId) {
+      for (int index = 0; index < numericIds.length; index++) {
+        if (numericIds[index] == applicationId) {
+          return numericRealms[index];
+        }
+      }
+      return null;
+    }
+  }
+
   /*
    * (non-Javadoc)
    * @see org.jdiameter.api.RealmTable#getStatistic(java.lang.String)
@@ -48,6 +48,7 @@ import static org.jdiameter.client.impl.helpers.Parameters.CeaTimeOut;
 import static org.jdiameter.client.impl.helpers.Parameters.DpaTimeOut;
 import static org.jdiameter.client.impl.helpers.Parameters.DwaTimeOut;
 import static org.jdiameter.client.impl.helpers.Parameters.IacTimeOut;
+import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMSharedExecutor;
 import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMThreadCount;
 import static org.jdiameter.client.impl.helpers.Parameters.QueueSize;
 import static org.jdiameter.client.impl.helpers.Parameters.RecTimeOut;
@@ -55,7 +56,10 @@ import static org.jdiameter.client.impl.helpers.Parameters.RecTimeOut;
 import java.util.Random;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -77,6 +81,7 @@ import org.jdiameter.client.api.fsm.IContext;
 import org.jdiameter.client.api.fsm.IStateMachine;
 import org.jdiameter.client.impl.DictionarySingleton;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
+import org.jdiameter.common.api.concurrent.IConcurrentFactory.ScheduledExecServices;
 import org.jdiameter.common.api.statistic.IStatistic;
 import org.jdiameter.common.api.statistic.IStatisticManager;
 import org.jdiameter.common.api.statistic.IStatisticRecord;
@@ -124,6 +129,15 @@ public class PeerFSMImpl implements IStateMachine {
   protected boolean mustRun = false;
   protected AtomicInteger numberOfThreadsRunning = new AtomicInteger(0);
 
+  // events processed by one drain task of shared executor before it yields to other peers
+  private static final int DRAIN_BATCH_SIZE = 64;
+
+  // shared executor mode: events are drained and timers fired by tasks of a pool shared by all peers
+  protected boolean sharedExecutor;
+  protected ScheduledExecutorService fsmExecutor;
+  private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+  private TimeoutTask pendingTimeout;
+
   public PeerFSMImpl(IContext aContext, IConcurrentFactory concurrentFactory, Configuration config, IStatisticManager statisticFactory) {
     this.context = aContext;
     this.statisticFactory = statisticFactory;
@@ -135,6 +149,7 @@ public class PeerFSMImpl implements IStateMachine {
     loadTimeOuts(config);
     this.concurrentFactory = concurrentFactory;
     FSM_THREAD_COUNT = config.getIntValue(PeerFSMThreadCount.ordinal(), (Integer) PeerFSMThreadCount.defValue());
+    this.sharedExecutor = config.getBooleanValue(PeerFSMSharedExecutor.ordinal(), (Boolean) PeerFSMSharedExecutor.defValue());
     runQueueProcessing();
   }
 
@@ -203,6 +218,14 @@ public class PeerFSMImpl implements IStateMachine {
       queueStat = statisticFactory.newStatistic(context.getPeerDescription(), IStatistic.Groups.PeerFSM, queueSize, messagePrcAverageTime);
       logger.debug("Finished Initializing QueueStat @ Thread[{}]", Thread.currentThread().getName());
 
+      if (sharedExecutor) {
+        // executor is looked up on each start, stack stop shuts it down
+        fsmExecutor = concurrentFactory.getScheduledExecutorService(ScheduledExecServices.PeerFSMExecutor.name());
+        numberOfThreadsRunning.incrementAndGet();
+        logger.debug("FSM of [{}] uses shared executor", context.getPeerDescription());
+        return;
+      }
+
       Runnable fsmQueueProcessor = new Runnable() {
         @Override
         public void run() {
@@ -226,12 +249,7 @@ public class PeerFSMImpl implements IStateMachine {
             // lock.lock();
             try {
               if (event != null) {
-                if (event instanceof FsmEvent && queueStat != null && queueStat.isEnabled()) {
-                  timeSumm.inc(System.currentTimeMillis() - ((FsmEvent) event).getCreatedTime());
-                  timeCount.inc();
-                }
-                logger.debug("Process event [{}]. Peer State is [{}]", event, state);
-                getStates()[state.ordinal()].processEvent(event);
+                dispatchEvent(event);
               }
               if (timer != 0 && timer < System.currentTimeMillis()) {
                 // ZhixiaoLuo: add lock here to avoid 2 timeout events at the same time if 2 threads get into timer=0
@@ -261,13 +279,7 @@ public class PeerFSMImpl implements IStateMachine {
           }
           //PCB added logging
           logger.debug("FSM Thread {} is exiting", Thread.currentThread().getName());
-          //this happens when peer FSM is down, lets remove stat
-          statisticFactory.removeStatistic(queueStat);
-          logger.debug("Setting QueueStat to null @ Thread [{}]", Thread.currentThread().getName());
-          queueStat = null;
-          logger.debug("Done Setting QueueStat to null @ Thread [{}]", Thread.currentThread().getName());
-          int runningNowAfterStop = numberOfThreadsRunning.decrementAndGet();
-          logger.debug("Stopping ... [{}] FSM threads are running", runningNowAfterStop);
+          queueProcessingStopped();
         }
       };
       //PCB added FSM multithread
@@ -282,6 +294,143 @@ public class PeerFSMImpl implements IStateMachine {
     }
   }
 
+  private void queueProcessingStopped() {
+    //this happens when peer FSM is down, lets remove stat
+    statisticFactory.removeStatistic(queueStat);
+    logger.debug("Setting QueueStat to null @ Thread [{}]", Thread.currentThread().getName());
+    queueStat = null;
+    logger.debug("Done Setting QueueStat to null @ Thread [{}]", Thread.currentThread().getName());
+    int runningNowAfterStop = numberOfThreadsRunning.decrementAndGet();
+    logger.debug("Stopping ... [{}] FSM threads are running", runningNowAfterStop);
+  }
+
+  private void dispatchEvent(StateEvent event) {
+    if (event instanceof FsmEvent && queueStat != null && queueStat.isEnabled()) {
+      timeSumm.inc(System.currentTimeMillis() - ((FsmEvent) event).getCreatedTime());
+      timeCount.inc();
+    }
+    logger.debug("Process event [{}]. Peer State is [{}]", event, state);
+    getStates()[state.ordinal()].processEvent(event);
+  }
+
+  /**
+   * Queues drain of event queue to shared executor unless one is already queued or running, so events
+   * of a peer are processed one at a time and in order.
+   */
+  private void scheduleDrain() {
+    if (drainScheduled.compareAndSet(false, true)) {
+      try {
+        fsmExecutor.execute(queueDrain);
+      }
+      catch (RejectedExecutionException e) {
+        drainScheduled.set(false);
+        logger.debug("Can not process FSM events of " + context.getPeerDescription() + ", executor is stopped", e);
+      }
+    }
+  }
+
+  private final Runnable queueDrain = new Runnable() {
+    @Override
+    public void run() {
+      for (int i = 0; i < DRAIN_BATCH_SIZE && mustRun; i++) {
+        StateEvent event = eventQueue.poll();
+        if (event == null) {
+          break;
+        }
+        try {
+          dispatchEvent(event);
+        }
+        catch (Exception e) {
+          logger.debug("Error during processing FSM event", e);
+        }
+      }
+      if (!mustRun && numberOfThreadsRunning.get() > 0) {
+        logger.debug("FSM of [{}] is stopped", context.getPeerDescription());
+        queueProcessingStopped();
+      }
+      drainScheduled.set(false);
+      // event may have been queued after last poll but before flag was cleared
+      if (mustRun && !eventQueue.isEmpty()) {
+        scheduleDrain();
+      }
+    }
+  };
+
+  /**
+   * Sets time at which timeout event is fired, 0 clears timer. In shared executor mode timer task is scheduled
+   * only when there is none pending for an earlier time, task finding timer moved later schedules itself again.
+   *
+   * @param time absolute time in milliseconds
+   */
+  protected void armTimer(long time) {
+    timer = time;
+    if (!sharedExecutor || time == 0 || fsmExecutor == null) {
+      return;
+    }
+    lock.lock();
+    try {
+      if (pendingTimeout == null || time < pendingTimeout.time) {
+        scheduleTimer(time);
+      }
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  // called with lock held
+  private void scheduleTimer(long time) {
+    TimeoutTask task = new TimeoutTask(time);
+    try {
+      fsmExecutor.schedule(task, Math.max(time - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+      pendingTimeout = task;
+    }
+    catch (RejectedExecutionException e) {
+      logger.debug("Can not schedule FSM timer of " + context.getPeerDescription() + ", executor is stopped", e);
+    }
+  }
+
+  private class TimeoutTask implements Runnable {
+
+    private final long time;
+
+    TimeoutTask(long time) {
+      this.time = time;
+    }
+
+    @Override
+    public void run() {
+      lock.lock();
+      try {
+        if (pendingTimeout != this) {
+          // replaced by task for earlier time
+          return;
+        }
+        pendingTimeout = null;
+        if (timer == 0) {
+          return;
+        }
+        if (timer > System.currentTimeMillis()) {
+          scheduleTimer(timer);
+          return;
+        }
+        timer = 0;
+      }
+      finally {
+        lock.unlock();
+      }
+      if (state != DOWN) { //without this check this event is fired in DOWN state.... it should not be.
+        try {
+          logger.debug("Sending timeout event");
+          handleEvent(timeOutEvent);
+        }
+        catch (Exception e) {
+          logger.debug("Can not send timeout event", e);
+        }
+      }
+    }
+  }
+
   @Override
   public double getQueueInfo() {
     return eventQueue.size() * 1.0 / predefSize;
@@ -366,6 +515,9 @@ public class PeerFSMImpl implements IStateMachine {
         //}
       }
       rc = eventQueue.offer(event, IAC_TIMEOUT, TimeUnit.MILLISECONDS);
+      if (rc && sharedExecutor) {
+        scheduleDrain();
+      }
     }
     catch (InterruptedException e) {
       logger.debug("Can not put event '" + event.toString() + "' to FSM " + this.toString(), e);
@@ -381,7 +533,7 @@ public class PeerFSMImpl implements IStateMachine {
   //private static long lastLogged;
 
   protected void setInActiveTimer() {
-    timer = IAC_TIMEOUT - 2 * 1000 + random.nextInt(5) * 1000 + System.currentTimeMillis();
+    armTimer(IAC_TIMEOUT - 2 * 1000 + random.nextInt(5) * 1000 + System.currentTimeMillis());
   }
 
   @Override
@@ -411,7 +563,7 @@ public class PeerFSMImpl implements IStateMachine {
 
     protected void doEndConnection() {
       if (context.isRestoreConnection()) {
-        timer = REC_TIMEOUT + System.currentTimeMillis();
+        armTimer(REC_TIMEOUT + System.currentTimeMillis());
         switchToNextState(REOPEN);
       }
       else {
@@ -428,7 +580,7 @@ public class PeerFSMImpl implements IStateMachine {
     }
 
     protected void setTimer(long value) {
-      timer = value + System.currentTimeMillis();
+      armTimer(value + System.currentTimeMillis());
     }
 
     protected String key(StateEvent event) {
@@ -444,7 +596,7 @@ public class PeerFSMImpl implements IStateMachine {
     }
 
     protected void clearTimer() {
-      timer = 0;
+      armTimer(0);
     }
   }
 
@@ -462,7 +614,7 @@ public class PeerFSMImpl implements IStateMachine {
             public boolean processEvent(StateEvent event) {
               switch (event.encodeType(EventTypes.class)) {
                 case DISCONNECT_EVENT:
-                  timer = REC_TIMEOUT + System.currentTimeMillis();
+                  armTimer(REC_TIMEOUT + System.currentTimeMillis());
                   switchToNextState(FsmState.REOPEN);
                   break;
                 case TIMEOUT_EVENT:
@@ -129,11 +129,152 @@ public class Parameters extends Ordinal {
    */
   public static final Parameters PeerFSMThreadCount = new Parameters("PeerFSMThreadCount", Integer.class, 3);
 
+  /**
+   * Process events and timers of peer FSMs on executor shared by all peers instead of dedicated threads of each peer
+   */
+  public static final Parameters PeerFSMSharedExecutor = new Parameters("PeerFSMSharedExecutor", Boolean.class, false);
+
+  /**
+   * Number of threads of event loop group shared by transports, 0 means twice the number of processors
+   */
+  public static final Parameters TransportThreadCount = new Parameters("TransportThreadCount", Integer.class, 0);
+
+  /**
+   * Processors to which transport threads are bound, eg. "0-3,6", empty means no binding
+   */
+  public static final Parameters TransportCpuAffinity = new Parameters("TransportCpuAffinity", String.class, "");
+
+  /**
+   * Use native epoll transport (Linux only), falls back to NIO when native library is not available
+   */
+  public static final Parameters TransportEpoll = new Parameters("TransportEpoll", Boolean.class, false);
+
+  /**
+   * Number of server channels bound to each listening address with SO_REUSEPORT, used with epoll only
+   */
+  public static final Parameters TransportAcceptorCount = new Parameters("TransportAcceptorCount", Integer.class, 1);
+
+  /**
+   * TCP_NODELAY socket option of transport connections
+   */
+  public static final Parameters TransportTcpNoDelay = new Parameters("TransportTcpNoDelay", Boolean.class, true);
+
+  /**
+   * TCP_QUICKACK socket option of transport connections, used with epoll only
+   */
+  public static final Parameters TransportTcpQuickAck = new Parameters("TransportTcpQuickAck", Boolean.class, false);
+
+  /**
+   * Coalesce flushes of messages sent over the same transport connection
+   */
+  public static final Parameters TransportWriteBatching = new Parameters("TransportWriteBatching", Boolean.class, false);
+
+  /**
+   * Number of pending messages which forces flush when write batching is enabled
+   */
+  public static final Parameters TransportBatchMaxMessages = new Parameters("TransportBatchMaxMessages", Integer.class, 64);
+
+  /**
+   * Number of pending bytes which forces flush when write batching is enabled
+   */
+  public static final Parameters TransportBatchMaxBytes = new Parameters("TransportBatchMaxBytes", Integer.class, 65536);
+
+  /**
+   * Number of outbound bytes queued on a connection above which connection becomes unwritable
+   */
+  public static final Parameters TransportWriteBufferHighWaterMark = new Parameters("TransportWriteBufferHighWaterMark", Integer.class, 65536);
+
+  /**
+   * Number of outbound bytes queued on a connection below which unwritable connection becomes writable again
+   */
+  public static final Parameters TransportWriteBufferLowWaterMark = new Parameters("TransportWriteBufferLowWaterMark", Integer.class, 32768);
+
+  /**
+   * Tick duration in milliseconds of hashed wheel timer facility
+   */
+  public static final Parameters TimerWheelTickDuration = new Parameters("TimerWheelTickDuration", Long.class, 10L);
+
+  /**
+   * Number of buckets of hashed wheel timer facility, rounded up to power of two
+   */
+  public static final Parameters TimerWheelSize = new Parameters("TimerWheelSize", Integer.class, 512);
+
+  /**
+   * Number of shards of sharded session datasource, rounded up to power of two
+   */
+  public static final Parameters SessionDatasourceShards = new Parameters("SessionDatasourceShards", Integer.class, 16);
+
+  /**
+   * Time in milliseconds after which idle session is released by sharded session datasource, 0 disables expiry
+   */
+  public static final Parameters SessionIdleTimeout = new Parameters("SessionIdleTimeout", Long.class, 3600000L);
+
+  /**
+   * Maximum number of sessions in sharded session datasource, 0 means no limit
+   */
+  public static final Parameters SessionMaxCount = new Parameters("SessionMaxCount", Integer.class, 0);
+
+  /**
+   * Period in milliseconds of idle session sweep, each sweep checks one shard
+   */
+  public static final Parameters SessionSweepPeriod = new Parameters("SessionSweepPeriod", Long.class, 1000L);
+
+  /**
+   * File of memory-mapped session data store, empty means temporary file
+   */
+  public static final Parameters SessionStoreFile = new Parameters("SessionStoreFile", String.class, "");
+
+  /**
+   * Size in bytes of memory-mapped session data store file
+   */
+  public static final Parameters SessionStoreSize = new Parameters("SessionStoreSize", Long.class, 268435456L);
+
+  /**
+   * Maximum number of stored sessions kept in memory by stored session datasource
+   */
+  public static final Parameters SessionHotCount = new Parameters("SessionHotCount", Integer.class, 100000);
+
+  /**
+   * File of session journal
+   */
+  public static final Parameters SessionJournalFile = new Parameters("SessionJournalFile", String.class, "jdiameter-sessions.journal");
+
+  /**
+   * True if changes of sessions return once they are forced to disk, false if journal is written in background
+   */
+  public static final Parameters SessionJournalSync = new Parameters("SessionJournalSync", Boolean.class, true);
+
+  /**
+   * Size in bytes of session journal above which it is compacted
+   */
+  public static final Parameters SessionJournalCompactSize = new Parameters("SessionJournalCompactSize", Long.class, 67108864L);
+
+  /**
+   * True if tasks of each application session run serially on shared pool, false if they run
+   * concurrently on ApplicationSession executor
+   */
+  public static final Parameters SessionSerialExecution = new Parameters("SessionSerialExecution", Boolean.class, false);
+
+  /**
+   * Number of threads of pool shared by application sessions when serial execution is enabled, 0 means number of processors
+   */
+  public static final Parameters SessionExecutorThreads = new Parameters("SessionExecutorThreads", Integer.class, 0);
+
+  /**
+   * Maximum number of routes cached from Redirect-Host answers
+   */
+  public static final Parameters RedirectTableSize = new Parameters("RedirectTableSize", Integer.class, 1024);
+
   /**
    * Orig_host avp set as URI into CER message
    */
   public static final Parameters UseUriAsFqdn = new Parameters("UseUriAsFqdn", Boolean.class, false);
 
+  /**
+   * Decode AVPs of received messages on first access, keeping them as slices of the received frame
+   */
+  public static final Parameters LazyAvpDecoding = new Parameters("LazyAvpDecoding", Boolean.class, false);
+
   /**
    * Peer name property
    */
@@ -153,6 +294,11 @@ public class Parameters extends Ordinal {
    * Peer rating property
    */
   public static final Parameters PeerRating = new Parameters("PeerRating", Integer.class, 0);
+
+  /**
+   * Number of connections opened to peer property
+   */
+  public static final Parameters PeerConnectionCount = new Parameters("PeerConnectionCount", Integer.class, 1);
   /**
    *  Peer ptoperty
    */
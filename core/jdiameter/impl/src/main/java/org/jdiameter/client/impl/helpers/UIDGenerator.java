@@ -42,43 +42,40 @@
 
 package org.jdiameter.client.impl.helpers;
 
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * This class provide uid range generator functionality
+ * This class provide uid range generator functionality. Each thread reserves a block of uids
+ * with a single atomic add and hands them out without synchronization, so uids are unique
+ * but not ordered between threads.
  *
  * @author erick.svenson@yahoo.com
  * @author <a href="mailto:brainslog@gmail.com"> Alexandre Mendonca </a>
  * @author <a href="mailto:baranowb@gmail.com"> Bartosz Baranowski </a>
  */
-public class UIDGenerator {  // todo remove or redesign
+public class UIDGenerator {
 
-  private /*static*/ long value; // static causes repetitions
-  private static final Lock mutex = new ReentrantLock();
-  private static final ThreadLocal<Delta> ranges = new ThreadLocal<Delta>() {
+  // number of uids reserved by a thread at once
+  private static final int BLOCK_SIZE = 1024;
+
+  private final AtomicLong value;
+  private final ThreadLocal<Block> blocks = new ThreadLocal<Block>() {
     @Override
-    protected synchronized Delta initialValue() {
-      return new Delta();
+    protected Block initialValue() {
+      return new Block();
     }
   };
 
-  private static class Delta {
-    long start;
-    long stop;
-
-    public long update(long value) {
-      start = value;
-      stop  = value + 1;
-      return stop;
-    }
+  private static class Block {
+    long next;
+    long end;
   }
 
   /**
    * Create instance of class
    */
   public UIDGenerator() {
-    value = System.currentTimeMillis();
+    value = new AtomicLong(System.currentTimeMillis());
   }
 
   /**
@@ -87,7 +84,7 @@ public class UIDGenerator {  // todo remove or redesign
    * @param startValue start value of counter
    */
   public UIDGenerator(long startValue) {
-    value = startValue;
+    value = new AtomicLong(startValue);
   }
 
   /**
@@ -105,12 +102,49 @@ public class UIDGenerator {  // todo remove or redesign
    * @return uid as long
    */
   public long nextLong() {
-    Delta d = ranges.get();
-    if (d.start <= d.stop) {
-      mutex.lock();
-      value = d.update(value);
-      mutex.unlock();
+    Block b = blocks.get();
+    if (b.next == b.end) {
+      b.next = value.getAndAdd(BLOCK_SIZE);
+      b.end = b.next + BLOCK_SIZE;
+    }
+    return b.next++;
+  }
+
+  /**
+   * Append next uid as high and low 32 bits in decimal separated by ';', as used in Session-Id
+   *
+   * @param sb target builder
+   * @return target builder
+   */
+  public StringBuilder appendNext(StringBuilder sb) {
+    long id = nextLong();
+    return sb.append(id >>> 32).append(';').append(id & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Write next uid as high and low 32 bits in decimal separated by ';', as used in Session-Id
+   *
+   * @param buffer target buffer, at least 21 characters must be available from offset
+   * @param offset position of first written character
+   * @return position after last written character
+   */
+  public int appendNext(char[] buffer, int offset) {
+    long id = nextLong();
+    offset = appendDecimal(buffer, offset, id >>> 32);
+    buffer[offset++] = ';';
+    return appendDecimal(buffer, offset, id & 0xFFFFFFFFL);
+  }
+
+  private static int appendDecimal(char[] buffer, int offset, long value) {
+    int length = 1;
+    for (long v = value; v >= 10; v /= 10) {
+      length++;
+    }
+    int end = offset + length;
+    for (int i = end - 1; i >= offset; i--) {
+      buffer[i] = (char) ('0' + value % 10);
+      value /= 10;
     }
-    return d.start++;
+    return end;
   }
 }
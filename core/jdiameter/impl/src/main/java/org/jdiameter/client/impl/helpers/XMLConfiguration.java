@@ -83,6 +83,7 @@ import static org.jdiameter.client.impl.helpers.Parameters.KDManager;
 import static org.jdiameter.client.impl.helpers.Parameters.KDPwd;
 import static org.jdiameter.client.impl.helpers.Parameters.KDStore;
 import static org.jdiameter.client.impl.helpers.Parameters.KeyData;
+import static org.jdiameter.client.impl.helpers.Parameters.LazyAvpDecoding;
 import static org.jdiameter.client.impl.helpers.Parameters.MessageTimeOut;
 import static org.jdiameter.client.impl.helpers.Parameters.OwnDiameterURI;
 import static org.jdiameter.client.impl.helpers.Parameters.OwnFirmwareRevision;
@@ -90,6 +91,8 @@ import static org.jdiameter.client.impl.helpers.Parameters.OwnIPAddress;
 import static org.jdiameter.client.impl.helpers.Parameters.OwnProductName;
 import static org.jdiameter.client.impl.helpers.Parameters.OwnRealm;
 import static org.jdiameter.client.impl.helpers.Parameters.OwnVendorID;
+import static org.jdiameter.client.impl.helpers.Parameters.PeerConnectionCount;
+import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMSharedExecutor;
 import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMThreadCount;
 import static org.jdiameter.client.impl.helpers.Parameters.PeerIp;
 import static org.jdiameter.client.impl.helpers.Parameters.PeerLocalPortRange;
@@ -103,12 +106,25 @@ import static org.jdiameter.client.impl.helpers.Parameters.QueueSize;
 import static org.jdiameter.client.impl.helpers.Parameters.RealmEntry;
 import static org.jdiameter.client.impl.helpers.Parameters.RealmTable;
 import static org.jdiameter.client.impl.helpers.Parameters.RecTimeOut;
+import static org.jdiameter.client.impl.helpers.Parameters.RedirectTableSize;
 import static org.jdiameter.client.impl.helpers.Parameters.SDEnableSessionCreation;
 import static org.jdiameter.client.impl.helpers.Parameters.SDName;
 import static org.jdiameter.client.impl.helpers.Parameters.SDProtocol;
 import static org.jdiameter.client.impl.helpers.Parameters.SDUseClientMode;
 import static org.jdiameter.client.impl.helpers.Parameters.Security;
 import static org.jdiameter.client.impl.helpers.Parameters.SecurityRef;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionDatasourceShards;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionExecutorThreads;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionHotCount;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionIdleTimeout;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionJournalCompactSize;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionJournalFile;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionJournalSync;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionMaxCount;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionSerialExecution;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionStoreFile;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionStoreSize;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionSweepPeriod;
 import static org.jdiameter.client.impl.helpers.Parameters.Statistics;
 import static org.jdiameter.client.impl.helpers.Parameters.StatisticsActiveList;
 import static org.jdiameter.client.impl.helpers.Parameters.StatisticsEnabled;
@@ -122,6 +138,19 @@ import static org.jdiameter.client.impl.helpers.Parameters.TDStore;
 import static org.jdiameter.client.impl.helpers.Parameters.ThreadPool;
 import static org.jdiameter.client.impl.helpers.Parameters.ThreadPoolPriority;
 import static org.jdiameter.client.impl.helpers.Parameters.ThreadPoolSize;
+import static org.jdiameter.client.impl.helpers.Parameters.TimerWheelSize;
+import static org.jdiameter.client.impl.helpers.Parameters.TimerWheelTickDuration;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportAcceptorCount;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportBatchMaxBytes;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportBatchMaxMessages;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportCpuAffinity;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportEpoll;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportTcpNoDelay;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportTcpQuickAck;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportThreadCount;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportWriteBatching;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportWriteBufferHighWaterMark;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportWriteBufferLowWaterMark;
 import static org.jdiameter.client.impl.helpers.Parameters.TrustData;
 import static org.jdiameter.client.impl.helpers.Parameters.UseUriAsFqdn;
 import static org.jdiameter.client.impl.helpers.Parameters.VendorId;
@@ -341,6 +370,9 @@ public class XMLConfiguration extends EmptyConfiguration {
       if (nodeName.equals("UseUriAsFqdn")) {
         add(UseUriAsFqdn, Boolean.valueOf(getValue(c.item(i))));
       }
+      else if (nodeName.equals("LazyAvpDecoding")) {
+        add(LazyAvpDecoding, Boolean.valueOf(getValue(c.item(i))));
+      }
       else if (nodeName.equals("QueueSize")) {
         add(QueueSize, getIntValue(c.item(i)));
       }
@@ -368,6 +400,87 @@ public class XMLConfiguration extends EmptyConfiguration {
       else if (nodeName.equals("PeerFSMThreadCount")) {
         add(PeerFSMThreadCount, getIntValue(c.item(i)));
       }
+      else if (nodeName.equals("PeerFSMSharedExecutor")) {
+        add(PeerFSMSharedExecutor, Boolean.valueOf(getValue(c.item(i))));
+      }
+      else if (nodeName.equals("TransportThreadCount")) {
+        add(TransportThreadCount, getIntValue(c.item(i)));
+      }
+      else if (nodeName.equals("TransportCpuAffinity")) {
+        add(TransportCpuAffinity, getValue(c.item(i)));
+      }
+      else if (nodeName.equals("TransportEpoll")) {
+        add(TransportEpoll, Boolean.valueOf(getValue(c.item(i))));
+      }
+      else if (nodeName.equals("TransportAcceptorCount")) {
+        add(TransportAcceptorCount, getIntValue(c.item(i)));
+      }
+      else if (nodeName.equals("TransportTcpNoDelay")) {
+        add(TransportTcpNoDelay, Boolean.valueOf(getValue(c.item(i))));
+      }
+      else if (nodeName.equals("TransportTcpQuickAck")) {
+        add(TransportTcpQuickAck, Boolean.valueOf(getValue(c.item(i))));
+      }
+      else if (nodeName.equals("TransportWriteBatching")) {
+        add(TransportWriteBatching, Boolean.valueOf(getValue(c.item(i))));
+      }
+      else if (nodeName.equals("TransportBatchMaxMessages")) {
+        add(TransportBatchMaxMessages, getIntValue(c.item(i)));
+      }
+      else if (nodeName.equals("TransportBatchMaxBytes")) {
+        add(TransportBatchMaxBytes, getIntValue(c.item(i)));
+      }
+      else if (nodeName.equals("TransportWriteBufferHighWaterMark")) {
+        add(TransportWriteBufferHighWaterMark, getIntValue(c.item(i)));
+      }
+      else if (nodeName.equals("TransportWriteBufferLowWaterMark")) {
+        add(TransportWriteBufferLowWaterMark, getIntValue(c.item(i)));
+      }
+      else if (nodeName.equals("TimerWheelTickDuration")) {
+        add(TimerWheelTickDuration, getLongValue(c.item(i)));
+      }
+      else if (nodeName.equals("TimerWheelSize")) {
+        add(TimerWheelSize, getIntValue(c.item(i)));
+      }
+      else if (nodeName.equals("RedirectTableSize")) {
+        add(RedirectTableSize, getIntValue(c.item(i)));
+      }
+      else if (nodeName.equals("SessionDatasourceShards")) {
+        add(SessionDatasourceShards, getIntValue(c.item(i)));
+      }
+      else if (nodeName.equals("SessionIdleTimeout")) {
+        add(SessionIdleTimeout, getLongValue(c.item(i)));
+      }
+      else if (nodeName.equals("SessionMaxCount")) {
+        add(SessionMaxCount, getIntValue(c.item(i)));
+      }
+      else if (nodeName.equals("SessionSweepPeriod")) {
+        add(SessionSweepPeriod, getLongValue(c.item(i)));
+      }
+      else if (nodeName.equals("SessionStoreFile")) {
+        add(SessionStoreFile, getValue(c.item(i)));
+      }
+      else if (nodeName.equals("SessionStoreSize")) {
+        add(SessionStoreSize, getLongValue(c.item(i)));
+      }
+      else if (nodeName.equals("SessionHotCount")) {
+        add(SessionHotCount, getIntValue(c.item(i)));
+      }
+      else if (nodeName.equals("SessionJournalFile")) {
+        add(SessionJournalFile, getValue(c.item(i)));
+      }
+      else if (nodeName.equals("SessionJournalSync")) {
+        add(SessionJournalSync, Boolean.valueOf(getValue(c.item(i))));
+      }
+      else if (nodeName.equals("SessionJournalCompactSize")) {
+        add(SessionJournalCompactSize, getLongValue(c.item(i)));
+      }
+      else if (nodeName.equals("SessionSerialExecution")) {
+        add(SessionSerialExecution, Boolean.valueOf(getValue(c.item(i))));
+      }
+      else if (nodeName.equals("SessionExecutorThreads")) {
+        add(SessionExecutorThreads, getIntValue(c.item(i)));
+      }
       else if (nodeName.equals("Statistics")) {
         addStatisticLogger(Statistics, c.item(i));
       }
@@ -577,6 +690,9 @@ public class XMLConfiguration extends EmptyConfiguration {
     if (node.getAttributes().getNamedItem("portRange") != null) {
       peerConfig.add(PeerLocalPortRange, node.getAttributes().getNamedItem("portRange").getNodeValue());
     }
+    if (node.getAttributes().getNamedItem("connections") != null) {
+      peerConfig.add(PeerConnectionCount, Integer.parseInt(node.getAttributes().getNamedItem("connections").getNodeValue()));
+    }
     if (node.getAttributes().getNamedItem("security_ref") != null) {
       peerConfig.add(SecurityRef, node.getAttributes().getNamedItem("security_ref").getNodeValue());
     }
@@ -0,0 +1,153 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.parser;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.jdiameter.api.Avp;
+
+/**
+ * Maps AVP codes to positions in the AVP list of {@link AvpSetImpl}.
+ * Codes are kept in an open addressing table of primitive ints, each slot points to the first
+ * and last position holding that code, and positions with the same code are chained in list order.
+ * Only appends are applied incrementally, any other modification of the list requires a new index.
+ * Index remembers modification count of the set it was built for, so the set publishes it as a single object.
+ */
+final class AvpCodeIndex {
+
+  private static final int NONE = -1;
+
+  // slot table: code, first position and last position of the code
+  private int[] codes;
+  private int[] heads;
+  private int[] tails;
+  private int mask;
+  private int used;
+
+  // next position with the same code, per list position
+  private int[] next;
+  private int size;
+
+  // modification count of the set this index reflects
+  private int modCount;
+
+  AvpCodeIndex(List<Avp> avps, int modCount) {
+    int capacity = 16;
+    while (capacity < avps.size() * 2) {
+      capacity <<= 1;
+    }
+    allocateSlots(capacity);
+    this.next = new int[Math.max(avps.size(), 8)];
+    for (int i = 0; i < avps.size(); i++) {
+      add(avps.get(i).getCode());
+    }
+    this.modCount = modCount;
+  }
+
+  /**
+   * @return modification count of the set this index reflects
+   */
+  int getModCount() {
+    return modCount;
+  }
+
+  /**
+   * Indexes AVP with given code appended at the end of the list
+   *
+   * @param code AVP code
+   * @param modCount modification count of the set after append
+   */
+  void add(int code, int modCount) {
+    add(code);
+    this.modCount = modCount;
+  }
+
+  private void add(int code) {
+    int position = size++;
+    if (position == next.length) {
+      int[] grown = new int[next.length * 2];
+      System.arraycopy(next, 0, grown, 0, position);
+      next = grown;
+    }
+    next[position] = NONE;
+
+    int slot = slot(code);
+    if (heads[slot] == NONE) {
+      codes[slot] = code;
+      heads[slot] = position;
+      tails[slot] = position;
+      if (++used * 2 > codes.length) {
+        rehash();
+      }
+    }
+    else {
+      next[tails[slot]] = position;
+      tails[slot] = position;
+    }
+  }
+
+  /**
+   * @param code AVP code
+   * @return position of first AVP with given code or -1
+   */
+  int first(int code) {
+    return heads[slot(code)];
+  }
+
+  /**
+   * @param position position returned by {@link #first(int)} or {@link #next(int)}
+   * @return position of next AVP with the same code or -1
+   */
+  int next(int position) {
+    return next[position];
+  }
+
+  private int slot(int code) {
+    int slot = (code * 0x9E3779B9) >>> 16 & mask;
+    while (heads[slot] != NONE && codes[slot] != code) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void allocateSlots(int capacity) {
+    codes = new int[capacity];
+    heads = new int[capacity];
+    tails = new int[capacity];
+    Arrays.fill(heads, NONE);
+    mask = capacity - 1;
+  }
+
+  private void rehash() {
+    int[] oldCodes = codes;
+    int[] oldHeads = heads;
+    int[] oldTails = tails;
+    allocateSlots(oldCodes.length * 2);
+    for (int i = 0; i < oldCodes.length; i++) {
+      if (oldHeads[i] != NONE) {
+        int slot = slot(oldCodes[i]);
+        codes[slot] = oldCodes[i];
+        heads[slot] = oldHeads[i];
+        tails[slot] = oldTails[i];
+      }
+    }
+  }
+}
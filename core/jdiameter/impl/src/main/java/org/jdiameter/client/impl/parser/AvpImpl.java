@@ -45,6 +45,7 @@ package org.jdiameter.client.impl.parser;
 import java.net.InetAddress;
 import java.net.URISyntaxException;
 import java.net.UnknownServiceException;
+import java.util.Arrays;
 import java.util.Date;
 
 import org.jdiameter.api.Avp;
@@ -75,6 +76,12 @@ class AvpImpl implements Avp {
   byte[] rawData = new byte[0];
   AvpSet groupedData;
 
+  // Lazily decoded AVPs only reference their data inside the received message
+  // frame, rawData stays null until somebody asks for a copy of it.
+  byte[] frame;
+  int frameOffset;
+  int frameLength;
+
   private static final Logger logger = LoggerFactory.getLogger(AvpImpl.class);
 
   AvpImpl(int code, int flags, long vnd, byte[] data) {
@@ -88,12 +95,28 @@ class AvpImpl implements Avp {
     rawData  = data;
   }
 
+  AvpImpl(int code, int flags, long vnd, byte[] frame, int offset, int length) {
+    this(code, flags, vnd, null);
+    this.frame = frame;
+    this.frameOffset = offset;
+    this.frameLength = length;
+  }
+
   AvpImpl(Avp avp) {
     avpCode     = avp.getCode();
     vendorID    = avp.getVendorId();
     isMandatory = avp.isMandatory();
     isEncrypted = avp.isEncrypted();
     isVendorSpecific = avp.isVendorId();
+    if (avp instanceof AvpImpl && ((AvpImpl) avp).frame != null) {
+      // frame is never modified, so it can be shared instead of copied
+      AvpImpl slice = (AvpImpl) avp;
+      frame = slice.frame;
+      frameOffset = slice.frameOffset;
+      frameLength = slice.frameLength;
+      rawData = null;
+      return;
+    }
     try {
       rawData = avp.getRaw();
       if (rawData == null || rawData.length == 0) {
@@ -135,19 +158,48 @@ class AvpImpl implements Avp {
     return vendorID;
   }
 
+  /**
+   * Returns AVP data, copying it out of the message frame on first call for lazily decoded AVPs.
+   */
+  byte[] raw() {
+    byte[] data = rawData;
+    byte[] slice = frame;
+    if (data == null && slice != null) {
+      data = Arrays.copyOfRange(slice, frameOffset, frameOffset + frameLength);
+      rawData = data;
+    }
+    return data;
+  }
+
+  /**
+   * Checks if AVP data can be read directly from the message frame, without copying it.
+   */
+  private boolean isSlice(int minLength) throws AvpDataException {
+    if (rawData != null || frame == null) {
+      return false;
+    }
+    if (frameLength < minLength) {
+      throw new AvpDataException("Not enough data in AVP", this);
+    }
+    return true;
+  }
+
   @Override
   public byte[] getRaw() throws AvpDataException {
-    return rawData;
+    return raw();
   }
 
   @Override
   public byte[] getOctetString() throws AvpDataException {
-    return rawData;
+    return raw();
   }
 
   @Override
   public String getUTF8String() throws AvpDataException {
     try {
+      if (isSlice(0)) {
+        return parser.bytesToString(frame, frameOffset, frameLength, "utf8");
+      }
       return parser.bytesToUtf8String(rawData);
     }
     catch (Exception e) {
@@ -158,6 +210,9 @@ class AvpImpl implements Avp {
   @Override
   public int getInteger32() throws AvpDataException {
     try {
+      if (isSlice(4)) {
+        return parser.bytesToInt(frame, frameOffset);
+      }
       return parser.bytesToInt(rawData);
     }
     catch (Exception e) {
@@ -168,6 +223,9 @@ class AvpImpl implements Avp {
   @Override
   public long getInteger64() throws AvpDataException {
     try {
+      if (isSlice(8)) {
+        return parser.bytesToLong(frame, frameOffset);
+      }
       return parser.bytesToLong(rawData);
     }
     catch (Exception e) {
@@ -178,6 +236,9 @@ class AvpImpl implements Avp {
   @Override
   public long getUnsigned32() throws AvpDataException {
     try {
+      if (isSlice(4)) {
+        return parser.bytesToInt(frame, frameOffset) & 0xFFFFFFFFL;
+      }
       byte[] u32ext = new byte[8];
       System.arraycopy(rawData, 0, u32ext, 4, 4);
       return parser.bytesToLong(u32ext);
@@ -190,6 +251,9 @@ class AvpImpl implements Avp {
   @Override
   public long getUnsigned64() throws AvpDataException {
     try {
+      if (isSlice(8)) {
+        return parser.bytesToLong(frame, frameOffset);
+      }
       return parser.bytesToLong(rawData);
     }
     catch (Exception e) {
@@ -200,7 +264,7 @@ class AvpImpl implements Avp {
   @Override
   public float getFloat32() throws AvpDataException {
     try {
-      return parser.bytesToFloat(rawData);
+      return parser.bytesToFloat(raw());
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -210,7 +274,7 @@ class AvpImpl implements Avp {
   @Override
   public double getFloat64() throws AvpDataException {
     try {
-      return parser.bytesToDouble(rawData);
+      return parser.bytesToDouble(raw());
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -220,7 +284,7 @@ class AvpImpl implements Avp {
   @Override
   public InetAddress getAddress() throws AvpDataException {
     try {
-      return parser.bytesToAddress(rawData);
+      return parser.bytesToAddress(raw());
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -230,7 +294,7 @@ class AvpImpl implements Avp {
   @Override
   public Date getTime() throws AvpDataException {
     try {
-      return parser.bytesToDate(rawData);
+      return parser.bytesToDate(raw());
     }
     catch (Exception e) {
       throw new AvpDataException(e, this);
@@ -240,6 +304,9 @@ class AvpImpl implements Avp {
   @Override
   public String getDiameterIdentity() throws AvpDataException {
     try {
+      if (isSlice(0)) {
+        return parser.bytesToString(frame, frameOffset, frameLength, "iso-8859-1");
+      }
       return parser.bytesToOctetString(rawData);
     }
     catch (Exception e) {
@@ -250,7 +317,7 @@ class AvpImpl implements Avp {
   @Override
   public URI getDiameterURI() throws AvpDataException {
     try {
-      return new URI(parser.bytesToOctetString(rawData));
+      return new URI(getDiameterIdentity());
     }
     catch (URISyntaxException e) {
       throw new AvpDataException(e, this);
@@ -264,7 +331,13 @@ class AvpImpl implements Avp {
   public AvpSet getGrouped() throws AvpDataException {
     try {
       if (groupedData == null) {
-        groupedData = parser.decodeAvpSet(rawData);
+        if (isSlice(0)) {
+          groupedData = parser.decodeLazyAvpSet(frame, frameOffset, frameOffset + frameLength);
+          frame = null;
+        }
+        else {
+          groupedData = parser.decodeAvpSet(rawData);
+        }
         rawData = new byte[0];
       }
       return groupedData;
@@ -286,7 +359,8 @@ class AvpImpl implements Avp {
 
   @Override
   public byte[] getRawData() {
-    return (rawData == null || rawData.length == 0) ? parser.encodeAvpSet(groupedData) : rawData;
+    byte[] data = raw();
+    return (data == null || data.length == 0) ? parser.encodeAvpSet(groupedData) : data;
   }
 
   // Caching toString.. Avp shouldn't be modified once created.
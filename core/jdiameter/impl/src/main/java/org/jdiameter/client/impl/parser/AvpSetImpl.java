@@ -77,14 +77,55 @@ class AvpSetImpl implements AvpSet {
   private static final long serialVersionUID = 1L;
   private static final ElementParser parser = new ElementParser();
 
-  List<Avp> avps = new ArrayList<Avp>();
+  // sets up to this size are scanned, bigger ones are looked up through code index
+  static final int INDEX_THRESHOLD = 8;
+
+  List<Avp> avps;
+
+  private transient int modCount;
+  // code index is valid only while its modification count matches the one of the set. It may be built by
+  // concurrent readers, so it is published fully built through volatile field
+  private transient volatile AvpCodeIndex codeIndex;
 
   AvpSetImpl() {
+    this.avps = new ArrayList<Avp>();
+  }
+
+  private AvpCodeIndex codeIndex() {
+    if (this.avps.size() <= INDEX_THRESHOLD) {
+      return null;
+    }
+    AvpCodeIndex index = this.codeIndex;
+    if (index == null || index.getModCount() != this.modCount) {
+      index = new AvpCodeIndex(this.avps, this.modCount);
+      this.codeIndex = index;
+    }
+    return index;
+  }
 
+  private void append(Avp avp) {
+    AvpCodeIndex index = this.codeIndex;
+    boolean indexed = index != null && index.getModCount() == this.modCount;
+    this.avps.add(avp);
+    this.modCount++;
+    if (indexed) {
+      // modifications are not thread safe anyway, so index is updated in place
+      index.add(avp.getCode(), this.modCount);
+    }
+  }
+
+  private void insert(int index, Avp avp) {
+    this.avps.add(index, avp);
+    this.modCount++;
   }
 
   @Override
   public Avp getAvp(int avpCode) {
+    AvpCodeIndex index = codeIndex();
+    if (index != null) {
+      int position = index.first(avpCode);
+      return position < 0 ? null : this.avps.get(position);
+    }
     for (Avp avp : this.avps) {
       if (avp.getCode() == avpCode) {
         return avp;
@@ -100,6 +141,16 @@ class AvpSetImpl implements AvpSet {
 
   @Override
   public Avp getAvp(int avpCode, long vendorId) {
+    AvpCodeIndex index = codeIndex();
+    if (index != null) {
+      for (int position = index.first(avpCode); position >= 0; position = index.next(position)) {
+        Avp avp = this.avps.get(position);
+        if (avp.getVendorId() == vendorId) {
+          return avp;
+        }
+      }
+      return null;
+    }
     for (Avp avp : this.avps) {
       if (avp.getCode() == avpCode && avp.getVendorId() == vendorId) {
         return avp;
@@ -110,23 +161,38 @@ class AvpSetImpl implements AvpSet {
 
   @Override
   public AvpSet getAvps(int avpCode) {
-    AvpSet result = new AvpSetImpl();
+    AvpSetImpl result = new AvpSetImpl();
+    AvpCodeIndex index = codeIndex();
+    if (index != null) {
+      for (int position = index.first(avpCode); position >= 0; position = index.next(position)) {
+        result.append(this.avps.get(position));
+      }
+      return result;
+    }
     for (Avp avp : this.avps) {
       if (avp.getCode() == avpCode) {
-        result.addAvp(avp);
+        result.append(avp);
       }
     }
     return result;
   }
 
-
-
   @Override
   public AvpSet getAvps(int avpCode, long vendorId) {
-    AvpSet result = new AvpSetImpl();
+    AvpSetImpl result = new AvpSetImpl();
+    AvpCodeIndex index = codeIndex();
+    if (index != null) {
+      for (int position = index.first(avpCode); position >= 0; position = index.next(position)) {
+        Avp avp = this.avps.get(position);
+        if (avp.getVendorId() == vendorId) {
+          result.append(avp);
+        }
+      }
+      return result;
+    }
     for (Avp avp : this.avps) {
       if (avp.getCode() == avpCode && avp.getVendorId() == vendorId) {
-        result.addAvp(avp);
+        result.append(avp);
       }
     }
     return result;
@@ -139,7 +205,11 @@ class AvpSetImpl implements AvpSet {
 
   @Override
   public AvpSet removeAvp(int avpCode, long vendorId) {
-    AvpSet result = new AvpSetImpl();
+    AvpCodeIndex index = codeIndex();
+    if (index != null && index.first(avpCode) < 0) {
+      return new AvpSetImpl();
+    }
+    AvpSetImpl result = new AvpSetImpl();
     //  for (Avp avp : this.avps) {
     //    if (avp.getCode() == avpCode) {
     //      result.addAvp(avp);
@@ -150,8 +220,9 @@ class AvpSetImpl implements AvpSet {
     while (it.hasNext()) {
       Avp avp = it.next();
       if (avp.getCode() == avpCode && avp.getVendorId() == vendorId) {
-        result.addAvp(avp);
+        result.append(avp);
         it.remove();
+        this.modCount++;
       }
     }
     return result;
@@ -159,7 +230,11 @@ class AvpSetImpl implements AvpSet {
 
   @Override
   public Avp removeAvpByIndex(int i) {
-    return (i >= this.avps.size()) ? null : this.avps.remove(i);
+    if (i >= this.avps.size()) {
+      return null;
+    }
+    this.modCount++;
+    return this.avps.remove(i);
   }
 
   @Override
@@ -170,7 +245,7 @@ class AvpSetImpl implements AvpSet {
   @Override
   public Avp addAvp(int avpCode, long value, boolean asUnsigned) {
     Avp res = new AvpImpl(avpCode, 0, 0, asUnsigned ? parser.intU32ToBytes(value) : parser.int64ToBytes(value));
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
@@ -178,7 +253,7 @@ class AvpSetImpl implements AvpSet {
   public Avp addAvp(int avpCode, long value, boolean mFlag, boolean pFlag, boolean asUnsigned) {
     int flags = ((mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags , 0, asUnsigned ? parser.intU32ToBytes(value) : parser.int64ToBytes(value));
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
@@ -186,24 +261,26 @@ class AvpSetImpl implements AvpSet {
   public Avp addAvp(int avpCode, long value, long vndId, boolean mFlag, boolean pFlag, boolean asUnsigned) {
     int flags = ((vndId != 0 ? 0x80 : 0) | (mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, vndId, asUnsigned ? parser.intU32ToBytes(value) : parser.int64ToBytes(value));
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
   @Override
   public void insertAvp(int index, Avp... avps) {
     this.avps.addAll(index, Arrays.asList(avps));
+    this.modCount++;
   }
 
   @Override
   public void insertAvp(int index, AvpSet avpSet) {
     this.avps.addAll(index, Arrays.asList(avpSet.asArray()));
+    this.modCount++;
   }
 
   @Override
   public Avp insertAvp(int index, int avpCode, long value, boolean asUnsigned) {
     Avp res = new AvpImpl(avpCode, 0, 0, asUnsigned ? parser.intU32ToBytes(value) : parser.int64ToBytes(value));
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
@@ -211,7 +288,7 @@ class AvpSetImpl implements AvpSet {
   public Avp insertAvp(int index, int avpCode, long value, boolean mFlag, boolean pFlag, boolean asUnsigned) {
     int flags = ((mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags , 0, asUnsigned ? parser.intU32ToBytes(value) : parser.int64ToBytes(value));
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
@@ -219,7 +296,7 @@ class AvpSetImpl implements AvpSet {
   public Avp insertAvp(int index, int avpCode, long value, long vndId, boolean mFlag, boolean pFlag, boolean asUnsigned) {
     int flags = ((vndId != 0 ? 0x80 : 0) | (mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, vndId, asUnsigned ? parser.intU32ToBytes(value) : parser.int64ToBytes(value));
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
@@ -227,7 +304,7 @@ class AvpSetImpl implements AvpSet {
   public AvpSet insertGroupedAvp(int index, int avpCode) {
     AvpImpl res = new AvpImpl(avpCode, 0, 0, new byte[0]);
     res.groupedData = new AvpSetImpl();
-    this.avps.add(index, res);
+    insert(index, res);
     return res.groupedData;
   }
 
@@ -239,7 +316,7 @@ class AvpSetImpl implements AvpSet {
   @Override
   public void addAvp(AvpSet avpSet) {
     for (Avp a:avpSet) {
-      avps.add(a);
+      append(a);
     }
   }
 
@@ -249,7 +326,7 @@ class AvpSetImpl implements AvpSet {
       // No need to clone AVP, right?
       // Avp res = new AvpImpl(a);
       if (a != null) {
-        this.avps.add(a);
+        append(a);
       }
     }
   }
@@ -257,7 +334,7 @@ class AvpSetImpl implements AvpSet {
   @Override
   public Avp addAvp(int avpCode, byte[] rawData) {
     Avp res = new AvpImpl(avpCode, 0, 0, rawData);
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
@@ -265,7 +342,7 @@ class AvpSetImpl implements AvpSet {
   public Avp addAvp(int avpCode, byte[] rawData, boolean mFlag, boolean pFlag) {
     int flags = ((mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags , 0, rawData);
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
@@ -273,14 +350,14 @@ class AvpSetImpl implements AvpSet {
   public Avp addAvp(int avpCode, byte[] rawData, long vndId, boolean mFlag, boolean pFlag) {
     int flags = ((vndId != 0 ? 0x80 : 0) | (mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, vndId, rawData);
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
   @Override
   public Avp addAvp(int avpCode, int value) {
     Avp res = new AvpImpl(avpCode, 0, 0, parser.int32ToBytes(value));
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
@@ -288,7 +365,7 @@ class AvpSetImpl implements AvpSet {
   public Avp addAvp(int avpCode, int value, boolean mFlag, boolean pFlag) {
     int flags = ((mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, 0, parser.int32ToBytes(value));
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
@@ -296,14 +373,14 @@ class AvpSetImpl implements AvpSet {
   public Avp addAvp(int avpCode, int value, long vndId, boolean mFlag, boolean pFlag) {
     int flags = ((vndId != 0 ? 0x80 : 0) | (mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, vndId, parser.int32ToBytes(value));
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
   @Override
   public Avp addAvp(int avpCode, long value) {
     Avp res = new AvpImpl(avpCode, 0, 0, parser.int64ToBytes(value) );
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
@@ -311,7 +388,7 @@ class AvpSetImpl implements AvpSet {
   public Avp addAvp(int avpCode, long value, boolean mFlag, boolean pFlag) {
     int flags = ((mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, 0, parser.int64ToBytes(value) );
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
@@ -319,14 +396,14 @@ class AvpSetImpl implements AvpSet {
   public Avp addAvp(int avpCode, long value, long vndId, boolean mFlag, boolean pFlag) {
     int flags = ((vndId != 0 ? 0x80 : 0) | (mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, vndId, parser.int64ToBytes(value) );
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
   @Override
   public Avp addAvp(int avpCode, float value) {
     Avp res = new AvpImpl(avpCode, 0, 0, parser.float32ToBytes(value));
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
@@ -334,7 +411,7 @@ class AvpSetImpl implements AvpSet {
   public Avp addAvp(int avpCode, float value, boolean mFlag, boolean pFlag) {
     int flags = ((mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, 0, parser.float32ToBytes(value));
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
@@ -342,14 +419,14 @@ class AvpSetImpl implements AvpSet {
   public Avp addAvp(int avpCode, float value, long vndId, boolean mFlag, boolean pFlag) {
     int flags = ((vndId != 0 ? 0x80 : 0) | (mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, vndId, parser.float32ToBytes(value));
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
   @Override
   public Avp addAvp(int avpCode, double value) {
     Avp res = new AvpImpl(avpCode, 0, 0, parser.float64ToBytes(value));
-    this.avps.add(res);
+    append(res);
     return res;
 
   }
@@ -358,7 +435,7 @@ class AvpSetImpl implements AvpSet {
   public Avp addAvp(int avpCode, double value, boolean mFlag, boolean pFlag) {
     int flags = ((mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, 0, parser.float64ToBytes(value));
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
@@ -366,7 +443,7 @@ class AvpSetImpl implements AvpSet {
   public Avp addAvp(int avpCode, double value, long vndId, boolean mFlag, boolean pFlag) {
     int flags = ((vndId != 0 ? 0x80 : 0) | (mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, vndId, parser.float64ToBytes(value));
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
@@ -375,7 +452,7 @@ class AvpSetImpl implements AvpSet {
     try {
       Avp res = new AvpImpl(avpCode, 0, 0, asOctetString ? parser.octetStringToBytes(value) : parser.utf8StringToBytes(value)
           );
-      this.avps.add(res);
+      append(res);
       return res;
     } catch (Exception e) {
       throw new IllegalArgumentException(e);
@@ -388,7 +465,7 @@ class AvpSetImpl implements AvpSet {
     try {
       Avp res = new AvpImpl(avpCode, flags, 0, asOctetString ? parser.octetStringToBytes(value) : parser.utf8StringToBytes(value)
           );
-      this.avps.add(res);
+      append(res);
       return res;
     } catch (Exception e) {
       throw new IllegalArgumentException(e);
@@ -401,7 +478,7 @@ class AvpSetImpl implements AvpSet {
     try {
       Avp res = new AvpImpl(avpCode, flags, vndId, asOctetString ? parser.octetStringToBytes(value) : parser.utf8StringToBytes(value)
           );
-      this.avps.add(res);
+      append(res);
       return res;
     } catch (Exception e) {
       throw new IllegalArgumentException(e);
@@ -412,7 +489,7 @@ class AvpSetImpl implements AvpSet {
   public Avp addAvp(int avpCode, URI value) {
     try {
       Avp res = new AvpImpl(avpCode, 0, 0, parser.octetStringToBytes(value.toString()));
-      this.avps.add(res);
+      append(res);
       return res;
     } catch (ParseException e) {
       throw new IllegalArgumentException(e);
@@ -424,7 +501,7 @@ class AvpSetImpl implements AvpSet {
     int flags = ((mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     try {
       Avp res = new AvpImpl(avpCode, flags, 0, parser.octetStringToBytes(value.toString()));
-      this.avps.add(res);
+      append(res);
       return res;
     } catch (ParseException e) {
       throw new IllegalArgumentException(e);
@@ -436,7 +513,7 @@ class AvpSetImpl implements AvpSet {
     int flags = ((vndId != 0 ? 0x80 : 0) | (mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     try {
       Avp res = new AvpImpl(avpCode, flags, vndId, parser.octetStringToBytes(value.toString()));
-      this.avps.add(res);
+      append(res);
       return res;
     } catch (ParseException e) {
       throw new IllegalArgumentException(e);
@@ -446,7 +523,7 @@ class AvpSetImpl implements AvpSet {
   @Override
   public Avp addAvp(int avpCode, InetAddress value) {
     Avp res = new AvpImpl(avpCode, 0, 0, parser.addressToBytes(value));
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
@@ -454,7 +531,7 @@ class AvpSetImpl implements AvpSet {
   public Avp addAvp(int avpCode, InetAddress value, boolean mFlag, boolean pFlag) {
     int flags = ((mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, 0, parser.addressToBytes(value));
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
@@ -462,14 +539,14 @@ class AvpSetImpl implements AvpSet {
   public Avp addAvp(int avpCode, InetAddress value, long vndId, boolean mFlag, boolean pFlag) {
     int flags = ((vndId != 0 ? 0x80 : 0) | (mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, vndId, parser.addressToBytes(value));
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
   @Override
   public Avp addAvp(int avpCode, Date value) {
     Avp res = new AvpImpl(avpCode, 0, 0, parser.dateToBytes(value));
-    this.avps.add(res);
+    append(res);
     return res;
 
   }
@@ -478,7 +555,7 @@ class AvpSetImpl implements AvpSet {
   public Avp addAvp(int avpCode, Date value, boolean mFlag, boolean pFlag) {
     int flags = ((mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, 0, parser.dateToBytes(value));
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
@@ -486,7 +563,7 @@ class AvpSetImpl implements AvpSet {
   public Avp addAvp(int avpCode, Date value, long vndId, boolean mFlag, boolean pFlag) {
     int flags = ((vndId != 0 ? 0x80 : 0) | (mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, vndId, parser.dateToBytes(value));
-    this.avps.add(res);
+    append(res);
     return res;
   }
 
@@ -494,7 +571,7 @@ class AvpSetImpl implements AvpSet {
   public AvpSet addGroupedAvp(int avpCode) {
     AvpImpl res = new AvpImpl(avpCode, 0, 0, new byte[0] );
     res.groupedData = new AvpSetImpl();
-    this.avps.add(res);
+    append(res);
     return res.groupedData;
   }
 
@@ -503,7 +580,7 @@ class AvpSetImpl implements AvpSet {
     int flags = ((mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     AvpImpl res = new AvpImpl(avpCode, flags, 0, new byte[0] );
     res.groupedData = new AvpSetImpl();
-    this.avps.add(res);
+    append(res);
     return res.groupedData;
   }
 
@@ -512,14 +589,14 @@ class AvpSetImpl implements AvpSet {
     int flags = ((vndId != 0 ? 0x80 : 0) | (mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     AvpImpl res = new AvpImpl(avpCode, flags, vndId, new byte[0] );
     res.groupedData = new AvpSetImpl();
-    this.avps.add(res);
+    append(res);
     return res.groupedData;
   }
 
   @Override
   public Avp insertAvp(int index, int avpCode, byte[] value) {
     Avp res = new AvpImpl(avpCode, 0, 0, value);
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
@@ -527,7 +604,7 @@ class AvpSetImpl implements AvpSet {
   public Avp insertAvp(int index, int avpCode, byte[] value, boolean mFlag, boolean pFlag) {
     int flags = ((mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, 0, value);
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
 
   }
@@ -536,14 +613,14 @@ class AvpSetImpl implements AvpSet {
   public Avp insertAvp(int index, int avpCode, byte[] value, long vndId, boolean mFlag, boolean pFlag) {
     int flags = ((vndId != 0 ? 0x80 : 0) | (mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, vndId, value);
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
   @Override
   public Avp insertAvp(int index, int avpCode, int value) {
     Avp res = new AvpImpl(avpCode, 0, 0, parser.int32ToBytes(value));
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
@@ -551,7 +628,7 @@ class AvpSetImpl implements AvpSet {
   public Avp insertAvp(int index, int avpCode, int value, boolean mFlag, boolean pFlag) {
     int flags = ((mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, 0, parser.int32ToBytes(value));
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
@@ -559,14 +636,14 @@ class AvpSetImpl implements AvpSet {
   public Avp insertAvp(int index, int avpCode, int value, long vndId, boolean mFlag, boolean pFlag) {
     int flags = ((vndId != 0 ? 0x80 : 0) | (mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, vndId, parser.int32ToBytes(value));
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
   @Override
   public Avp insertAvp(int index, int avpCode, long value) {
     Avp res = new AvpImpl(avpCode, 0, 0, parser.int64ToBytes(value));
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
@@ -574,7 +651,7 @@ class AvpSetImpl implements AvpSet {
   public Avp insertAvp(int index, int avpCode, long value, boolean mFlag, boolean pFlag) {
     int flags = ((mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, 0, parser.int64ToBytes(value));
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
@@ -582,14 +659,14 @@ class AvpSetImpl implements AvpSet {
   public Avp insertAvp(int index, int avpCode, long value, long vndId, boolean mFlag, boolean pFlag) {
     int flags = ((vndId != 0 ? 0x80 : 0) | (mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, vndId, parser.int64ToBytes(value));
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
   @Override
   public Avp insertAvp(int index, int avpCode, float value) {
     Avp res = new AvpImpl(avpCode, 0, 0, parser.float32ToBytes(value));
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
@@ -597,7 +674,7 @@ class AvpSetImpl implements AvpSet {
   public Avp insertAvp(int index, int avpCode, float value, boolean mFlag, boolean pFlag) {
     int flags = ((mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, 0, parser.float32ToBytes(value));
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
@@ -605,14 +682,14 @@ class AvpSetImpl implements AvpSet {
   public Avp insertAvp(int index, int avpCode, float value, long vndId, boolean mFlag, boolean pFlag) {
     int flags = ((vndId != 0 ? 0x80 : 0) | (mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, vndId, parser.float32ToBytes(value));
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
   @Override
   public Avp insertAvp(int index, int avpCode, double value) {
     Avp res = new AvpImpl(avpCode, 0, 0, parser.float64ToBytes(value));
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
@@ -620,7 +697,7 @@ class AvpSetImpl implements AvpSet {
   public Avp insertAvp(int index, int avpCode, double value, boolean mFlag, boolean pFlag) {
     int flags = ((mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, 0, parser.float64ToBytes(value));
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
@@ -628,7 +705,7 @@ class AvpSetImpl implements AvpSet {
   public Avp insertAvp(int index, int avpCode, double value, long vndId, boolean mFlag, boolean pFlag) {
     int flags = ((vndId != 0 ? 0x80 : 0) | (mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, vndId, parser.float64ToBytes(value));
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
@@ -637,7 +714,7 @@ class AvpSetImpl implements AvpSet {
     try {
       Avp res = new AvpImpl(avpCode, 0, 0, asOctetString ? parser.octetStringToBytes(value) :
           parser.utf8StringToBytes(value));
-      this.avps.add(index, res);
+      insert(index, res);
       return res;
     } catch (Exception e) {
       throw new IllegalArgumentException(e);
@@ -650,7 +727,7 @@ class AvpSetImpl implements AvpSet {
     try {
       Avp res = new AvpImpl(avpCode, flags, 0, asOctetString ? parser.octetStringToBytes(value) :
           parser.utf8StringToBytes(value));
-      this.avps.add(index, res);
+      insert(index, res);
       return res;
     } catch (Exception e) {
       throw new IllegalArgumentException(e);
@@ -664,7 +741,7 @@ class AvpSetImpl implements AvpSet {
     try {
       Avp res = new AvpImpl(avpCode, flags, vndId, asOctetString ? parser.octetStringToBytes(value) :
           parser.utf8StringToBytes(value));
-      this.avps.add(index, res);
+      insert(index, res);
       return res;
     } catch (Exception e) {
       throw new IllegalArgumentException(e);
@@ -675,7 +752,7 @@ class AvpSetImpl implements AvpSet {
   public Avp insertAvp(int index, int avpCode, URI value) {
     try {
       Avp res = new AvpImpl(avpCode, 0, 0, parser.octetStringToBytes(value.toString()));
-      this.avps.add(index, res);
+      insert(index, res);
       return res;
     } catch (Exception e) {
       throw new IllegalArgumentException(e);
@@ -687,7 +764,7 @@ class AvpSetImpl implements AvpSet {
     int flags = ((mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     try {
       Avp res = new AvpImpl(avpCode, flags, 0, parser.octetStringToBytes(value.toString()));
-      this.avps.add(index, res);
+      insert(index, res);
       return res;
     } catch (Exception e) {
       throw new IllegalArgumentException(e);
@@ -699,7 +776,7 @@ class AvpSetImpl implements AvpSet {
     int flags = ((vndId != 0 ? 0x80 : 0) | (mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     try {
       Avp res = new AvpImpl(avpCode, flags, vndId, parser.octetStringToBytes(value.toString()));
-      this.avps.add(index, res);
+      insert(index, res);
       return res;
     } catch (Exception e) {
       throw new IllegalArgumentException(e);
@@ -709,7 +786,7 @@ class AvpSetImpl implements AvpSet {
   @Override
   public Avp insertAvp(int index, int avpCode, InetAddress value) {
     Avp res = new AvpImpl(avpCode, 0, 0, parser.addressToBytes(value));
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
@@ -717,7 +794,7 @@ class AvpSetImpl implements AvpSet {
   public Avp insertAvp(int index, int avpCode, InetAddress value, boolean mFlag, boolean pFlag) {
     int flags = ((mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, 0, parser.addressToBytes(value));
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
@@ -725,14 +802,14 @@ class AvpSetImpl implements AvpSet {
   public Avp insertAvp(int index, int avpCode, InetAddress value, long vndId, boolean mFlag, boolean pFlag) {
     int flags = ((vndId != 0 ? 0x80 : 0) | (mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, vndId, parser.addressToBytes(value));
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
   @Override
   public Avp insertAvp(int index, int avpCode, Date value) {
     Avp res = new AvpImpl(avpCode, 0, 0, parser.dateToBytes(value));
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
@@ -740,7 +817,7 @@ class AvpSetImpl implements AvpSet {
   public Avp insertAvp(int index, int avpCode, Date value, boolean mFlag, boolean pFlag) {
     int flags = ((mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, 0, parser.dateToBytes(value));
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
@@ -748,7 +825,7 @@ class AvpSetImpl implements AvpSet {
   public Avp insertAvp(int index, int avpCode, Date value, long vndId, boolean mFlag, boolean pFlag) {
     int flags = ((vndId != 0 ? 0x80 : 0) | (mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     Avp res = new AvpImpl(avpCode, flags, vndId, parser.dateToBytes(value));
-    this.avps.add(index, res);
+    insert(index, res);
     return res;
   }
 
@@ -757,7 +834,7 @@ class AvpSetImpl implements AvpSet {
     int flags = ((mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     AvpImpl res = new AvpImpl(avpCode, flags, 0, new byte[0] );
     res.groupedData = new AvpSetImpl();
-    this.avps.add(index, res);
+    insert(index, res);
     return res.groupedData;
   }
 
@@ -766,7 +843,7 @@ class AvpSetImpl implements AvpSet {
     int flags = ((vndId != 0 ? 0x80 : 0) | (mFlag ? 0x40 : 0) | (pFlag ? 0x20 : 0));
     AvpImpl res = new AvpImpl(avpCode, flags, vndId, new byte[0] );
     res.groupedData = new AvpSetImpl();
-    this.avps.add(index, res);
+    insert(index, res);
     return res.groupedData;
   }
 
@@ -784,7 +861,24 @@ class AvpSetImpl implements AvpSet {
   public Iterator<Avp> iterator() {
     // Iterator contract demands it to be able to remove items
     // return Collections.unmodifiableList(this.avps).iterator();
-    return this.avps.iterator();
+    final Iterator<Avp> it = this.avps.iterator();
+    return new Iterator<Avp>() {
+      @Override
+      public boolean hasNext() {
+        return it.hasNext();
+      }
+
+      @Override
+      public Avp next() {
+        return it.next();
+      }
+
+      @Override
+      public void remove() {
+        it.remove();
+        modCount++;
+      }
+    };
   }
 
   @Override
@@ -49,7 +49,6 @@ import java.io.UnsupportedEncodingException;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.nio.ByteBuffer;
-import java.util.Arrays;
 import java.util.Date;
 
 import org.jdiameter.api.Avp;
@@ -306,95 +305,169 @@ public class ElementParser implements IElementParser {
     return avps;
   }
 
-  public byte[] encodeAvpSet(AvpSet avps) {
-    //ByteArrayOutputStream out = new ByteArrayOutputStream();
-    DynamicByteArray dba = new DynamicByteArray(0);
-    try {
-      //DataOutputStream data = new DataOutputStream(out);
-      for (Avp a : avps) {
-        if (a instanceof AvpImpl) {
-          AvpImpl aImpl = (AvpImpl) a;
-          if (aImpl.rawData.length == 0 && aImpl.groupedData != null) {
-            aImpl.rawData = encodeAvpSet(a.getGrouped());
-          }
-          //data.write(newEncodeAvp(aImpl));
-          dba.add(encodeAvp(aImpl));
-        }
+  /**
+   * Decodes AVP set without copying AVP data. Only AVP headers are read, each created AVP
+   * keeps a reference to the given buffer and decodes its value on first access.
+   *
+   * @param buffer buffer holding encoded AVPs, must not be modified afterwards
+   * @param offset position of the first AVP in buffer
+   * @param end position after the last AVP in buffer
+   * @return set of lazily decoded AVPs
+   * @throws AvpDataException if AVP headers are malformed
+   */
+  public AvpSetImpl decodeLazyAvpSet(byte[] buffer, int offset, int end) throws AvpDataException {
+    AvpSetImpl avps = new AvpSetImpl();
+    int pos = offset;
+    while (pos < end) {
+      if (pos + 8 > end) {
+        throw new AvpDataException("Not enough data in buffer!");
       }
+      int code = bytesToInt(buffer, pos);
+      int tmp = bytesToInt(buffer, pos + 4);
+      int flags = (tmp >> 24) & 0xFF;
+      int length = tmp & 0xFFFFFF;
+      int headerLength = (flags & 0x80) != 0 ? 12 : 8;
+      if (length < headerLength || pos + length > end) {
+        throw new AvpDataException("Not enough data in buffer!");
+      }
+      long vendor = headerLength == 12 ? bytesToInt(buffer, pos + 8) : 0;
+      avps.addAvp(new AvpImpl(code, flags, vendor, buffer, pos + headerLength, length - headerLength));
+      // skip padding, last AVP may come without it
+      pos += (length + 3) & ~3;
     }
-    catch (Exception e) {
-      e.printStackTrace();
-      logger.debug("Error during encode avps", e);
-    }
-    return dba.getResult();
+    return avps;
   }
 
-  protected class DynamicByteArray {
+  int bytesToInt(byte[] buffer, int offset) {
+    return
+        (buffer[offset] & 0xFF) << 24 |
+        (buffer[offset + 1] & 0xFF) << 16 |
+        (buffer[offset + 2] & 0xFF) << 8 |
+        (buffer[offset + 3] & 0xFF) << 0;
+  }
 
-    private byte[] array;
-    private int size;
+  long bytesToLong(byte[] buffer, int offset) {
+    return (buffer[offset] & 0xFFL) << 56
+        | (buffer[offset + 1] & 0xFFL) << 48
+        | (buffer[offset + 2] & 0xFFL) << 40
+        | (buffer[offset + 3] & 0xFFL) << 32
+        | (buffer[offset + 4] & 0xFFL) << 24
+        | (buffer[offset + 5] & 0xFFL) << 16
+        | (buffer[offset + 6] & 0xFFL) << 8
+        | (buffer[offset + 7] & 0xFFL) << 0;
+  }
 
-    public DynamicByteArray(int cap) {
-      array = new byte[cap > 0 ? cap : 256];
-      size = 0;
+  String bytesToString(byte[] buffer, int offset, int length, String charset) throws AvpDataException {
+    try {
+      return new String(buffer, offset, length, charset);
     }
+    catch (UnsupportedEncodingException e) {
+      throw new AvpDataException("Invalid data type", e);
+    }
+  }
 
-    public int get(int pos) {
-      if (pos >= size) {
-        throw new ArrayIndexOutOfBoundsException();
-      }
-      return array[pos];
+  public byte[] encodeAvpSet(AvpSet avps) {
+    ByteBuffer buffer = ByteBuffer.allocate(getAvpSetLength(avps));
+    try {
+      encodeAvpSet(avps, buffer);
     }
+    catch (Exception e) {
+      logger.debug("Error during encode avps", e);
+    }
+    return buffer.array();
+  }
 
-    public void add(byte[] bytes) {
-      if (size + bytes.length > array.length) {
-        byte[] newarray = new byte[array.length + bytes.length * 2];
-        System.arraycopy(array, 0, newarray, 0, size);
-        array = newarray;
+  /**
+   * Calculates the length of encoded AVP set, including padding of each AVP.
+   *
+   * @param avps AVP set
+   * @return number of bytes needed by {@link #encodeAvpSet(AvpSet, ByteBuffer)}
+   */
+  public int getAvpSetLength(AvpSet avps) {
+    int length = 0;
+    for (Avp a : avps) {
+      if (a instanceof AvpImpl) {
+        length += (getAvpLength((AvpImpl) a) + 3) & ~3;
       }
-      System.arraycopy(bytes, 0, array, size, bytes.length);
-      size += bytes.length;
     }
+    return length;
+  }
 
-    public byte[] getResult() {
-      return Arrays.copyOfRange(array, 0, size);
+  /**
+   * Encodes AVP set into given buffer, starting at its current position.
+   *
+   * @param avps AVP set
+   * @param buffer destination buffer, must have at least {@link #getAvpSetLength(AvpSet)} bytes remaining
+   */
+  public void encodeAvpSet(AvpSet avps, ByteBuffer buffer) {
+    for (Avp a : avps) {
+      if (a instanceof AvpImpl) {
+        encodeAvp((AvpImpl) a, buffer);
+      }
     }
   }
 
   public byte[] encodeAvp(AvpImpl avp) {
+    ByteBuffer buffer = ByteBuffer.allocate((getAvpLength(avp) + 3) & ~3);
     try {
-      int payloadSize = avp.getRaw().length;
-      boolean hasVendorId = avp.getVendorId() != 0;
-      int origLength = payloadSize + 8 + (hasVendorId ? 4 : 0);
-      int tmp = payloadSize % 4;
-      int paddingSize = tmp > 0 ? (4 - tmp) : 0;
-
-      byte[] bCode = this.int32ToBytes(avp.getCode());
-      int flags = (byte) ((hasVendorId ? 0x80 : 0) |
-          (avp.isMandatory() ? 0x40 : 0) | (avp.isEncrypted() ? 0x20 : 0));
-      byte[] bFlags = this.int32ToBytes(((flags << 24) & 0xFF000000) + origLength);
-      byte[] bVendor = hasVendorId ? int32ToBytes((int) avp.getVendorId()) : new byte[0];
-      return concat(origLength + paddingSize, bCode, bFlags, bVendor, avp.getRaw());
+      encodeAvp(avp, buffer);
     }
     catch (Exception e) {
       logger.debug("Error during encode avp", e);
       return new byte[0];
     }
+    return buffer.array();
   }
 
-  private byte[] concat(int length, byte[]... arrays) {
-    if (length == 0) {
-      for (byte[] array : arrays) {
-        length += array.length;
-      }
+  /**
+   * Encodes AVP into given buffer, starting at its current position. Length is taken from the number of bytes
+   * written and filled in afterwards, so grouped AVPs are traversed only once.
+   */
+  void encodeAvp(AvpImpl avp, ByteBuffer buffer) {
+    boolean hasVendorId = avp.getVendorId() != 0;
+    int flags = (hasVendorId ? 0x80 : 0) | (avp.isMandatory() ? 0x40 : 0) | (avp.isEncrypted() ? 0x20 : 0);
+
+    int start = buffer.position();
+    buffer.putInt(avp.getCode());
+    // flags and length
+    buffer.putInt(0);
+    if (hasVendorId) {
+      buffer.putInt((int) avp.getVendorId());
+    }
+    byte[] rawData = avp.rawData;
+    byte[] frame = avp.frame;
+    if (rawData == null && frame != null) {
+      buffer.put(frame, avp.frameOffset, avp.frameLength);
+    }
+    else if (rawData != null && rawData.length > 0) {
+      buffer.put(rawData);
+    }
+    else if (avp.groupedData != null) {
+      encodeAvpSet(avp.groupedData, buffer);
+    }
+    int length = buffer.position() - start;
+    buffer.putInt(start + 4, (flags << 24) | length);
+    for (; (length & 3) != 0; length++) {
+      buffer.put((byte) 0);
+    }
+  }
+
+  /**
+   * Calculates the length of encoded AVP, header included and padding excluded.
+   */
+  int getAvpLength(AvpImpl avp) {
+    int length = avp.getVendorId() != 0 ? 12 : 8;
+    byte[] rawData = avp.rawData;
+    if (rawData == null && avp.frame != null) {
+      length += avp.frameLength;
+    }
+    else if (rawData != null && rawData.length > 0) {
+      length += rawData.length;
     }
-    byte[] result = new byte[length];
-    int pos = 0;
-    for (byte[] array : arrays) {
-      System.arraycopy(array, 0, result, pos, array.length);
-      pos += array.length;
+    else if (avp.groupedData != null) {
+      length += getAvpSetLength(avp.groupedData);
     }
-    return result;
+    return length;
   }
 
   protected ByteBuffer prepareBuffer(byte [] bytes, int len) throws AvpDataException  {
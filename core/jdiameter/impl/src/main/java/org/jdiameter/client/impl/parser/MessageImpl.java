@@ -524,8 +524,19 @@ public class MessageImpl implements IMessage {
 
   @Override
   public void createTimer(ScheduledExecutorService scheduledFacility, long timeOut, TimeUnit timeUnit) {
-    timerTask = new TimerTask(this);
-    timerTask.setTimerHandler(scheduledFacility, scheduledFacility.schedule(timerTask, timeOut, timeUnit));
+    timerTask = new TimerTask(this, scheduledFacility, System.currentTimeMillis() + timeUnit.toMillis(timeOut));
+  }
+
+  @Override
+  public void startTimer() {
+    if (timerTask != null) {
+      timerTask.start();
+    }
+  }
+
+  @Override
+  public long claimTimer() {
+    return timerTask != null ? timerTask.claim() : 0;
   }
 
   @Override
@@ -615,21 +626,49 @@ public class MessageImpl implements IMessage {
 
   protected static class TimerTask implements Runnable {
 
+    private static final int CREATED = 0;
+    private static final int STARTED = 1;
+    private static final int CLAIMED = 2;
+    private static final int EXPIRED = 3;
+    private static final int CANCELLED = 4;
+
     ScheduledFuture timerHandler;
     MessageImpl message;
     ScheduledExecutorService scheduledFacility;
+    final long expirationTime;
+    int state = CREATED;
 
-    public TimerTask(MessageImpl message) {
+    public TimerTask(MessageImpl message, ScheduledExecutorService scheduledFacility, long expirationTime) {
       this.message = message;
+      this.scheduledFacility = scheduledFacility;
+      this.expirationTime = expirationTime;
     }
 
-    public void setTimerHandler(ScheduledExecutorService scheduledFacility, ScheduledFuture timerHandler) {
-      this.scheduledFacility = scheduledFacility;
-      this.timerHandler = timerHandler;
+    public synchronized void start() {
+      if (state == CREATED || state == CLAIMED) {
+        state = STARTED;
+        timerHandler = scheduledFacility.schedule(this, Math.max(expirationTime - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+      }
+    }
+
+    public synchronized long claim() {
+      if (state == CREATED || state == CLAIMED) {
+        state = CLAIMED;
+        return expirationTime;
+      }
+      return 0;
     }
 
     @Override
     public void run() {
+      MessageImpl message;
+      synchronized (this) {
+        if (state == EXPIRED || state == CANCELLED) {
+          return;
+        }
+        state = EXPIRED;
+        message = this.message;
+      }
       try {
         if (message != null && message.state != STATE_ANSWERED) {
           IEventListener listener = null;
@@ -649,7 +688,11 @@ public class MessageImpl implements IMessage {
       }
     }
 
-    public void cancel() {
+    public synchronized void cancel() {
+      if (state == EXPIRED) {
+        return;
+      }
+      state = CANCELLED;
       if (timerHandler != null) {
         timerHandler.cancel(true);
         if (scheduledFacility instanceof ThreadPoolExecutor && timerHandler instanceof Runnable) {
@@ -659,12 +702,12 @@ public class MessageImpl implements IMessage {
       message = null;
     }
 
-    public boolean isDone() {
-      return timerHandler != null && timerHandler.isDone();
+    public synchronized boolean isDone() {
+      return state == EXPIRED;
     }
 
-    public boolean isCancelled() {
-      return timerHandler == null || timerHandler.isCancelled();
+    public synchronized boolean isCancelled() {
+      return state == CANCELLED;
     }
   }
 }
@@ -46,17 +46,16 @@ import static org.jdiameter.api.Avp.ACCT_APPLICATION_ID;
 import static org.jdiameter.api.Avp.AUTH_APPLICATION_ID;
 import static org.jdiameter.api.Avp.SESSION_ID;
 import static org.jdiameter.api.Avp.VENDOR_SPECIFIC_APPLICATION_ID;
+import static org.jdiameter.client.impl.helpers.Parameters.LazyAvpDecoding;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
 
 import org.jdiameter.api.Avp;
 import org.jdiameter.api.AvpDataException;
 import org.jdiameter.api.AvpSet;
+import org.jdiameter.api.Configuration;
 import org.jdiameter.api.Request;
 import org.jdiameter.client.api.IMessage;
 import org.jdiameter.client.api.IRequest;
@@ -80,19 +79,29 @@ public class MessageParser extends ElementParser implements IMessageParser {
       (int) (TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) & 0xFFF) << 20
       );
 
-
+  /**
+   * When enabled, received messages keep a reference to the received buffer and AVP values are only
+   * copied or decoded when accessed, instead of copying every AVP body upfront.
+   */
+  protected boolean lazyDecoding = (Boolean) LazyAvpDecoding.defValue();
 
   public MessageParser() {
 
   }
 
+  public MessageParser(Configuration config) {
+    this.lazyDecoding = config.getBooleanValue(LazyAvpDecoding.ordinal(), (Boolean) LazyAvpDecoding.defValue());
+  }
+
   @Override
   public IMessage createMessage(byte[] message) throws AvpDataException {
     // Read header
     try {
       long tmp;
-      DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
-      tmp = in.readInt();
+      if (message.length < 20) {
+        throw new Exception("Not enough data for header: " + message.length);
+      }
+      tmp = bytesToInt(message, 0);
       short version = (short) (tmp >> 24);
       if (version != 1) {
         throw new Exception("Illegal value of version " + version);
@@ -103,17 +112,17 @@ public class MessageParser extends ElementParser implements IMessageParser {
         throw new Exception("Wrong length of data: " + (tmp & 0x00FFFFFF));
       }
 
-      tmp = in.readInt();
+      tmp = bytesToInt(message, 4);
       short flags        = (short) ((tmp >> 24) & 0xFF);
       int commandCode    = (int) (tmp & 0xFFFFFF);
-      long applicationId = ((long) in.readInt() << 32) >>> 32;
-      long hopByHopId    = ((long) in.readInt() << 32) >>> 32;
-      long endToEndId    = ((long) in.readInt() << 32) >>> 32;
+      long applicationId = bytesToInt(message, 8) & 0xFFFFFFFFL;
+      long hopByHopId    = bytesToInt(message, 12) & 0xFFFFFFFFL;
+      long endToEndId    = bytesToInt(message, 16) & 0xFFFFFFFFL;
       // Read body
       // byte[] body = new byte[message.length - 20];
       // System.arraycopy(message, 20, body, 0, body.length);
       // AvpSetImpl avpSet = decodeAvpSet(body);
-      AvpSetImpl avpSet = decodeAvpSet(message, 20);
+      AvpSetImpl avpSet = lazyDecoding ? decodeLazyAvpSet(message, 20, message.length) : decodeAvpSet(message, 20);
 
       return new MessageImpl(commandCode, applicationId, flags, hopByHopId, endToEndId, avpSet);
     }
@@ -252,44 +261,37 @@ public class MessageParser extends ElementParser implements IMessageParser {
 
   @Override
   public ByteBuffer encodeMessage(IMessage message) throws ParseException {
-    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteBuffer buffer = ByteBuffer.allocate(getMessageLength(message));
+    encodeMessage(message, buffer);
+    buffer.flip();
+    return buffer;
+  }
+
+  @Override
+  public int getMessageLength(IMessage message) {
+    return 20 + getAvpSetLength(message.getAvps());
+  }
+
+  @Override
+  public void encodeMessage(IMessage message, ByteBuffer buffer) throws ParseException {
     try {
-      byte[] rawData = encodeAvpSet(message.getAvps());
-      DataOutputStream data = new DataOutputStream(out);
-      // Wasting processor time, are we ?
-      // int tmp = (1 << 24) & 0xFF000000;
-      int tmp = (1 << 24);
-      tmp += 20 + rawData.length;
-      data.writeInt(tmp);
-      // Again, unneeded operation ?
-      // tmp = (message.getFlags() << 24) & 0xFF000000;
-      tmp = (message.getFlags() << 24);
-      tmp += message.getCommandCode();
-      data.writeInt(tmp);
-      data.write(toBytes(message.getHeaderApplicationId()));
-      data.write(toBytes(message.getHopByHopIdentifier()));
-      data.write(toBytes(message.getEndToEndIdentifier()));
-      data.write(rawData);
+      int start = buffer.position();
+      // version and length, length is filled in once AVPs are written
+      buffer.putInt(0);
+      buffer.putInt((message.getFlags() << 24) | message.getCommandCode());
+      buffer.putInt((int) message.getHeaderApplicationId());
+      buffer.putInt((int) message.getHopByHopIdentifier());
+      buffer.putInt((int) message.getEndToEndIdentifier());
+      encodeAvpSet(message.getAvps(), buffer);
+      buffer.putInt(start, (1 << 24) | (buffer.position() - start));
+    }
+    catch (BufferOverflowException e) {
+      // AVPs added since buffer was sized
+      throw new ParseException("Not enough space in buffer to encode message.", e);
     }
     catch (Exception e) {
-      //logger.debug("Error during encode message", e);
       throw new ParseException("Failed to encode message.", e);
     }
-    try {
-      return prepareBuffer(out.toByteArray(), out.size());
-    }
-    catch (AvpDataException ade) {
-      throw new ParseException(ade);
-    }
-  }
-
-  private byte[] toBytes(long value) {
-    byte[] data = new byte[4];
-    data[0] = (byte) ((value >> 24) & 0xFF);
-    data[1] = (byte) ((value >> 16) & 0xFF);
-    data[2] = (byte) ((value >> 8) & 0xFF);
-    data[3] = (byte) ((value) & 0xFF);
-    return data;
   }
 
   @Override
@@ -0,0 +1,306 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.router;
+
+/**
+ * Routing information of requests received from other peers, needed to route their answers back.
+ * Entries are keyed by (hop-by-hop id, end-to-end id, Session-Id hash) and spread by key over independently locked
+ * stripes. Each stripe keeps its entries in a ring of preallocated arrays in insertion order, so memory does not depend
+ * on traffic, and open addressing index of ring positions gives lookup by key. When the ring is full the oldest entry
+ * of the stripe is evicted, entries older than maximum age are evicted incrementally, a few on each insertion, so there
+ * is no pause to clean up the table.
+ */
+public class AnswerRouteTable {
+
+  // upper bound of expired entries evicted by single insertion
+  private static final int EXPIRE_BATCH_SIZE = 4;
+  private static final int MAX_STRIPES = 16;
+  // small tables are not striped, so their eviction order stays exact
+  private static final int MIN_STRIPE_SIZE = 256;
+
+  private final Stripe[] stripes;
+  private final int stripeMask;
+  private final int capacity;
+
+  /**
+   * @param capacity maximum number of entries, rounded up to power of two
+   * @param maxAge age in milliseconds after which entry is evicted, 0 or less disables age based eviction
+   */
+  public AnswerRouteTable(int capacity, long maxAge) {
+    int ringSize = 1;
+    while (ringSize < capacity) {
+      ringSize <<= 1;
+    }
+    int stripeCount = 1;
+    while (stripeCount < MAX_STRIPES && ringSize / (stripeCount * 2) >= MIN_STRIPE_SIZE) {
+      stripeCount <<= 1;
+    }
+    this.capacity = ringSize;
+    this.stripeMask = stripeCount - 1;
+    this.stripes = new Stripe[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe(ringSize / stripeCount, maxAge);
+    }
+  }
+
+  /**
+   * Stores routing information of request, replacing entry with the same key
+   */
+  public void put(long hopByHopId, long endToEndId, String sessionId, String host, String realm) {
+    int sessionIdHash = hash(sessionId);
+    long h = mix(hopByHopId, endToEndId, sessionIdHash);
+    stripe(h).put(h, hopByHopId, endToEndId, sessionIdHash, new String[] {host, realm});
+  }
+
+  /**
+   * @return host and realm of request with given key or null if there is no such entry, array is stored in the table
+   *         and must not be modified
+   */
+  public String[] get(long hopByHopId, long endToEndId, String sessionId) {
+    int sessionIdHash = hash(sessionId);
+    long h = mix(hopByHopId, endToEndId, sessionIdHash);
+    return stripe(h).get(h, hopByHopId, endToEndId, sessionIdHash);
+  }
+
+  /**
+   * Removes entry with given key, if present
+   */
+  public void remove(long hopByHopId, long endToEndId, String sessionId) {
+    int sessionIdHash = hash(sessionId);
+    long h = mix(hopByHopId, endToEndId, sessionIdHash);
+    stripe(h).remove(h, hopByHopId, endToEndId, sessionIdHash);
+  }
+
+  public void clear() {
+    for (Stripe stripe : stripes) {
+      stripe.clear();
+    }
+  }
+
+  /**
+   * @return number of entries in the table
+   */
+  public int size() {
+    int size = 0;
+    for (Stripe stripe : stripes) {
+      size += stripe.size;
+    }
+    return size;
+  }
+
+  /**
+   * @return number of entries evicted before answer was routed, because of table size or age
+   */
+  public long getEvictions() {
+    long evictions = 0;
+    for (Stripe stripe : stripes) {
+      evictions += stripe.evictions;
+    }
+    return evictions;
+  }
+
+  /**
+   * @return maximum number of entries
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Evicts entries older than maximum age, starting with the oldest
+   *
+   * @param now current time in milliseconds
+   * @param limit maximum number of entries to evict from each stripe
+   */
+  void expire(long now, int limit) {
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        stripe.expire(now, limit);
+      }
+    }
+  }
+
+  private Stripe stripe(long h) {
+    // index position is taken from low bits
+    return stripes[(int) (h >>> 59) & stripeMask];
+  }
+
+  private static long mix(long hopByHopId, long endToEndId, int sessionIdHash) {
+    long h = (hopByHopId * 0x9E3779B97F4A7C15L) ^ (endToEndId * 0xC2B2AE3D27D4EB4FL) ^ sessionIdHash;
+    return h ^ (h >>> 32);
+  }
+
+  private static int hash(String sessionId) {
+    return sessionId != null ? sessionId.hashCode() : 0;
+  }
+
+  private static final class Stripe {
+
+    private final int mask;
+    private final long maxAge;
+
+    // ring of entries in insertion order, positions from tail (inclusive) to head (exclusive) are in use
+    private final long[] hopByHopIds;
+    private final long[] endToEndIds;
+    private final int[] sessionIdHashes;
+    private final long[] createTimes;
+    // host and realm
+    private final String[][] routes;
+    private long head;
+    private long tail;
+
+    // ring position + 1 of entries, 0 marks free slot
+    private final int[] index;
+    private final int indexMask;
+
+    // written under lock, read without it for statistics
+    private volatile int size;
+    private volatile long evictions;
+
+    Stripe(int ringSize, long maxAge) {
+      this.mask = ringSize - 1;
+      this.maxAge = maxAge;
+      this.hopByHopIds = new long[ringSize];
+      this.endToEndIds = new long[ringSize];
+      this.sessionIdHashes = new int[ringSize];
+      this.createTimes = new long[ringSize];
+      this.routes = new String[ringSize][];
+      // keep index at most half full
+      this.index = new int[ringSize * 2];
+      this.indexMask = index.length - 1;
+    }
+
+    synchronized void put(long h, long hopByHopId, long endToEndId, int sessionIdHash, String[] route) {
+      long now = System.currentTimeMillis();
+      expire(now, EXPIRE_BATCH_SIZE);
+      int pos = find(h, hopByHopId, endToEndId, sessionIdHash);
+      if (pos >= 0) {
+        removeAt(pos);
+        advanceTail();
+      }
+      if (head - tail > mask) {
+        // ring is full, give up the oldest entry
+        int slot = (int) (tail & mask);
+        if (routes[slot] != null) {
+          removeAt(findSlot(slot));
+          evictions++;
+        }
+        advanceTail();
+      }
+      int slot = (int) (head++ & mask);
+      hopByHopIds[slot] = hopByHopId;
+      endToEndIds[slot] = endToEndId;
+      sessionIdHashes[slot] = sessionIdHash;
+      createTimes[slot] = now;
+      routes[slot] = route;
+      pos = (int) h & indexMask;
+      while (index[pos] != 0) {
+        pos = (pos + 1) & indexMask;
+      }
+      index[pos] = slot + 1;
+      size++;
+    }
+
+    synchronized String[] get(long h, long hopByHopId, long endToEndId, int sessionIdHash) {
+      int pos = find(h, hopByHopId, endToEndId, sessionIdHash);
+      return pos >= 0 ? routes[index[pos] - 1] : null;
+    }
+
+    synchronized void remove(long h, long hopByHopId, long endToEndId, int sessionIdHash) {
+      int pos = find(h, hopByHopId, endToEndId, sessionIdHash);
+      if (pos >= 0) {
+        removeAt(pos);
+        advanceTail();
+      }
+    }
+
+    synchronized void clear() {
+      for (int i = 0; i < index.length; i++) {
+        index[i] = 0;
+      }
+      for (int i = 0; i <= mask; i++) {
+        routes[i] = null;
+      }
+      head = 0;
+      tail = 0;
+      size = 0;
+    }
+
+    void expire(long now, int limit) {
+      if (maxAge <= 0) {
+        return;
+      }
+      for (int i = 0; i < limit && tail != head; i++) {
+        int slot = (int) (tail & mask);
+        if (now - createTimes[slot] < maxAge) {
+          break;
+        }
+        removeAt(findSlot(slot));
+        evictions++;
+        advanceTail();
+      }
+    }
+
+    private void advanceTail() {
+      while (tail != head && routes[(int) (tail & mask)] == null) {
+        tail++;
+      }
+    }
+
+    private int find(long h, long hopByHopId, long endToEndId, int sessionIdHash) {
+      int pos = (int) h & indexMask;
+      while (index[pos] != 0) {
+        int slot = index[pos] - 1;
+        if (hopByHopIds[slot] == hopByHopId && endToEndIds[slot] == endToEndId && sessionIdHashes[slot] == sessionIdHash) {
+          return pos;
+        }
+        pos = (pos + 1) & indexMask;
+      }
+      return -1;
+    }
+
+    private int findSlot(int slot) {
+      return find(mix(hopByHopIds[slot], endToEndIds[slot], sessionIdHashes[slot]), hopByHopIds[slot], endToEndIds[slot], sessionIdHashes[slot]);
+    }
+
+    /**
+     * Frees index position and its ring slot, following index entries are shifted back so no tombstones are needed.
+     */
+    private void removeAt(int pos) {
+      int slot = index[pos] - 1;
+      routes[slot] = null;
+      size--;
+      int hole = pos;
+      int next = (hole + 1) & indexMask;
+      while (index[next] != 0) {
+        int nextSlot = index[next] - 1;
+        int home = (int) mix(hopByHopIds[nextSlot], endToEndIds[nextSlot], sessionIdHashes[nextSlot]) & indexMask;
+        // move entry back to the hole unless its home position lies cyclically between the hole and it
+        boolean between = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+        if (!between) {
+          index[hole] = index[next];
+          hole = next;
+        }
+        next = (next + 1) & indexMask;
+      }
+      index[hole] = 0;
+    }
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.router;
+
+import org.jdiameter.api.Configuration;
+import org.jdiameter.api.MetaData;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.controller.IPeer;
+import org.jdiameter.client.api.controller.IRealmTable;
+import org.jdiameter.common.api.concurrent.IConcurrentFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Session affine router implementation<br/><br/>
+ *
+ * Session-Id of request is mapped onto a consistent hash ring of available peers, so all requests of a session
+ * go to the same peer as long as it is available. Each peer is placed on the ring at a number of points
+ * proportional to its rating. When a peer leaves, only sessions mapped to it move to other peers, and
+ * when it comes back, only those sessions return.
+ *
+ * Load is bounded: a peer whose number of requests waiting for answer reached its share of all pending requests
+ * times {@link #loadFactor}, rounded up, is passed over and the session goes to the next peer on the ring, until
+ * the peer drains. The bound is never below 1 + 1 / (loadFactor - 1) requests, so ordinary jitter of pending
+ * counts does not move sessions away from their peer, only a peer which really falls behind loses them.
+ *
+ * Requests without Session-Id are routed by rating, as in {@link RouterImpl}.
+ *
+ * In the configuration, please use the following settings:
+ *
+ * <pre>
+ *   ...
+ *   <Extensions>
+ *   <RouterEngine value="org.jdiameter.client.impl.router.ConsistentHashRouter" />
+ *   </Extensions>
+ * </pre>
+ */
+public class ConsistentHashRouter extends RouterImpl {
+
+  private static final Logger logger = LoggerFactory.getLogger(ConsistentHashRouter.class);
+
+  // ring points per rating unit
+  protected static final int POINTS_PER_RATING = 64;
+  // rings of peer lists which are not used anymore are dropped once there are more than that
+  protected static final int MAX_RINGS = 64;
+  // slots of rings looked up by identity of peer list
+  private static final int RECENT_RINGS = 16;
+
+  /**
+   * Maximum ratio of peer's pending requests to its fair share before sessions are passed to next peer, above 1
+   */
+  protected double loadFactor = 1.25;
+
+  protected ConcurrentHashMap<List<IPeer>, Ring> rings = new ConcurrentHashMap<List<IPeer>, Ring>();
+  // candidate lists are shared by calls until peers of realm change, so lookup by identity usually hits
+  // and the whole list is hashed only when candidates change
+  private final AtomicReferenceArray<Ring> recentRings = new AtomicReferenceArray<Ring>(RECENT_RINGS);
+
+  protected ConsistentHashRouter(IRealmTable table, Configuration config) {
+    super(null, null, table, config, null);
+  }
+
+  public ConsistentHashRouter(IContainer container, IConcurrentFactory concurrentFactory,
+                              IRealmTable realmTable, Configuration config, MetaData aMetaData) {
+    super(container, concurrentFactory, realmTable, config, aMetaData);
+  }
+
+  @Override
+  protected IPeer selectPeer(IMessage message, List<IPeer> availablePeers) {
+    String sessionId = message != null ? message.getSessionId() : null;
+    if (sessionId == null) {
+      return selectPeer(availablePeers);
+    }
+    return selectPeer(sessionId, availablePeers);
+  }
+
+  /**
+   * Return peer for session
+   *
+   * @param sessionId session identifier
+   * @param availablePeers read only list of peers that are in OKAY state
+   * @return the selected peer according to algorithm
+   */
+  public IPeer selectPeer(String sessionId, List<IPeer> availablePeers) {
+    int peerSize = availablePeers != null ? availablePeers.size() : 0;
+    if (peerSize <= 0) {
+      return null;
+    }
+    if (peerSize == 1) {
+      return availablePeers.get(0);
+    }
+
+    Ring ring = getRing(availablePeers);
+
+    // bounded load, peer may take its rating share of all pending requests times load factor, with slack
+    long totalPending = 0;
+    long totalRating = 0;
+    for (IPeer peer : ring.peers) {
+      totalPending += peer.getPendingRequestCount();
+      totalRating += Math.max(peer.getRating(), 1);
+    }
+    double minCapacity = loadFactor > 1 ? Math.ceil(1 + 1 / (loadFactor - 1)) : 1;
+
+    int start = ring.find(hash(sessionId));
+    IPeer first = ring.owners[start];
+    for (int i = 0; i < ring.points.length; i++) {
+      IPeer candidate = ring.owners[(start + i) % ring.points.length];
+      double capacity = Math.max(Math.ceil(loadFactor * (totalPending + 1) * Math.max(candidate.getRating(), 1) / totalRating), minCapacity);
+      if (candidate.getPendingRequestCount() < capacity) {
+        if (candidate != first && logger.isDebugEnabled()) {
+          logger.debug("Peer {} is overloaded, session {} goes to {}", new Object[] {first, sessionId, candidate});
+        }
+        return candidate;
+      }
+    }
+    // can not happen as long as load factor is at least 1
+    return first;
+  }
+
+  private Ring getRing(List<IPeer> availablePeers) {
+    int slot = System.identityHashCode(availablePeers) & (RECENT_RINGS - 1);
+    Ring ring = recentRings.get(slot);
+    if (ring != null && ring.source == availablePeers) {
+      return ring;
+    }
+    ring = rings.get(availablePeers);
+    if (ring == null) {
+      if (rings.size() >= MAX_RINGS) {
+        rings.clear();
+      }
+      ring = new Ring(availablePeers);
+      // key is a copy, given list may change
+      rings.put(Arrays.asList(ring.peers), ring);
+    }
+    else if (ring.source != availablePeers) {
+      ring = new Ring(ring, availablePeers);
+    }
+    recentRings.set(slot, ring);
+    return ring;
+  }
+
+  /**
+   * 64-bit FNV-1a hash of string with final mixing, so similar session identifiers spread over the whole ring
+   */
+  protected static long hash(String value) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < value.length(); i++) {
+      h ^= value.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * Sorted hash points of peers, immutable. Points depend only on peer URI, so the same peer is always placed
+   * at the same points whatever other peers are available.
+   */
+  protected static class Ring {
+
+    // list the ring was looked up for, only compared by identity
+    final List<IPeer> source;
+    final IPeer[] peers;
+    final long[] points;
+    final IPeer[] owners;
+
+    /**
+     * Shares points of given ring, which was built for list of the same peers
+     */
+    Ring(Ring ring, List<IPeer> source) {
+      this.source = source;
+      this.peers = ring.peers;
+      this.points = ring.points;
+      this.owners = ring.owners;
+    }
+
+    Ring(List<IPeer> availablePeers) {
+      source = availablePeers;
+      peers = availablePeers.toArray(new IPeer[availablePeers.size()]);
+      int size = 0;
+      for (IPeer peer : peers) {
+        size += POINTS_PER_RATING * Math.max(peer.getRating(), 1);
+      }
+      long[] entries = new long[size];
+      IPeer[] entryOwners = new IPeer[size];
+      int i = 0;
+      for (IPeer peer : peers) {
+        String name = String.valueOf(peer.getUri());
+        int count = POINTS_PER_RATING * Math.max(peer.getRating(), 1);
+        for (int n = 0; n < count; n++) {
+          entries[i] = hash(name + '#' + n);
+          entryOwners[i] = peer;
+          i++;
+        }
+      }
+      // sort points and owners together
+      Integer[] order = new Integer[size];
+      for (i = 0; i < size; i++) {
+        order[i] = i;
+      }
+      final long[] keys = entries;
+      Arrays.sort(order, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer a, Integer b) {
+          long x = keys[a];
+          long y = keys[b];
+          return x < y ? -1 : (x == y ? 0 : 1);
+        }
+      });
+      points = new long[size];
+      owners = new IPeer[size];
+      for (i = 0; i < size; i++) {
+        points[i] = entries[order[i]];
+        owners[i] = entryOwners[order[i]];
+      }
+    }
+
+    /**
+     * @return index of first point at or after given hash, wrapping around the ring
+     */
+    int find(long hash) {
+      int index = Arrays.binarySearch(points, hash);
+      if (index < 0) {
+        index = -index - 1;
+      }
+      return index == points.length ? 0 : index;
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.router;
+
+import org.jdiameter.api.Configuration;
+import org.jdiameter.api.MetaData;
+import org.jdiameter.api.PeerState;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.client.api.controller.IPeer;
+import org.jdiameter.client.api.controller.IRealmTable;
+import org.jdiameter.common.api.concurrent.IConcurrentFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Power of two choices router implementation<br/><br/>
+ *
+ * Two distinct peers are picked at random and the one with lower load is selected. Load of a peer is estimated
+ * from its number of requests waiting for answer and moving average of its answer latency, divided by its rating:
+ * <pre>
+ *   load = (pending + 1) * latency / rating
+ * </pre>
+ * Both values are tracked by the peer itself (see {@link IPeer#getPendingRequestCount()} and
+ * {@link IPeer#getAnswerLatency()}), so this router does not depend on statistics and takes no locks.
+ * Peers which become slow to answer accumulate pending requests and receive less traffic, while random choice
+ * avoids sending all requests to the same peer between load updates.
+ *
+ * In the configuration, please use the following settings:
+ *
+ * <pre>
+ *   ...
+ *   <Extensions>
+ *   <RouterEngine value="org.jdiameter.client.impl.router.PowerOfTwoChoicesRouter" />
+ *   </Extensions>
+ * </pre>
+ */
+public class PowerOfTwoChoicesRouter extends RouterImpl {
+
+  private static final Logger logger = LoggerFactory.getLogger(PowerOfTwoChoicesRouter.class);
+
+  // Random is thread safe but all threads would update its single seed with CAS, so each thread has its own
+  private final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+    @Override
+    protected Random initialValue() {
+      return new Random();
+    }
+  };
+
+  protected PowerOfTwoChoicesRouter(IRealmTable table, Configuration config) {
+    super(null, null, table, config, null);
+  }
+
+  public PowerOfTwoChoicesRouter(IContainer container, IConcurrentFactory concurrentFactory,
+                                 IRealmTable realmTable, Configuration config, MetaData aMetaData) {
+    super(container, concurrentFactory, realmTable, config, aMetaData);
+  }
+
+  /**
+   * Return less loaded of two randomly chosen peers
+   *
+   * @param availablePeers read only list of peers that are in {@link PeerState#OKAY OKAY} state
+   * @return the selected peer according to algorithm
+   */
+  @Override
+  public IPeer selectPeer(List<IPeer> availablePeers) {
+    int peerSize = availablePeers != null ? availablePeers.size() : 0;
+
+    // Return none if empty, or first if only one member found
+    if (peerSize <= 0) {
+      return null;
+    }
+    if (peerSize == 1) {
+      return availablePeers.get(0);
+    }
+
+    Random generator = random.get();
+    int first = generator.nextInt(peerSize);
+    int second = generator.nextInt(peerSize - 1);
+    if (second >= first) {
+      second++;
+    }
+    IPeer peerA = availablePeers.get(first);
+    IPeer peerB = availablePeers.get(second);
+
+    long latencyA = peerA.getAnswerLatency();
+    long latencyB = peerB.getAnswerLatency();
+    // peer without answers yet is assumed to be as fast as the other one
+    if (latencyA == 0) {
+      latencyA = latencyB;
+    }
+    else if (latencyB == 0) {
+      latencyB = latencyA;
+    }
+    latencyA = Math.max(latencyA, 1);
+    latencyB = Math.max(latencyB, 1);
+
+    // loadA / ratingA > loadB / ratingB, without division
+    long loadA = (peerA.getPendingRequestCount() + 1L) * latencyA;
+    long loadB = (peerB.getPendingRequestCount() + 1L) * latencyB;
+    IPeer selected = loadA * Math.max(peerB.getRating(), 1) > loadB * Math.max(peerA.getRating(), 1) ? peerB : peerA;
+
+    if (logger.isTraceEnabled()) {
+      logger.trace("Selected {} from {} (load {}) and {} (load {})", new Object[] {selected, peerA, loadA, peerB, loadB});
+    }
+    return selected;
+  }
+}
@@ -0,0 +1,286 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.router;
+
+import static org.jdiameter.client.impl.router.RouterImpl.ALL_APPLICATION;
+import static org.jdiameter.client.impl.router.RouterImpl.ALL_HOST;
+import static org.jdiameter.client.impl.router.RouterImpl.ALL_REALM;
+import static org.jdiameter.client.impl.router.RouterImpl.ALL_SESSION;
+import static org.jdiameter.client.impl.router.RouterImpl.ALL_USER;
+import static org.jdiameter.client.impl.router.RouterImpl.REALM_AND_APPLICATION;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdiameter.api.ApplicationId;
+
+/**
+ * Cached routes of Redirect-Host answers. There is one concurrent map for each Redirect-Host-Usage, keyed by
+ * the value that usage refers to (Session-Id, Destination-Realm, Destination-Realm and Application-Id,
+ * Application-Id, Destination-Host or User-Name), so a lookup costs at most one map access per usage.
+ *
+ * Entries expire after Redirect-Max-Cache-Time, expired entries are dropped when they are looked up and when
+ * they reach the head of the insertion queue. Number of entries is capped, the oldest entry is evicted to make
+ * room for a new one.
+ */
+public class RedirectCache {
+
+  // usages in order of precedence, most specific first
+  private static final int[] LOOKUP_ORDER = {ALL_SESSION, ALL_USER, REALM_AND_APPLICATION, ALL_REALM, ALL_APPLICATION, ALL_HOST};
+
+  private final int maxSize;
+  // indexed by usage, DONT_CACHE has no table
+  private final List<ConcurrentHashMap<Object, Entry>> tables = new ArrayList<ConcurrentHashMap<Object, Entry>>(ALL_USER + 1);
+  // entries in insertion order, may contain removed entries
+  private final Queue<Entry> queue = new ConcurrentLinkedQueue<Entry>();
+  private final AtomicInteger queued = new AtomicInteger(0);
+  private final AtomicInteger size = new AtomicInteger(0);
+
+  private final AtomicLong hits = new AtomicLong(0);
+  private final AtomicLong misses = new AtomicLong(0);
+
+  public RedirectCache(int maxSize) {
+    this.maxSize = maxSize;
+    tables.add(null);
+    for (int usage = 1; usage <= ALL_USER; usage++) {
+      tables.add(new ConcurrentHashMap<Object, Entry>());
+    }
+  }
+
+  /**
+   * Stores redirect route, replacing the previous one with the same usage and key
+   *
+   * @param usage Redirect-Host-Usage
+   * @param primaryKey Session-Id, realm, host or user name, depending on usage
+   * @param secondaryKey application id, depending on usage
+   * @param cacheTime Redirect-Max-Cache-Time in seconds
+   * @param hosts redirect hosts
+   * @return false if route can not be cached, also when cache time is not positive
+   */
+  public boolean put(int usage, String primaryKey, ApplicationId secondaryKey, long cacheTime, String[] hosts) {
+    Object key = key(usage, primaryKey, secondaryKey);
+    if (key == null || cacheTime <= 0 || hosts == null || hosts.length == 0) {
+      return false;
+    }
+    long now = System.currentTimeMillis();
+    Entry entry = new Entry(usage, key, hosts, now + cacheTime * 1000);
+    Entry previous = tables.get(usage).put(key, entry);
+    if (previous == null || !previous.markRemoved()) {
+      size.incrementAndGet();
+    }
+    queue.add(entry);
+    queued.incrementAndGet();
+    evict(now);
+    return true;
+  }
+
+  /**
+   * Finds cached redirect host for request
+   *
+   * @return redirect host or null if there is no cached route for request
+   */
+  public String get(String sessionId, String userName, String destRealm, ApplicationId appId, String destHost) {
+    if (size.get() == 0) {
+      return null;
+    }
+    long now = System.currentTimeMillis();
+    for (int usage : LOOKUP_ORDER) {
+      Object key;
+      switch (usage) {
+        case ALL_SESSION:
+          key = sessionId;
+          break;
+        case ALL_USER:
+          key = userName;
+          break;
+        case REALM_AND_APPLICATION:
+          key = destRealm != null && appId != null ? new RealmApplicationKey(destRealm, appId) : null;
+          break;
+        case ALL_REALM:
+          key = destRealm;
+          break;
+        case ALL_APPLICATION:
+          key = appId;
+          break;
+        default:
+          key = destHost;
+          break;
+      }
+      if (key == null) {
+        continue;
+      }
+      ConcurrentHashMap<Object, Entry> table = tables.get(usage);
+      Entry entry = table.get(key);
+      if (entry == null) {
+        continue;
+      }
+      if (entry.expirationTime <= now) {
+        remove(table, entry);
+        continue;
+      }
+      hits.incrementAndGet();
+      return entry.getRedirectHost();
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  public void clear() {
+    for (int usage : LOOKUP_ORDER) {
+      ConcurrentHashMap<Object, Entry> table = tables.get(usage);
+      for (Entry entry : table.values()) {
+        remove(table, entry);
+      }
+    }
+    queue.clear();
+    queued.set(0);
+  }
+
+  /**
+   * @return number of cached routes
+   */
+  public int size() {
+    return size.get();
+  }
+
+  /**
+   * @return number of lookups which found a route, lookups done while cache is empty are not counted
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * @return number of lookups which found no route, lookups done while cache is empty are not counted
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  private void evict(long now) {
+    // drop removed and expired entries from the head, then oldest ones while over the cap
+    Entry head;
+    while ((head = queue.peek()) != null && (head.isRemoved() || head.expirationTime <= now || size.get() > maxSize)) {
+      if (queue.remove(head)) {
+        queued.decrementAndGet();
+        remove(tables.get(head.usage), head);
+      }
+    }
+    // removed entries behind a long living one are purged once they take as much space as live ones
+    if (queued.get() > 2 * Math.max(maxSize, size.get())) {
+      Iterator<Entry> iterator = queue.iterator();
+      while (iterator.hasNext()) {
+        Entry entry = iterator.next();
+        if (entry.isRemoved()) {
+          iterator.remove();
+          queued.decrementAndGet();
+        }
+      }
+    }
+  }
+
+  private void remove(ConcurrentHashMap<Object, Entry> table, Entry entry) {
+    table.remove(entry.key, entry);
+    if (entry.markRemoved()) {
+      size.decrementAndGet();
+    }
+  }
+
+  private static Object key(int usage, String primaryKey, ApplicationId secondaryKey) {
+    switch (usage) {
+      case ALL_SESSION:
+      case ALL_REALM:
+      case ALL_HOST:
+      case ALL_USER:
+        return primaryKey;
+      case REALM_AND_APPLICATION:
+        return primaryKey != null && secondaryKey != null ? new RealmApplicationKey(primaryKey, secondaryKey) : null;
+      case ALL_APPLICATION:
+        return secondaryKey;
+      default:
+        return null;
+    }
+  }
+
+  private static final class Entry {
+
+    final int usage;
+    final Object key;
+    final String[] hosts;
+    final long expirationTime;
+    private final AtomicInteger removed = new AtomicInteger(0);
+
+    Entry(int usage, Object key, String[] hosts, long expirationTime) {
+      this.usage = usage;
+      this.key = key;
+      this.hosts = hosts;
+      this.expirationTime = expirationTime;
+    }
+
+    String getRedirectHost() {
+      return hosts[hosts.length - 1];
+    }
+
+    /**
+     * @return true if entry was live until now
+     */
+    boolean markRemoved() {
+      return removed.compareAndSet(0, 1);
+    }
+
+    boolean isRemoved() {
+      return removed.get() != 0;
+    }
+  }
+
+  private static final class RealmApplicationKey {
+
+    private final String realm;
+    private final ApplicationId applicationId;
+
+    RealmApplicationKey(String realm, ApplicationId applicationId) {
+      this.realm = realm;
+      this.applicationId = applicationId;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * realm.hashCode() + applicationId.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (other == this) {
+        return true;
+      }
+      if (other instanceof RealmApplicationKey) {
+        RealmApplicationKey that = (RealmApplicationKey) other;
+        return realm.equals(that.realm) && applicationId.equals(that.applicationId);
+      }
+      return false;
+    }
+  }
+}
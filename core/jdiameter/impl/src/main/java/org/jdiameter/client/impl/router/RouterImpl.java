@@ -49,6 +49,7 @@ import static org.jdiameter.client.impl.helpers.Parameters.AuthApplId;
 import static org.jdiameter.client.impl.helpers.Parameters.OwnRealm;
 import static org.jdiameter.client.impl.helpers.Parameters.RealmEntry;
 import static org.jdiameter.client.impl.helpers.Parameters.RealmTable;
+import static org.jdiameter.client.impl.helpers.Parameters.RedirectTableSize;
 import static org.jdiameter.client.impl.helpers.Parameters.VendorId;
 import static org.jdiameter.server.impl.helpers.Parameters.RealmEntryExpTime;
 import static org.jdiameter.server.impl.helpers.Parameters.RealmEntryIsDynamic;
@@ -56,7 +57,7 @@ import static org.jdiameter.server.impl.helpers.Parameters.RealmHosts;
 import static org.jdiameter.server.impl.helpers.Parameters.RealmLocalAction;
 import static org.jdiameter.server.impl.helpers.Parameters.RealmName;
 import static org.jdiameter.server.impl.helpers.Parameters.RequestTable;
-import static org.jdiameter.server.impl.helpers.Parameters.RequestTableClearSize;
+import static org.jdiameter.server.impl.helpers.Parameters.RequestTableMaxAge;
 import static org.jdiameter.server.impl.helpers.Parameters.RequestTableSize;
 
 import java.io.IOException;
@@ -64,14 +65,11 @@ import java.net.URISyntaxException;
 import java.net.UnknownServiceException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-//PCB added for thread safe
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jdiameter.api.ApplicationId;
 import org.jdiameter.api.Avp;
@@ -81,9 +79,10 @@ import org.jdiameter.api.Configuration;
 import org.jdiameter.api.IllegalDiameterStateException;
 import org.jdiameter.api.InternalException;
 import org.jdiameter.api.LocalAction;
-import org.jdiameter.api.Message;
 import org.jdiameter.api.MetaData;
+import org.jdiameter.api.OverloadException;
 import org.jdiameter.api.PeerState;
+import org.jdiameter.api.PeerStateListener;
 import org.jdiameter.api.RouteException;
 import org.jdiameter.api.URI;
 import org.jdiameter.client.api.IAnswer;
@@ -99,6 +98,9 @@ import org.jdiameter.client.impl.helpers.AppConfiguration;
 import org.jdiameter.client.impl.helpers.Parameters;
 import org.jdiameter.client.impl.parser.MessageImpl;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
+import org.jdiameter.common.api.statistic.IStatistic;
+import org.jdiameter.common.api.statistic.IStatisticManager;
+import org.jdiameter.common.api.statistic.IStatisticRecord;
 import org.jdiameter.server.api.agent.IAgentConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -125,21 +127,25 @@ public class RouterImpl implements IRouter {
   //private ConcurrentHashMap<String, String[]> network = new ConcurrentHashMap<String, String[]>();
   protected IRealmTable realmTable;
   // Redirection feature
-  public final int REDIRECT_TABLE_SIZE = 1024;
-  //TODO: index it differently.
-  protected List<RedirectEntry> redirectTable = new ArrayList<RedirectEntry>(REDIRECT_TABLE_SIZE);
+  public int REDIRECT_TABLE_SIZE = (Integer) RedirectTableSize.defValue();
+  protected RedirectCache redirectCache;
   protected IConcurrentFactory concurrentFactory;
 
   protected IContainer container;
 
   // Answer routing feature
   public static int REQUEST_TABLE_SIZE = 10 * 1024;
-  public static int REQUEST_TABLE_CLEAR_SIZE = 2 * 1024;
+  public static long REQUEST_TABLE_MAX_AGE = 60 * 1000;
 
-  protected Lock requestEntryTableLock = new ReentrantLock();
-  protected ReadWriteLock redirectTableLock = new ReentrantReadWriteLock();
-  //PCB added
-  protected Map<String, AnswerEntry> requestEntryMap;
+  protected AnswerRouteTable requestEntryTable;
+  protected IStatisticManager statisticFactory;
+  protected IStatistic statistic;
+
+  // Routing candidates of realms, rebuilt when state of some of their peers or peer names of realm change
+  protected ConcurrentHashMap<IRealm, CandidateSet> candidateCache = new ConcurrentHashMap<IRealm, CandidateSet>();
+  protected ConcurrentHashMap<IPeer, PeerStateListener> observedPeers = new ConcurrentHashMap<IPeer, PeerStateListener>();
+  // incremented on every peer state change, candidates built meanwhile are not cached
+  protected AtomicInteger peerStateVersion = new AtomicInteger(0);
   //protected List<Long> requestSortedEntryTable = new ArrayList<Long>();
   protected boolean isStopped = true;
 
@@ -166,22 +172,19 @@ public class RouterImpl implements IRouter {
     catch (URISyntaxException use) {
       throw new RuntimeException("Unable to create URI from Own URI config value:" + localHost, use);
     }
+    REDIRECT_TABLE_SIZE = config.getIntValue(RedirectTableSize.ordinal(), (Integer) RedirectTableSize.defValue());
+    this.redirectCache = new RedirectCache(REDIRECT_TABLE_SIZE);
+    logger.debug("Configured Redirect Table with size[{}].", REDIRECT_TABLE_SIZE);
+
     if (config.getChildren(RequestTable.ordinal()) != null) {
       AppConfiguration requestTableConfig = (AppConfiguration) config.getChildren(org.jdiameter.server.impl.helpers.Parameters.RequestTable.ordinal())[0];
-      int tSize = requestTableConfig.getIntValue(RequestTableSize.ordinal(),(Integer) RequestTableSize.defValue());
-      int tClearSize = requestTableConfig.getIntValue(RequestTableClearSize.ordinal(),(Integer) RequestTableClearSize.defValue());
-      if (tSize > 0 && tClearSize >= tSize) {
-        logger.warn("Configuration entry RequestTable, attribute 'clear_size' [{}] should not be greater than 'size' [{}]. Adjusting.", tSize, tClearSize);
-        while (tClearSize >= tSize) {
-          tSize *= 10;
-        }
-      }
-      REQUEST_TABLE_SIZE = tSize;
-      REQUEST_TABLE_CLEAR_SIZE = tClearSize;
+      REQUEST_TABLE_SIZE = requestTableConfig.getIntValue(RequestTableSize.ordinal(), (Integer) RequestTableSize.defValue());
+      REQUEST_TABLE_MAX_AGE = requestTableConfig.getLongValue(RequestTableMaxAge.ordinal(), (Long) RequestTableMaxAge.defValue());
+    }
+    if (REQUEST_TABLE_SIZE > 0) {
+      this.requestEntryTable = new AnswerRouteTable(REQUEST_TABLE_SIZE, REQUEST_TABLE_MAX_AGE);
     }
-    //PCB added thread safety
-    this.requestEntryMap = new ConcurrentHashMap<String, AnswerEntry>(REQUEST_TABLE_SIZE);
-    logger.debug("Configured Request Table with size[{}] and clear size[{}].", REQUEST_TABLE_SIZE, REQUEST_TABLE_CLEAR_SIZE);
+    logger.debug("Configured Request Table with size[{}] and max age[{}].", REQUEST_TABLE_SIZE, REQUEST_TABLE_MAX_AGE);
 
     //add realms based on realm table.
     if (config.getChildren(RealmTable.ordinal()) != null) {
@@ -247,103 +250,55 @@ public class RouterImpl implements IRouter {
   @Override
   public void registerRequestRouteInfo(IRequest request) {
     logger.debug("Entering registerRequestRouteInfo");
-    if (REQUEST_TABLE_SIZE == 0) {
+    if (REQUEST_TABLE_SIZE <= 0) {
       return; // we don't have anything to do as we are storing routing info at answer message
     }
 
     try {
-      // PCB removed lock
-      // requestEntryTableLock.writeLock().lock();
-      long hopByHopId = request.getHopByHopIdentifier();
       Avp hostAvp = request.getAvps().getAvp(Avp.ORIGIN_HOST);
       Avp realmAvp = request.getAvps().getAvp(Avp.ORIGIN_REALM);
-      AnswerEntry entry = new AnswerEntry(hopByHopId, hostAvp != null ? hostAvp.getDiameterIdentity() : null,
-          realmAvp != null ? realmAvp.getDiameterIdentity() : null);
-
-      int s = requestEntryMap.size();
-      // PCB added logging
-      logger.debug("RequestRoute map size is [{}]", s);
-
-      //PCB added
-      if (s > REQUEST_TABLE_CLEAR_SIZE) {
-        try {
-          requestEntryTableLock.lock();
-          s = requestEntryMap.size();
-          logger.debug("After 'lock', RequestRoute map size is [{}]", s);
-          // The double-check with a gap is in case while about to clear the map, it drops below REQUEST_TABLE_SIZE due to a
-          // response being sent, and then the lock might not be in effect for another thread
-          // Hence lock at REQUEST_TABLE_CLEAR_SIZE and clear at REQUEST_TABLE_SIZE so that all threads would be locked not
-          // just the first to reach REQUEST_TABLE_SIZE
-          if (s > REQUEST_TABLE_SIZE) {
-            // Going to clear it out and suffer the consequences of some messages possibly not being routed back the clients..
-            logger.warn("RequestRoute map size is [{}]. There's probably a leak. Cleaning up after a short wait...", s);
-            // Lets do our best to avoid lost messages by locking table from writes (as this is the only code writing to it),
-            // sleeping for a while for responses to be sent and then clearing it
-            Thread.sleep(5000);
-            logger.warn("RequestRoute map size is now [{}] after sleeping. Clearing it!", requestEntryMap.size());
-            requestEntryMap.clear();
-          }
-        }
-        catch (Exception e) {
-          logger.warn("Failure trying to clear RequestRoute map", e);
-        }
-        finally {
-          requestEntryTableLock.unlock();
-        }
+      requestEntryTable.put(request.getHopByHopIdentifier(), request.getEndToEndIdentifier(), request.getSessionId(),
+          hostAvp != null ? hostAvp.getDiameterIdentity() : null, realmAvp != null ? realmAvp.getDiameterIdentity() : null);
+      if (logger.isDebugEnabled()) {
+        logger.debug("Added request [{}] to RequestRoute table for routing answers back to the requesting peer. Table size is [{}]",
+            request.getHopByHopIdentifier(), requestEntryTable.size());
       }
-
-      String messageKey = makeRoutingKey(request);
-      logger.debug("Adding request key [{}] to RequestRoute map for routing answers back to the requesting peer", messageKey);
-      requestEntryMap.put(messageKey, entry);
-      // requestSortedEntryTable.add(hopByHopId);
     }
     catch (Exception e) {
       logger.warn("Unable to store route info", e);
     }
-    finally {
-      // requestEntryTableLock.writeLock().unlock();
-    }
-  }
-
-  // PCB - Made better routing algorithm that should not grow all the time
-  private String makeRoutingKey(Message message) {
-    String sessionId = message.getSessionId();
-    return new StringBuilder(sessionId != null ? sessionId : "null").append(message.getEndToEndIdentifier())
-        .append(message.getHopByHopIdentifier()).toString();
   }
 
   @Override
   public String[] getRequestRouteInfo(IMessage message) {
-    if (REQUEST_TABLE_SIZE == 0) {
+    if (REQUEST_TABLE_SIZE <= 0) {
       return ((MessageImpl) message).getRoutingInfo(); // using answer stored routing info
     }
 
     // using request table
-    String messageKey = makeRoutingKey(message);
-    AnswerEntry ans = requestEntryMap.get(messageKey);
-    if (ans != null) {
+    String[] info = requestEntryTable.get(message.getHopByHopIdentifier(), message.getEndToEndIdentifier(), message.getSessionId());
+    if (info != null) {
       if (logger.isDebugEnabled()) {
-        logger.debug("getRequestRouteInfo found host [{}] and realm [{}] for Message key Id [{}]", new Object[]{ans.getHost(), ans.getRealm(), messageKey});
+        logger.debug("getRequestRouteInfo found host [{}] and realm [{}] for Hop-by-Hop Id [{}]",
+            new Object[]{info[0], info[1], message.getHopByHopIdentifier()});
       }
-      return new String[] {ans.getHost(), ans.getRealm()};
     }
     else {
       if (logger.isWarnEnabled()) {
-        logger.warn("Could not find route info for message key [{}]. Table size is [{}]", messageKey, requestEntryMap.size());
+        logger.warn("Could not find route info for Hop-by-Hop Id [{}] and End-to-End Id [{}]. Table size is [{}]",
+            new Object[]{message.getHopByHopIdentifier(), message.getEndToEndIdentifier(), requestEntryTable.size()});
       }
-      return null;
     }
+    return info;
   }
 
-  //PCB added
   @Override
   public void garbageCollectRequestRouteInfo(IMessage message) {
-    if (REQUEST_TABLE_SIZE == 0) {
+    if (REQUEST_TABLE_SIZE <= 0) {
       return; // we don't have anything to do as we are storing routing info at answer message
     }
 
-    String messageKey = makeRoutingKey(message);
-    requestEntryMap.remove(messageKey);
+    requestEntryTable.remove(message.getHopByHopIdentifier(), message.getEndToEndIdentifier(), message.getSessionId());
   }
 
   @Override
@@ -431,43 +386,30 @@ public class RouterImpl implements IRouter {
     else {
       logger.debug("Finding peer by destination host avp [host={}] did not find anything. Now going to try finding one by destination realm [{}]",
           destHost, destRealm);
-      String[] peers = matchedRealm.getPeerNames();
-      if (peers == null || peers.length == 0) {
+      CandidateSet candidates = getCandidates(matchedRealm, manager);
+      if (candidates.peerNames.length == 0) {
         throw new RouteException("Unable to find context by route information [" + destRealm + " ," + destHost + "]");
       }
 
-      // Collect peers
-      ArrayList<IPeer> availablePeers = new ArrayList<IPeer>(5);
-      logger.debug("Looping through peers in realm [{}]", destRealm);
-      for (String peerName : peers) {
-        IPeer localPeer = manager.getPeer(peerName);
-        if (logger.isDebugEnabled()) {
-          logger.debug("Checking peer [{}] for name [{}]", new Object[]{localPeer, peerName});
-        }
-        // ammendonca: added peer state check.. should not be needed but
-        // hasValidConnection is returning true for disconnected peers in *FTFlowTests
-        if (localPeer != null && localPeer.getState(PeerState.class) == PeerState.OKAY) {
-          if (localPeer.hasValidConnection()) {
-            if (logger.isDebugEnabled()) {
-              logger.debug("Found available peer to add to available peer list with uri [{}] with a valid connection", localPeer.getUri().toString());
-            }
-            availablePeers.add(localPeer);
-          }
-          else {
-            if (logger.isDebugEnabled()) {
-              logger.debug("Found a peer with uri [{}] with no valid connection", localPeer.getUri());
-            }
-          }
+      // Candidates are in OKAY state, use them as they are unless some is not connected or not writable
+      List<IPeer> availablePeers = candidates.peerList;
+      for (IPeer candidate : candidates.peers) {
+        if (!candidate.hasValidConnection() || !candidate.isWritable()) {
+          availablePeers = null;
+          break;
         }
       }
+      if (availablePeers == null) {
+        availablePeers = collectAvailablePeers(candidates.peers);
+      }
 
       if (logger.isDebugEnabled()) {
         logger.debug("Performing Realm routing. Realm [{}] has the following peers available [{}] from list [{}]",
-            new Object[] {destRealm, availablePeers, Arrays.asList(peers)});
+            new Object[] {destRealm, availablePeers, Arrays.asList(candidates.peerNames)});
       }
 
       // Balancing
-      IPeer peer = selectPeer(availablePeers);
+      IPeer peer = selectPeer(message, availablePeers);
       if (peer == null) {
         throw new RouteException("Unable to find valid connection to peer[" + destHost + "] in realm[" + destRealm + "]");
       }
@@ -481,6 +423,107 @@ public class RouterImpl implements IRouter {
     }
   }
 
+  /**
+   * Returns peers of realm which are in OKAY state. Result is cached until state of some peer or peer names of the
+   * realm change, so usually this is a single map lookup.
+   */
+  protected CandidateSet getCandidates(IRealm realm, IPeerTable manager) {
+    int stateVersion = peerStateVersion.get();
+    int peerNamesVersion = realm.getPeerNamesVersion();
+    CandidateSet candidates = candidateCache.get(realm);
+    if (candidates != null && candidates.peerNamesVersion == peerNamesVersion) {
+      return candidates;
+    }
+
+    String[] peerNames = realm.getPeerNames();
+    List<IPeer> resolved = new ArrayList<IPeer>(peerNames.length);
+    List<IPeer> peers = new ArrayList<IPeer>(peerNames.length);
+    boolean complete = true;
+    logger.debug("Looping through peers in realm [{}]", realm.getName());
+    for (String peerName : peerNames) {
+      IPeer localPeer = manager.getPeer(peerName);
+      if (logger.isDebugEnabled()) {
+        logger.debug("Checking peer [{}] for name [{}]", new Object[]{localPeer, peerName});
+      }
+      if (localPeer == null) {
+        // peer may be added to peer table later, there is no notification of that
+        complete = false;
+        continue;
+      }
+      resolved.add(localPeer);
+      if (!observedPeers.containsKey(localPeer)) {
+        PeerStateListener listener = new CandidateInvalidator(localPeer);
+        if (observedPeers.putIfAbsent(localPeer, listener) == null) {
+          localPeer.addPeerStateListener(listener);
+        }
+      }
+      // ammendonca: added peer state check.. should not be needed but
+      // hasValidConnection is returning true for disconnected peers in *FTFlowTests
+      if (localPeer.getState(PeerState.class) == PeerState.OKAY) {
+        peers.add(localPeer);
+      }
+    }
+    candidates = new CandidateSet(peerNamesVersion, peerNames, resolved.toArray(new IPeer[resolved.size()]),
+        peers.toArray(new IPeer[peers.size()]));
+    if (complete) {
+      candidateCache.put(realm, candidates);
+      // state changed while candidates were collected, invalidation may have missed them
+      if (peerStateVersion.get() != stateVersion) {
+        candidateCache.remove(realm, candidates);
+      }
+    }
+    return candidates;
+  }
+
+  /**
+   * Drops cached candidates of realms which contain peer whose state changed
+   */
+  protected void invalidateCandidates(IPeer peer) {
+    peerStateVersion.incrementAndGet();
+    for (Map.Entry<IRealm, CandidateSet> entry : candidateCache.entrySet()) {
+      if (entry.getValue().contains(peer)) {
+        candidateCache.remove(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Filters candidates which have valid connection. Peers with outbound buffer above high water mark are used only
+   * if no other peer is available.
+   */
+  protected List<IPeer> collectAvailablePeers(IPeer[] candidates) {
+    ArrayList<IPeer> availablePeers = new ArrayList<IPeer>(candidates.length);
+    ArrayList<IPeer> unwritablePeers = null;
+    for (IPeer localPeer : candidates) {
+      if (localPeer.hasValidConnection()) {
+        if (!localPeer.isWritable()) {
+          if (logger.isDebugEnabled()) {
+            logger.debug("Found a peer with uri [{}] with a valid connection which is not writable", localPeer.getUri());
+          }
+          if (unwritablePeers == null) {
+            unwritablePeers = new ArrayList<IPeer>(2);
+          }
+          unwritablePeers.add(localPeer);
+          continue;
+        }
+        if (logger.isDebugEnabled()) {
+          logger.debug("Found available peer to add to available peer list with uri [{}] with a valid connection", localPeer.getUri().toString());
+        }
+        availablePeers.add(localPeer);
+      }
+      else {
+        if (logger.isDebugEnabled()) {
+          logger.debug("Found a peer with uri [{}] with no valid connection", localPeer.getUri());
+        }
+      }
+    }
+    // read only, the same as list of candidates
+    if (availablePeers.isEmpty() && unwritablePeers != null) {
+      return Collections.unmodifiableList(unwritablePeers);
+    }
+    return Collections.unmodifiableList(availablePeers);
+  }
+
   @Override
   public IRealmTable getRealmTable() {
     return this.realmTable;
@@ -552,23 +595,10 @@ public class RouterImpl implements IRouter {
             primaryKey = userNameAvp.getUTF8String();
             break;
         }
-        //
-        if (redirectTable.size() > REDIRECT_TABLE_SIZE) {
-          try {
-            //yes, possible that this will trigger this procedure twice, but thats worst than locking always.
-            redirectTableLock.writeLock().lock();
-            trimRedirectTable();
-          }
-          finally {
-            redirectTableLock.writeLock().unlock();
-          }
-        }
-        if (REDIRECT_TABLE_SIZE > redirectTable.size()) {
-          RedirectEntry e = new RedirectEntry(primaryKey, secondaryKey, redirectCacheTime, redirectUsage, redirectHosts, destinationRealm);
-          redirectTable.add(e);
-          //redirectProcessing(answer, destRealm.getOctetString(), destHost !=null ? destHost.getOctetString():null);
+        // route with Redirect-Max-Cache-Time of 0 is used for this request only
+        if (redirectCache.put(redirectUsage, primaryKey, secondaryKey, redirectCacheTime, redirectHosts) || redirectCacheTime <= 0) {
           //we dont have to elect?
-          updateRoute(request, e.getRedirectHost());
+          updateRoute(request, redirectHosts[redirectHosts.length - 1]);
         }
         else {
           if (redirectHosts != null && redirectHosts.length > 0) {
@@ -591,6 +621,9 @@ public class RouterImpl implements IRouter {
     catch (AvpDataException exc) {
       throw new InternalException(exc);
     }
+    catch (OverloadException e) {
+      throw new InternalException(e);
+    }
     catch (IllegalDiameterStateException e) {
       throw new InternalException(e);
     }
@@ -599,24 +632,6 @@ public class RouterImpl implements IRouter {
     }
   }
 
-  /**
-   *
-   */
-  private void trimRedirectTable() {
-    for (int index = 0; index < redirectTable.size(); index++) {
-      try {
-        if (redirectTable.get(index).getExpiredTime() <= System.currentTimeMillis()) {
-          redirectTable.remove(index);
-          index--; //a trick :)
-        }
-      }
-      catch (Exception e) {
-        logger.debug("Error in redirect task cleanup.", e);
-        break;
-      }
-    }
-  }
-
   /**
    * @param request
    * @param destHost
@@ -640,7 +655,6 @@ public class RouterImpl implements IRouter {
     String destRealm = destRealmAvp.getDiameterIdentity();
     String destHost = destHostAvp != null ? destHostAvp.getDiameterIdentity() : null;
 
-    boolean matchedEntry = false;
     String userName = null;
     // get Session id
     String sessionId = message.getSessionId();
@@ -652,46 +666,12 @@ public class RouterImpl implements IRouter {
     if (avpUserName != null) {
       userName = avpUserName.getUTF8String();
     }
-    // Processing table
-    try {
-      redirectTableLock.readLock().lock();
-
-      for (int index = 0; index < redirectTable.size(); index++) {
-        RedirectEntry e = redirectTable.get(index);
-        switch (e.getUsageType()) {
-          case ALL_SESSION: // Usage type: ALL SESSION
-            matchedEntry = sessionId != null && e.primaryKey != null & sessionId.equals(e.primaryKey);
-            break;
-          case ALL_REALM: // Usage type: ALL REALM
-            matchedEntry = destRealm != null && e.primaryKey != null & destRealm.equals(e.primaryKey);
-            break;
-          case REALM_AND_APPLICATION: // Usage type: REALM AND APPLICATION
-            matchedEntry = destRealm != null & appId != null & e.primaryKey != null & e.secondaryKey != null & destRealm.equals(e.primaryKey)
-              & appId.equals(e.secondaryKey);
-            break;
-          case ALL_APPLICATION: // Usage type: ALL APPLICATION
-            matchedEntry = appId != null & e.secondaryKey != null & appId.equals(e.secondaryKey);
-            break;
-          case ALL_HOST: // Usage type: ALL HOST
-            matchedEntry = destHost != null & e.primaryKey != null & destHost.equals(e.primaryKey);
-            break;
-          case ALL_USER: // Usage type: ALL USER
-            matchedEntry = userName != null & e.primaryKey != null & userName.equals(e.primaryKey);
-            break;
-        }
-        // Update message redirect information
-        if (matchedEntry) {
-          String newDestHost = e.getRedirectHost();
-          //String newDestRealm = getRealmForPeer(destHost);
-          //setRouteInfo(message, destRealm, newDestHost);
-          updateRoute(message, newDestHost);
-          logger.debug("Redirect message from host={}; to new-host={}, realm={} ", new Object[] { destHost, newDestHost, destRealm});
-          return true;
-        }
-      }
-    }
-    finally {
-      redirectTableLock.readLock().unlock();
+    String newDestHost = redirectCache.get(sessionId, userName, destRealm, appId, destHost);
+    // Update message redirect information
+    if (newDestHost != null) {
+      updateRoute(message, newDestHost);
+      logger.debug("Redirect message from host={}; to new-host={}, realm={} ", new Object[] { destHost, newDestHost, destRealm});
+      return true;
     }
     return false;
   }
@@ -705,6 +685,7 @@ public class RouterImpl implements IRouter {
     if (isStopped) {
       //redirectScheduler = concurrentFactory.getScheduledExecutorService(RedirectMessageTimer.name());
       //redirectEntryHandler = redirectScheduler.scheduleAtFixedRate(redirectTask, 1, 1, TimeUnit.SECONDS);
+      createStatistic();
       isStopped = false;
     }
   }
@@ -715,11 +696,15 @@ public class RouterImpl implements IRouter {
     // if (redirectEntryHandler != null) {
     //  redirectEntryHandler.cancel(true);
     //}
-    if (redirectTable != null) {
-      redirectTable.clear();
+    if (redirectCache != null) {
+      redirectCache.clear();
     }
-    if (requestEntryMap != null) {
-      requestEntryMap.clear();
+    if (requestEntryTable != null) {
+      requestEntryTable.clear();
+    }
+    if (statistic != null) {
+      statisticFactory.removeStatistic(statistic);
+      statistic = null;
     }
     //PCB removed
     //if (requestSortedEntryTable != null) {
@@ -743,10 +728,89 @@ public class RouterImpl implements IRouter {
 
     //redirectEntryHandler = null;
     //redirectScheduler = null;
-    redirectTable = null;
-    requestEntryMap = null;
+    redirectCache = null;
+    requestEntryTable = null;
+    for (Map.Entry<IPeer, PeerStateListener> entry : observedPeers.entrySet()) {
+      entry.getKey().removePeerStateListener(entry.getValue());
+    }
+    observedPeers.clear();
+    candidateCache.clear();
+  }
+
+  private void createStatistic() {
+    if (container == null || container.getAssemblerFacility() == null) {
+      return;
+    }
+    statisticFactory = container.getAssemblerFacility().getComponentInstance(IStatisticManager.class);
+    if (statisticFactory == null) {
+      return;
+    }
+    List<IStatisticRecord> records = new ArrayList<IStatisticRecord>();
+    final RedirectCache cache = redirectCache;
+    records.add(statisticFactory.newCounterRecord(IStatisticRecord.Counters.RedirectCacheHits, new IStatisticRecord.LongValueHolder() {
+      @Override
+      public long getValueAsLong() {
+        return cache.getHits();
+      }
+
+      @Override
+      public String getValueAsString() {
+        return String.valueOf(getValueAsLong());
+      }
+    }));
+    records.add(statisticFactory.newCounterRecord(IStatisticRecord.Counters.RedirectCacheMisses, new IStatisticRecord.LongValueHolder() {
+      @Override
+      public long getValueAsLong() {
+        return cache.getMisses();
+      }
+
+      @Override
+      public String getValueAsString() {
+        return String.valueOf(getValueAsLong());
+      }
+    }));
+    final AnswerRouteTable table = requestEntryTable;
+    if (table != null) {
+      records.add(statisticFactory.newCounterRecord(IStatisticRecord.Counters.RequestTableSize, new IStatisticRecord.IntegerValueHolder() {
+        @Override
+        public int getValueAsInt() {
+          return table.size();
+        }
+
+        @Override
+        public String getValueAsString() {
+          return String.valueOf(getValueAsInt());
+        }
+      }));
+      records.add(statisticFactory.newCounterRecord(IStatisticRecord.Counters.RequestTableEvictions, new IStatisticRecord.LongValueHolder() {
+        @Override
+        public long getValueAsLong() {
+          return table.getEvictions();
+        }
+
+        @Override
+        public String getValueAsString() {
+          return String.valueOf(getValueAsLong());
+        }
+      }));
+    }
+    statistic = statisticFactory.newStatistic("router", IStatistic.Groups.Router, records.toArray(new IStatisticRecord[records.size()]));
+  }
+
+  /**
+   * Selects peer for message among available peers. Message is not taken into account by default, routers which
+   * select peer by message content (eg. Session-Id) override this method.
+   *
+   * @param availablePeers read only list of peers, it is shared by calls until candidates of realm change, so routers
+   *        which need to sort or filter it have to make a copy
+   */
+  protected IPeer selectPeer(IMessage message, List<IPeer> availablePeers) {
+    return selectPeer(availablePeers);
   }
 
+  /**
+   * @param availablePeers read only list of peers, see {@link #selectPeer(IMessage, List)}
+   */
   protected IPeer selectPeer(List<IPeer> availablePeers) {
     IPeer p = null;
     for (IPeer c : availablePeers) {
@@ -829,130 +893,58 @@ public class RouterImpl implements IRouter {
   //        return null;
   //    }
 
-  protected class RedirectEntry {
-
-    final long createTime = System.currentTimeMillis();
-
-    String primaryKey;
-    ApplicationId secondaryKey;
-    long liveTime;
-    int usageType;
-    String[] hosts;
-    String destinationRealm;
-
-    public RedirectEntry(String key1, ApplicationId key2, long time, int usage, String[] aHosts, String destinationRealm) throws InternalError {
-      // Check arguments
-      if (key1 == null && key2 == null) {
-        throw new InternalError("Incorrect redirection key.");
-      }
-      if (aHosts == null || aHosts.length == 0) {
-        throw new InternalError("Incorrect redirection hosts.");
-      }
-      // Set values
-      this.primaryKey = key1;
-      this.secondaryKey = key2;
-      this.liveTime = time * 1000;
-      this.usageType = usage;
-      this.hosts = aHosts;
-      this.destinationRealm = destinationRealm;
-    }
-
-    public int getUsageType() {
-      return usageType;
-    }
-
-    public String[] getRedirectHosts() {
-      return hosts;
-    }
+  /**
+   * Listener of peer state which drops cached candidates containing the peer
+   */
+  protected class CandidateInvalidator implements PeerStateListener {
 
-    public String getRedirectHost() {
-      return hosts[hosts.length - 1];
-    }
+    private final IPeer peer;
 
-    public long getExpiredTime() {
-      return createTime + liveTime;
+    public CandidateInvalidator(IPeer peer) {
+      this.peer = peer;
     }
 
     @Override
-    public int hashCode() {
-      int result = (primaryKey != null ? primaryKey.hashCode() : 0);
-      result = 31 * result + (secondaryKey != null ? secondaryKey.hashCode() : 0);
-      result = 31 * result + (int) (liveTime ^ (liveTime >>> 32));
-      result = 31 * result + usageType;
-      result = 31 * result + (hosts != null ? hosts.hashCode() : 0);
-      return result;
-    }
-
-    @Override
-    public boolean equals(Object other) {
-      if (other == this) {
-        return true;
-      }
-
-      if (other instanceof RedirectEntry) {
-        RedirectEntry that = (RedirectEntry) other;
-        return liveTime == that.liveTime && usageType == that.usageType &&
-            Arrays.equals(hosts, that.hosts) && !(primaryKey != null ? !primaryKey.equals(that.primaryKey) : that.primaryKey != null) &&
-            !(secondaryKey != null ? !secondaryKey.equals(that.secondaryKey) : that.secondaryKey != null);
-      }
-      else {
-        return false;
-      }
+    public void stateChanged(PeerState oldState, PeerState newState) {
+      invalidateCandidates(peer);
     }
   }
 
-  protected class AnswerEntry {
-
-    final long createTime = System.nanoTime();
-    Long hopByHopId;
-    String host, realm;
-
-    public AnswerEntry(Long hopByHopId) {
-      this.hopByHopId = hopByHopId;
-    }
-
-    public AnswerEntry(Long hopByHopId, String host, String realm) throws InternalError {
-      this.hopByHopId = hopByHopId;
-      this.host = host;
-      this.realm = realm;
-    }
-
-    public long getCreateTime() {
-      return createTime;
-    }
-
-    public Long getHopByHopId() {
-      return hopByHopId;
-    }
-
-    public String getHost() {
-      return host;
-    }
-
-    public String getRealm() {
-      return realm;
-    }
-
-    @Override
-    public int hashCode() {
-      return super.hashCode();
+  /**
+   * Peers of a realm in OKAY state, immutable
+   */
+  protected static class CandidateSet {
+
+    final int peerNamesVersion;
+    final String[] peerNames;
+    // all peers of realm found in peer table, whatever their state
+    final IPeer[] resolved;
+    final IPeer[] peers;
+    final List<IPeer> peerList;
+
+    public CandidateSet(int peerNamesVersion, String[] peerNames, IPeer[] resolved, IPeer[] peers) {
+      this.peerNamesVersion = peerNamesVersion;
+      this.peerNames = peerNames;
+      this.resolved = resolved;
+      this.peers = peers;
+      this.peerList = Collections.unmodifiableList(Arrays.asList(peers));
+    }
+
+    public boolean contains(IPeer peer) {
+      for (IPeer p : resolved) {
+        if (p == peer) {
+          return true;
+        }
+      }
+      return false;
     }
 
-    @Override
-    public boolean equals(Object o) {
-      if (this == o) {
-        return true;
-      }
-      if (o == null || getClass() != o.getClass()) {
-        return false;
-      }
-      AnswerEntry that = (AnswerEntry) o;
-      return hopByHopId == that.hopByHopId;
+    public String[] getPeerNames() {
+      return peerNames;
     }
 
-    @Override
-    public String toString() {
-      return "AnswerEntry {" + "createTime=" + createTime + ", hopByHopId=" + hopByHopId + '}';
+    public IPeer[] getPeers() {
+      return peers;
     }
   }
 }
@@ -119,7 +119,7 @@ public class WeightedLeastConnectionsRouter extends RouterImpl {
    * weighted least-connection scheduling algorithms are implemented.
    *
    * @see <a href="http://kb.linuxvirtualserver.org/wiki/Weighted_Least-Connection_Scheduling">http://kb.linuxvirtualserver.org/wiki/Weighted_Least-Connection_Scheduling</a>
-   * @param availablePeers list of peers that are in {@link PeerState#OKAY OKAY} state
+   * @param availablePeers read only list of peers that are in {@link PeerState#OKAY OKAY} state
    * @return the selected peer according to algorithm
    */
   @Override
@@ -111,7 +111,7 @@ public class WeightedRoundRobinRouter extends RouterImpl {
    * the balancing algorithm is disturbed and might be distributed uneven.
    * This is likely to happen if peers are flapping.
    *
-   * @param availablePeers list of peers that are in {@link PeerState#OKAY OKAY} state
+   * @param availablePeers read only list of peers that are in {@link PeerState#OKAY OKAY} state
    * @return the selected peer according to algorithm
    * @see <a href="http://kb.linuxvirtualserver.org/wiki/Weighted_Round-Robin_Scheduling">http://kb.linuxvirtualserver.org/wiki/Weighted_Round-Robin_Scheduling</a>
    */
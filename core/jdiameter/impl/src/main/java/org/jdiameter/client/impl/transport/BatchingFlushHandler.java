@@ -0,0 +1,110 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.transport;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Coalesces flushes of a channel. Every message sent by the stack is written and flushed from
+ * its own thread, which results in one task and one system call per message on the event loop. This handler
+ * postpones flush to a task queued behind the writes which are already waiting on the event loop, so a burst
+ * of messages is sent with a single flush. Pending writes are flushed immediately once message or byte
+ * threshold is reached.
+ *
+ * Handler must be placed between encoder and the head of the pipeline and is not sharable.
+ */
+public class BatchingFlushHandler extends ChannelOutboundHandlerAdapter {
+
+  private final int maxMessages;
+  private final int maxBytes;
+
+  // only accessed from event loop
+  private ChannelHandlerContext ctx;
+  private int pendingMessages;
+  private long pendingBytes;
+  private boolean flushScheduled;
+
+  private final Runnable flushTask = new Runnable() {
+    @Override
+    public void run() {
+      flushScheduled = false;
+      if (pendingMessages > 0) {
+        flushNow(ctx);
+      }
+    }
+  };
+
+  public BatchingFlushHandler(int maxMessages, int maxBytes) {
+    this.maxMessages = maxMessages;
+    this.maxBytes = maxBytes;
+  }
+
+  @Override
+  public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+    this.ctx = ctx;
+  }
+
+  @Override
+  public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+    if (pendingMessages > 0) {
+      flushNow(ctx);
+    }
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+    if (msg instanceof ByteBuf) {
+      pendingBytes += ((ByteBuf) msg).readableBytes();
+    }
+    pendingMessages++;
+    ctx.write(msg, promise);
+    if (pendingMessages >= maxMessages || pendingBytes >= maxBytes) {
+      flushNow(ctx);
+    }
+  }
+
+  @Override
+  public void flush(ChannelHandlerContext ctx) throws Exception {
+    if (pendingMessages == 0) {
+      ctx.flush();
+    }
+    else if (!flushScheduled) {
+      flushScheduled = true;
+      ctx.executor().execute(flushTask);
+    }
+  }
+
+  @Override
+  public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+    if (pendingMessages > 0) {
+      flushNow(ctx);
+    }
+    ctx.close(promise);
+  }
+
+  private void flushNow(ChannelHandlerContext ctx) {
+    pendingMessages = 0;
+    pendingBytes = 0;
+    ctx.flush();
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.transport;
+
+import static org.jdiameter.client.impl.helpers.Parameters.TransportAcceptorCount;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportBatchMaxBytes;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportBatchMaxMessages;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportTcpNoDelay;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportTcpQuickAck;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportWriteBatching;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportWriteBufferHighWaterMark;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportWriteBufferLowWaterMark;
+
+import org.jdiameter.api.Configuration;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+/**
+ * Simple utils class to keep channel type and socket option selection of Netty transports in one place.
+ * Channel types follow the event loop group, so epoll channels are only used when the stack created
+ * an epoll group (see {@link org.jdiameter.client.impl.helpers.Parameters#TransportEpoll}).
+ */
+public class NettyUtils {
+
+  // Netty default, low water mark can not be set above high water mark currently in effect and vice versa
+  private static final int DEFAULT_LOW_WATER_MARK = 32 * 1024;
+
+  public static boolean isEpoll(EventLoopGroup group) {
+    return group instanceof EpollEventLoopGroup;
+  }
+
+  public static Class<? extends SocketChannel> getSocketChannelClass(EventLoopGroup group) {
+    return isEpoll(group) ? EpollSocketChannel.class : NioSocketChannel.class;
+  }
+
+  public static Class<? extends ServerSocketChannel> getServerSocketChannelClass(EventLoopGroup group) {
+    return isEpoll(group) ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+  }
+
+  /**
+   * @param config stack configuration
+   * @param group event loop group server channels are registered with
+   * @return number of server channels to bind to each listening address, more than one only with epoll (SO_REUSEPORT)
+   */
+  public static int getAcceptorCount(Configuration config, EventLoopGroup group) {
+    int count = config != null ? config.getIntValue(TransportAcceptorCount.ordinal(), (Integer) TransportAcceptorCount.defValue()) : 1;
+    return isEpoll(group) ? Math.max(count, 1) : 1;
+  }
+
+  public static void configure(Bootstrap bootstrap, Configuration config, EventLoopGroup group) {
+    bootstrap.option(ChannelOption.TCP_NODELAY, isTcpNoDelay(config));
+    int high = getHighWaterMark(config);
+    int low = getLowWaterMark(config);
+    if (high >= DEFAULT_LOW_WATER_MARK) {
+      bootstrap.option(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, high).option(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, low);
+    }
+    else {
+      bootstrap.option(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, low).option(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, high);
+    }
+    if (isEpoll(group)) {
+      bootstrap.option(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
+      if (isTcpQuickAck(config)) {
+        bootstrap.option(EpollChannelOption.TCP_QUICKACK, true);
+      }
+    }
+  }
+
+  public static void configure(ServerBootstrap bootstrap, Configuration config, EventLoopGroup group) {
+    bootstrap.childOption(ChannelOption.TCP_NODELAY, isTcpNoDelay(config));
+    int high = getHighWaterMark(config);
+    int low = getLowWaterMark(config);
+    if (high >= DEFAULT_LOW_WATER_MARK) {
+      bootstrap.childOption(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, high).childOption(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, low);
+    }
+    else {
+      bootstrap.childOption(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, low).childOption(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, high);
+    }
+    if (isEpoll(group)) {
+      bootstrap.option(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
+      bootstrap.childOption(EpollChannelOption.EPOLL_MODE, EpollMode.EDGE_TRIGGERED);
+      if (getAcceptorCount(config, group) > 1) {
+        bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+      }
+      if (isTcpQuickAck(config)) {
+        bootstrap.childOption(EpollChannelOption.TCP_QUICKACK, true);
+      }
+    }
+  }
+
+  /**
+   * Adds {@link BatchingFlushHandler} at the head of the pipeline when write batching is enabled.
+   * Must be called before encoder is added.
+   */
+  public static void addFlushHandler(ChannelPipeline pipeline, Configuration config) {
+    if (config != null && config.getBooleanValue(TransportWriteBatching.ordinal(), (Boolean) TransportWriteBatching.defValue())) {
+      pipeline.addFirst("flushHandler", new BatchingFlushHandler(
+          config.getIntValue(TransportBatchMaxMessages.ordinal(), (Integer) TransportBatchMaxMessages.defValue()),
+          config.getIntValue(TransportBatchMaxBytes.ordinal(), (Integer) TransportBatchMaxBytes.defValue())));
+    }
+  }
+
+  private static int getHighWaterMark(Configuration config) {
+    int high = config != null ? config.getIntValue(TransportWriteBufferHighWaterMark.ordinal(),
+        (Integer) TransportWriteBufferHighWaterMark.defValue()) : (Integer) TransportWriteBufferHighWaterMark.defValue();
+    return Math.max(high, 1);
+  }
+
+  private static int getLowWaterMark(Configuration config) {
+    int low = config != null ? config.getIntValue(TransportWriteBufferLowWaterMark.ordinal(),
+        (Integer) TransportWriteBufferLowWaterMark.defValue()) : (Integer) TransportWriteBufferLowWaterMark.defValue();
+    return Math.max(Math.min(low, getHighWaterMark(config)), 0);
+  }
+
+  private static boolean isTcpNoDelay(Configuration config) {
+    return config != null ? config.getBooleanValue(TransportTcpNoDelay.ordinal(), (Boolean) TransportTcpNoDelay.defValue()) :
+      (Boolean) TransportTcpNoDelay.defValue();
+  }
+
+  private static boolean isTcpQuickAck(Configuration config) {
+    return config != null ? config.getBooleanValue(TransportTcpQuickAck.ordinal(), (Boolean) TransportTcpQuickAck.defValue()) :
+      (Boolean) TransportTcpQuickAck.defValue();
+  }
+}
@@ -19,11 +19,12 @@
 
 package org.jdiameter.client.impl.transport.tcp.netty;
 
+import java.nio.ByteBuffer;
+
 import org.jdiameter.client.api.IMessage;
 import org.jdiameter.client.api.parser.IMessageParser;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 
@@ -38,9 +39,23 @@ public class DiameterMessageEncoder extends MessageToByteEncoder<IMessage> {
     this.parser = parser;
   }
 
+  @Override
+  protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, IMessage msg, boolean preferDirect) throws Exception {
+    // size the pooled buffer exactly, so message is encoded in place without resizing
+    int length = parser.getMessageLength(msg);
+    return preferDirect ? ctx.alloc().ioBuffer(length) : ctx.alloc().heapBuffer(length);
+  }
+
   @Override
   protected void encode(ChannelHandlerContext ctx, IMessage msg, ByteBuf out) throws Exception {
-    out.writeBytes(Unpooled.wrappedBuffer(parser.encodeMessage(msg)));
+    if (out.nioBufferCount() == 1) {
+      ByteBuffer buffer = out.nioBuffer(out.writerIndex(), out.writableBytes());
+      parser.encodeMessage(msg, buffer);
+      out.writerIndex(out.writerIndex() + buffer.position());
+    }
+    else {
+      out.writeBytes(parser.encodeMessage(msg));
+    }
   }
 
 }
@@ -57,6 +57,14 @@ public class DiameterMessageHandler extends ChannelInboundHandlerAdapter {
     }
   }
 
+  @Override
+  public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+    boolean writable = ctx.channel().isWritable();
+    logger.debug("TCP Transport to [{}] is {}", ctx.channel().remoteAddress(), writable ? "writable" : "not writable");
+    parentConnection.onWritabilityChanged(writable);
+    ctx.fireChannelWritabilityChanged();
+  }
+
   @Override
   public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
     logger.error(cause.getMessage(), cause);
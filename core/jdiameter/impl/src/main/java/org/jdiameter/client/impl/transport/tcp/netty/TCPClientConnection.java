@@ -67,7 +67,7 @@ public class TCPClientConnection implements IConnection {
   public TCPClientConnection(Configuration config, IConcurrentFactory concurrentFactory, InetAddress remoteAddress,
       int remotePort, InetAddress localAddress, int localPort, IMessageParser parser, String ref) {
     this.parser = parser;
-    this.client = new TCPTransportClient(this, parser, new InetSocketAddress(remoteAddress, remotePort),
+    this.client = new TCPTransportClient(this, config, concurrentFactory, parser, new InetSocketAddress(remoteAddress, remotePort),
         new InetSocketAddress(localAddress, localPort));
 
   }
@@ -80,8 +80,12 @@ public class TCPClientConnection implements IConnection {
   }
 
   public TCPClientConnection(Channel channel, IMessageParser parser) {
+    this(channel, null, parser);
+  }
+
+  public TCPClientConnection(Channel channel, IConcurrentFactory concurrentFactory, IMessageParser parser) {
     this.parser = parser;
-    this.client = new TCPTransportClient(this, parser, channel);
+    this.client = new TCPTransportClient(this, concurrentFactory, parser, channel);
   }
 
   public long getCreatedTime() {
@@ -227,6 +231,14 @@ public class TCPClientConnection implements IConnection {
     }
   }
 
+  protected void onWritabilityChanged(boolean writable) {
+    try {
+      onEvent(new Event(writable ? EventType.WRITABLE : EventType.UNWRITABLE));
+    } catch (AvpDataException e1) {
+      // ignore
+    }
+  }
+
   protected void onConnected() {
     try {
       onEvent(new Event(EventType.CONNECTED));
@@ -262,6 +274,12 @@ public class TCPClientConnection implements IConnection {
               listener.internalError(getKey(), null,
                   new TransportException("Avp Data Exception:", TransportError.ReceivedBrokenMessage, event.exception));
               break;
+            case WRITABLE:
+              listener.connectionWritabilityChanged(getKey(), true);
+              break;
+            case UNWRITABLE:
+              listener.connectionWritabilityChanged(getKey(), false);
+              break;
           }
         }
       }
@@ -295,7 +313,7 @@ public class TCPClientConnection implements IConnection {
 
   // ------------------ helper classes ------------------------
   private enum EventType {
-    CONNECTED, DISCONNECTED, MESSAGE_RECEIVED, DATA_EXCEPTION
+    CONNECTED, DISCONNECTED, MESSAGE_RECEIVED, DATA_EXCEPTION, WRITABLE, UNWRITABLE
   }
 
   private static class Event {
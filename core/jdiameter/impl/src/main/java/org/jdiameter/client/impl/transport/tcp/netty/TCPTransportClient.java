@@ -22,8 +22,11 @@ package org.jdiameter.client.impl.transport.tcp.netty;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 
+import org.jdiameter.api.Configuration;
 import org.jdiameter.client.api.IMessage;
 import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.client.impl.transport.NettyUtils;
+import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,7 +38,6 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.util.concurrent.DefaultEventExecutorGroup;
 import io.netty.util.concurrent.EventExecutorGroup;
 
@@ -44,8 +46,13 @@ import io.netty.util.concurrent.EventExecutorGroup;
  * @author <a href="mailto:jqayyum@gmail.com"> Jehanzeb Qayyum </a>
  */
 public class TCPTransportClient {
+  // only set when stack does not provide shared event loop group
   protected EventLoopGroup workerGroup;
-  protected EventExecutorGroup eventExecutorGroup = new DefaultEventExecutorGroup(4);
+  protected IConcurrentFactory concurrentFactory;
+  protected Configuration config;
+  protected EventExecutorGroup eventExecutorGroup;
+  // group is owned by stack when shared, it must not be shut down here
+  protected boolean sharedExecutorGroup;
   protected Channel channel;
   protected TCPClientConnection parentConnection;
   protected InetSocketAddress destAddress;
@@ -70,7 +77,14 @@ public class TCPTransportClient {
 
   public TCPTransportClient(TCPClientConnection parentConnection, IMessageParser parser, InetSocketAddress destAddress,
       InetSocketAddress sourceAddress) {
+    this(parentConnection, null, null, parser, destAddress, sourceAddress);
+  }
+
+  public TCPTransportClient(TCPClientConnection parentConnection, Configuration config, IConcurrentFactory concurrentFactory,
+      IMessageParser parser, InetSocketAddress destAddress, InetSocketAddress sourceAddress) {
     this(parentConnection, parser);
+    this.config = config;
+    this.concurrentFactory = concurrentFactory;
 
     logger.debug("Client only connection");
 
@@ -89,13 +103,20 @@ public class TCPTransportClient {
   }
 
   public TCPTransportClient(TCPClientConnection parentConnection, IMessageParser parser, Channel channel) {
+    this(parentConnection, null, parser, channel);
+  }
+
+  public TCPTransportClient(TCPClientConnection parentConnection, IConcurrentFactory concurrentFactory, IMessageParser parser,
+      Channel channel) {
     this(parentConnection, parser);
+    this.concurrentFactory = concurrentFactory;
     logger.debug("Server only connection");
 
     if (channel == null) {
       throw new IllegalArgumentException("Channel cannot be null");
     }
     this.channel = channel;
+    initExecutorGroup();
     ChannelPipeline pipeline = this.channel.pipeline();
     pipeline.addLast("decoder", new DiameterMessageDecoder(parentConnection, parser));
     pipeline.addLast("encoder", new DiameterMessageEncoder(parser));
@@ -111,19 +132,27 @@ public class TCPTransportClient {
       return;
     }
 
-    this.workerGroup = new NioEventLoopGroup();
-    Bootstrap bootstrap = new Bootstrap().group(workerGroup).channel(NioSocketChannel.class)
+    EventLoopGroup group = concurrentFactory != null ? concurrentFactory.getTransportEventLoopGroup() : null;
+    if (group == null) {
+      this.workerGroup = new NioEventLoopGroup();
+      group = this.workerGroup;
+    }
+    initExecutorGroup();
+    Bootstrap bootstrap = new Bootstrap().group(group).channel(NettyUtils.getSocketChannelClass(group))
         .option(ChannelOption.SO_KEEPALIVE, true).option(ChannelOption.CONNECT_TIMEOUT_MILLIS, CONNECT_TIMEOUT)
         .handler(new ChannelInitializer<SocketChannel>() {
           @Override
           public void initChannel(SocketChannel ch) throws Exception {
             ChannelPipeline pipeline = ch.pipeline();
+            NettyUtils.addFlushHandler(pipeline, config);
             pipeline.addLast("decoder", new DiameterMessageDecoder(parentConnection, parser));
             pipeline.addLast("encoder", new DiameterMessageEncoder(parser));
             pipeline.addLast(eventExecutorGroup, "msgHandler", new DiameterMessageHandler(parentConnection));
           }
         });
 
+    NettyUtils.configure(bootstrap, config, group);
+
     this.channel = bootstrap.remoteAddress(destAddress).connect().sync().channel();
     logger.debug("TCP Transport connected successfully, [{}]", socketDescription);
 
@@ -142,8 +171,19 @@ public class TCPTransportClient {
     logger.debug("Transport is stopped [{}]", socketDescription);
   }
 
+  private void initExecutorGroup() {
+    if (eventExecutorGroup == null) {
+      EventExecutorGroup group = concurrentFactory != null ? concurrentFactory.getTransportHandlerExecutorGroup() : null;
+      this.sharedExecutorGroup = group != null;
+      this.eventExecutorGroup = sharedExecutorGroup ? group : new DefaultEventExecutorGroup(4);
+    }
+  }
+
   private void closeEventExecutorGroup() {
-    if (eventExecutorGroup != null) {
+    if (sharedExecutorGroup) {
+      eventExecutorGroup = null;
+    }
+    else if (eventExecutorGroup != null) {
       try {
         eventExecutorGroup.shutdownGracefully().sync();
       } catch (InterruptedException e) {
@@ -167,7 +207,7 @@ public class TCPTransportClient {
   private void closeChannel() {
     if (channel != null) {
       try {
-        channel.closeFuture().sync();
+        channel.close().sync();
       } catch (InterruptedException e) {
         logger.error("Error stopping socket " + socketDescription, e);
       }
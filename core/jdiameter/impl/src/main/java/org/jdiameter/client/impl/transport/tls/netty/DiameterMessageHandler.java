@@ -69,4 +69,12 @@ public class DiameterMessageHandler extends ChannelInboundHandlerAdapter {
     }
   }
 
+  @Override
+  public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+    boolean writable = ctx.channel().isWritable();
+    logger.debug("TLS Transport {} is {}", this.parentConnection.getKey(), writable ? "writable" : "not writable");
+    parentConnection.onWritabilityChanged(writable);
+    ctx.fireChannelWritabilityChanged();
+  }
+
 }
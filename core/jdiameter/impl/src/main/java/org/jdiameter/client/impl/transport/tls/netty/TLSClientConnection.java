@@ -265,6 +265,14 @@ public class TLSClientConnection implements IConnection {
     }
   }
 
+  protected void onWritabilityChanged(boolean writable) {
+    try {
+      onEvent(new Event(writable ? EventType.WRITABLE : EventType.UNWRITABLE));
+    } catch (AvpDataException e1) {
+      // ignore
+    }
+  }
+
   protected void onConnected() {
     try {
       onEvent(new Event(EventType.CONNECTED));
@@ -292,6 +300,12 @@ public class TLSClientConnection implements IConnection {
               listener.internalError(getKey(), null,
                   new TransportException("Avp Data Exception:", TransportError.ReceivedBrokenMessage, event.exception));
               break;
+            case WRITABLE:
+              listener.connectionWritabilityChanged(getKey(), true);
+              break;
+            case UNWRITABLE:
+              listener.connectionWritabilityChanged(getKey(), false);
+              break;
           }
         }
       }
@@ -318,7 +332,7 @@ public class TLSClientConnection implements IConnection {
 
   // --------------------- helper classes ----------------------
   private enum EventType {
-    CONNECTED, DISCONNECTED, MESSAGE_RECEIVED, DATA_EXCEPTION
+    CONNECTED, DISCONNECTED, MESSAGE_RECEIVED, DATA_EXCEPTION, WRITABLE, UNWRITABLE
   }
 
   private static class Event {
@@ -25,6 +25,7 @@ import java.net.InetSocketAddress;
 import org.jdiameter.api.Configuration;
 import org.jdiameter.client.api.IMessage;
 import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.client.impl.transport.NettyUtils;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,7 +37,6 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 
 /**
  *
@@ -55,6 +55,7 @@ public class TLSTransportClient {
   private String socketDescription = null;
 
   private Channel channel;
+  // only set when stack does not provide shared event loop group
   private EventLoopGroup workerGroup;
 
   private volatile TlsHandshakingState tlsHandshakingState = TlsHandshakingState.INIT;
@@ -114,12 +115,17 @@ public class TLSTransportClient {
       return;
     }
 
-    workerGroup = new NioEventLoopGroup();
+    EventLoopGroup group = concurrentFactory != null ? concurrentFactory.getTransportEventLoopGroup() : null;
+    if (group == null) {
+      workerGroup = new NioEventLoopGroup();
+      group = workerGroup;
+    }
     Bootstrap bootstrap = new Bootstrap();
-    bootstrap.group(workerGroup).channel(NioSocketChannel.class).handler(new ChannelInitializer<SocketChannel>() {
+    bootstrap.group(group).channel(NettyUtils.getSocketChannelClass(group)).handler(new ChannelInitializer<SocketChannel>() {
       @Override
       protected void initChannel(SocketChannel channel) throws Exception {
         ChannelPipeline pipeline = channel.pipeline();
+        NettyUtils.addFlushHandler(pipeline, config);
         pipeline.addLast("decoder", new DiameterMessageDecoder(parentConnection, parser));
         pipeline.addLast("msgHandler", new DiameterMessageHandler(parentConnection, false));
         pipeline.addLast("startTlsInitiator", new StartTlsInitiator(config, TLSTransportClient.this));
@@ -128,6 +134,8 @@ public class TLSTransportClient {
       }
     });
 
+    NettyUtils.configure(bootstrap, config, group);
+
     this.channel = bootstrap.remoteAddress(destAddress).connect().sync().channel();
 
     parentConnection.onConnected();
@@ -198,7 +206,7 @@ public class TLSTransportClient {
   private void closeChannel() {
     if (channel != null && channel.isActive()) {
       try {
-        channel.closeFuture().sync();
+        channel.close().sync();
       } catch (InterruptedException e) {
         logger.error("Error stopping socket " + socketDescription, e);
       }
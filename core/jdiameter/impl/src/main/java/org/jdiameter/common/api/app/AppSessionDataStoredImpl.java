@@ -0,0 +1,181 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.api.app;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+import org.jdiameter.api.ApplicationId;
+import org.jdiameter.api.AvpDataException;
+import org.jdiameter.api.Request;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.client.api.parser.ParseException;
+import org.jdiameter.common.api.data.ISessionDataStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base of application session data kept in {@link ISessionDataStore} instead of object fields, so data
+ * objects are lightweight views and may be dropped and recreated at any time. Attributes below
+ * {@link #FIRST_ATTRIBUTE} are reserved for common data.
+ */
+public abstract class AppSessionDataStoredImpl implements IAppSessionData {
+
+  private static final Logger logger = LoggerFactory.getLogger(AppSessionDataStoredImpl.class);
+
+  private static final int VENDOR_ID = 0;
+  private static final int AUTH_APP_ID = 1;
+  private static final int ACCT_APP_ID = 2;
+
+  /**
+   * First attribute available to subclasses
+   */
+  protected static final int FIRST_ATTRIBUTE = 8;
+
+  protected final String sessionId;
+  protected final ISessionDataStore store;
+  protected final IMessageParser parser;
+
+  public AppSessionDataStoredImpl(String sessionId, ISessionDataStore store, IMessageParser parser) {
+    this.sessionId = sessionId;
+    this.store = store;
+    this.parser = parser;
+  }
+
+  @Override
+  public String getSessionId() {
+    return sessionId;
+  }
+
+  @Override
+  public ApplicationId getApplicationId() {
+    Long vendorId = (Long) store.get(sessionId, VENDOR_ID);
+    if (vendorId == null) {
+      return null;
+    }
+    long authAppId = getLong(AUTH_APP_ID, ApplicationId.UNDEFINED_VALUE);
+    long acctAppId = getLong(ACCT_APP_ID, ApplicationId.UNDEFINED_VALUE);
+    return authAppId == ApplicationId.UNDEFINED_VALUE && acctAppId != ApplicationId.UNDEFINED_VALUE ?
+        ApplicationId.createByAccAppId(vendorId, acctAppId) : ApplicationId.createByAuthAppId(vendorId, authAppId);
+  }
+
+  @Override
+  public void setApplicationId(ApplicationId applicationId) {
+    if (applicationId == null) {
+      store.put(sessionId, VENDOR_ID, null);
+      return;
+    }
+    store.put(sessionId, AUTH_APP_ID, applicationId.getAuthAppId());
+    store.put(sessionId, ACCT_APP_ID, applicationId.getAcctAppId());
+    store.put(sessionId, VENDOR_ID, applicationId.getVendorId());
+  }
+
+  @Override
+  public boolean remove() {
+    return store.remove(sessionId);
+  }
+
+  protected boolean getBoolean(int attribute, boolean defaultValue) {
+    Boolean value = (Boolean) store.get(sessionId, attribute);
+    return value != null ? value : defaultValue;
+  }
+
+  protected int getInt(int attribute, int defaultValue) {
+    Integer value = (Integer) store.get(sessionId, attribute);
+    return value != null ? value : defaultValue;
+  }
+
+  protected long getLong(int attribute, long defaultValue) {
+    Long value = (Long) store.get(sessionId, attribute);
+    return value != null ? value : defaultValue;
+  }
+
+  protected <E extends Enum<E>> E getEnum(int attribute, E[] values, E defaultValue) {
+    Integer ordinal = (Integer) store.get(sessionId, attribute);
+    return ordinal != null ? values[ordinal] : defaultValue;
+  }
+
+  protected void setEnum(int attribute, Enum<?> value) {
+    store.put(sessionId, attribute, value != null ? value.ordinal() : null);
+  }
+
+  /**
+   * Timer identifiers are kept by reference, they refer to scheduled tasks of this node
+   */
+  protected Serializable getTimerId(int attribute) {
+    return (Serializable) store.get(sessionId, attribute);
+  }
+
+  protected void setTimerId(int attribute, Serializable timerId) {
+    store.put(sessionId, attribute, timerId);
+  }
+
+  protected Request getRequest(int attribute) {
+    byte[] data = (byte[]) store.get(sessionId, attribute);
+    if (data == null) {
+      return null;
+    }
+    try {
+      return parser.createMessage(data);
+    }
+    catch (AvpDataException e) {
+      logger.error("Unable to recreate message from session data store.", e);
+      return null;
+    }
+  }
+
+  protected void setRequest(int attribute, Request request) {
+    if (request == null) {
+      store.put(sessionId, attribute, null);
+      return;
+    }
+    try {
+      store.put(sessionId, attribute, toBytes(parser, (IMessage) request));
+    }
+    catch (ParseException e) {
+      logger.error("Unable to encode message to session data store.", e);
+    }
+  }
+
+  private static byte[] toBytes(IMessageParser parser, IMessage message) throws ParseException {
+    ByteBuffer buffer = parser.encodeMessage(message);
+    byte[] data = new byte[buffer.remaining()];
+    buffer.get(data);
+    return data;
+  }
+
+  @Override
+  public int hashCode() {
+    return sessionId.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null || getClass() != obj.getClass()) {
+      return false;
+    }
+    AppSessionDataStoredImpl other = (AppSessionDataStoredImpl) obj;
+    return sessionId.equals(other.sessionId) && store == other.store;
+  }
+}
@@ -45,11 +45,15 @@ package org.jdiameter.common.api.concurrent;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 
 import org.jdiameter.common.api.statistic.IStatistic;
 
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
+
 /**
  *
  * @author erick.svenson@yahoo.com
@@ -92,6 +96,29 @@ public class DummyConcurrentFactory implements IConcurrentFactory {
   public void shutdownNow(ScheduledExecutorService service) {
   }
 
+  @Override
+  public EventLoopGroup getTransportEventLoopGroup() {
+    return null;
+  }
+
+  @Override
+  public EventExecutorGroup getTransportHandlerExecutorGroup() {
+    return null;
+  }
+
+  @Override
+  public void shutdownTransportEventLoopGroup() {
+  }
+
+  @Override
+  public ExecutorService getSessionExecutorService() {
+    return null;
+  }
+
+  @Override
+  public void shutdownSessionExecutorService() {
+  }
+
   @Override
   public IStatistic getStatistic() {
     return null;
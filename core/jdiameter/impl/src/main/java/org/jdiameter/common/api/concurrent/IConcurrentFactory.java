@@ -44,10 +44,14 @@ package org.jdiameter.common.api.concurrent;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
 import org.jdiameter.common.api.statistic.IStatistic;
 
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
+
 /**
  *
  * @author erick.svenson@yahoo.com
@@ -63,7 +67,8 @@ public interface IConcurrentFactory {
     PeerOverloadTimer,
     ConnectionTimer,
     StatisticTimer,
-    ApplicationSession
+    ApplicationSession,
+    PeerFSMExecutor
   }
 
   // Thread
@@ -82,6 +87,40 @@ public interface IConcurrentFactory {
 
   void shutdownNow(ScheduledExecutorService service);
 
+  // Transport
+  /**
+   * Returns event loop group shared by all Netty based transports of the stack. Group is created on first
+   * call and lives until {@link #shutdownTransportEventLoopGroup()} is called.
+   *
+   * @return shared event loop group or null if transports have to create their own
+   */
+  EventLoopGroup getTransportEventLoopGroup();
+
+  /**
+   * Returns executor group shared by all Netty based transports of the stack to run message handlers off
+   * the event loop. Group is created on first call and lives until {@link #shutdownTransportEventLoopGroup()}
+   * is called.
+   *
+   * @return shared executor group or null if transports have to create their own
+   */
+  EventExecutorGroup getTransportHandlerExecutorGroup();
+
+  /**
+   * Shuts down shared transport event loop group and shared handler executor group
+   */
+  void shutdownTransportEventLoopGroup();
+
+  // Session
+  /**
+   * Returns pool shared by mailboxes of application sessions, when session serial execution is
+   * enabled. Pool is created on first call and lives until {@link #shutdownSessionExecutorService()} is called.
+   *
+   * @return shared pool or null if application sessions run their tasks on ApplicationSession executor
+   */
+  ExecutorService getSessionExecutorService();
+
+  void shutdownSessionExecutorService();
+
   // Common
   IStatistic getStatistic();
 
@@ -0,0 +1,82 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.api.data;
+
+import org.jdiameter.api.app.AppSession;
+
+/**
+ * Storage of application session data attributes, used by session data implementations which do not keep
+ * their state in object fields. Attributes are identified by small numbers (0 to 127) defined by the data
+ * implementation.
+ *
+ * Values of type {@link Boolean}, {@link Integer}, {@link Long}, {@link String} and byte array are kept by the
+ * store in its own format, other values (e.g. timer handles) are kept by reference, in memory only.
+ */
+public interface ISessionDataStore {
+
+  /**
+   * Creates record for session, if it does not exist yet
+   *
+   * @param sessionId session identifier
+   * @param appSessionIface interface of application session which owns the data
+   * @return true if record was created, false if it already existed
+   * @throws IllegalStateException if store has no room for new record
+   */
+  boolean create(String sessionId, Class<? extends AppSession> appSessionIface);
+
+  /**
+   * @return true if there is record for session
+   */
+  boolean exists(String sessionId);
+
+  /**
+   * @return interface of application session which owns the data, null if there is no record for session
+   */
+  Class<? extends AppSession> getAppSessionIface(String sessionId);
+
+  /**
+   * @return value of attribute, null if it is not set or there is no record for session
+   */
+  Object get(String sessionId, int attribute);
+
+  /**
+   * Sets value of attribute, null value removes it
+   *
+   * @return false if there is no record for session
+   * @throws IllegalStateException if store has no room for changed record
+   */
+  boolean put(String sessionId, int attribute, Object value);
+
+  /**
+   * Removes record of session
+   *
+   * @return true if record was removed
+   */
+  boolean remove(String sessionId);
+
+  /**
+   * @return number of records
+   */
+  int size();
+
+  void start();
+
+  void stop();
+}
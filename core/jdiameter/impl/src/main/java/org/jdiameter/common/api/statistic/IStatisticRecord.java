@@ -64,6 +64,7 @@ public interface IStatisticRecord extends StatisticRecord {
     NetGenResponse("Count of network generated processed responses"),
     NetGenRejectedResponse("Count of network generated rejected responses"),
     SysGenResponse("Count of platform generated responses"),
+    TransportUnwritable("Count of times peer connection became unwritable"),
 
     AppGenRequestPerSecond("Count of app generated request per second"),
     AppGenResponsePerSecond("Count of app generated responses per second"),
@@ -86,7 +87,16 @@ public interface IStatisticRecord extends StatisticRecord {
     WaitTimeTask("Average waiting time for execution task"),
     BrokenTasks("Count of broken thread"),
     RejectedTasks("Count of rejected tasks"),
-    QueueSize("Peer FSM queue size");
+    QueueSize("Peer FSM queue size"),
+
+    RequestTableSize("Count of entries in answer routing table"),
+    RequestTableEvictions("Count of answer routing entries evicted before answer was sent"),
+    RedirectCacheHits("Count of requests routed by cached redirect"),
+    RedirectCacheMisses("Count of requests with no cached redirect"),
+
+    LiveSessions("Count of sessions in session datasource"),
+    ExpiredSessions("Count of sessions released because they were idle"),
+    RejectedSessions("Count of sessions rejected because of session limit");
 
     private String description;
 
@@ -0,0 +1,44 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.api.timer;
+
+import java.io.Serializable;
+
+/**
+ * Handle of a timer scheduled by {@link ITimerFacility}, which tells what the timer is for. Handles can not be
+ * serialized, this lets session data implementations store the timer itself and schedule it again later.
+ */
+public interface ITimerHandle extends Serializable {
+
+  /**
+   * @return identifier of session owning the timer, null if timer is not scheduled anymore
+   */
+  String getSessionId();
+
+  /**
+   * @return name of timer, null if timer is not scheduled anymore
+   */
+  String getTimerName();
+
+  /**
+   * @return time in milliseconds left before timer expires, 0 if it is due
+   */
+  long getDelay();
+}
@@ -45,6 +45,7 @@ package org.jdiameter.common.impl.app;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
 import org.jdiameter.api.ApplicationId;
@@ -55,6 +56,7 @@ import org.jdiameter.client.api.ISessionFactory;
 import org.jdiameter.common.api.app.IAppSessionData;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.jdiameter.common.api.timer.ITimerFacility;
+import org.jdiameter.common.impl.concurrent.SerialExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -78,6 +80,9 @@ public abstract class AppSessionImpl implements AppSession {
 
   protected ScheduledExecutorService scheduler = null;
 
+  // mailbox of session when session serial execution is enabled
+  protected SerialExecutor serialExecutor = null;
+
   protected ITimerFacility timerFacility;
 
   public AppSessionImpl(ISessionFactory sf, IAppSessionData appSessionData) {
@@ -91,8 +96,12 @@ public abstract class AppSessionImpl implements AppSession {
       this.sf = sf;
       this.appSessionData = appSessionData;
       IAssembler assembler = ( this.sf).getContainer().getAssemblerFacility();
-      this.scheduler = assembler.getComponentInstance(IConcurrentFactory.class).
-          getScheduledExecutorService(IConcurrentFactory.ScheduledExecServices.ApplicationSession.name());
+      IConcurrentFactory concurrentFactory = assembler.getComponentInstance(IConcurrentFactory.class);
+      this.scheduler = concurrentFactory.getScheduledExecutorService(IConcurrentFactory.ScheduledExecServices.ApplicationSession.name());
+      ExecutorService sessionExecutor = concurrentFactory.getSessionExecutorService();
+      if (sessionExecutor != null) {
+        this.serialExecutor = new SerialExecutor(sessionExecutor);
+      }
       this.timerFacility = assembler.getComponentInstance(ITimerFacility.class);
       this.session = this.sf.getNewSession(this.appSessionData.getSessionId());
       //annoying ;[
@@ -130,6 +139,36 @@ public abstract class AppSessionImpl implements AppSession {
     return this.sessions; //....
   }
 
+  /**
+   * Runs task of this session, such as delivery of received message. With session serial execution tasks of
+   * the same session run one at a time, in submission order, otherwise they run concurrently.
+   */
+  protected void execute(Runnable task) {
+    if (serialExecutor != null) {
+      serialExecutor.execute(task);
+    }
+    else {
+      scheduler.execute(task);
+    }
+  }
+
+  /**
+   * Handles expiry of timer. With session serial execution timer is handled in turn with other tasks of this
+   * session, otherwise at once, in calling thread.
+   */
+  public void timerExpired(final String timerName) {
+    if (serialExecutor == null) {
+      onTimer(timerName);
+      return;
+    }
+    serialExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        onTimer(timerName);
+      }
+    });
+  }
+
   @Override
   public void release() {
     logger.debug("Releasing application session for Session ID '{}' ({}).", getSessionId(), getSessionAppId());
@@ -0,0 +1,59 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.app.cca;
+
+import org.jdiameter.api.app.AppSession;
+import org.jdiameter.api.cca.ClientCCASession;
+import org.jdiameter.api.cca.ServerCCASession;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.client.impl.app.cca.ClientCCASessionDataStoredImpl;
+import org.jdiameter.common.api.app.IAppSessionDataFactory;
+import org.jdiameter.common.api.app.cca.ICCASessionData;
+import org.jdiameter.common.api.data.ISessionDataStore;
+import org.jdiameter.server.impl.app.cca.ServerCCASessionDataStoredImpl;
+
+/**
+ * Creates CCA session data kept in {@link ISessionDataStore}
+ */
+public class CCAStoredSessionDataFactory implements IAppSessionDataFactory<ICCASessionData> {
+
+  private final ISessionDataStore store;
+  private final IContainer container;
+
+  public CCAStoredSessionDataFactory(ISessionDataStore store, IContainer container) {
+    this.store = store;
+    this.container = container;
+  }
+
+  @Override
+  public ICCASessionData getAppSessionData(Class<? extends AppSession> clazz, String sessionId) {
+    IMessageParser parser = container.getAssemblerFacility().getComponentInstance(IMessageParser.class);
+    if (clazz.equals(ClientCCASession.class)) {
+      store.create(sessionId, clazz);
+      return new ClientCCASessionDataStoredImpl(sessionId, store, parser);
+    }
+    else if (clazz.equals(ServerCCASession.class)) {
+      store.create(sessionId, clazz);
+      return new ServerCCASessionDataStoredImpl(sessionId, store, parser);
+    }
+    throw new IllegalArgumentException(clazz.toString());
+  }
+}
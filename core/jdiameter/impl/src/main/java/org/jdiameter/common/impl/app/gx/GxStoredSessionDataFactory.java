@@ -0,0 +1,59 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.app.gx;
+
+import org.jdiameter.api.app.AppSession;
+import org.jdiameter.api.gx.ClientGxSession;
+import org.jdiameter.api.gx.ServerGxSession;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.client.impl.app.gx.ClientGxSessionDataStoredImpl;
+import org.jdiameter.common.api.app.IAppSessionDataFactory;
+import org.jdiameter.common.api.app.gx.IGxSessionData;
+import org.jdiameter.common.api.data.ISessionDataStore;
+import org.jdiameter.server.impl.app.gx.ServerGxSessionDataStoredImpl;
+
+/**
+ * Creates Gx session data kept in {@link ISessionDataStore}
+ */
+public class GxStoredSessionDataFactory implements IAppSessionDataFactory<IGxSessionData> {
+
+  private final ISessionDataStore store;
+  private final IContainer container;
+
+  public GxStoredSessionDataFactory(ISessionDataStore store, IContainer container) {
+    this.store = store;
+    this.container = container;
+  }
+
+  @Override
+  public IGxSessionData getAppSessionData(Class<? extends AppSession> clazz, String sessionId) {
+    IMessageParser parser = container.getAssemblerFacility().getComponentInstance(IMessageParser.class);
+    if (clazz.equals(ClientGxSession.class)) {
+      store.create(sessionId, clazz);
+      return new ClientGxSessionDataStoredImpl(sessionId, store, parser);
+    }
+    else if (clazz.equals(ServerGxSession.class)) {
+      store.create(sessionId, clazz);
+      return new ServerGxSessionDataStoredImpl(sessionId, store, parser);
+    }
+    throw new IllegalArgumentException(clazz.toString());
+  }
+}
@@ -49,7 +49,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.jdiameter.api.Configuration;
 import org.jdiameter.client.impl.helpers.Parameters;
@@ -58,6 +62,15 @@ import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.jdiameter.common.api.statistic.IStatistic;
 import org.jdiameter.common.api.statistic.IStatisticManager;
 import org.jdiameter.common.api.statistic.IStatisticRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
 
 /**
  *
@@ -66,6 +79,8 @@ import org.jdiameter.common.api.statistic.IStatisticRecord;
  */
 public class ConcurrentFactory implements IConcurrentFactory {
 
+  private static final Logger logger = LoggerFactory.getLogger(ConcurrentFactory.class);
+
   private BaseThreadFactory threadFactory;
 
   private Map<String, CommonScheduledExecutorService> scheduledExecutorServices;
@@ -73,6 +88,21 @@ public class ConcurrentFactory implements IConcurrentFactory {
   private IStatisticManager statisticFactory;
   private IStatistic statistic;
   private IConcurrentEntityFactory entityFactory;
+
+  public static final String TRANSPORT_ENTITY_NAME = "TransportEventLoop";
+  public static final String TRANSPORT_HANDLER_ENTITY_NAME = "TransportHandler";
+  public static final String SESSION_EXECUTOR_ENTITY_NAME = "SessionExecutor";
+
+  private int transportThreadCount;
+  private int[] transportCpuAffinity;
+  private boolean transportEpoll;
+  private EventLoopGroup transportEventLoopGroup;
+  private EventExecutorGroup transportHandlerExecutorGroup;
+
+  private boolean sessionSerialExecution;
+  private int sessionExecutorThreads;
+  private ThreadPoolExecutor sessionExecutorService;
+
   public ConcurrentFactory(Configuration config, IStatisticManager statisticFactory, IConcurrentEntityFactory entityFactory) {
 
     this.config = config.getChildren(Parameters.Concurrent.ordinal());
@@ -84,6 +114,19 @@ public class ConcurrentFactory implements IConcurrentFactory {
 
     threadFactory = (BaseThreadFactory) entityFactory.newThreadFactory(defThreadGroupName);
 
+    this.transportThreadCount = config.getIntValue(Parameters.TransportThreadCount.ordinal(), (Integer) Parameters.TransportThreadCount.defValue());
+    this.transportCpuAffinity = TransportThreadFactory.parseCpuList(
+        config.getStringValue(Parameters.TransportCpuAffinity.ordinal(), (String) Parameters.TransportCpuAffinity.defValue()));
+    this.transportEpoll = config.getBooleanValue(Parameters.TransportEpoll.ordinal(), (Boolean) Parameters.TransportEpoll.defValue());
+    if (transportEpoll && !Epoll.isAvailable()) {
+      logger.warn("Epoll transport is not available, falling back to NIO", Epoll.unavailabilityCause());
+      this.transportEpoll = false;
+    }
+    this.sessionSerialExecution = config.getBooleanValue(Parameters.SessionSerialExecution.ordinal(),
+        (Boolean) Parameters.SessionSerialExecution.defValue());
+    this.sessionExecutorThreads = config.getIntValue(Parameters.SessionExecutorThreads.ordinal(),
+        (Integer) Parameters.SessionExecutorThreads.defValue());
+
     scheduledExecutorServices = new ConcurrentHashMap<String, CommonScheduledExecutorService>();
     IStatisticRecord threadCount = statisticFactory.newCounterRecord(
         IStatisticRecord.Counters.ConcurrentThread,
@@ -193,6 +236,76 @@ public class ConcurrentFactory implements IConcurrentFactory {
     }
   }
 
+  @Override
+  public synchronized EventLoopGroup getTransportEventLoopGroup() {
+    if (transportEventLoopGroup == null) {
+      TransportThreadFactory factory = new TransportThreadFactory(TRANSPORT_ENTITY_NAME, getThreadGroup(), transportCpuAffinity);
+      transportEventLoopGroup = transportEpoll ? new EpollEventLoopGroup(transportThreadCount, factory) :
+        new NioEventLoopGroup(transportThreadCount, factory);
+    }
+    return transportEventLoopGroup;
+  }
+
+  @Override
+  public synchronized EventExecutorGroup getTransportHandlerExecutorGroup() {
+    if (transportHandlerExecutorGroup == null) {
+      // same size as event loop group, Netty default is twice the number of processors
+      int threads = transportThreadCount > 0 ? transportThreadCount : Runtime.getRuntime().availableProcessors() * 2;
+      transportHandlerExecutorGroup = new DefaultEventExecutorGroup(threads,
+          new TransportThreadFactory(TRANSPORT_HANDLER_ENTITY_NAME, getThreadGroup(), new int[0]));
+    }
+    return transportHandlerExecutorGroup;
+  }
+
+  @Override
+  public void shutdownTransportEventLoopGroup() {
+    EventLoopGroup group;
+    EventExecutorGroup handlerGroup;
+    synchronized (this) {
+      group = transportEventLoopGroup;
+      transportEventLoopGroup = null;
+      handlerGroup = transportHandlerExecutorGroup;
+      transportHandlerExecutorGroup = null;
+    }
+    if (group != null) {
+      group.shutdownGracefully().awaitUninterruptibly();
+    }
+    if (handlerGroup != null) {
+      handlerGroup.shutdownGracefully().awaitUninterruptibly();
+    }
+  }
+
+  @Override
+  public synchronized ExecutorService getSessionExecutorService() {
+    if (!sessionSerialExecution) {
+      return null;
+    }
+    if (sessionExecutorService == null) {
+      int threads = sessionExecutorThreads > 0 ? sessionExecutorThreads : Runtime.getRuntime().availableProcessors();
+      // each session mailbox is queued once at a time, so a shared FIFO queue keeps sessions fair
+      sessionExecutorService = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+              return threadFactory.newThread(SESSION_EXECUTOR_ENTITY_NAME, runnable);
+            }
+          });
+    }
+    return sessionExecutorService;
+  }
+
+  @Override
+  public void shutdownSessionExecutorService() {
+    ExecutorService service;
+    synchronized (this) {
+      service = sessionExecutorService;
+      sessionExecutorService = null;
+    }
+    if (service != null) {
+      service.shutdown();
+    }
+  }
+
   @Override
   public IStatistic getStatistic() {
     return statistic;
@@ -0,0 +1,106 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.concurrent;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Mailbox of a session: tasks are run one at a time, in submission order, on a shared executor. No thread is
+ * dedicated to the mailbox and no lock is taken, whichever thread submits the first task of an empty mailbox
+ * hands it to the shared executor, which drains the mailbox. After a number of tasks the mailbox is handed over
+ * again, so a busy session does not keep a pool thread from other sessions.
+ */
+public class SerialExecutor implements Executor {
+
+  private static final Logger logger = LoggerFactory.getLogger(SerialExecutor.class);
+
+  // tasks run before pool thread is given back
+  static final int MAX_BATCH_SIZE = 32;
+
+  private final Executor executor;
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+  // number of queued tasks, mailbox is scheduled while it is not zero
+  private final AtomicInteger size = new AtomicInteger(0);
+
+  private final Runnable drain = new Runnable() {
+    @Override
+    public void run() {
+      drain();
+    }
+  };
+
+  public SerialExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  @Override
+  public void execute(Runnable task) {
+    tasks.add(task);
+    if (size.getAndIncrement() == 0) {
+      schedule();
+    }
+  }
+
+  /**
+   * @return number of tasks waiting or running
+   */
+  public int size() {
+    return size.get();
+  }
+
+  private void schedule() {
+    try {
+      executor.execute(drain);
+    }
+    catch (RejectedExecutionException e) {
+      // nobody would drain the mailbox anymore
+      tasks.clear();
+      size.set(0);
+      throw e;
+    }
+  }
+
+  private void drain() {
+    int count = 0;
+    while (true) {
+      Runnable task = tasks.poll();
+      try {
+        task.run();
+      }
+      catch (Throwable t) {
+        logger.warn("Failure running session task", t);
+      }
+      if (size.decrementAndGet() == 0) {
+        return;
+      }
+      if (++count == MAX_BATCH_SIZE) {
+        schedule();
+        return;
+      }
+    }
+  }
+}
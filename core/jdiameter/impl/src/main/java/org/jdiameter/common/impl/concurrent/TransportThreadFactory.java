@@ -0,0 +1,117 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.FastThreadLocalThread;
+
+/**
+ * Creates threads of transport event loop group in stack thread group. When processor list is given, each
+ * thread binds itself to one of the processors (round robin) on start. Binding is done through
+ * OpenHFT Java-Thread-Affinity library, if it is not present on classpath threads are left unbound.
+ */
+class TransportThreadFactory extends DefaultThreadFactory {
+
+  private static final Logger logger = LoggerFactory.getLogger(TransportThreadFactory.class);
+
+  private static final String AFFINITY_CLASS = "net.openhft.affinity.Affinity";
+
+  private final ThreadGroup threadGroup;
+  private final int[] cpus;
+  private final AtomicInteger cpuIndex = new AtomicInteger(0);
+
+  TransportThreadFactory(String poolName, ThreadGroup threadGroup, int[] cpus) {
+    super(poolName);
+    this.threadGroup = threadGroup;
+    this.cpus = cpus;
+  }
+
+  @Override
+  protected Thread newThread(Runnable runnable, String name) {
+    if (cpus.length == 0) {
+      return new FastThreadLocalThread(threadGroup, runnable, name);
+    }
+    final int cpu = cpus[cpuIndex.getAndIncrement() % cpus.length];
+    final Runnable task = runnable;
+    return new FastThreadLocalThread(threadGroup, new Runnable() {
+      @Override
+      public void run() {
+        bind(cpu);
+        task.run();
+      }
+    }, name);
+  }
+
+  private static void bind(int cpu) {
+    try {
+      Method setAffinity = Class.forName(AFFINITY_CLASS).getMethod("setAffinity", Integer.TYPE);
+      setAffinity.invoke(null, cpu);
+      logger.debug("Bound transport thread [{}] to CPU {}", Thread.currentThread().getName(), cpu);
+    }
+    catch (ClassNotFoundException e) {
+      logger.warn("Can not bind transport thread to CPU {}, {} is not on classpath", cpu, AFFINITY_CLASS);
+    }
+    catch (Exception e) {
+      logger.warn("Can not bind transport thread to CPU " + cpu, e);
+    }
+  }
+
+  /**
+   * Parses processor list, eg. "0-3,6"
+   *
+   * @param value comma separated list of processor numbers and ranges
+   * @return processor numbers
+   */
+  static int[] parseCpuList(String value) {
+    List<Integer> cpus = new ArrayList<Integer>();
+    if (value != null) {
+      for (String item : value.split(",")) {
+        item = item.trim();
+        if (item.length() == 0) {
+          continue;
+        }
+        int dash = item.indexOf('-');
+        if (dash > 0) {
+          int from = Integer.parseInt(item.substring(0, dash).trim());
+          int to = Integer.parseInt(item.substring(dash + 1).trim());
+          for (int cpu = from; cpu <= to; cpu++) {
+            cpus.add(cpu);
+          }
+        }
+        else {
+          cpus.add(Integer.parseInt(item));
+        }
+      }
+    }
+    int[] result = new int[cpus.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = cpus.get(i);
+    }
+    return result;
+  }
+}
@@ -124,12 +124,14 @@ public class AbstractPeer implements Comparable<Peer> {
 
       IStatisticRecord sysGenResponseCounter = statisticFactory.newCounterRecord(IStatisticRecord.Counters.SysGenResponse);
 
+      IStatisticRecord transportUnwritableCounter = statisticFactory.newCounterRecord(IStatisticRecord.Counters.TransportUnwritable);
+
       this.statistic = statisticFactory.newStatistic(uriString, IStatistic.Groups.Peer,
           appGenRequestCounter, appGenCPSRequestCounter, appGenRejectedRequestCounter,
           appGenResponseCounter, appGenCPSResponseCounter, appGenRejectedResponseCounter,
           netGenRequestCounter, netGenCPSRequestCounter, netGenRejectedRequestCounter,
           netGenResponseCounter, netGenCPSResponseCounter, netGenRejectedResponseCounter,
-          sysGenResponseCounter
+          sysGenResponseCounter, transportUnwritableCounter
           );
     }
     finally {
@@ -0,0 +1,760 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.jdiameter.api.app.AppSession;
+import org.jdiameter.common.api.concurrent.IConcurrentFactory;
+import org.jdiameter.common.api.data.ISessionDataStore;
+import org.jdiameter.common.api.timer.ITimerFacility;
+import org.jdiameter.common.api.timer.ITimerHandle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Session data store keeping records in memory and journaling every change to an append-only local file, so
+ * sessions survive restart of the node.
+ *
+ * Changes are appended to an in-memory batch, a single writer thread writes batches to the journal (group
+ * commit). In synchronous mode each batch is forced to disk and changes return only once their batch is
+ * forced, so no acknowledged change is lost. In asynchronous mode changes return at once and batches are left
+ * to the operating system, so changes survive a crash of the process but not of the host.
+ *
+ * If the journal can not be written, changes waiting for it and all later changes fail with
+ * {@link IllegalStateException}, until the store is started again.
+ *
+ * On start the journal is replayed, a torn entry at its end is ignored, and it is rewritten as a snapshot of
+ * live records. The journal is compacted the same way whenever it grows past the configured size and twice the
+ * size of the last snapshot. The snapshot replaces the journal only once it is complete and forced to disk. Each
+ * journal entry is:
+ * <pre>
+ *   int length, int CRC-32, byte operation, UTF Session-Id, operation data
+ * </pre>
+ *
+ * Timers are journaled by name and expiry time, see {@link #rescheduleTimers(ITimerFacility, Collection)}. Values other
+ * than {@link Boolean}, {@link Integer}, {@link Long}, {@link String}, byte array and {@link ITimerHandle}
+ * are kept in memory only.
+ */
+public class JournaledSessionDataStore implements ISessionDataStore, Runnable {
+
+  private static final Logger logger = LoggerFactory.getLogger(JournaledSessionDataStore.class);
+
+  private static final int MAGIC = 0x4A44534A;
+  private static final int MAX_ATTRIBUTE = 127;
+  private static final int MAX_ENTRY_SIZE = 16 * 1024 * 1024;
+
+  private static final byte OP_CREATE = 1;
+  private static final byte OP_PUT = 2;
+  private static final byte OP_REMOVE = 3;
+
+  private static final byte TYPE_NULL = 0;
+  private static final byte TYPE_TRUE = 1;
+  private static final byte TYPE_FALSE = 2;
+  private static final byte TYPE_INT = 3;
+  private static final byte TYPE_LONG = 4;
+  private static final byte TYPE_STRING = 5;
+  private static final byte TYPE_BYTES = 6;
+  private static final byte TYPE_TIMER = 7;
+
+  private final File file;
+  private final boolean sync;
+  private final long compactSize;
+  private final IConcurrentFactory concurrentFactory;
+
+  private final ConcurrentHashMap<String, Record> records = new ConcurrentHashMap<String, Record>();
+
+  // journal entries waiting for writer, batch being filled and last written batch, guarded by journalLock
+  private final Object journalLock = new Object();
+  private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+  private long batch = 1;
+  private long writtenBatch;
+  private boolean running;
+  private IOException failure;
+  private Thread writer;
+
+  // recovered sessions with timers not scheduled again yet
+  private final Set<String> recoveredTimers = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  // only accessed from writer thread once started
+  private FileOutputStream out;
+  private long journalSize;
+  private long snapshotSize;
+
+  /**
+   * @param file journal file
+   * @param sync true to force each batch to disk before changes in it return
+   * @param compactSize size of journal in bytes above which it is compacted
+   * @param concurrentFactory factory of writer thread, may be null
+   */
+  public JournaledSessionDataStore(File file, boolean sync, long compactSize, IConcurrentFactory concurrentFactory) {
+    this.file = file;
+    this.sync = sync;
+    this.compactSize = compactSize;
+    this.concurrentFactory = concurrentFactory;
+  }
+
+  @Override
+  public synchronized void start() {
+    if (writer != null) {
+      return;
+    }
+    records.clear();
+    recoveredTimers.clear();
+    try {
+      File old = oldJournal();
+      if (file.exists()) {
+        replay(file);
+      }
+      else if (old.exists()) {
+        logger.warn("Session journal {} was being replaced, sessions are recovered from {}", file, old);
+        replay(old);
+      }
+      compact();
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Unable to open session journal " + file, e);
+    }
+    for (Map.Entry<String, Record> e : records.entrySet()) {
+      for (Object value : e.getValue().values) {
+        if (value instanceof PendingTimer) {
+          recoveredTimers.add(e.getKey());
+          break;
+        }
+      }
+    }
+    synchronized (journalLock) {
+      running = true;
+      failure = null;
+    }
+    writer = concurrentFactory != null ? concurrentFactory.getThread("SessionJournal", this) : new Thread(this, "SessionJournal");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (writer == null) {
+      return;
+    }
+    synchronized (journalLock) {
+      running = false;
+      journalLock.notifyAll();
+    }
+    try {
+      writer.join();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    writer = null;
+    closeJournal();
+    records.clear();
+    recoveredTimers.clear();
+  }
+
+  @Override
+  public boolean create(String sessionId, Class<? extends AppSession> appSessionIface) {
+    Record record = new Record(appSessionIface);
+    long entryBatch;
+    synchronized (record) {
+      if (records.putIfAbsent(sessionId, record) != null) {
+        return false;
+      }
+      try {
+        entryBatch = append(entry(OP_CREATE, sessionId, appSessionIface.getName(), -1, null));
+      }
+      catch (IllegalStateException e) {
+        records.remove(sessionId, record);
+        throw e;
+      }
+    }
+    awaitWritten(entryBatch);
+    return true;
+  }
+
+  @Override
+  public boolean exists(String sessionId) {
+    return records.containsKey(sessionId);
+  }
+
+  @Override
+  public Class<? extends AppSession> getAppSessionIface(String sessionId) {
+    Record record = records.get(sessionId);
+    return record != null ? record.appSessionIface : null;
+  }
+
+  @Override
+  public Object get(String sessionId, int attribute) {
+    Record record = records.get(sessionId);
+    if (record == null) {
+      return null;
+    }
+    synchronized (record) {
+      return attribute < record.values.length ? record.values[attribute] : null;
+    }
+  }
+
+  @Override
+  public boolean put(String sessionId, int attribute, Object value) {
+    if (attribute < 0 || attribute > MAX_ATTRIBUTE) {
+      throw new IllegalArgumentException("Attribute out of range: " + attribute);
+    }
+    Record record = records.get(sessionId);
+    if (record == null) {
+      return false;
+    }
+    long entryBatch;
+    synchronized (record) {
+      if (record.removed) {
+        return false;
+      }
+      entryBatch = set(sessionId, record, attribute, value);
+    }
+    awaitWritten(entryBatch);
+    return true;
+  }
+
+  @Override
+  public boolean remove(String sessionId) {
+    Record record = records.get(sessionId);
+    if (record == null) {
+      return false;
+    }
+    long entryBatch;
+    synchronized (record) {
+      if (record.removed) {
+        return false;
+      }
+      entryBatch = append(entry(OP_REMOVE, sessionId, null, -1, null));
+      record.removed = true;
+      records.remove(sessionId, record);
+    }
+    awaitWritten(entryBatch);
+    return true;
+  }
+
+  @Override
+  public int size() {
+    return records.size();
+  }
+
+  /**
+   * Schedules again timers of recovered sessions of given types, expired ones fire at once. Expired timer
+   * recreates its session, so timers of a type should be scheduled once application registered session factory
+   * of that type. Until then recovered timers are not valid timer handles.
+   *
+   * @param timerFacility timer facility of the stack, null drops recovered timers
+   * @param appSessionIfaces application session types of sessions whose timers are scheduled
+   * @return number of rescheduled timers
+   */
+  public int rescheduleTimers(ITimerFacility timerFacility, Collection<Class<? extends AppSession>> appSessionIfaces) {
+    int count = 0;
+    long now = System.currentTimeMillis();
+    for (Iterator<String> it = recoveredTimers.iterator(); it.hasNext(); ) {
+      String sessionId = it.next();
+      Record record = records.get(sessionId);
+      if (record == null) {
+        it.remove();
+        continue;
+      }
+      if (!appSessionIfaces.contains(record.appSessionIface)) {
+        continue;
+      }
+      synchronized (record) {
+        for (int i = 0; i < record.values.length && !record.removed; i++) {
+          if (record.values[i] instanceof PendingTimer) {
+            PendingTimer timer = (PendingTimer) record.values[i];
+            Serializable handle = timerFacility != null ?
+                timerFacility.schedule(sessionId, timer.timerName, Math.max(timer.expiryTime - now, 0)) : null;
+            set(sessionId, record, i, handle);
+            count++;
+          }
+        }
+      }
+      it.remove();
+    }
+    return count;
+  }
+
+  /**
+   * @return application session types of recovered sessions with timers not scheduled again yet
+   */
+  public Set<Class<? extends AppSession>> getRecoveredTimerTypes() {
+    Set<Class<? extends AppSession>> types = new HashSet<Class<? extends AppSession>>();
+    for (String sessionId : recoveredTimers) {
+      Record record = records.get(sessionId);
+      if (record != null) {
+        types.add(record.appSessionIface);
+      }
+    }
+    return types;
+  }
+
+  /**
+   * @return size of journal in bytes, as written by writer thread
+   */
+  public long getJournalSize() {
+    return journalSize;
+  }
+
+  /**
+   * Writes batches of journal entries until stopped, then writes remaining entries
+   */
+  @Override
+  public void run() {
+    while (true) {
+      byte[] data;
+      long batchId;
+      synchronized (journalLock) {
+        while (running && pending.size() == 0) {
+          try {
+            journalLock.wait();
+          }
+          catch (InterruptedException e) {
+            // stop() tells when to exit
+          }
+        }
+        if (pending.size() == 0) {
+          return;
+        }
+        data = pending.toByteArray();
+        pending.reset();
+        batchId = batch++;
+      }
+      try {
+        out.write(data);
+        if (sync) {
+          out.getChannel().force(false);
+        }
+        journalSize += data.length;
+      }
+      catch (IOException e) {
+        logger.error("Failure writing session journal " + file + ", session data changes fail until restart", e);
+        synchronized (journalLock) {
+          failure = e;
+          pending.reset();
+          journalLock.notifyAll();
+        }
+        return;
+      }
+      synchronized (journalLock) {
+        writtenBatch = batchId;
+        journalLock.notifyAll();
+      }
+      if (journalSize > compactSize && journalSize > 2 * snapshotSize) {
+        try {
+          compact();
+        }
+        catch (IOException e) {
+          logger.error("Failure compacting session journal " + file, e);
+        }
+      }
+    }
+  }
+
+  // -------------------- journal --------------------
+
+  /**
+   * Sets value of attribute and journals it, caller holds lock of record
+   *
+   * @return batch of journal entry
+   */
+  private long set(String sessionId, Record record, int attribute, Object value) {
+    if (record.values.length <= attribute && value == null) {
+      return 0;
+    }
+    long entryBatch = append(entry(OP_PUT, sessionId, null, attribute, value));
+    if (record.values.length <= attribute) {
+      record.values = Arrays.copyOf(record.values, Math.max(attribute + 1, record.values.length * 2));
+    }
+    record.values[attribute] = value;
+    return entryBatch;
+  }
+
+  /**
+   * @return batch of entry
+   */
+  private long append(byte[] entry) {
+    synchronized (journalLock) {
+      if (failure != null) {
+        throw new IllegalStateException("Session journal " + file + " can not be written", failure);
+      }
+      pending.write(entry, 0, entry.length);
+      journalLock.notifyAll();
+      return batch;
+    }
+  }
+
+  private void awaitWritten(long entryBatch) {
+    if (!sync || entryBatch == 0) {
+      return;
+    }
+    synchronized (journalLock) {
+      boolean interrupted = false;
+      while (running && failure == null && writtenBatch < entryBatch) {
+        try {
+          journalLock.wait();
+        }
+        catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      if (failure != null && writtenBatch < entryBatch) {
+        throw new IllegalStateException("Session journal " + file + " can not be written", failure);
+      }
+    }
+  }
+
+  private static byte[] entry(byte op, String sessionId, String appSessionIface, int attribute, Object value) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+      DataOutputStream data = new DataOutputStream(bytes);
+      data.writeInt(0);
+      data.writeInt(0);
+      data.writeByte(op);
+      data.writeUTF(sessionId);
+      if (op == OP_CREATE) {
+        data.writeUTF(appSessionIface);
+      }
+      else if (op == OP_PUT) {
+        data.writeByte(attribute);
+        writeValue(data, value);
+      }
+      data.flush();
+      byte[] entry = bytes.toByteArray();
+      CRC32 crc = new CRC32();
+      crc.update(entry, 8, entry.length - 8);
+      putInt(entry, 0, entry.length - 8);
+      putInt(entry, 4, (int) crc.getValue());
+      return entry;
+    }
+    catch (IOException e) {
+      // not thrown by byte array stream
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void writeValue(DataOutputStream data, Object value) throws IOException {
+    if (value instanceof Boolean) {
+      data.writeByte(((Boolean) value) ? TYPE_TRUE : TYPE_FALSE);
+    }
+    else if (value instanceof Integer) {
+      data.writeByte(TYPE_INT);
+      data.writeInt((Integer) value);
+    }
+    else if (value instanceof Long) {
+      data.writeByte(TYPE_LONG);
+      data.writeLong((Long) value);
+    }
+    else if (value instanceof String || value instanceof byte[]) {
+      byte[] bytes = value instanceof String ? ((String) value).getBytes("UTF-8") : (byte[]) value;
+      data.writeByte(value instanceof String ? TYPE_STRING : TYPE_BYTES);
+      data.writeInt(bytes.length);
+      data.write(bytes);
+    }
+    else if (value instanceof PendingTimer) {
+      data.writeByte(TYPE_TIMER);
+      data.writeUTF(((PendingTimer) value).timerName);
+      data.writeLong(((PendingTimer) value).expiryTime);
+    }
+    else if (value instanceof ITimerHandle && ((ITimerHandle) value).getTimerName() != null) {
+      ITimerHandle handle = (ITimerHandle) value;
+      data.writeByte(TYPE_TIMER);
+      data.writeUTF(handle.getTimerName());
+      data.writeLong(System.currentTimeMillis() + handle.getDelay());
+    }
+    else {
+      // null or kept in memory only
+      data.writeByte(TYPE_NULL);
+    }
+  }
+
+  private static Object readValue(DataInputStream data) throws IOException {
+    byte type = data.readByte();
+    switch (type) {
+      case TYPE_TRUE:
+        return Boolean.TRUE;
+      case TYPE_FALSE:
+        return Boolean.FALSE;
+      case TYPE_INT:
+        return data.readInt();
+      case TYPE_LONG:
+        return data.readLong();
+      case TYPE_STRING:
+      case TYPE_BYTES:
+        byte[] bytes = new byte[data.readInt()];
+        data.readFully(bytes);
+        return type == TYPE_STRING ? new String(bytes, "UTF-8") : bytes;
+      case TYPE_TIMER:
+        return new PendingTimer(data.readUTF(), data.readLong());
+      default:
+        return null;
+    }
+  }
+
+  private static void putInt(byte[] data, int position, int value) {
+    data[position] = (byte) (value >>> 24);
+    data[position + 1] = (byte) (value >>> 16);
+    data[position + 2] = (byte) (value >>> 8);
+    data[position + 3] = (byte) value;
+  }
+
+  private void replay(File journal) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)));
+    long entries = 0;
+    long position = 4;
+    try {
+      if (in.readInt() != MAGIC) {
+        logger.warn("File {} is not a session journal, sessions are not recovered", journal);
+        return;
+      }
+      CRC32 crc = new CRC32();
+      while (true) {
+        int length;
+        try {
+          length = in.readInt();
+        }
+        catch (EOFException e) {
+          break;
+        }
+        int checksum = in.readInt();
+        if (length <= 0 || length > MAX_ENTRY_SIZE) {
+          throw new EOFException();
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        crc.reset();
+        crc.update(payload, 0, length);
+        if ((int) crc.getValue() != checksum) {
+          throw new EOFException();
+        }
+        apply(payload);
+        entries++;
+        position += 8 + length;
+      }
+    }
+    catch (EOFException e) {
+      logger.warn("Session journal {} ends with torn entry at {}, it is dropped", journal, position);
+    }
+    finally {
+      in.close();
+    }
+    logger.info("Recovered {} sessions from {} entries of session journal {}", new Object[] {records.size(), entries, journal});
+  }
+
+  private void apply(byte[] payload) throws IOException {
+    DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+    byte op = data.readByte();
+    String sessionId = data.readUTF();
+    switch (op) {
+      case OP_CREATE:
+        String appSessionIface = data.readUTF();
+        try {
+          records.putIfAbsent(sessionId, new Record(Class.forName(appSessionIface).asSubclass(AppSession.class)));
+        }
+        catch (ClassNotFoundException e) {
+          logger.warn("Session {} of unknown application session type {} is not recovered", sessionId, appSessionIface);
+        }
+        break;
+      case OP_PUT:
+        int attribute = data.readByte();
+        Object value = readValue(data);
+        Record record = records.get(sessionId);
+        if (record != null && (value != null || attribute < record.values.length)) {
+          if (record.values.length <= attribute) {
+            record.values = Arrays.copyOf(record.values, attribute + 1);
+          }
+          record.values[attribute] = value;
+        }
+        break;
+      case OP_REMOVE:
+        records.remove(sessionId);
+        break;
+      default:
+        throw new IOException("Unknown session journal operation " + op);
+    }
+  }
+
+  /**
+   * Replaces journal with snapshot of live records. Changes made meanwhile are appended after the snapshot,
+   * replaying them again is harmless. Journal stays in place, under its name or as old journal, until the
+   * snapshot is forced to disk and renamed over it.
+   */
+  private void compact() throws IOException {
+    long start = System.currentTimeMillis();
+    File tmp = new File(file.getPath() + ".tmp");
+    FileOutputStream snapshot = new FileOutputStream(tmp);
+    int count = 0;
+    try {
+      DataOutputStream data = new DataOutputStream(new BufferedOutputStream(snapshot, 65536));
+      data.writeInt(MAGIC);
+      for (Map.Entry<String, Record> e : records.entrySet()) {
+        Record record = e.getValue();
+        synchronized (record) {
+          if (record.removed) {
+            continue;
+          }
+          data.write(entry(OP_CREATE, e.getKey(), record.appSessionIface.getName(), -1, null));
+          for (int i = 0; i < record.values.length; i++) {
+            if (record.values[i] != null) {
+              data.write(entry(OP_PUT, e.getKey(), null, i, record.values[i]));
+            }
+          }
+        }
+        count++;
+      }
+      data.flush();
+      snapshot.getChannel().force(true);
+    }
+    finally {
+      snapshot.close();
+    }
+    File old = oldJournal();
+    if (!tmp.renameTo(file)) {
+      if (!file.exists()) {
+        throw new IOException("Unable to rename " + tmp + " to session journal " + file);
+      }
+      // rename does not replace existing or open file everywhere, journal is moved aside until snapshot is in place
+      closeJournal();
+      if ((old.exists() && !old.delete()) || !file.renameTo(old) || !tmp.renameTo(file)) {
+        if (!file.exists() && !old.renameTo(file)) {
+          logger.error("Unable to move session journal {} back to {}, it is recovered from there on start", old, file);
+        }
+        out = new FileOutputStream(file.exists() ? file : old, true);
+        throw new IOException("Unable to replace session journal " + file + " with " + tmp);
+      }
+    }
+    forceDirectory();
+    if (old.exists() && !old.delete()) {
+      logger.debug("Unable to delete old session journal {}", old);
+    }
+    closeJournal();
+    out = new FileOutputStream(file, true);
+    journalSize = file.length();
+    snapshotSize = journalSize;
+    logger.debug("Compacted session journal {} to {} sessions, {} bytes in {}ms",
+        new Object[] {file, count, journalSize, System.currentTimeMillis() - start});
+  }
+
+  private File oldJournal() {
+    return new File(file.getPath() + ".old");
+  }
+
+  /**
+   * Forces directory of journal to disk, so renamed journal survives a crash of the host. This needs the file
+   * API of Java 7, it is looked up by reflection and the step is skipped on older runtimes and on platforms where
+   * directories can not be opened.
+   */
+  private void forceDirectory() {
+    File directory = file.getAbsoluteFile().getParentFile();
+    if (directory == null) {
+      return;
+    }
+    try {
+      Class<?> pathClass = Class.forName("java.nio.file.Path");
+      Class<?> optionClass = Class.forName("java.nio.file.OpenOption");
+      Object path = File.class.getMethod("toPath").invoke(directory);
+      Object options = Array.newInstance(optionClass, 1);
+      Array.set(options, 0, Class.forName("java.nio.file.StandardOpenOption").getField("READ").get(null));
+      FileChannel channel = (FileChannel) FileChannel.class.getMethod("open", pathClass, options.getClass()).invoke(null, path, options);
+      try {
+        channel.force(true);
+      }
+      finally {
+        channel.close();
+      }
+    }
+    catch (ClassNotFoundException e) {
+      // runtime older than Java 7
+    }
+    catch (InvocationTargetException e) {
+      logger.debug("Unable to force session journal directory " + directory, e.getCause());
+    }
+    catch (Exception e) {
+      logger.debug("Unable to force session journal directory " + directory, e);
+    }
+  }
+
+  private void closeJournal() {
+    if (out != null) {
+      try {
+        out.close();
+      }
+      catch (IOException e) {
+        logger.debug("Failure closing session journal", e);
+      }
+      out = null;
+    }
+  }
+
+  private static final class Record {
+
+    final Class<? extends AppSession> appSessionIface;
+    Object[] values = new Object[16];
+    boolean removed;
+
+    Record(Class<? extends AppSession> appSessionIface) {
+      this.appSessionIface = appSessionIface;
+    }
+  }
+
+  /**
+   * Timer recovered from journal, until it is scheduled again
+   */
+  private static final class PendingTimer implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    final String timerName;
+    final long expiryTime;
+
+    PendingTimer(String timerName, long expiryTime) {
+      this.timerName = timerName;
+      this.expiryTime = expiryTime;
+    }
+  }
+}
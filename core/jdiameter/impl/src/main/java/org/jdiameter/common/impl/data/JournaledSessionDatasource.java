@@ -0,0 +1,144 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.data;
+
+import static org.jdiameter.client.impl.helpers.Parameters.SessionJournalCompactSize;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionJournalFile;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionJournalSync;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.jdiameter.api.Configuration;
+import org.jdiameter.api.IllegalDiameterStateException;
+import org.jdiameter.api.app.AppSession;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.client.api.ISessionFactory;
+import org.jdiameter.common.api.concurrent.IConcurrentFactory;
+import org.jdiameter.common.api.timer.ITimerFacility;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Session datasource journaling data of Ro, CCA and Gx application sessions to a local file (see
+ * {@link JournaledSessionDataStore}), so these sessions and their pending timers are recovered when the node
+ * restarts, without a cluster. Recovered sessions are recreated when a request or timer needs them, once
+ * application has registered its session factories. Recovered timers are scheduled again only once the session
+ * factory of their session is registered, so an expired timer does not find its session missing.
+ *
+ * In the configuration, please use the following settings:
+ *
+ * <pre>
+ *   ...
+ *   <Extensions>
+ *   <SessionDatasource value="org.jdiameter.common.impl.data.JournaledSessionDatasource" />
+ *   </Extensions>
+ * </pre>
+ */
+public class JournaledSessionDatasource extends StoredSessionDatasource {
+
+  private static final Logger logger = LoggerFactory.getLogger(JournaledSessionDatasource.class);
+
+  // period of checks whether application registered session factories of sessions with recovered timers
+  private static final long TIMER_RECOVERY_PERIOD = 1000;
+
+  private ScheduledFuture<?> timerRecovery;
+
+  public JournaledSessionDatasource(IContainer container) {
+    super(container, createStore(container));
+  }
+
+  @Override
+  public synchronized void start() {
+    super.start();
+    int timers = rescheduleTimers();
+    logger.info("Recovered {} sessions, {} pending timers scheduled again", store.size(), timers);
+    if (!((JournaledSessionDataStore) store).getRecoveredTimerTypes().isEmpty() && container != null && container.getConcurrentFactory() != null) {
+      ScheduledExecutorService executor = container.getConcurrentFactory().getScheduledExecutorService(
+          IConcurrentFactory.ScheduledExecServices.ApplicationSession.name());
+      timerRecovery = executor.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          rescheduleTimers();
+        }
+      }, TIMER_RECOVERY_PERIOD, TIMER_RECOVERY_PERIOD, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (timerRecovery != null) {
+      timerRecovery.cancel(false);
+      timerRecovery = null;
+    }
+    super.stop();
+  }
+
+  /**
+   * Schedules again recovered timers of sessions whose application session factory is registered, stops
+   * checking once all recovered timers are scheduled
+   *
+   * @return number of rescheduled timers
+   */
+  protected synchronized int rescheduleTimers() {
+    JournaledSessionDataStore journal = (JournaledSessionDataStore) store;
+    if (container == null) {
+      // no stack to schedule timers or recreate sessions
+      return journal.rescheduleTimers(null, journal.getRecoveredTimerTypes());
+    }
+    ISessionFactory sessionFactory;
+    try {
+      sessionFactory = (ISessionFactory) container.getSessionFactory();
+    }
+    catch (IllegalDiameterStateException e) {
+      return 0;
+    }
+    List<Class<? extends AppSession>> ready = new ArrayList<Class<? extends AppSession>>();
+    for (Class<? extends AppSession> appSessionIface : journal.getRecoveredTimerTypes()) {
+      if (sessionFactory.getAppSessionFactory(appSessionIface) != null) {
+        ready.add(appSessionIface);
+      }
+    }
+    int timers = ready.isEmpty() ? 0 : journal.rescheduleTimers(container.getAssemblerFacility().getComponentInstance(ITimerFacility.class), ready);
+    if (timers > 0) {
+      logger.info("Scheduled again {} recovered timers of {} sessions", timers, ready);
+    }
+    if (journal.getRecoveredTimerTypes().isEmpty() && timerRecovery != null) {
+      timerRecovery.cancel(false);
+      timerRecovery = null;
+    }
+    return timers;
+  }
+
+  private static JournaledSessionDataStore createStore(IContainer container) {
+    Configuration config = container != null ? container.getConfiguration() : null;
+    String file = config != null ? config.getStringValue(SessionJournalFile.ordinal(), (String) SessionJournalFile.defValue()) :
+      (String) SessionJournalFile.defValue();
+    boolean sync = config != null ? config.getBooleanValue(SessionJournalSync.ordinal(), (Boolean) SessionJournalSync.defValue()) :
+      (Boolean) SessionJournalSync.defValue();
+    long compactSize = config != null ? config.getLongValue(SessionJournalCompactSize.ordinal(), (Long) SessionJournalCompactSize.defValue()) :
+      (Long) SessionJournalCompactSize.defValue();
+    return new JournaledSessionDataStore(new File(file), sync, compactSize, container != null ? container.getConcurrentFactory() : null);
+  }
+}
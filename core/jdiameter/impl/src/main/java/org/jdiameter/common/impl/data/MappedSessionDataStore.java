@@ -0,0 +1,663 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdiameter.api.app.AppSession;
+import org.jdiameter.common.api.data.ISessionDataStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Session data store keeping records off-heap, in a memory-mapped file. Only the index of records (Session-Id
+ * to position) and values kept by reference are on heap. The index is split in lock stripes, each stripe is an
+ * open addressing table of Session-Ids and primitive record references.
+ *
+ * Each record is a compact binary list of attributes:
+ * <pre>
+ *   int length, byte application session interface id, { byte attribute, byte type, value }*
+ * </pre>
+ * Records are stored in blocks of power of two size, from 64 bytes to 1 MB, taken from free lists or from the
+ * unused part of the file. When a record outgrows its block it is moved to a larger one. Each size class has its
+ * own free list and lock, the unused part of the file is taken without locking. Access to record of a session
+ * is serialized by its index stripe, so reads and updates cost a copy of the record, not an object graph.
+ *
+ * Content of the file is not meant to survive restart, the file is overwritten on start.
+ */
+public class MappedSessionDataStore implements ISessionDataStore {
+
+  private static final Logger logger = LoggerFactory.getLogger(MappedSessionDataStore.class);
+
+  // file is mapped in segments, records never cross segment boundary
+  private static final int SEGMENT_SHIFT = 28;
+  private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+  private static final int MIN_BLOCK_SHIFT = 6;
+  private static final int SIZE_CLASSES = 15;
+  // record reference holds size class in upper byte and file offset in the rest
+  private static final int CLASS_SHIFT = 56;
+  private static final long OFFSET_MASK = (1L << CLASS_SHIFT) - 1;
+  private static final int LOCK_STRIPES = 256;
+  private static final int MAX_ATTRIBUTE = 127;
+
+  private static final byte TYPE_TRUE = 1;
+  private static final byte TYPE_FALSE = 2;
+  private static final byte TYPE_INT = 3;
+  private static final byte TYPE_LONG = 4;
+  private static final byte TYPE_STRING = 5;
+  private static final byte TYPE_BYTES = 6;
+  private static final byte TYPE_REFERENCE = 7;
+
+  private final File configuredFile;
+  private final long capacity;
+
+  private File file;
+  private RandomAccessFile randomAccessFile;
+  private volatile MappedByteBuffer[] segments;
+
+  // start of unused part of file
+  private final AtomicLong top = new AtomicLong(0);
+  private final FreeList[] freeLists = new FreeList[SIZE_CLASSES];
+  private final AtomicLong usedBytes = new AtomicLong(0);
+
+  private final IndexStripe[] stripes = new IndexStripe[LOCK_STRIPES];
+  private final AtomicInteger records = new AtomicInteger(0);
+  // values which are not stored in file, indexed by attribute
+  private final ConcurrentHashMap<String, Object[]> references = new ConcurrentHashMap<String, Object[]>();
+  // there are few application session interfaces, so their index fits in a byte
+  private final List<Class<? extends AppSession>> appSessionIfaces = new CopyOnWriteArrayList<Class<? extends AppSession>>();
+
+  /**
+   * @param file file to map, null to use temporary file deleted on stop
+   * @param capacity size of file in bytes
+   */
+  public MappedSessionDataStore(File file, long capacity) {
+    this.configuredFile = file;
+    this.capacity = capacity;
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      stripes[i] = new IndexStripe();
+    }
+    for (int i = 0; i < SIZE_CLASSES; i++) {
+      freeLists[i] = new FreeList();
+    }
+  }
+
+  @Override
+  public synchronized void start() {
+    if (segments != null) {
+      return;
+    }
+    try {
+      file = configuredFile != null ? configuredFile : File.createTempFile("jdiameter-sessions", ".dat");
+      randomAccessFile = new RandomAccessFile(file, "rw");
+      randomAccessFile.setLength(capacity);
+      FileChannel channel = randomAccessFile.getChannel();
+      MappedByteBuffer[] mapped = new MappedByteBuffer[(int) ((capacity + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+      for (int i = 0; i < mapped.length; i++) {
+        long position = (long) i << SEGMENT_SHIFT;
+        mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.min(SEGMENT_SIZE, capacity - position));
+      }
+      top.set(0);
+      segments = mapped;
+      logger.debug("Mapped {} bytes of session data store file {}", capacity, file);
+    }
+    catch (IOException e) {
+      closeFile();
+      throw new IllegalStateException("Unable to map session data store file " + file, e);
+    }
+  }
+
+  @Override
+  public synchronized void stop() {
+    segments = null;
+    for (IndexStripe stripe : stripes) {
+      synchronized (stripe) {
+        records.addAndGet(-stripe.size);
+        stripe.clear();
+      }
+    }
+    references.clear();
+    for (FreeList freeList : freeLists) {
+      freeList.clear();
+    }
+    usedBytes.set(0);
+    closeFile();
+  }
+
+  @Override
+  public boolean create(String sessionId, Class<? extends AppSession> appSessionIface) {
+    if (segments == null) {
+      throw new IllegalStateException("Session data store is not started");
+    }
+    byte ifaceId = getAppSessionIfaceId(appSessionIface);
+    IndexStripe stripe = stripe(sessionId);
+    synchronized (stripe) {
+      if (stripe.get(sessionId) >= 0) {
+        return false;
+      }
+      long ref = allocate(5);
+      write(ref, new byte[] {ifaceId}, 1);
+      stripe.put(sessionId, ref);
+      records.incrementAndGet();
+      return true;
+    }
+  }
+
+  @Override
+  public boolean exists(String sessionId) {
+    IndexStripe stripe = stripe(sessionId);
+    synchronized (stripe) {
+      return stripe.get(sessionId) >= 0;
+    }
+  }
+
+  @Override
+  public Class<? extends AppSession> getAppSessionIface(String sessionId) {
+    IndexStripe stripe = stripe(sessionId);
+    synchronized (stripe) {
+      long ref = stripe.get(sessionId);
+      byte[] data = ref >= 0 ? read(ref) : null;
+      return data != null ? appSessionIfaces.get(data[0] & 0xFF) : null;
+    }
+  }
+
+  @Override
+  public Object get(String sessionId, int attribute) {
+    IndexStripe stripe = stripe(sessionId);
+    synchronized (stripe) {
+      long ref = stripe.get(sessionId);
+      byte[] data = ref >= 0 ? read(ref) : null;
+      if (data == null) {
+        return null;
+      }
+      int position = find(data, attribute);
+      return position < 0 ? null : decode(data, position, sessionId, attribute);
+    }
+  }
+
+  @Override
+  public boolean put(String sessionId, int attribute, Object value) {
+    if (attribute < 0 || attribute > MAX_ATTRIBUTE) {
+      throw new IllegalArgumentException("Attribute out of range: " + attribute);
+    }
+    IndexStripe stripe = stripe(sessionId);
+    synchronized (stripe) {
+      long ref = stripe.get(sessionId);
+      byte[] data = ref >= 0 ? read(ref) : null;
+      if (data == null) {
+        return false;
+      }
+      byte[] updated = update(data, attribute, value, sessionId);
+      long target = ref;
+      if (updated.length + 4 > blockSize(sizeClass(ref))) {
+        target = allocate(updated.length + 4);
+        stripe.put(sessionId, target);
+        free(ref);
+      }
+      write(target, updated, updated.length);
+      return true;
+    }
+  }
+
+  @Override
+  public boolean remove(String sessionId) {
+    IndexStripe stripe = stripe(sessionId);
+    synchronized (stripe) {
+      long ref = stripe.remove(sessionId);
+      references.remove(sessionId);
+      if (ref < 0) {
+        return false;
+      }
+      records.decrementAndGet();
+      free(ref);
+      return true;
+    }
+  }
+
+  @Override
+  public int size() {
+    return records.get();
+  }
+
+  /**
+   * @return bytes taken by blocks of records
+   */
+  public long getUsedBytes() {
+    return usedBytes.get();
+  }
+
+  /**
+   * @return size of file in bytes
+   */
+  public long getCapacity() {
+    return capacity;
+  }
+
+  // -------------------- record format --------------------
+
+  /**
+   * @return position of type of attribute in record, -1 if it is not set
+   */
+  private static int find(byte[] data, int attribute) {
+    int position = 1;
+    while (position < data.length) {
+      if (data[position] == attribute) {
+        return position + 1;
+      }
+      position = next(data, position + 1);
+    }
+    return -1;
+  }
+
+  /**
+   * @return position of next attribute, given position of type of attribute
+   */
+  private static int next(byte[] data, int typePosition) {
+    switch (data[typePosition]) {
+      case TYPE_INT:
+        return typePosition + 5;
+      case TYPE_LONG:
+        return typePosition + 9;
+      case TYPE_STRING:
+      case TYPE_BYTES:
+        return typePosition + 5 + getInt(data, typePosition + 1);
+      default:
+        return typePosition + 1;
+    }
+  }
+
+  private Object decode(byte[] data, int typePosition, String sessionId, int attribute) {
+    switch (data[typePosition]) {
+      case TYPE_TRUE:
+        return Boolean.TRUE;
+      case TYPE_FALSE:
+        return Boolean.FALSE;
+      case TYPE_INT:
+        return getInt(data, typePosition + 1);
+      case TYPE_LONG:
+        return ((long) getInt(data, typePosition + 1) << 32) | (getInt(data, typePosition + 5) & 0xFFFFFFFFL);
+      case TYPE_STRING:
+        try {
+          return new String(data, typePosition + 5, getInt(data, typePosition + 1), "UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+          throw new IllegalStateException(e);
+        }
+      case TYPE_BYTES:
+        return Arrays.copyOfRange(data, typePosition + 5, typePosition + 5 + getInt(data, typePosition + 1));
+      default:
+        Object[] values = references.get(sessionId);
+        return values != null && attribute < values.length ? values[attribute] : null;
+    }
+  }
+
+  /**
+   * @return record with attribute replaced by given value, or removed if value is null
+   */
+  private byte[] update(byte[] data, int attribute, Object value, String sessionId) {
+    byte[] encoded = encode(value);
+    int length = data.length + (encoded != null ? encoded.length + 1 : 0) + 1;
+    byte[] updated = new byte[length];
+    updated[0] = data[0];
+    int target = 1;
+    int position = 1;
+    while (position < data.length) {
+      int end = next(data, position + 1);
+      if (data[position] != attribute) {
+        System.arraycopy(data, position, updated, target, end - position);
+        target += end - position;
+      }
+      position = end;
+    }
+    if (encoded != null) {
+      updated[target++] = (byte) attribute;
+      System.arraycopy(encoded, 0, updated, target, encoded.length);
+      target += encoded.length;
+    }
+
+    Object[] values = references.get(sessionId);
+    if (encoded != null && encoded[0] == TYPE_REFERENCE) {
+      if (values == null || values.length <= attribute) {
+        values = values == null ? new Object[attribute + 1] : Arrays.copyOf(values, attribute + 1);
+        references.put(sessionId, values);
+      }
+      values[attribute] = value;
+    }
+    else if (values != null && attribute < values.length) {
+      values[attribute] = null;
+    }
+    return target == length ? updated : Arrays.copyOf(updated, target);
+  }
+
+  /**
+   * @return type and value of attribute, null for null value
+   */
+  private static byte[] encode(Object value) {
+    if (value == null) {
+      return null;
+    }
+    if (value instanceof Boolean) {
+      return new byte[] {((Boolean) value) ? TYPE_TRUE : TYPE_FALSE};
+    }
+    if (value instanceof Integer) {
+      byte[] encoded = new byte[5];
+      encoded[0] = TYPE_INT;
+      putInt(encoded, 1, (Integer) value);
+      return encoded;
+    }
+    if (value instanceof Long) {
+      long l = (Long) value;
+      byte[] encoded = new byte[9];
+      encoded[0] = TYPE_LONG;
+      putInt(encoded, 1, (int) (l >>> 32));
+      putInt(encoded, 5, (int) l);
+      return encoded;
+    }
+    if (value instanceof String || value instanceof byte[]) {
+      byte[] bytes;
+      try {
+        bytes = value instanceof String ? ((String) value).getBytes("UTF-8") : (byte[]) value;
+      }
+      catch (UnsupportedEncodingException e) {
+        throw new IllegalStateException(e);
+      }
+      byte[] encoded = new byte[5 + bytes.length];
+      encoded[0] = value instanceof String ? TYPE_STRING : TYPE_BYTES;
+      putInt(encoded, 1, bytes.length);
+      System.arraycopy(bytes, 0, encoded, 5, bytes.length);
+      return encoded;
+    }
+    return new byte[] {TYPE_REFERENCE};
+  }
+
+  private static int getInt(byte[] data, int position) {
+    return (data[position] << 24) | ((data[position + 1] & 0xFF) << 16) | ((data[position + 2] & 0xFF) << 8) | (data[position + 3] & 0xFF);
+  }
+
+  private static void putInt(byte[] data, int position, int value) {
+    data[position] = (byte) (value >>> 24);
+    data[position + 1] = (byte) (value >>> 16);
+    data[position + 2] = (byte) (value >>> 8);
+    data[position + 3] = (byte) value;
+  }
+
+  // -------------------- blocks --------------------
+
+  /**
+   * @return content of record, null if store was stopped
+   */
+  private byte[] read(long ref) {
+    MappedByteBuffer[] mapped = segments;
+    if (mapped == null) {
+      return null;
+    }
+    long offset = ref & OFFSET_MASK;
+    ByteBuffer segment = mapped[(int) (offset >>> SEGMENT_SHIFT)].duplicate();
+    int position = (int) (offset & (SEGMENT_SIZE - 1));
+    byte[] data = new byte[segment.getInt(position)];
+    segment.position(position + 4);
+    segment.get(data);
+    return data;
+  }
+
+  private void write(long ref, byte[] data, int length) {
+    MappedByteBuffer[] mapped = segments;
+    if (mapped == null) {
+      // stopped, records are gone
+      return;
+    }
+    long offset = ref & OFFSET_MASK;
+    ByteBuffer segment = mapped[(int) (offset >>> SEGMENT_SHIFT)].duplicate();
+    int position = (int) (offset & (SEGMENT_SIZE - 1));
+    segment.putInt(position, length);
+    segment.position(position + 4);
+    segment.put(data, 0, length);
+  }
+
+  private long allocate(int size) {
+    int sizeClass = MIN_BLOCK_SHIFT;
+    while ((1 << sizeClass) < size) {
+      sizeClass++;
+    }
+    sizeClass -= MIN_BLOCK_SHIFT;
+    if (sizeClass >= SIZE_CLASSES) {
+      throw new IllegalStateException("Session data record of " + size + " bytes is too large");
+    }
+    int blockSize = blockSize(sizeClass);
+    long offset = freeLists[sizeClass].poll();
+    if (offset < 0) {
+      long start;
+      do {
+        start = top.get();
+        offset = start;
+        long segmentEnd = ((offset >>> SEGMENT_SHIFT) + 1) << SEGMENT_SHIFT;
+        if (offset + blockSize > segmentEnd) {
+          // rest of segment is too small, left unused
+          offset = segmentEnd;
+        }
+        if (offset + blockSize > capacity) {
+          throw new IllegalStateException("Session data store is full, " + records.get() + " records in " + capacity + " bytes");
+        }
+      } while (!top.compareAndSet(start, offset + blockSize));
+    }
+    usedBytes.addAndGet(blockSize);
+    return ((long) sizeClass << CLASS_SHIFT) | offset;
+  }
+
+  private void free(long ref) {
+    int sizeClass = sizeClass(ref);
+    freeLists[sizeClass].add(ref & OFFSET_MASK);
+    usedBytes.addAndGet(-blockSize(sizeClass));
+  }
+
+  private static int sizeClass(long ref) {
+    return (int) (ref >>> CLASS_SHIFT);
+  }
+
+  private static int blockSize(int sizeClass) {
+    return 1 << (sizeClass + MIN_BLOCK_SHIFT);
+  }
+
+  private IndexStripe stripe(String sessionId) {
+    int h = sessionId.hashCode();
+    return stripes[(h ^ (h >>> 16)) & (LOCK_STRIPES - 1)];
+  }
+
+  private byte getAppSessionIfaceId(Class<? extends AppSession> appSessionIface) {
+    int id = appSessionIfaces.indexOf(appSessionIface);
+    if (id < 0) {
+      synchronized (appSessionIfaces) {
+        id = appSessionIfaces.indexOf(appSessionIface);
+        if (id < 0) {
+          if (appSessionIfaces.size() > 255) {
+            throw new IllegalStateException("Too many application session types");
+          }
+          appSessionIfaces.add(appSessionIface);
+          id = appSessionIfaces.size() - 1;
+        }
+      }
+    }
+    return (byte) id;
+  }
+
+  private void closeFile() {
+    if (randomAccessFile != null) {
+      try {
+        randomAccessFile.close();
+      }
+      catch (IOException e) {
+        logger.debug("Failure closing session data store file", e);
+      }
+      randomAccessFile = null;
+    }
+    if (file != null && configuredFile == null && !file.delete()) {
+      file.deleteOnExit();
+    }
+    file = null;
+  }
+
+  /**
+   * Offsets of free blocks of one size class
+   */
+  private static final class FreeList {
+
+    private long[] blocks = new long[16];
+    private int count;
+
+    /**
+     * @return offset of free block, -1 if there is none
+     */
+    synchronized long poll() {
+      return count > 0 ? blocks[--count] : -1;
+    }
+
+    synchronized void add(long offset) {
+      if (count == blocks.length) {
+        blocks = Arrays.copyOf(blocks, count * 2);
+      }
+      blocks[count++] = offset;
+    }
+
+    synchronized void clear() {
+      count = 0;
+    }
+  }
+
+  /**
+   * Open addressing table of Session-Ids and record references with linear probing. Access is guarded by
+   * monitor of the stripe, which also serializes access to records of its sessions.
+   */
+  private static final class IndexStripe {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] keys;
+    private long[] refs;
+    // table is indexed by upper bits of Fibonacci hash, as lower bits of hash select the stripe
+    private int shift;
+    private int size;
+
+    IndexStripe() {
+      clear();
+    }
+
+    /**
+     * @return record reference, -1 if there is none
+     */
+    long get(String sessionId) {
+      int mask = keys.length - 1;
+      for (int slot = slot(sessionId); keys[slot] != null; slot = (slot + 1) & mask) {
+        if (keys[slot].equals(sessionId)) {
+          return refs[slot];
+        }
+      }
+      return -1;
+    }
+
+    void put(String sessionId, long ref) {
+      int mask = keys.length - 1;
+      int slot = slot(sessionId);
+      while (keys[slot] != null) {
+        if (keys[slot].equals(sessionId)) {
+          refs[slot] = ref;
+          return;
+        }
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = sessionId;
+      refs[slot] = ref;
+      if (++size > keys.length >>> 1) {
+        resize(keys.length << 1);
+      }
+    }
+
+    /**
+     * @return removed record reference, -1 if there was none
+     */
+    long remove(String sessionId) {
+      int mask = keys.length - 1;
+      int slot = slot(sessionId);
+      while (keys[slot] != null && !keys[slot].equals(sessionId)) {
+        slot = (slot + 1) & mask;
+      }
+      if (keys[slot] == null) {
+        return -1;
+      }
+      long ref = refs[slot];
+      // following entries of the probe sequence are shifted back, so there are no tombstones
+      int gap = slot;
+      for (int next = (gap + 1) & mask; keys[next] != null; next = (next + 1) & mask) {
+        int home = slot(keys[next]);
+        if (((next - home) & mask) >= ((next - gap) & mask)) {
+          keys[gap] = keys[next];
+          refs[gap] = refs[next];
+          gap = next;
+        }
+      }
+      keys[gap] = null;
+      if (--size < keys.length >>> 3 && keys.length > INITIAL_CAPACITY) {
+        resize(keys.length >>> 1);
+      }
+      return ref;
+    }
+
+    void clear() {
+      keys = new String[INITIAL_CAPACITY];
+      refs = new long[INITIAL_CAPACITY];
+      shift = 32 - Integer.numberOfTrailingZeros(INITIAL_CAPACITY);
+      size = 0;
+    }
+
+    private int slot(String sessionId) {
+      return (sessionId.hashCode() * 0x9E3779B9) >>> shift;
+    }
+
+    private void resize(int capacity) {
+      String[] oldKeys = keys;
+      long[] oldRefs = refs;
+      keys = new String[capacity];
+      refs = new long[capacity];
+      shift = 32 - Integer.numberOfTrailingZeros(capacity);
+      int mask = capacity - 1;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != null) {
+          int slot = slot(oldKeys[i]);
+          while (keys[slot] != null) {
+            slot = (slot + 1) & mask;
+          }
+          keys[slot] = oldKeys[i];
+          refs[slot] = oldRefs[i];
+        }
+      }
+    }
+  }
+}
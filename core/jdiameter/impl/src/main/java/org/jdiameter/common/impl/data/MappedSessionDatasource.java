@@ -0,0 +1,56 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.data;
+
+import static org.jdiameter.client.impl.helpers.Parameters.SessionStoreFile;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionStoreSize;
+
+import java.io.File;
+
+import org.jdiameter.api.Configuration;
+import org.jdiameter.client.api.IContainer;
+
+/**
+ * Session datasource keeping data of Ro, CCA and Gx application sessions off-heap, in a memory-mapped file
+ * (see {@link MappedSessionDataStore}), so millions of sessions do not weigh on garbage collection.
+ *
+ * In the configuration, please use the following settings:
+ *
+ * <pre>
+ *   ...
+ *   <Extensions>
+ *   <SessionDatasource value="org.jdiameter.common.impl.data.MappedSessionDatasource" />
+ *   </Extensions>
+ * </pre>
+ */
+public class MappedSessionDatasource extends StoredSessionDatasource {
+
+  public MappedSessionDatasource(IContainer container) {
+    super(container, createStore(container != null ? container.getConfiguration() : null));
+  }
+
+  private static MappedSessionDataStore createStore(Configuration config) {
+    String file = config != null ? config.getStringValue(SessionStoreFile.ordinal(), (String) SessionStoreFile.defValue()) :
+      (String) SessionStoreFile.defValue();
+    long size = config != null ? config.getLongValue(SessionStoreSize.ordinal(), (Long) SessionStoreSize.defValue()) :
+      (Long) SessionStoreSize.defValue();
+    return new MappedSessionDataStore(file != null && file.length() > 0 ? new File(file) : null, size);
+  }
+}
@@ -0,0 +1,412 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.data;
+
+import static org.jdiameter.client.impl.helpers.Parameters.SessionDatasourceShards;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionIdleTimeout;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionMaxCount;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionSweepPeriod;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdiameter.api.BaseSession;
+import org.jdiameter.api.Configuration;
+import org.jdiameter.api.NetworkReqListener;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.client.api.ISession;
+import org.jdiameter.common.api.app.IAppSessionData;
+import org.jdiameter.common.api.app.IAppSessionDataFactory;
+import org.jdiameter.common.api.concurrent.IConcurrentFactory;
+import org.jdiameter.common.api.data.ISessionDatasource;
+import org.jdiameter.common.api.data.SessionLimitException;
+import org.jdiameter.common.api.statistic.IStatistic;
+import org.jdiameter.common.api.statistic.IStatisticManager;
+import org.jdiameter.common.api.statistic.IStatisticRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local implementation of session datasource with bounded number of sessions and idle expiry.
+ *
+ * Sessions are spread over a number of shards by Session-Id. Each entry keeps the time of last access through
+ * this datasource, a session is idle when neither this time nor its own last accessed time changed for
+ * {@link org.jdiameter.client.impl.helpers.Parameters#SessionIdleTimeout}. A periodic task sweeps one shard
+ * per run and releases idle sessions the same way application would, so sessions never released by application
+ * (lost termination requests, crashed peers) do not stay in memory forever. New sessions are rejected once
+ * {@link org.jdiameter.client.impl.helpers.Parameters#SessionMaxCount} sessions are stored, by
+ * {@link SessionLimitException}.
+ *
+ * In the configuration, please use the following settings:
+ *
+ * <pre>
+ *   ...
+ *   <Extensions>
+ *   <SessionDatasource value="org.jdiameter.common.impl.data.ShardedLocalDataSource" />
+ *   </Extensions>
+ * </pre>
+ */
+public class ShardedLocalDataSource implements ISessionDatasource {
+
+  private static final Logger logger = LoggerFactory.getLogger(ShardedLocalDataSource.class);
+
+  private final IContainer container;
+  // provides application session data factories
+  private final LocalDataSource localDataSource = new LocalDataSource();
+
+  private final List<ConcurrentHashMap<String, SessionEntry>> shards;
+  private final int mask;
+  private final long idleTimeout;
+  private final int maxSessions;
+  private final long sweepPeriod;
+
+  private final AtomicInteger liveSessions = new AtomicInteger(0);
+  private final AtomicLong expiredSessions = new AtomicLong(0);
+  private final AtomicLong rejectedSessions = new AtomicLong(0);
+
+  private ScheduledFuture<?> sweepHandle;
+  // only accessed from sweep task
+  private int nextShard;
+
+  private IStatisticManager statisticFactory;
+  private IStatistic statistic;
+
+  public ShardedLocalDataSource() {
+    this(null);
+  }
+
+  public ShardedLocalDataSource(IContainer container) {
+    this(container, container != null ? container.getConfiguration() : null);
+  }
+
+  ShardedLocalDataSource(IContainer container, Configuration config) {
+    this.container = container;
+    int shardCount = config != null ? config.getIntValue(SessionDatasourceShards.ordinal(), (Integer) SessionDatasourceShards.defValue()) :
+      (Integer) SessionDatasourceShards.defValue();
+    this.idleTimeout = config != null ? config.getLongValue(SessionIdleTimeout.ordinal(), (Long) SessionIdleTimeout.defValue()) :
+      (Long) SessionIdleTimeout.defValue();
+    this.maxSessions = config != null ? config.getIntValue(SessionMaxCount.ordinal(), (Integer) SessionMaxCount.defValue()) :
+      (Integer) SessionMaxCount.defValue();
+    this.sweepPeriod = config != null ? config.getLongValue(SessionSweepPeriod.ordinal(), (Long) SessionSweepPeriod.defValue()) :
+      (Long) SessionSweepPeriod.defValue();
+
+    int size = 1;
+    while (size < shardCount) {
+      size <<= 1;
+    }
+    this.shards = new ArrayList<ConcurrentHashMap<String, SessionEntry>>(size);
+    for (int i = 0; i < size; i++) {
+      shards.add(new ConcurrentHashMap<String, SessionEntry>());
+    }
+    this.mask = size - 1;
+  }
+
+  @Override
+  public boolean exists(String sessionId) {
+    return shard(sessionId).containsKey(sessionId);
+  }
+
+  @Override
+  public void setSessionListener(String sessionId, NetworkReqListener data) {
+    logger.debug("setSessionListener({}, {})", sessionId, data);
+
+    SessionEntry se = shard(sessionId).get(sessionId);
+    if (se != null) {
+      se.listener = data;
+      se.touch();
+    }
+    else {
+      throw new IllegalArgumentException("No Session entry for id: " + sessionId);
+    }
+  }
+
+  @Override
+  public NetworkReqListener getSessionListener(String sessionId) {
+    SessionEntry se = shard(sessionId).get(sessionId);
+    logger.debug("getSessionListener({}) => {}", sessionId, se);
+    if (se != null) {
+      se.touch();
+      return se.listener;
+    }
+    return null;
+  }
+
+  @Override
+  public NetworkReqListener removeSessionListener(String sessionId) {
+    SessionEntry se = shard(sessionId).get(sessionId);
+    logger.debug("removeSessionListener({}) => {}", sessionId, se);
+    if (se != null) {
+      NetworkReqListener lst = se.listener;
+      se.listener = null;
+      return lst;
+    }
+    else {
+      return null;
+    }
+  }
+
+  @Override
+  public void addSession(BaseSession session) {
+    logger.debug("addSession({})", session);
+    String sessionId = session.getSessionId();
+    ConcurrentHashMap<String, SessionEntry> shard = shard(sessionId);
+    SessionEntry se = shard.get(sessionId);
+    if (se != null) {
+      if (!(se.session instanceof ISession) || se.session.isReplicable()) { //must be not replicable so we can "overwrite"
+        throw new IllegalArgumentException("Sessin with id: " + sessionId + ", already exists!");
+      }
+      se.session = session;
+      se.touch();
+      return;
+    }
+
+    if (liveSessions.incrementAndGet() > maxSessions && maxSessions > 0) {
+      liveSessions.decrementAndGet();
+      rejectedSessions.incrementAndGet();
+      throw new SessionLimitException("Session with id: " + sessionId + " rejected, limit of " + maxSessions + " sessions reached");
+    }
+    se = new SessionEntry(session);
+    SessionEntry present = shard.putIfAbsent(sessionId, se);
+    if (present != null) {
+      // added concurrently
+      liveSessions.decrementAndGet();
+      present.session = session;
+      present.touch();
+    }
+  }
+
+  @Override
+  public BaseSession getSession(String sessionId) {
+    SessionEntry se = shard(sessionId).get(sessionId);
+    logger.debug("getSession({}) => {}", sessionId, se);
+    if (se != null) {
+      se.touch();
+      return se.session;
+    }
+    return null;
+  }
+
+  @Override
+  public void removeSession(String sessionId) {
+    SessionEntry se = shard(sessionId).remove(sessionId);
+    if (se != null) {
+      liveSessions.decrementAndGet();
+    }
+    logger.debug("removeSession({}) => {}", sessionId, se);
+  }
+
+  /* (non-Javadoc)
+   * @see org.jdiameter.common.api.data.ISessionDatasource#start()
+   */
+  @Override
+  public synchronized void start() {
+    createStatistic();
+    if (idleTimeout > 0 && sweepHandle == null && container != null && container.getConcurrentFactory() != null) {
+      ScheduledExecutorService executor = container.getConcurrentFactory().getScheduledExecutorService(
+          IConcurrentFactory.ScheduledExecServices.ApplicationSession.name());
+      // whole table is swept once per idle timeout at least
+      long period = Math.max(Math.min(sweepPeriod, idleTimeout / shards.size()), 1);
+      sweepHandle = executor.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          sweep(System.currentTimeMillis());
+        }
+      }, period, period, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /* (non-Javadoc)
+   * @see org.jdiameter.common.api.data.ISessionDatasource#stop()
+   */
+  @Override
+  public synchronized void stop() {
+    if (sweepHandle != null) {
+      sweepHandle.cancel(false);
+      sweepHandle = null;
+    }
+    if (statistic != null) {
+      statisticFactory.removeStatistic(statistic);
+      statistic = null;
+    }
+  }
+
+  @Override
+  public boolean isClustered() {
+    return false;
+  }
+
+  @Override
+  public IAppSessionDataFactory<? extends IAppSessionData> getDataFactory(Class<? extends IAppSessionData> x) {
+    return localDataSource.getDataFactory(x);
+  }
+
+  /**
+   * @return number of stored sessions
+   */
+  public int getLiveSessions() {
+    return liveSessions.get();
+  }
+
+  /**
+   * @return number of sessions released because they were idle
+   */
+  public long getExpiredSessions() {
+    return expiredSessions.get();
+  }
+
+  /**
+   * @return number of sessions not added because of session limit
+   */
+  public long getRejectedSessions() {
+    return rejectedSessions.get();
+  }
+
+  /**
+   * Releases idle sessions of the next shard
+   *
+   * @param now current time in milliseconds
+   */
+  protected void sweep(long now) {
+    ConcurrentHashMap<String, SessionEntry> shard = shards.get(nextShard);
+    nextShard = (nextShard + 1) & mask;
+
+    List<Map.Entry<String, SessionEntry>> idle = null;
+    for (Map.Entry<String, SessionEntry> e : shard.entrySet()) {
+      if (e.getValue().isIdle(now, idleTimeout)) {
+        if (idle == null) {
+          idle = new ArrayList<Map.Entry<String, SessionEntry>>();
+        }
+        idle.add(e);
+      }
+    }
+    if (idle == null) {
+      return;
+    }
+    for (Map.Entry<String, SessionEntry> e : idle) {
+      SessionEntry se = e.getValue();
+      if (!se.isIdle(now, idleTimeout)) {
+        continue;
+      }
+      logger.debug("Releasing session [{}] idle for more than {}ms", e.getKey(), idleTimeout);
+      try {
+        // normal release path, removes session from datasource
+        se.session.release();
+      }
+      catch (Exception ex) {
+        logger.warn("Failure releasing idle session [" + e.getKey() + "]", ex);
+      }
+      // release may leave entry in place, e.g. if session was already invalid, but must not drop one added meanwhile
+      if (shard.remove(e.getKey(), se)) {
+        liveSessions.decrementAndGet();
+      }
+      expiredSessions.incrementAndGet();
+    }
+  }
+
+  private ConcurrentHashMap<String, SessionEntry> shard(String sessionId) {
+    int h = sessionId.hashCode();
+    h ^= (h >>> 16);
+    return shards.get(h & mask);
+  }
+
+  private void createStatistic() {
+    if (statistic != null || container == null || container.getAssemblerFacility() == null) {
+      return;
+    }
+    statisticFactory = container.getAssemblerFacility().getComponentInstance(IStatisticManager.class);
+    if (statisticFactory == null) {
+      return;
+    }
+    IStatisticRecord liveRecord = statisticFactory.newCounterRecord(IStatisticRecord.Counters.LiveSessions, new IStatisticRecord.IntegerValueHolder() {
+      @Override
+      public int getValueAsInt() {
+        return getLiveSessions();
+      }
+
+      @Override
+      public String getValueAsString() {
+        return String.valueOf(getValueAsInt());
+      }
+    });
+    IStatisticRecord expiredRecord = statisticFactory.newCounterRecord(IStatisticRecord.Counters.ExpiredSessions, new IStatisticRecord.LongValueHolder() {
+      @Override
+      public long getValueAsLong() {
+        return getExpiredSessions();
+      }
+
+      @Override
+      public String getValueAsString() {
+        return String.valueOf(getValueAsLong());
+      }
+    });
+    IStatisticRecord rejectedRecord = statisticFactory.newCounterRecord(IStatisticRecord.Counters.RejectedSessions, new IStatisticRecord.LongValueHolder() {
+      @Override
+      public long getValueAsLong() {
+        return getRejectedSessions();
+      }
+
+      @Override
+      public String getValueAsString() {
+        return String.valueOf(getValueAsLong());
+      }
+    });
+    statistic = statisticFactory.newStatistic("sessionDatasource", IStatistic.Groups.SessionDatasource, liveRecord, expiredRecord, rejectedRecord);
+  }
+
+  @Override
+  public String toString() {
+    return "ShardedLocalDataSource [shards=" + shards.size() + ", sessions=" + liveSessions.get() + "]";
+  }
+
+  private static class SessionEntry {
+    volatile BaseSession session;
+    volatile NetworkReqListener listener;
+    volatile long lastAccess = System.currentTimeMillis();
+
+    SessionEntry(BaseSession session) {
+      this.session = session;
+    }
+
+    void touch() {
+      lastAccess = System.currentTimeMillis();
+    }
+
+    boolean isIdle(long now, long idleTimeout) {
+      long last = lastAccess;
+      BaseSession s = session;
+      if (s != null) {
+        last = Math.max(last, s.getLastAccessedTime());
+      }
+      return now - last >= idleTimeout;
+    }
+
+    @Override
+    public String toString() {
+      return "SessionEntry [session=" + session + ", listener=" + listener + "]";
+    }
+  }
+}
@@ -0,0 +1,331 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.data;
+
+import static org.jdiameter.client.impl.helpers.Parameters.SessionHotCount;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jdiameter.api.BaseSession;
+import org.jdiameter.api.IllegalDiameterStateException;
+import org.jdiameter.api.NetworkReqListener;
+import org.jdiameter.api.app.AppSession;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.client.api.ISessionFactory;
+import org.jdiameter.common.api.app.IAppSessionData;
+import org.jdiameter.common.api.app.IAppSessionDataFactory;
+import org.jdiameter.common.api.app.IAppSessionFactory;
+import org.jdiameter.common.api.app.cca.ICCASessionData;
+import org.jdiameter.common.api.app.gx.IGxSessionData;
+import org.jdiameter.common.api.app.ro.IRoSessionData;
+import org.jdiameter.common.api.data.ISessionDataStore;
+import org.jdiameter.common.api.data.ISessionDatasource;
+import org.jdiameter.common.impl.app.cca.CCAStoredSessionDataFactory;
+import org.jdiameter.common.impl.app.gx.GxStoredSessionDataFactory;
+import org.jdiameter.common.impl.app.ro.RoStoredSessionDataFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Session datasource keeping data of Ro, CCA and Gx application sessions in {@link ISessionDataStore}.
+ *
+ * Session objects of recently used sessions are kept in a {@link LocalDataSource}, up to
+ * {@link org.jdiameter.client.impl.helpers.Parameters#SessionHotCount} of them. Beyond that, the least recently
+ * used one (approximately, chosen from a sample) is dropped from memory, its data stays in the store. When the
+ * session is needed again, for a request or a timer, its application session is recreated from stored data, as
+ * {@code ReplicatedSessionDatasource} does with sessions of other nodes. Sessions of other applications are
+ * kept in memory only.
+ *
+ * A dropped session may still be in use, e.g. referenced by a pending request or by a queued task. Such session
+ * is reachable through a weak reference until it is garbage collected, and it is taken back instead of being
+ * recreated, so there is never more than one instance of a session.
+ */
+public class StoredSessionDatasource implements ISessionDatasource {
+
+  private static final Logger logger = LoggerFactory.getLogger(StoredSessionDatasource.class);
+
+  // number of sessions compared to choose one to drop from memory
+  private static final int EVICTION_SAMPLE = 16;
+  // upper bound of sessions dropped from memory by single addition
+  private static final int EVICTION_BATCH_SIZE = 4;
+  private static final int RECREATION_LOCK_STRIPES = 64;
+
+  protected final IContainer container;
+  protected final ISessionDataStore store;
+  protected final LocalDataSource localDataSource = new LocalDataSource();
+  protected final int hotCount;
+
+  private final HashMap<Class<? extends IAppSessionData>, IAppSessionDataFactory<? extends IAppSessionData>> appSessionDataFactories =
+      new HashMap<Class<? extends IAppSessionData>, IAppSessionDataFactory<? extends IAppSessionData>>();
+
+  // last access time of stored sessions kept in memory
+  private final ConcurrentHashMap<String, HotEntry> hot = new ConcurrentHashMap<String, HotEntry>();
+  // eviction cursor, guarded by itself
+  private final Object evictionLock = new Object();
+  private Iterator<Map.Entry<String, HotEntry>> evictionCursor;
+  // sessions dropped from memory, until garbage collected
+  private final ConcurrentHashMap<String, DroppedSession> dropped = new ConcurrentHashMap<String, DroppedSession>();
+  private final ReferenceQueue<BaseSession> collected = new ReferenceQueue<BaseSession>();
+  // recreation of a session is serialized by a lock stripe of its Session-Id
+  private final Object[] recreationLocks = new Object[RECREATION_LOCK_STRIPES];
+
+  public StoredSessionDatasource(IContainer container, ISessionDataStore store) {
+    this.container = container;
+    this.store = store;
+    this.hotCount = container != null && container.getConfiguration() != null ?
+        container.getConfiguration().getIntValue(SessionHotCount.ordinal(), (Integer) SessionHotCount.defValue()) :
+        (Integer) SessionHotCount.defValue();
+    appSessionDataFactories.put(IRoSessionData.class, new RoStoredSessionDataFactory(store, container));
+    appSessionDataFactories.put(ICCASessionData.class, new CCAStoredSessionDataFactory(store, container));
+    appSessionDataFactories.put(IGxSessionData.class, new GxStoredSessionDataFactory(store, container));
+    for (int i = 0; i < RECREATION_LOCK_STRIPES; i++) {
+      recreationLocks[i] = new Object();
+    }
+  }
+
+  @Override
+  public boolean exists(String sessionId) {
+    return localDataSource.exists(sessionId) || store.exists(sessionId);
+  }
+
+  @Override
+  public NetworkReqListener getSessionListener(String sessionId) {
+    if (localDataSource.exists(sessionId) || makeLocal(sessionId)) {
+      touch(sessionId);
+      return localDataSource.getSessionListener(sessionId);
+    }
+    return null;
+  }
+
+  @Override
+  public void setSessionListener(String sessionId, NetworkReqListener data) {
+    if (!localDataSource.exists(sessionId)) {
+      makeLocal(sessionId);
+    }
+    localDataSource.setSessionListener(sessionId, data);
+  }
+
+  @Override
+  public NetworkReqListener removeSessionListener(String sessionId) {
+    return localDataSource.removeSessionListener(sessionId);
+  }
+
+  @Override
+  public void addSession(BaseSession session) {
+    String sessionId = session.getSessionId();
+    localDataSource.addSession(session);
+    if (store.exists(sessionId)) {
+      if (hot.put(sessionId, new HotEntry()) == null) {
+        evict();
+      }
+    }
+  }
+
+  @Override
+  public BaseSession getSession(String sessionId) {
+    BaseSession session = localDataSource.getSession(sessionId);
+    if (session == null && makeLocal(sessionId)) {
+      session = localDataSource.getSession(sessionId);
+    }
+    if (session != null) {
+      touch(sessionId);
+    }
+    return session;
+  }
+
+  @Override
+  public void removeSession(String sessionId) {
+    localDataSource.removeSession(sessionId);
+    hot.remove(sessionId);
+    dropped.remove(sessionId);
+    store.remove(sessionId);
+  }
+
+  @Override
+  public void start() {
+    store.start();
+    localDataSource.start();
+  }
+
+  @Override
+  public void stop() {
+    localDataSource.stop();
+    store.stop();
+    hot.clear();
+    dropped.clear();
+  }
+
+  @Override
+  public boolean isClustered() {
+    return false;
+  }
+
+  @Override
+  public IAppSessionDataFactory<? extends IAppSessionData> getDataFactory(Class<? extends IAppSessionData> x) {
+    IAppSessionDataFactory<? extends IAppSessionData> factory = appSessionDataFactories.get(x);
+    return factory != null ? factory : localDataSource.getDataFactory(x);
+  }
+
+  /**
+   * @return number of stored sessions
+   */
+  public int getStoredSessions() {
+    return store.size();
+  }
+
+  /**
+   * @return number of stored sessions kept in memory
+   */
+  public int getHotSessions() {
+    return hot.size();
+  }
+
+  /**
+   * Takes back session dropped from memory if it is still in use, or recreates application session from stored data
+   *
+   * @return true if session is in memory now
+   */
+  protected boolean makeLocal(String sessionId) {
+    Class<? extends AppSession> appSessionIface = store.getAppSessionIface(sessionId);
+    if (appSessionIface == null) {
+      return false;
+    }
+    // the same session is not recreated twice
+    synchronized (recreationLock(sessionId)) {
+      if (localDataSource.getSession(sessionId) instanceof AppSession) {
+        return true;
+      }
+      DroppedSession handle = dropped.remove(sessionId);
+      BaseSession session = handle != null ? handle.get() : null;
+      if (session != null) {
+        logger.debug("Session [{}] dropped from memory is still in use, taking it back", sessionId);
+        addSession(session);
+        localDataSource.setSessionListener(sessionId, (NetworkReqListener) session);
+        return true;
+      }
+      try {
+        IAppSessionFactory fct = ((ISessionFactory) container.getSessionFactory()).getAppSessionFactory(appSessionIface);
+        if (fct == null) {
+          logger.warn("Session with id:{}, is in session data store, but no Application Session Factory for:{}.", sessionId, appSessionIface);
+          return false;
+        }
+        session = fct.getSession(sessionId, appSessionIface);
+        if (session == null) {
+          return false;
+        }
+        logger.debug("Recreated session [{}] from session data store", sessionId);
+        addSession(session);
+        localDataSource.setSessionListener(sessionId, (NetworkReqListener) session);
+        return true;
+      }
+      catch (IllegalDiameterStateException e) {
+        logger.error("Failed to obtain factory from stack...");
+        return false;
+      }
+    }
+  }
+
+  private Object recreationLock(String sessionId) {
+    int h = sessionId.hashCode();
+    return recreationLocks[(h ^ (h >>> 16)) & (RECREATION_LOCK_STRIPES - 1)];
+  }
+
+  private void touch(String sessionId) {
+    HotEntry entry = hot.get(sessionId);
+    if (entry != null) {
+      entry.lastAccess = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Drops least recently used of sampled sessions from memory while there are too many of them. Sampling goes
+   * round the table, so all sessions are sampled in turn.
+   */
+  private void evict() {
+    purgeCollected();
+    if (hot.size() <= hotCount) {
+      return;
+    }
+    synchronized (evictionLock) {
+      for (int n = 0; n < EVICTION_BATCH_SIZE && hot.size() > hotCount; n++) {
+        String victim = null;
+        long oldest = Long.MAX_VALUE;
+        for (int i = 0; i < EVICTION_SAMPLE; i++) {
+          if (evictionCursor == null || !evictionCursor.hasNext()) {
+            evictionCursor = hot.entrySet().iterator();
+            if (!evictionCursor.hasNext()) {
+              break;
+            }
+          }
+          Map.Entry<String, HotEntry> e = evictionCursor.next();
+          if (e.getValue().lastAccess < oldest && localDataSource.getSession(e.getKey()) instanceof AppSession) {
+            oldest = e.getValue().lastAccess;
+            victim = e.getKey();
+          }
+        }
+        if (victim == null) {
+          return;
+        }
+        logger.debug("Dropping session [{}] from memory, its data stays in session data store", victim);
+        hot.remove(victim);
+        BaseSession session = localDataSource.getSession(victim);
+        if (session != null) {
+          dropped.put(victim, new DroppedSession(victim, session, collected));
+        }
+        localDataSource.removeSession(victim);
+      }
+    }
+  }
+
+  /**
+   * Forgets dropped sessions which were garbage collected
+   */
+  private void purgeCollected() {
+    Reference<? extends BaseSession> ref;
+    while ((ref = collected.poll()) != null) {
+      DroppedSession handle = (DroppedSession) ref;
+      dropped.remove(handle.sessionId, handle);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "StoredSessionDatasource [stored=" + store.size() + ", hot=" + hot.size() + "]";
+  }
+
+  private static class HotEntry {
+    volatile long lastAccess = System.currentTimeMillis();
+  }
+
+  private static class DroppedSession extends WeakReference<BaseSession> {
+    final String sessionId;
+
+    DroppedSession(String sessionId, BaseSession session, ReferenceQueue<BaseSession> queue) {
+      super(session, queue);
+      this.sessionId = sessionId;
+    }
+  }
+}
@@ -0,0 +1,401 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.timer;
+
+import static org.jdiameter.client.impl.helpers.Parameters.TimerWheelSize;
+import static org.jdiameter.client.impl.helpers.Parameters.TimerWheelTickDuration;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdiameter.api.BaseSession;
+import org.jdiameter.api.Configuration;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.common.api.concurrent.IConcurrentFactory;
+import org.jdiameter.common.api.data.ISessionDatasource;
+import org.jdiameter.common.api.timer.ITimerFacility;
+import org.jdiameter.common.api.timer.ITimerHandle;
+import org.jdiameter.common.impl.app.AppSessionImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local implementation of {@link ITimerFacility} based on hashed timing wheel. Timers are kept in a ring of
+ * buckets, each covering one tick, timers further away than one revolution wait in their bucket for the
+ * remaining number of rounds. Scheduling and cancelling only queue the handle, the wheel itself is advanced
+ * by a single periodic task on the ApplicationSession executor, which also links and unlinks queued handles.
+ * Timers expiring on the same tick are dispatched to the executor in batches.
+ *
+ * Timers fire with tick precision, never before their time. The tick task is started by the first timer and
+ * cancelled by {@link #stop()}.
+ */
+public class HashedWheelTimerFacilityImpl implements ITimerFacility {
+
+  private static final Logger logger = LoggerFactory.getLogger(HashedWheelTimerFacilityImpl.class);
+
+  // upper bound of new timers linked per tick, keeps tick short when timers are created faster than they are linked
+  private static final int MAX_TRANSFERS_PER_TICK = 100000;
+  private static final int DISPATCH_BATCH_SIZE = 64;
+
+  private static final int STATE_PENDING = 0;
+  private static final int STATE_CANCELLED = 1;
+  private static final int STATE_EXPIRED = 2;
+
+  private final ScheduledExecutorService executor;
+  private final ISessionDatasource sessionDataSource;
+
+  private final long tickNanos;
+  private final Bucket[] wheel;
+  private final int mask;
+
+  private final Queue<TimerHandle> newTimers = new ConcurrentLinkedQueue<TimerHandle>();
+  private final Queue<TimerHandle> cancelledTimers = new ConcurrentLinkedQueue<TimerHandle>();
+  // tick task and wheel state below are guarded by wheel
+  private volatile boolean started;
+  private ScheduledFuture<?> tickTask;
+  private long startTime;
+  private long tick;
+
+  public HashedWheelTimerFacilityImpl(IContainer container) {
+    this(container.getConcurrentFactory().getScheduledExecutorService(IConcurrentFactory.ScheduledExecServices.ApplicationSession.name()),
+        container.getAssemblerFacility().getComponentInstance(ISessionDatasource.class), container.getConfiguration());
+  }
+
+  HashedWheelTimerFacilityImpl(ScheduledExecutorService executor, ISessionDatasource sessionDataSource, Configuration config) {
+    super();
+    this.executor = executor;
+    this.sessionDataSource = sessionDataSource;
+
+    long tickDuration = config != null ? config.getLongValue(TimerWheelTickDuration.ordinal(), (Long) TimerWheelTickDuration.defValue()) :
+      (Long) TimerWheelTickDuration.defValue();
+    int size = config != null ? config.getIntValue(TimerWheelSize.ordinal(), (Integer) TimerWheelSize.defValue()) :
+      (Integer) TimerWheelSize.defValue();
+
+    this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(tickDuration, 1));
+    int capacity = 1;
+    while (capacity < size) {
+      capacity <<= 1;
+    }
+    this.wheel = new Bucket[capacity];
+    for (int i = 0; i < capacity; i++) {
+      wheel[i] = new Bucket();
+    }
+    this.mask = capacity - 1;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see org.jdiameter.common.api.timer.ITimerFacility#schedule(java.lang.String, java.lang.String, long)
+   */
+  @Override
+  public Serializable schedule(String sessionId, String timerName, long milliseconds) throws IllegalArgumentException {
+    if (logger.isDebugEnabled()) {
+      logger.debug("Scheduling timer [{}] of session [{}]", timerName, sessionId);
+    }
+    start();
+    TimerHandle handle = new TimerHandle(sessionId, timerName, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(milliseconds, 0)));
+    newTimers.add(handle);
+    return handle;
+  }
+
+  /*
+   * (non-Javadoc)
+   * @see org.jdiameter.common.api.timer.ITimerFacility#cancel(java.io.Serializable)
+   */
+  @Override
+  public void cancel(Serializable f) {
+    if (f instanceof TimerHandle) {
+      TimerHandle handle = (TimerHandle) f;
+      if (handle.state.compareAndSet(STATE_PENDING, STATE_CANCELLED)) {
+        cancelledTimers.add(handle);
+      }
+    }
+  }
+
+  private void start() {
+    if (started) {
+      return;
+    }
+    synchronized (wheel) {
+      if (!started) {
+        startTime = System.nanoTime();
+        tick = 0;
+        long tickMillis = TimeUnit.NANOSECONDS.toMillis(tickNanos);
+        tickTask = executor.scheduleAtFixedRate(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              advance();
+            }
+            catch (Exception e) {
+              logger.error("Failure advancing timer wheel", e);
+            }
+          }
+        }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        started = true;
+      }
+    }
+  }
+
+  /**
+   * Cancels the tick task, timers still pending are dropped. Next scheduled timer starts the wheel again.
+   */
+  public void stop() {
+    synchronized (wheel) {
+      if (!started) {
+        return;
+      }
+      started = false;
+      tickTask.cancel(false);
+      tickTask = null;
+      TimerHandle handle;
+      while ((handle = newTimers.poll()) != null) {
+        handle.state.compareAndSet(STATE_PENDING, STATE_CANCELLED);
+      }
+      cancelledTimers.clear();
+      for (Bucket bucket : wheel) {
+        bucket.clear();
+      }
+    }
+  }
+
+  /**
+   * Processes all ticks which ended since last run, so no tick is missed when executor falls behind,
+   * timers of late ticks just expire in one batch.
+   */
+  private void advance() {
+    List<TimerHandle> expired = null;
+    synchronized (wheel) {
+      if (!started) {
+        return;
+      }
+      long now = System.nanoTime();
+      while (now - startTime >= (tick + 1) * tickNanos) {
+        unlinkCancelled();
+        linkNew();
+        expired = wheel[(int) (tick & mask)].expire(tick, expired);
+        tick++;
+      }
+    }
+    if (expired != null) {
+      for (int from = 0; from < expired.size(); from += DISPATCH_BATCH_SIZE) {
+        dispatch(expired.subList(from, Math.min(from + DISPATCH_BATCH_SIZE, expired.size())));
+      }
+    }
+  }
+
+  private void unlinkCancelled() {
+    TimerHandle handle;
+    while ((handle = cancelledTimers.poll()) != null) {
+      if (handle.bucket != null) {
+        handle.bucket.remove(handle);
+      }
+    }
+  }
+
+  private void linkNew() {
+    for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+      TimerHandle handle = newTimers.poll();
+      if (handle == null) {
+        break;
+      }
+      if (handle.state.get() != STATE_PENDING) {
+        continue;
+      }
+      // tick at the end of which handle is due, already passed ticks are served by the current one
+      long due = Math.max((handle.deadline - startTime + tickNanos - 1) / tickNanos - 1, tick);
+      handle.rounds = (due - tick) / wheel.length;
+      wheel[(int) (due & mask)].add(handle);
+    }
+  }
+
+  private void dispatch(final List<TimerHandle> batch) {
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          for (TimerHandle handle : batch) {
+            handle.expire();
+          }
+        }
+      });
+    }
+    catch (RejectedExecutionException e) {
+      logger.warn("Can not dispatch {} expired timers, executor is stopped", batch.size());
+    }
+  }
+
+  /**
+   * Passes expired timer to its session.
+   */
+  protected void timerExpired(String sessionId, String timerName) {
+    BaseSession bSession = sessionDataSource.getSession(sessionId);
+    if (bSession == null || !bSession.isAppSession()) {
+      logger.error("Base Session is null for sessionId: {}", sessionId);
+      return;
+    }
+    try {
+      AppSessionImpl impl = (AppSessionImpl) bSession;
+      impl.timerExpired(timerName);
+    }
+    catch (Exception e) {
+      logger.error("Caught exception from app session object!", e);
+    }
+  }
+
+  private static final class Bucket {
+
+    private TimerHandle head;
+    private TimerHandle tail;
+
+    void add(TimerHandle handle) {
+      handle.bucket = this;
+      if (tail == null) {
+        head = handle;
+        tail = handle;
+      }
+      else {
+        tail.next = handle;
+        handle.prev = tail;
+        tail = handle;
+      }
+    }
+
+    void remove(TimerHandle handle) {
+      if (handle.prev != null) {
+        handle.prev.next = handle.next;
+      }
+      else {
+        head = handle.next;
+      }
+      if (handle.next != null) {
+        handle.next.prev = handle.prev;
+      }
+      else {
+        tail = handle.prev;
+      }
+      handle.prev = null;
+      handle.next = null;
+      handle.bucket = null;
+    }
+
+    void clear() {
+      while (head != null) {
+        TimerHandle handle = head;
+        remove(handle);
+        handle.state.compareAndSet(STATE_PENDING, STATE_CANCELLED);
+      }
+    }
+
+    List<TimerHandle> expire(long tick, List<TimerHandle> expired) {
+      TimerHandle handle = head;
+      while (handle != null) {
+        TimerHandle next = handle.next;
+        if (handle.rounds <= 0) {
+          remove(handle);
+          if (handle.state.get() == STATE_PENDING) {
+            if (expired == null) {
+              expired = new ArrayList<TimerHandle>();
+            }
+            expired.add(handle);
+          }
+        }
+        else {
+          handle.rounds--;
+        }
+        handle = next;
+      }
+      return expired;
+    }
+  }
+
+  private final class TimerHandle implements Externalizable, ITimerHandle {
+
+    private static final long serialVersionUID = 1L;
+
+    // its not really serializable;
+    private final String sessionId;
+    private final String timerName;
+    private final long deadline;
+    private final AtomicInteger state = new AtomicInteger(STATE_PENDING);
+
+    // only accessed from tick task
+    private long rounds;
+    private Bucket bucket;
+    private TimerHandle prev;
+    private TimerHandle next;
+
+    TimerHandle(String sessionId, String timerName, long deadline) {
+      this.sessionId = sessionId;
+      this.timerName = timerName;
+      this.deadline = deadline;
+    }
+
+    void expire() {
+      if (!state.compareAndSet(STATE_PENDING, STATE_EXPIRED)) {
+        // cancelled after it was taken off the wheel
+        return;
+      }
+      try {
+        timerExpired(sessionId, timerName);
+      }
+      catch (Exception e) {
+        logger.error("Failure executing timer [" + timerName + "] of session " + sessionId, e);
+      }
+    }
+
+    @Override
+    public String getSessionId() {
+      return state.get() == STATE_PENDING ? sessionId : null;
+    }
+
+    @Override
+    public String getTimerName() {
+      return state.get() == STATE_PENDING ? timerName : null;
+    }
+
+    @Override
+    public long getDelay() {
+      return Math.max(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()), 0);
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+      throw new IOException("Failed to serialize local timer!");
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+      throw new IOException("Failed to deserialize local timer!");
+    }
+  }
+}
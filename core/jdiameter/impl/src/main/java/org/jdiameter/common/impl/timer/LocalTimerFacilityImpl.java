@@ -58,6 +58,7 @@ import org.jdiameter.client.api.IContainer;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.jdiameter.common.api.data.ISessionDatasource;
 import org.jdiameter.common.api.timer.ITimerFacility;
+import org.jdiameter.common.api.timer.ITimerHandle;
 import org.jdiameter.common.impl.app.AppSessionImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -156,7 +157,7 @@ public class LocalTimerFacilityImpl implements ITimerFacility {
     }
   }
 
-  private final class TimerTaskHandle implements Runnable, Externalizable {
+  private final class TimerTaskHandle implements Runnable, Externalizable, ITimerHandle {
     // its not really serializable;
     private String sessionId;
     private String timerName;
@@ -175,7 +176,7 @@ public class LocalTimerFacilityImpl implements ITimerFacility {
         else {
           try {
             AppSessionImpl impl = (AppSessionImpl) bSession;
-            impl.onTimer(timerName);
+            impl.timerExpired(timerName);
           }
           catch (Exception e) {
             logger.error("Caught exception from app session object!", e);
@@ -190,6 +191,22 @@ public class LocalTimerFacilityImpl implements ITimerFacility {
       }
     }
 
+    @Override
+    public String getSessionId() {
+      return sessionId;
+    }
+
+    @Override
+    public String getTimerName() {
+      return timerName;
+    }
+
+    @Override
+    public long getDelay() {
+      ScheduledFuture<?> f = future;
+      return f != null ? Math.max(f.getDelay(TimeUnit.MILLISECONDS), 0) : 0;
+    }
+
     /*
      * (non-Javadoc)
      *
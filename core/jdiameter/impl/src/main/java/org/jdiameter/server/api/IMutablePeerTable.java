@@ -64,11 +64,20 @@ public interface IMutablePeerTable extends MutablePeerTable, IPeerTable {
    */
   IMessage isDuplicate(IMessage request);
 
+  /**
+   * Save message to duplicate storage
+   * @param request request which is answered
+   * @param answer message
+   */
+  void saveToDuplicate(IMessage request, IMessage answer);
+
   /**
    * Save message to duplicate storage
    * @param key key of message
    * @param answer message
+   * @deprecated use {@link #saveToDuplicate(IMessage, IMessage)}, key is derived from request
    */
+  @Deprecated
   void saveToDuplicate(String key, IMessage answer);
 
   /**
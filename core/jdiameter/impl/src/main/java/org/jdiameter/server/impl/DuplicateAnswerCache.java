@@ -0,0 +1,243 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.server.impl;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.parser.IMessageParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Answers kept for duplicate request detection (RFC 6733, section 6.1.2), keyed by Origin-Host and End-to-End
+ * identifier of request.
+ *
+ * Entries are kept in a ring of time buckets, new entries go to the current bucket. Each {@link #rotate()}
+ * starts a new bucket and drops the oldest one as a whole, so expiration does not scan entries. With rotation
+ * every lifetime / {@link #BUCKETS} milliseconds an entry lives at least lifetime and less than
+ * lifetime * (1 + 1 / {@link #BUCKETS}) milliseconds. When cache is full the oldest non-empty bucket is dropped
+ * to make room for new entries.
+ *
+ * Origin hosts are interned to int ids, entries are keyed by the host id and End-to-End identifier packed into
+ * a long.
+ *
+ * Answers are stored as message clones or, if parser is given, as encoded bytes which are decoded on hit.
+ */
+public class DuplicateAnswerCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(DuplicateAnswerCache.class);
+
+  /**
+   * Number of buckets per lifetime, one more bucket is kept for entries of the current period
+   */
+  public static final int BUCKETS = 8;
+
+  private final int maxSize;
+  private final IMessageParser parser;
+
+  private final AtomicReferenceArray<Bucket> ring = new AtomicReferenceArray<Bucket>(BUCKETS + 1);
+  private volatile int current = 0;
+  private final AtomicInteger size = new AtomicInteger(0);
+
+  // ids are never reused, so entries of forgotten hosts can not be found under other hosts
+  private final ConcurrentHashMap<String, Integer> hostIds = new ConcurrentHashMap<String, Integer>();
+  private final AtomicInteger nextHostId = new AtomicInteger(0);
+
+  /**
+   * @param maxSize maximum number of answers, 0 disables storing
+   * @param parser parser used to store answers encoded, null to store message clones
+   */
+  public DuplicateAnswerCache(int maxSize, IMessageParser parser) {
+    this.maxSize = maxSize;
+    this.parser = parser;
+    for (int i = 0; i < ring.length(); i++) {
+      ring.set(i, new Bucket());
+    }
+  }
+
+  /**
+   * @return copy of answer stored for request with given origin host and end-to-end id, null if there is none
+   */
+  public IMessage get(String originHost, long endToEndId) {
+    Integer hostId = hostIds.get(originHost != null ? originHost : "");
+    if (hostId == null) {
+      return null;
+    }
+    Long key = key(hostId, endToEndId);
+    int index = current;
+    int length = ring.length();
+    // newest bucket first
+    for (int i = 0; i < length; i++) {
+      Object value = ring.get((index - i + length) % length).entries.get(key);
+      if (value != null) {
+        return decode(value);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Stores copy of answer to request with given origin host and end-to-end id
+   *
+   * @return false if answer was not stored because storing is disabled or answer can not be encoded
+   */
+  public boolean put(String originHost, long endToEndId, IMessage answer) {
+    if (maxSize <= 0) {
+      return false;
+    }
+    Object value = encode(answer);
+    if (value == null) {
+      return false;
+    }
+    if (size.get() >= maxSize) {
+      evict();
+    }
+    Long key = key(hostId(originHost != null ? originHost : ""), endToEndId);
+    while (true) {
+      Bucket bucket = ring.get(current);
+      // count of dropped bucket is negative, bucket which replaced it is taken on retry
+      if (bucket.count.incrementAndGet() > 0) {
+        size.incrementAndGet();
+        if (bucket.entries.put(key, value) != null && bucket.count.decrementAndGet() >= 0) {
+          size.decrementAndGet();
+        }
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Starts new bucket, dropping entries of the oldest one
+   */
+  public synchronized void rotate() {
+    int next = (current + 1) % ring.length();
+    int dropped = drop(next);
+    current = next;
+    if (logger.isDebugEnabled()) {
+      logger.debug("Dropped {} duplicate answer(s), {} left", dropped, size());
+    }
+  }
+
+  public synchronized void clear() {
+    for (int i = 0; i < ring.length(); i++) {
+      drop(i);
+    }
+    hostIds.clear();
+  }
+
+  /**
+   * @return number of stored answers
+   */
+  public int size() {
+    return size.get();
+  }
+
+  /**
+   * Drops the oldest non-empty bucket, which is the current one if no other bucket holds entries
+   */
+  private synchronized void evict() {
+    if (size.get() < maxSize) {
+      return;
+    }
+    int length = ring.length();
+    for (int i = 1; i <= length; i++) {
+      int index = (current + i) % length;
+      if (ring.get(index).count.get() > 0) {
+        int dropped = drop(index);
+        if (logger.isDebugEnabled()) {
+          logger.debug("Duplicate answer cache is full, dropped {} answer(s)", dropped);
+        }
+        break;
+      }
+    }
+    // host ids are forgotten once there are more hosts than answers, their answers age out unreachable
+    if (hostIds.size() > maxSize) {
+      hostIds.clear();
+    }
+  }
+
+  /**
+   * Replaces bucket with an empty one, must be called while holding lock of cache
+   *
+   * @return number of dropped entries
+   */
+  private int drop(int index) {
+    Bucket dropped = ring.getAndSet(index, new Bucket());
+    // stays negative while late puts increment and decrement it
+    int count = dropped.count.getAndSet(Integer.MIN_VALUE / 2);
+    size.addAndGet(-count);
+    return count;
+  }
+
+  private int hostId(String originHost) {
+    Integer id = hostIds.get(originHost);
+    if (id == null) {
+      Integer newId = nextHostId.incrementAndGet();
+      id = hostIds.putIfAbsent(originHost, newId);
+      if (id == null) {
+        id = newId;
+      }
+    }
+    return id;
+  }
+
+  private static Long key(int hostId, long endToEndId) {
+    return ((long) hostId << 32) | (endToEndId & 0xFFFFFFFFL);
+  }
+
+  private Object encode(IMessage answer) {
+    if (parser == null) {
+      return answer.clone();
+    }
+    try {
+      ByteBuffer buffer = parser.encodeMessage(answer);
+      byte[] data = new byte[buffer.remaining()];
+      buffer.get(data);
+      return data;
+    }
+    catch (Exception e) {
+      logger.debug("Unable to encode answer for duplicate protection", e);
+      return null;
+    }
+  }
+
+  private IMessage decode(Object value) {
+    if (value instanceof IMessage) {
+      return (IMessage) ((IMessage) value).clone();
+    }
+    try {
+      return parser.createMessage((byte[]) value);
+    }
+    catch (Exception e) {
+      logger.debug("Unable to decode answer stored for duplicate protection", e);
+      return null;
+    }
+  }
+
+  private static class Bucket {
+
+    final ConcurrentHashMap<Long, Object> entries = new ConcurrentHashMap<Long, Object>();
+    final AtomicInteger count = new AtomicInteger(0);
+  }
+}
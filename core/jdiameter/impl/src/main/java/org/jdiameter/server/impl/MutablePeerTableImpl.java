@@ -52,6 +52,7 @@ import static org.jdiameter.common.api.concurrent.IConcurrentFactory.ScheduledEx
 import static org.jdiameter.server.impl.helpers.Parameters.AcceptUndefinedPeer;
 import static org.jdiameter.server.impl.helpers.Parameters.DuplicateProtection;
 import static org.jdiameter.server.impl.helpers.Parameters.DuplicateSize;
+import static org.jdiameter.server.impl.helpers.Parameters.DuplicateStoreEncoded;
 import static org.jdiameter.server.impl.helpers.Parameters.DuplicateTimer;
 import static org.jdiameter.server.impl.helpers.Parameters.PeerAttemptConnection;
 
@@ -140,7 +141,7 @@ public class MutablePeerTableImpl extends PeerTableImpl implements IMutablePeerT
   protected long duplicateTimer;
   protected ScheduledExecutorService duplicationScheduler = null;
   protected ScheduledFuture duplicationHandler = null;
-  protected ConcurrentHashMap<String, StorageEntry> storageAnswers = new ConcurrentHashMap<String, StorageEntry>();
+  protected DuplicateAnswerCache storageAnswers;
 
   protected boolean isAcceptUndefinedPeer  = false;
 
@@ -163,32 +164,6 @@ public class MutablePeerTableImpl extends PeerTableImpl implements IMutablePeerT
 
   private IContainer stack;
 
-  protected class StorageEntry {
-
-    private String duplicationKey;
-    private long time = System.currentTimeMillis();
-    private IMessage answer;
-
-    public StorageEntry(IMessage message) {
-      answer = message;
-      // duplicationKey = message.getDuplicationKey(); doesn't work because it's answer
-      String[] originInfo = router.getRequestRouteInfo(answer);
-      duplicationKey = message.getDuplicationKey(originInfo[0], message.getEndToEndIdentifier());
-    }
-
-    public IMessage getMessage() {
-      return answer;
-    }
-
-    public long getTime() {
-      return time;
-    }
-
-    public String getDuplicationKey() {
-      return duplicationKey;
-    }
-  }
-
   public MutablePeerTableImpl(Configuration config, MetaData metaData, IContainer stack, org.jdiameter.server.api.IRouter router,
       ISessionFactory sessionFactory, IFsmFactory fsmFactory, ITransportLayerFactory trFactory,
       IMessageParser parser, INetwork network, IOverloadManager ovrManager,
@@ -212,6 +187,8 @@ public class MutablePeerTableImpl extends PeerTableImpl implements IMutablePeerT
     if (this.duplicateProtection) {
       this.duplicateTimer = config.getLongValue(DuplicateTimer.ordinal(), (Long) DuplicateTimer.defValue());
       this.duplicateSize = config.getIntValue(DuplicateSize.ordinal(), (Integer) DuplicateSize.defValue());
+      boolean storeEncoded = config.getBooleanValue(DuplicateStoreEncoded.ordinal(), (Boolean) DuplicateStoreEncoded.defValue());
+      this.storageAnswers = new DuplicateAnswerCache(this.duplicateSize, storeEncoded ? parser : null);
     }
     logger.debug("Duplicate Protection Configuration: Enabled? {}, Timer: {}, Size: {}",
         new Object[]{this.duplicateProtection, this.duplicateTimer, this.duplicateSize});
@@ -307,31 +284,12 @@ public class MutablePeerTableImpl extends PeerTableImpl implements IMutablePeerT
       Runnable duplicateTask = new Runnable() {
         @Override
         public void run() {
-          long now = System.currentTimeMillis();
-          if (logger.isDebugEnabled()) {
-            logger.debug("Running Duplicate Cleaning Task. Duplicate Storage size is: {}. Removing entries with time <= '{}'",
-                storageAnswers.size(), now - duplicateTimer);
-          }
-          for (StorageEntry s : storageAnswers.values()) {
-            if (s != null && s.getTime() + duplicateTimer <= now) {
-              if (logger.isTraceEnabled()) {
-                logger.trace("Duplicate Cleaning Task - Removing Entry with key '{}' and time '{}'", s.getDuplicationKey(), s.getTime());
-              }
-              storageAnswers.remove(s.getDuplicationKey());
-            }
-            else {
-              if (logger.isTraceEnabled()) {
-                logger.trace("Duplicate Cleaning Task - Skipping Entry with key '{}' and time '{}'", s.getDuplicationKey(), s.getTime());
-              }
-            }
-          }
-          if (logger.isDebugEnabled()) {
-            logger.debug("Completed Duplicate Cleaning Task. New Duplicate Storage size is: {}. Total task runtime: {}ms",
-                storageAnswers.size(), System.currentTimeMillis() - now);
-          }
+          // drops the oldest time bucket, entries are not scanned
+          storageAnswers.rotate();
         }
       };
-      duplicationHandler = duplicationScheduler.scheduleAtFixedRate(duplicateTask, duplicateTimer, duplicateTimer, TimeUnit.MILLISECONDS);
+      long rotationPeriod = Math.max(duplicateTimer / DuplicateAnswerCache.BUCKETS, 1);
+      duplicationHandler = duplicationScheduler.scheduleAtFixedRate(duplicateTask, rotationPeriod, rotationPeriod, TimeUnit.MILLISECONDS);
     }
     //
     connScheduler = concurrentFactory.getScheduledExecutorService(ConnectionTimer.name());
@@ -425,6 +383,11 @@ public class MutablePeerTableImpl extends PeerTableImpl implements IMutablePeerT
                   unregister(true);
                 }
 
+                @Override
+                public void connectionWritabilityChanged(String connKey, boolean writable) {
+                  logger.debug("Connection [{}] writable [{}]", connKey, writable);
+                }
+
                 @Override
                 public void messageReceived(String connKey, IMessage message) {
                   logger.debug("Message [{}] received to peer [{}]", message, connKey);
@@ -618,7 +581,9 @@ public class MutablePeerTableImpl extends PeerTableImpl implements IMutablePeerT
       connHandler = null;
     }
     //remove incoming data
-    storageAnswers.clear();
+    if (storageAnswers != null) {
+      storageAnswers.clear();
+    }
 
     // Clear dynamic peers from peertable
     Iterator<String> it = super.peerTable.keySet().iterator();
@@ -727,27 +692,63 @@ public class MutablePeerTableImpl extends PeerTableImpl implements IMutablePeerT
 
   @Override
   public IMessage isDuplicate(IMessage request) {
-    String key = request.getDuplicationKey();
-    if (key != null && storageAnswers != null) {
-      StorageEntry entry = storageAnswers.get(key);
-      return entry != null ? (IMessage) entry.getMessage().clone() : null;
+    if (storageAnswers != null) {
+      String originHost = getOriginHost(request);
+      if (originHost != null) {
+        return storageAnswers.get(originHost, request.getEndToEndIdentifier());
+      }
     }
     return null;
   }
 
   @Override
+  public void saveToDuplicate(IMessage request, IMessage answer) {
+    if (storageAnswers != null) {
+      String originHost = getOriginHost(request);
+      if (originHost != null) {
+        saveToDuplicate(originHost, request.getEndToEndIdentifier(), answer);
+      }
+    }
+  }
+
+  @Override
+  @Deprecated
   public void saveToDuplicate(String key, IMessage answer) {
-    if (storageAnswers != null && storageAnswers.size() < duplicateSize) {
-      if (key != null) {
-        StorageEntry se = new StorageEntry((IMessage) answer.clone());
-        if (logger.isTraceEnabled()) {
-          logger.trace("Duplicate Protection - Inserting Entry with key '{}' and time '{}'", key, se.getTime());
-        }
-        storageAnswers.put(key, se);
+    if (storageAnswers != null && key != null) {
+      // key can not be split, origin host is taken from routing information of request
+      String[] originInfo = router.getRequestRouteInfo(answer);
+      if (originInfo != null) {
+        saveToDuplicate(originInfo[0], answer.getEndToEndIdentifier(), answer);
       }
     }
   }
 
+  /**
+   * Save answer to duplicate storage
+   * @param originHost Origin-Host of request
+   * @param endToEndId End-to-End identifier of request
+   * @param answer message
+   */
+  public void saveToDuplicate(String originHost, long endToEndId, IMessage answer) {
+    if (storageAnswers != null) {
+      boolean stored = storageAnswers.put(originHost, endToEndId, answer);
+      if (logger.isTraceEnabled()) {
+        logger.trace("Duplicate Protection - Inserting Entry with host '{}' and end-to-end id '{}': {}", new Object[]{originHost, endToEndId, stored});
+      }
+    }
+  }
+
+  private String getOriginHost(IMessage request) {
+    try {
+      Avp originHost = request.getAvps().getAvp(Avp.ORIGIN_HOST);
+      return originHost != null ? originHost.getDiameterIdentity() : null;
+    }
+    catch (AvpDataException e) {
+      logger.debug("Unable to read Origin-Host of request for duplicate protection", e);
+      return null;
+    }
+  }
+
   @Override
   public ISessionFactory getSessionFactory() {
     return sessionFactory;
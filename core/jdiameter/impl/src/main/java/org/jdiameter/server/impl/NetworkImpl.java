@@ -42,7 +42,11 @@
 
 package org.jdiameter.server.impl;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.jdiameter.api.ApplicationAlreadyUseException;
@@ -65,6 +69,8 @@ import org.jdiameter.server.api.IMutablePeerTable;
 import org.jdiameter.server.api.INetwork;
 import org.jdiameter.server.api.IRouter;
 import org.jdiameter.server.api.agent.IAgentConfiguration;
+import org.jdiameter.server.impl.helpers.ApplicationIdSelector;
+import org.jdiameter.server.impl.helpers.CommandCodeSelector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -84,7 +90,10 @@ public class NetworkImpl implements INetwork {
   private final ApplicationId commonAuthAppId = ApplicationId.createByAuthAppId(0, 0xffffffff);
   private final ApplicationId commonAccAppId = ApplicationId.createByAccAppId(0, 0xffffffff);
   private final ConcurrentHashMap<ApplicationId, NetworkReqListener> appIdToNetListener = new ConcurrentHashMap<ApplicationId, NetworkReqListener>();
-  private final ConcurrentHashMap<Selector, NetworkReqListener> selectorToNetListener = new ConcurrentHashMap<Selector, NetworkReqListener>();
+  private final ConcurrentHashMap<Selector<Message, ApplicationId>, NetworkReqListener> selectorToNetListener =
+      new ConcurrentHashMap<Selector<Message, ApplicationId>, NetworkReqListener>();
+  // selectors compiled for lookup by application id, rebuilt on each change of selectors
+  private volatile DispatchTable dispatchTable = new DispatchTable(new HashMap<Selector<Message, ApplicationId>, NetworkReqListener>());
 
   protected IStatistic statistic;
 
@@ -141,6 +150,7 @@ public class NetworkImpl implements INetwork {
   public void addNetworkReqListener(NetworkReqListener listener, Selector<Message, ApplicationId>... selectors) {
     for (Selector<Message, ApplicationId> s : selectors) {
       selectorToNetListener.put(s, listener);
+      compileSelectors();
       ApplicationId ap = s.getMetaData();
       metaData.addApplicationId(ap);
       router.getRealmTable().addLocalApplicationId(ap);
@@ -165,6 +175,7 @@ public class NetworkImpl implements INetwork {
   public void removeNetworkReqListener(Selector<Message, ApplicationId>... selectors) {
     for (Selector<Message, ApplicationId> s : selectors) {
       selectorToNetListener.remove(s);
+      compileSelectors();
       if (appIdToNetListener.containsKey(s.getMetaData())) {
         return;
       }
@@ -243,25 +254,104 @@ public class NetworkImpl implements INetwork {
     if (message == null) {
       return null;
     }
-    for (Selector<Message, ApplicationId> s : selectorToNetListener.keySet()) {
-      boolean r = s.checkRule(message);
-      if (r) {
-        return selectorToNetListener.get(s);
+    // extracted once, selectors compiled by application id do not have to read it again
+    ApplicationId appId = message.getSingleApplicationId();
+    DispatchTable table = this.dispatchTable;
+    NetworkReqListener listener = table.getListener(message, appId);
+    if (listener != null || appId == null) {
+      return listener;
+    }
+
+    listener = appIdToNetListener.get(commonAuthAppId);
+    if (listener == null) {
+      listener = appIdToNetListener.get(commonAccAppId);
+    }
+    return listener != null ? listener : appIdToNetListener.get(appId);
+  }
+
+  private synchronized void compileSelectors() {
+    this.dispatchTable = new DispatchTable(new HashMap<Selector<Message, ApplicationId>, NetworkReqListener>(selectorToNetListener));
+  }
+
+  /**
+   * Immutable dispatch structure of registered selectors. Selectors of known types are mapped directly by
+   * (command code, application id) or application id, other selectors are evaluated one by one.
+   */
+  private static class DispatchTable {
+
+    private final Map<ApplicationId, CommandListeners> byCommand = new HashMap<ApplicationId, CommandListeners>();
+    private final Map<ApplicationId, NetworkReqListener> byApplication = new HashMap<ApplicationId, NetworkReqListener>();
+    private final List<Selector<Message, ApplicationId>> generic = new ArrayList<Selector<Message, ApplicationId>>();
+    private final NetworkReqListener[] genericListeners;
+
+    DispatchTable(Map<Selector<Message, ApplicationId>, NetworkReqListener> selectors) {
+      List<NetworkReqListener> listeners = new ArrayList<NetworkReqListener>();
+      for (Map.Entry<Selector<Message, ApplicationId>, NetworkReqListener> e : selectors.entrySet()) {
+        Selector<Message, ApplicationId> s = e.getKey();
+        // exact class only, subclasses may override rule
+        if (s.getClass() == CommandCodeSelector.class) {
+          ApplicationId appId = s.getMetaData();
+          CommandListeners commands = byCommand.get(appId);
+          byCommand.put(appId, new CommandListeners(commands, ((CommandCodeSelector) s).getCommandCode(), e.getValue()));
+        }
+        else if (s.getClass() == ApplicationIdSelector.class) {
+          byApplication.put(s.getMetaData(), e.getValue());
+        }
+        else {
+          generic.add(s);
+          listeners.add(e.getValue());
+        }
       }
+      this.genericListeners = listeners.toArray(new NetworkReqListener[listeners.size()]);
     }
 
-    ApplicationId appId = message.getSingleApplicationId();
-    if (appId == null) {
+    NetworkReqListener getListener(IMessage message, ApplicationId appId) {
+      if (appId != null) {
+        CommandListeners commands = byCommand.get(appId);
+        NetworkReqListener listener = commands != null ? commands.get(message.getCommandCode()) : null;
+        if (listener == null) {
+          listener = byApplication.get(appId);
+        }
+        if (listener != null) {
+          return listener;
+        }
+      }
+      for (int i = 0; i < genericListeners.length; i++) {
+        if (generic.get(i).checkRule(message)) {
+          return genericListeners[i];
+        }
+      }
       return null;
     }
-    if (appIdToNetListener.containsKey(commonAuthAppId)) {
-      return appIdToNetListener.get(commonAuthAppId);
-    }
-    else if (appIdToNetListener.containsKey(commonAccAppId)) {
-      return appIdToNetListener.get(commonAccAppId);
+  }
+
+  /**
+   * Listeners of one application id by command code, few entries so they are scanned
+   */
+  private static class CommandListeners {
+
+    private final int[] commandCodes;
+    private final NetworkReqListener[] listeners;
+
+    CommandListeners(CommandListeners previous, int commandCode, NetworkReqListener listener) {
+      int size = previous != null ? previous.commandCodes.length : 0;
+      this.commandCodes = new int[size + 1];
+      this.listeners = new NetworkReqListener[size + 1];
+      if (previous != null) {
+        System.arraycopy(previous.commandCodes, 0, commandCodes, 0, size);
+        System.arraycopy(previous.listeners, 0, listeners, 0, size);
+      }
+      commandCodes[size] = commandCode;
+      listeners[size] = listener;
     }
-    else {
-      return appIdToNetListener.get(appId);
+
+    NetworkReqListener get(int commandCode) {
+      for (int i = 0; i < commandCodes.length; i++) {
+        if (commandCodes[i] == commandCode) {
+          return listeners[i];
+        }
+      }
+      return null;
     }
   }
 
@@ -44,9 +44,11 @@ package org.jdiameter.server.impl;
 
 import static org.jdiameter.api.PeerState.DOWN;
 import static org.jdiameter.api.PeerState.INITIAL;
+import static org.jdiameter.api.PeerState.OKAY;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -69,6 +71,7 @@ import org.jdiameter.client.api.IRequest;
 import org.jdiameter.client.api.ISessionFactory;
 import org.jdiameter.client.api.controller.IRealm;
 import org.jdiameter.client.api.controller.IRealmTable;
+import org.jdiameter.client.api.fsm.EventTypes;
 import org.jdiameter.client.api.fsm.IContext;
 import org.jdiameter.client.api.io.IConnection;
 import org.jdiameter.client.api.io.ITransportLayerFactory;
@@ -76,6 +79,7 @@ import org.jdiameter.client.api.io.TransportException;
 import org.jdiameter.client.api.parser.IMessageParser;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.jdiameter.common.api.data.ISessionDatasource;
+import org.jdiameter.common.api.data.SessionLimitException;
 import org.jdiameter.common.api.statistic.IStatisticManager;
 import org.jdiameter.common.api.statistic.IStatisticRecord;
 import org.jdiameter.server.api.IFsmFactory;
@@ -96,6 +100,9 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
 
   private static final Logger logger = LoggerFactory.getLogger(org.jdiameter.server.impl.PeerImpl.class);
 
+  // limit of additional connections, including the ones opened by peer while it is already connected
+  private static final int MAX_STRIPES = 32;
+
   // External references
   private MutablePeerTableImpl peerTable;
   protected Set<String> predefinedPeerTable;
@@ -175,8 +182,17 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
       conn.addConnectionListener(connListener);
       // ammendonca: if we are receiving a new connection in such state, we may want to make it primary, right?
       this.connection = conn;
+      this.writable = true;
       logger.debug("Append external connection [{}]", conn.getKey());
     }
+    else if (OKAY == state && hasValidConnection() && stripes.length < MAX_STRIPES) {
+      // peer opens more connections to stripe its messages between them
+      logger.debug("Append external connection [{}] as additional connection", conn.getKey());
+      incConnections.remove(conn.getKey());
+      InboundStripeConnection stripe = new InboundStripeConnection(conn);
+      conn.addConnectionListener(stripe);
+      addStripe(stripe);
+    }
     else {
       logger.debug("Releasing connection [{}]", conn.getKey());
       incConnections.remove(conn.getKey());
@@ -192,6 +208,19 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
     }
   }
 
+  @Override
+  public boolean handleMessage(EventTypes type, IMessage message, String key) throws TransportException, OverloadException, InternalException {
+    if (type == EventTypes.CER_EVENT) {
+      for (StripeConnection stripe : stripes) {
+        if (stripe instanceof InboundStripeConnection && ((InboundStripeConnection) stripe).hasKey(key)) {
+          ((InboundStripeConnection) stripe).processCer(message);
+          return true;
+        }
+      }
+    }
+    return super.handleMessage(type, message, key);
+  }
+
   @Override
   public void setElection(boolean isElection) {
     this.isElection = isElection;
@@ -210,12 +239,58 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
     return "SPeer{" + "Uri=" + uri + "; State=" + fsm + "; con=" + connection + "; incCon" + incConnections + " }";
   }
 
+  /**
+   * Additional connection opened by peer while it is already connected. It is never reopened from this side,
+   * once closed it is removed from peer.
+   */
+  protected class InboundStripeConnection extends StripeConnection {
+
+    protected InboundStripeConnection(IConnection connection) {
+      this.connection = connection;
+    }
+
+    @Override
+    protected void connect() {
+      // opened by peer
+    }
+
+    protected boolean hasKey(String key) {
+      return connection.getKey().equals(key);
+    }
+
+    protected void processCer(IMessage cer) {
+      int resultCode = getCommonApplicationIds(cer).isEmpty() ? ResultCode.NO_COMMON_APPLICATION : ResultCode.SUCCESS;
+      send(((LocalActionConext) context).createCeaMessage(resultCode, cer, null));
+      ready = resultCode == ResultCode.SUCCESS;
+      logger.debug("CER received over additional connection [{}], connection is ready [{}]", connection.getKey(), ready);
+      if (!ready) {
+        disconnect();
+      }
+    }
+
+    @Override
+    public void connectionClosed(String connKey, List notSent) {
+      super.connectionClosed(connKey, notSent);
+      removeStripe(this);
+      connection.remConnectionListener(this);
+      try {
+        connection.release();
+      }
+      catch (IOException e) {
+        logger.debug("Can not release additional connection", e);
+      }
+    }
+  }
+
   protected class LocalActionConext extends ActionContext {
 
     @Override
     public void sendCeaMessage(int resultCode, Message cer,  String errMessage) throws TransportException, OverloadException {
       logger.debug("Send CEA message");
+      sendMessage(createCeaMessage(resultCode, cer, errMessage));
+    }
 
+    protected IMessage createCeaMessage(int resultCode, Message cer,  String errMessage) {
       IMessage message = parser.createEmptyMessage(Message.CAPABILITIES_EXCHANGE_ANSWER, 0);
       message.setRequest(false);
       message.setHopByHopIdentifier(cer.getHopByHopIdentifier());
@@ -237,7 +312,7 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
       if (errMessage != null) {
         message.getAvps().addAvp(Avp.ERROR_MESSAGE, errMessage, false);
       }
-      sendMessage(message);
+      return message;
     }
 
     @Override
@@ -523,7 +598,7 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
           router.registerRequestRouteInfo(message);
           IMessage answer = (IMessage) matched.getAgent().processRequest(req, matched);
           if (isDuplicateProtection && answer != null) {
-            peerTable.saveToDuplicate(message.getDuplicationKey(), answer);
+            peerTable.saveToDuplicate(message, answer);
           }
           isProcessed = true;
           if (answer != null) {
@@ -534,6 +609,11 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
           }
         }
         catch (Exception exc) {
+          if (isSessionLimitReached(exc)) {
+            logger.debug("Request [{}] rejected, because session limit is reached", message);
+            sendErrorAnswer(message, "Too many sessions", ResultCode.TOO_BUSY);
+            return true;
+          }
           // TODO: check this!!
           logger.warn("Error during processing message by " + matched.getAgent().getClass(), exc);
           sendErrorAnswer(message, "Unable to process", ResultCode.UNABLE_TO_COMPLY);
@@ -609,7 +689,7 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
                 router.registerRequestRouteInfo(message);
                 answer = (IMessage) listener.processRequest(message);
                 if (isDuplicateProtection && answer != null) {
-                  peerTable.saveToDuplicate(message.getDuplicationKey(), answer);
+                  peerTable.saveToDuplicate(message, answer);
                 }
                 isProcessed = true;
                 if (isProcessed && answer != null) {
@@ -620,6 +700,11 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
                 }
               }
               catch (Exception exc) {
+                if (isSessionLimitReached(exc)) {
+                  logger.debug("Request [{}] rejected, because session limit is reached", message);
+                  sendErrorAnswer(message, "Too many sessions", ResultCode.TOO_BUSY);
+                  return true;
+                }
                 // TODO: check this!!
                 logger.warn("Error during processing message by listener", exc);
                 sendErrorAnswer(message, "Unable to process", ResultCode.UNABLE_TO_COMPLY);
@@ -645,6 +730,21 @@ public class PeerImpl extends org.jdiameter.client.impl.controller.PeerImpl impl
       return isProcessed;
     }
 
+    /**
+     * Session factories and applications may wrap exception thrown by session datasource
+     *
+     * @param exc failure of request processing
+     * @return true if request failed because session datasource refused new session
+     */
+    private boolean isSessionLimitReached(Throwable exc) {
+      for (Throwable t = exc; t != null; t = t.getCause()) {
+        if (t instanceof SessionLimitException) {
+          return true;
+        }
+      }
+      return false;
+    }
+
     @Override
     public String toString() {
       return new StringBuffer("LocalActionConext [isRestoreConnection()=").append(isRestoreConnection()).append(", getPeerDescription()=").
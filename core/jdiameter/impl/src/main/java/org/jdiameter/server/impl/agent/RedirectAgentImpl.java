@@ -50,6 +50,7 @@ import org.jdiameter.api.Avp;
 import org.jdiameter.api.AvpDataException;
 import org.jdiameter.api.AvpSet;
 import org.jdiameter.api.IllegalDiameterStateException;
+import org.jdiameter.api.OverloadException;
 import org.jdiameter.api.Request;
 import org.jdiameter.api.ResultCode;
 import org.jdiameter.api.RouteException;
@@ -151,6 +152,11 @@ public class RedirectAgentImpl extends AgentImpl implements IRedirect {
           logger.debug("Failure when trying to send failure answer", ioe);
         }
       }
+      catch (OverloadException oe) {
+        if (logger.isDebugEnabled()) {
+          logger.debug("Failure when trying to send failure answer", oe);
+        }
+      }
     }
     return null;
   }
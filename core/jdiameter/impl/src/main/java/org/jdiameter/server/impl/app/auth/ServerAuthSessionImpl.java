@@ -387,7 +387,7 @@ public class ServerAuthSessionImpl extends AppAuthSessionImpl implements ServerA
     rd.session = this;
     rd.request = request;
     rd.answer = answer;
-    super.scheduler.execute(rd);
+    super.execute(rd);
   }
 
   @Override
@@ -410,7 +410,7 @@ public class ServerAuthSessionImpl extends AppAuthSessionImpl implements ServerA
     RequestDelivery rd = new RequestDelivery();
     rd.session = this;
     rd.request = request;
-    super.scheduler.execute(rd);
+    super.execute(rd);
     return null;
   }
 
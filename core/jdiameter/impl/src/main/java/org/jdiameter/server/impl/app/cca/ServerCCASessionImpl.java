@@ -362,7 +362,7 @@ public class ServerCCASessionImpl extends AppCCASessionImpl implements ServerCCA
     //rd.session = (ServerCCASession) LocalDataSource.INSTANCE.getSession(request.getSessionId());
     rd.session = this;
     rd.request = request;
-    super.scheduler.execute(rd);
+    super.execute(rd);
     return null;
   }
 
@@ -372,7 +372,7 @@ public class ServerCCASessionImpl extends AppCCASessionImpl implements ServerCCA
     rd.session = this;
     rd.request = request;
     rd.answer = answer;
-    super.scheduler.execute(rd);
+    super.execute(rd);
   }
 
   @Override
@@ -338,7 +338,7 @@ public class CxDxServerSessionImpl extends CxDxSession implements ServerCxDxSess
     rd.session = this;
     rd.request = request;
     rd.answer = answer;
-    super.scheduler.execute(rd);
+    super.execute(rd);
   }
 
   /*
@@ -364,7 +364,7 @@ public class CxDxServerSessionImpl extends CxDxSession implements ServerCxDxSess
     RequestDelivery rd = new RequestDelivery();
     rd.session = this;
     rd.request = request;
-    super.scheduler.execute(rd);
+    super.execute(rd);
     return null;
   }
 
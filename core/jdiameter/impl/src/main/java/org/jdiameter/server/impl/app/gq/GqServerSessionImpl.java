@@ -411,7 +411,7 @@ public class GqServerSessionImpl extends AppAuthSessionImpl implements GqServerS
     rd.session = this;
     rd.request = request;
     rd.answer = answer;
-    super.scheduler.execute(rd);
+    super.execute(rd);
   }
 
   @Override
@@ -434,7 +434,7 @@ public class GqServerSessionImpl extends AppAuthSessionImpl implements GqServerS
     RequestDelivery rd = new RequestDelivery();
     rd.session = this;
     rd.request = request;
-    super.scheduler.execute(rd);
+    super.execute(rd);
     return null;
   }
 
@@ -351,7 +351,7 @@ public class ServerGxSessionImpl extends AppGxSessionImpl implements ServerGxSes
     //rd.session = (ServerGxSession) LocalDataSource.INSTANCE.getSession(request.getSessionId());
     rd.session = this;
     rd.request = request;
-    super.scheduler.execute(rd);
+    super.execute(rd);
     return null;
   }
 
@@ -361,7 +361,7 @@ public class ServerGxSessionImpl extends AppGxSessionImpl implements ServerGxSes
     rd.session = this;
     rd.request = request;
     rd.answer = answer;
-    super.scheduler.execute(rd);
+    super.execute(rd);
   }
 
   @Override
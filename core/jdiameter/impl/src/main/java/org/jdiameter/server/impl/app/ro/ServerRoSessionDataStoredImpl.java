@@ -0,0 +1,71 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.server.impl.app.ro;
+
+import java.io.Serializable;
+
+import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.common.api.app.AppSessionDataStoredImpl;
+import org.jdiameter.common.api.app.ro.ServerRoSessionState;
+import org.jdiameter.common.api.data.ISessionDataStore;
+
+/**
+ * Server Ro session data kept in {@link ISessionDataStore}
+ */
+public class ServerRoSessionDataStoredImpl extends AppSessionDataStoredImpl implements IServerRoSessionData {
+
+  private static final int STATELESS = FIRST_ATTRIBUTE;
+  private static final int STATE = FIRST_ATTRIBUTE + 1;
+  private static final int TCCTIMER_ID = FIRST_ATTRIBUTE + 2;
+
+  public ServerRoSessionDataStoredImpl(String sessionId, ISessionDataStore store, IMessageParser parser) {
+    super(sessionId, store, parser);
+  }
+
+  @Override
+  public boolean isStateless() {
+    return getBoolean(STATELESS, true);
+  }
+
+  @Override
+  public void setStateless(boolean stateless) {
+    store.put(sessionId, STATELESS, stateless);
+  }
+
+  @Override
+  public ServerRoSessionState getServerRoSessionState() {
+    return getEnum(STATE, ServerRoSessionState.values(), ServerRoSessionState.IDLE);
+  }
+
+  @Override
+  public void setServerRoSessionState(ServerRoSessionState state) {
+    setEnum(STATE, state);
+  }
+
+  @Override
+  public Serializable getTccTimerId() {
+    return getTimerId(TCCTIMER_ID);
+  }
+
+  @Override
+  public void setTccTimerId(Serializable tccTimerId) {
+    setTimerId(TCCTIMER_ID, tccTimerId);
+  }
+}
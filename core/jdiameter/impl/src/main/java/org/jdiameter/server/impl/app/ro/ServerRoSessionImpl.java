@@ -370,7 +370,7 @@ public class ServerRoSessionImpl extends AppRoSessionImpl implements ServerRoSes
     //rd.session = (ServerRoSession) LocalDataSource.INSTANCE.getSession(request.getSessionId());
     rd.session = this;
     rd.request = request;
-    super.scheduler.execute(rd);
+    super.execute(rd);
     return null;
   }
 
@@ -380,7 +380,7 @@ public class ServerRoSessionImpl extends AppRoSessionImpl implements ServerRoSes
     rd.session = this;
     rd.request = request;
     rd.answer = answer;
-    super.scheduler.execute(rd);
+    super.execute(rd);
   }
 
   @Override
@@ -326,7 +326,7 @@ public class ServerRxSessionImpl extends AppRxSessionImpl implements ServerRxSes
     //rd.session = (ServerRxSession) LocalDataSource.INSTANCE.getSession(request.getSessionId());
     rd.session = this;
     rd.request = request;
-    super.scheduler.execute(rd);
+    super.execute(rd);
     return null;
   }
 
@@ -336,7 +336,7 @@ public class ServerRxSessionImpl extends AppRxSessionImpl implements ServerRxSes
     rd.session = this;
     rd.request = request;
     rd.answer = answer;
-    super.scheduler.execute(rd);
+    super.execute(rd);
   }
 
   /*
@@ -165,7 +165,7 @@ public class S13ServerSessionImpl extends S13Session implements ServerS13Session
     rd.session = this;
     rd.request = request;
     rd.answer = answer;
-    super.scheduler.execute(rd);
+    super.execute(rd);
   }
 
   @Override
@@ -182,7 +182,7 @@ public class S13ServerSessionImpl extends S13Session implements ServerS13Session
     RequestDelivery rd = new RequestDelivery();
     rd.session = this;
     rd.request = request;
-    super.scheduler.execute(rd);
+    super.execute(rd);
     return null;
   }
 
@@ -334,7 +334,7 @@ public class S6aServerSessionImpl extends S6aSession implements ServerS6aSession
     rd.session = this;
     rd.request = request;
     rd.answer = answer;
-    super.scheduler.execute(rd);
+    super.execute(rd);
   }
 
   /*
@@ -360,7 +360,7 @@ public class S6aServerSessionImpl extends S6aSession implements ServerS6aSession
     RequestDelivery rd = new RequestDelivery();
     rd.session = this;
     rd.request = request;
-    super.scheduler.execute(rd);
+    super.execute(rd);
     return null;
   }
 
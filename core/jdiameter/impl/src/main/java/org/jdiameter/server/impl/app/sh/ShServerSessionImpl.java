@@ -147,7 +147,7 @@ public class ShServerSessionImpl extends ShSession implements ServerShSession, E
     rd.session = this;
     rd.request = request;
     rd.answer = answer;
-    super.scheduler.execute(rd);
+    super.execute(rd);
   }
 
   @Override
@@ -174,7 +174,7 @@ public class ShServerSessionImpl extends ShSession implements ServerShSession, E
     RequestDelivery rd = new RequestDelivery();
     rd.session = this;
     rd.request = request;
-    super.scheduler.execute(rd);
+    super.execute(rd);
     return null;
   }
 
@@ -0,0 +1,58 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, TeleStax Inc. and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.server.impl.helpers;
+
+import org.jdiameter.api.ApplicationId;
+import org.jdiameter.api.Message;
+import org.jdiameter.api.Selector;
+import org.jdiameter.client.api.IMessage;
+
+/**
+ * Selects requests with given command code and application id. Network dispatches such selectors by direct
+ * lookup, without calling {@link #checkRule(Message)} for each request.
+ */
+public class CommandCodeSelector implements Selector<Message, ApplicationId> {
+
+  private final int commandCode;
+  private final ApplicationId applicationId;
+
+  public CommandCodeSelector(int commandCode, ApplicationId applicationId) {
+    if (applicationId == null) {
+      throw new IllegalArgumentException("Please set application id");
+    }
+
+    this.commandCode = commandCode;
+    this.applicationId = applicationId;
+  }
+
+  @Override
+  public boolean checkRule(Message message) {
+    return message != null && message.getCommandCode() == commandCode && ((IMessage) message).getSingleApplicationId().equals(applicationId);
+  }
+
+  public int getCommandCode() {
+    return commandCode;
+  }
+
+  @Override
+  public ApplicationId getMetaData() {
+    return applicationId;
+  }
+}
@@ -68,6 +68,10 @@ public class Parameters extends org.jdiameter.client.impl.helpers.Parameters {
    * Maximum number of Answers to keep for duplicate detection
    */
   public static final Parameters DuplicateSize = new Parameters("DuplicateSize", Integer.class, 5000);
+  /**
+   * Keep duplicate answers encoded instead of message objects
+   */
+  public static final Parameters DuplicateStoreEncoded = new Parameters("DuplicateStoreEncoded", Boolean.class, false);
   /**
    * On/Off
    */
@@ -140,6 +144,11 @@ public class Parameters extends org.jdiameter.client.impl.helpers.Parameters {
 
   public static final Parameters RequestTableClearSize = new Parameters("RequestTableClearSize", Integer.class, new Integer(2048));
 
+  /**
+   * Age in milliseconds after which request table entry is evicted, 0 disables age based eviction
+   */
+  public static final Parameters RequestTableMaxAge = new Parameters("RequestTableMaxAge", Long.class, 60000L);
+
   protected Parameters(String name, Class type) {
     super(name, type);
   }
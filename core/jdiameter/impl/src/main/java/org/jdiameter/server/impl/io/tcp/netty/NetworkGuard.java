@@ -29,7 +29,9 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import org.jdiameter.api.Configuration;
 import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.client.impl.transport.NettyUtils;
 import org.jdiameter.client.impl.transport.tcp.netty.TCPClientConnection;
 import org.jdiameter.common.api.concurrent.IConcurrentFactory;
 import org.jdiameter.server.api.IMetaData;
@@ -47,7 +49,6 @@ import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 
 /**
  * TCP implementation of {@link org.jdiameter.server.api.io.INetworkGuard}.
@@ -63,9 +64,13 @@ public class NetworkGuard implements INetworkGuard {
   protected int port;
   protected InetAddress[] localAddresses;
   protected long bindDelay;
+  protected Configuration config;
+  protected IConcurrentFactory concurrentFactory;
 
-  protected final EventLoopGroup bossGroup = new NioEventLoopGroup();
-  protected final EventLoopGroup workerGroup = new NioEventLoopGroup();
+  protected final EventLoopGroup bossGroup;
+  protected final EventLoopGroup workerGroup;
+  // groups are owned by stack when shared, they must not be shut down here
+  protected final boolean sharedGroups;
   protected List<Channel> channels = new CopyOnWriteArrayList<Channel>();
 
   protected final ScheduledExecutorService binderExecutor = Executors.newSingleThreadScheduledExecutor();
@@ -85,17 +90,23 @@ public class NetworkGuard implements INetworkGuard {
   private void bind(InetSocketAddress localAddress) {
     logger.debug("Binding to socket [{}]", localAddress);
     ServerBootstrap bootstrap = new ServerBootstrap();
-    bootstrap.group(bossGroup, workerGroup).channel(NioServerSocketChannel.class)
+    bootstrap.group(bossGroup, workerGroup).channel(NettyUtils.getServerSocketChannelClass(bossGroup))
         .childHandler(new ChannelInitializer<SocketChannel>() {
           @Override
           public void initChannel(SocketChannel ch) throws Exception {
+            NettyUtils.addFlushHandler(ch.pipeline(), config);
             ch.pipeline().addLast(new ClientHandler());
           }
         }).option(ChannelOption.SO_BACKLOG, 128).childOption(ChannelOption.SO_KEEPALIVE, true);
+    NettyUtils.configure(bootstrap, config, bossGroup);
 
     try {
-      channels.add(bootstrap.bind(localAddress).sync().channel());
-      logger.debug("Bound to socket [{}]", localAddress);
+      // with SO_REUSEPORT each bound channel gets its own event loop and kernel balances accepts between them
+      int acceptors = NettyUtils.getAcceptorCount(config, bossGroup);
+      for (int i = 0; i < acceptors; i++) {
+        channels.add(bootstrap.bind(localAddress).sync().channel());
+      }
+      logger.debug("Bound to socket [{}] with {} acceptor(s)", localAddress, acceptors);
     } catch (InterruptedException e) {
       logger.error("Failed to bind to socket " + localAddress, e);
     }
@@ -113,7 +124,7 @@ public class NetworkGuard implements INetworkGuard {
     public void channelActive(final ChannelHandlerContext ctx) {
       logger.debug("Received connection on socket [{}] from [{}]", ctx.channel().localAddress(), ctx.channel().remoteAddress());
 
-      TCPClientConnection client = new TCPClientConnection(ctx.channel(), parser);
+      TCPClientConnection client = new TCPClientConnection(ctx.channel(), concurrentFactory, parser);
       for (INetworkConnectionListener listener : listeners) {
         listener.newNetworkConnection(client);
       }
@@ -137,9 +148,15 @@ public class NetworkGuard implements INetworkGuard {
 
   public NetworkGuard(InetAddress[] inetAddress, int port, IConcurrentFactory concurrentFactory, IMessageParser parser,
       IMetaData data) throws Exception {
+    EventLoopGroup sharedGroup = concurrentFactory != null ? concurrentFactory.getTransportEventLoopGroup() : null;
+    this.sharedGroups = sharedGroup != null;
+    this.bossGroup = sharedGroups ? sharedGroup : new NioEventLoopGroup();
+    this.workerGroup = sharedGroups ? sharedGroup : new NioEventLoopGroup();
+    this.concurrentFactory = concurrentFactory;
     this.parser = parser;
     this.localAddresses = inetAddress;
     this.port = port;
+    this.config = data.getConfiguration();
     this.bindDelay = data.getConfiguration().getLongValue(BindDelay.ordinal(), (Long) BindDelay.defValue());
     this.binderExecutor.schedule(binderTask, bindDelay, TimeUnit.MILLISECONDS);
   }
@@ -162,8 +179,10 @@ public class NetworkGuard implements INetworkGuard {
   public void destroy() {
     logger.debug("Destroying network guard");
     closeChannels();
-    closeWorkerGroup();
-    closeBossGroup();
+    if (!sharedGroups) {
+      closeWorkerGroup();
+      closeBossGroup();
+    }
     binderExecutor.shutdown();
   }
 
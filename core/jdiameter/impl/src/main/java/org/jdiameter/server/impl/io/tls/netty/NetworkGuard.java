@@ -31,6 +31,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.jdiameter.api.Configuration;
 import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.client.impl.transport.NettyUtils;
 import org.jdiameter.client.impl.transport.tls.TLSUtils;
 import org.jdiameter.client.impl.transport.tls.netty.TLSClientConnection;
 import org.jdiameter.common.api.concurrent.DummyConcurrentFactory;
@@ -51,7 +52,6 @@ import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 
 /**
  *
@@ -68,9 +68,12 @@ public class NetworkGuard implements INetworkGuard {
   private Configuration localPeerSSLConfig;
   private IConcurrentFactory concurrentFactory;
   protected long bindDelay;
+  protected Configuration config;
 
-  protected final EventLoopGroup bossGroup = new NioEventLoopGroup();
-  protected final EventLoopGroup workerGroup = new NioEventLoopGroup();
+  protected final EventLoopGroup bossGroup;
+  protected final EventLoopGroup workerGroup;
+  // groups are owned by stack when shared, they must not be shut down here
+  protected final boolean sharedGroups;
   protected List<Channel> channels = new CopyOnWriteArrayList<Channel>();
 
   protected final ScheduledExecutorService binderExecutor = Executors.newSingleThreadScheduledExecutor();
@@ -90,17 +93,23 @@ public class NetworkGuard implements INetworkGuard {
   private void bind(InetSocketAddress localAddress) {
     logger.debug("Binding to socket [{}]", localAddress);
     ServerBootstrap bootstrap = new ServerBootstrap();
-    bootstrap.group(bossGroup, workerGroup).channel(NioServerSocketChannel.class)
+    bootstrap.group(bossGroup, workerGroup).channel(NettyUtils.getServerSocketChannelClass(bossGroup))
         .childHandler(new ChannelInitializer<SocketChannel>() {
           @Override
           public void initChannel(SocketChannel ch) throws Exception {
+            NettyUtils.addFlushHandler(ch.pipeline(), config);
             ch.pipeline().addLast(new ClientHandler());
           }
         }).option(ChannelOption.SO_BACKLOG, 128).childOption(ChannelOption.SO_KEEPALIVE, true);
+    NettyUtils.configure(bootstrap, config, bossGroup);
 
     try {
-      channels.add(bootstrap.bind(localAddress).sync().channel());
-      logger.debug("Bound to socket [{}]", localAddress);
+      // with SO_REUSEPORT each bound channel gets its own event loop and kernel balances accepts between them
+      int acceptors = NettyUtils.getAcceptorCount(config, bossGroup);
+      for (int i = 0; i < acceptors; i++) {
+        channels.add(bootstrap.bind(localAddress).sync().channel());
+      }
+      logger.debug("Bound to socket [{}] with {} acceptor(s)", localAddress, acceptors);
     } catch (InterruptedException e) {
       logger.error("Failed to bind to socket " + localAddress, e);
     }
@@ -137,6 +146,10 @@ public class NetworkGuard implements INetworkGuard {
 
   public NetworkGuard(InetAddress[] inetAddress, int port, IConcurrentFactory concurrentFactory, IMessageParser parser,
       IMetaData data) throws Exception {
+    EventLoopGroup sharedGroup = concurrentFactory != null ? concurrentFactory.getTransportEventLoopGroup() : null;
+    this.sharedGroups = sharedGroup != null;
+    this.bossGroup = sharedGroups ? sharedGroup : new NioEventLoopGroup();
+    this.workerGroup = sharedGroups ? sharedGroup : new NioEventLoopGroup();
     this.parser = parser;
     this.localAddresses = inetAddress;
     this.port = port;
@@ -157,6 +170,7 @@ public class NetworkGuard implements INetworkGuard {
       throw new IllegalArgumentException("No Security for security_reference '" + secRef + "'");
     }
 
+    this.config = data.getConfiguration();
     this.bindDelay = data.getConfiguration().getLongValue(BindDelay.ordinal(), (Long) BindDelay.defValue());
     this.binderExecutor.schedule(binderTask, bindDelay, TimeUnit.MILLISECONDS);
   }
@@ -179,8 +193,10 @@ public class NetworkGuard implements INetworkGuard {
   public void destroy() {
     logger.debug("Destroying network guard");
     closeChannels();
-    closeWorkerGroup();
-    closeBossGroup();
+    if (!sharedGroups) {
+      closeWorkerGroup();
+      closeBossGroup();
+    }
     binderExecutor.shutdown();
   }
 
@@ -0,0 +1,232 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.jdiameter.api.Answer;
+import org.jdiameter.api.EventListener;
+import org.jdiameter.api.Request;
+import org.jdiameter.client.api.IEventListener;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.impl.BaseSessionImpl.MyAnswerFuture;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestAnswerFuture {
+
+  private final MessageParser parser = new MessageParser();
+  private ScheduledThreadPoolExecutor scheduledFacility;
+
+  @BeforeMethod
+  public void setUp() {
+    scheduledFacility = new ScheduledThreadPoolExecutor(1);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    scheduledFacility.shutdownNow();
+  }
+
+  @Test
+  public void testAnswer() throws Exception {
+    IMessage request = createRequest();
+    MyAnswerFuture<Request, Answer> future = new MyAnswerFuture<Request, Answer>(request);
+    RecordingListener listener = new RecordingListener();
+    future.addListener(listener);
+    assertFalse(future.isDone());
+    try {
+      future.get(10, TimeUnit.MILLISECONDS);
+      fail("Pending future returned answer");
+    }
+    catch (TimeoutException e) {
+      // expected, nothing received yet
+    }
+
+    Answer answer = createAnswer(request);
+    future.receivedSuccessMessage(request, answer);
+    // late duplicate must not complete future again
+    future.receivedSuccessMessage(request, createAnswer(request));
+
+    assertTrue(future.isDone());
+    assertFalse(future.isCancelled());
+    assertSame(request, future.getRequest());
+    assertSame(answer, future.get());
+    assertSame(answer, future.get(1, TimeUnit.SECONDS));
+    assertEquals(1, listener.answers.size());
+    assertSame(answer, listener.answers.get(0));
+    assertEquals(0, listener.timeouts.size());
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    IMessage request = createRequest();
+    MyAnswerFuture<Request, Answer> future = new MyAnswerFuture<Request, Answer>(request);
+    RecordingListener listener = new RecordingListener();
+    future.addListener(listener);
+    sendWithTimer(request, future, 50);
+
+    try {
+      future.get(2, TimeUnit.SECONDS);
+      fail("Timed out request returned answer");
+    }
+    catch (ExecutionException e) {
+      assertTrue("Unexpected cause " + e.getCause(), e.getCause() instanceof TimeoutException);
+    }
+    assertTrue(future.isDone());
+    assertFalse(future.isCancelled());
+    // listeners are notified by timer thread after get() is released
+    assertTrue("Listener not notified", listener.notified.await(2, TimeUnit.SECONDS));
+    assertEquals(1, listener.timeouts.size());
+    assertSame(request, listener.timeouts.get(0));
+
+    // answer received after timeout is ignored
+    future.receivedSuccessMessage(request, createAnswer(request));
+    assertEquals(0, listener.answers.size());
+  }
+
+  @Test
+  public void testCancelClearsTimer() throws Exception {
+    IMessage request = createRequest();
+    MyAnswerFuture<Request, Answer> future = new MyAnswerFuture<Request, Answer>(request);
+    RecordingListener listener = new RecordingListener();
+    future.addListener(listener);
+    sendWithTimer(request, future, 60000);
+    assertEquals(1, scheduledFacility.getQueue().size());
+
+    assertTrue(future.cancel(false));
+    assertFalse("Cancelled twice", future.cancel(false));
+    assertEquals("Request timer still scheduled", 0, scheduledFacility.getQueue().size());
+    assertFalse(request.isTimeOut());
+    assertTrue(future.isCancelled());
+    assertTrue(future.isDone());
+    try {
+      future.get();
+      fail("Cancelled future returned answer");
+    }
+    catch (CancellationException e) {
+      // expected
+    }
+
+    future.receivedSuccessMessage(request, createAnswer(request));
+    assertEquals("Listener notified after cancel", 0, listener.answers.size());
+    assertEquals(0, listener.timeouts.size());
+  }
+
+  @Test
+  public void testListenerAddedAfterCompletion() throws Exception {
+    IMessage request = createRequest();
+    MyAnswerFuture<Request, Answer> future = new MyAnswerFuture<Request, Answer>(request);
+    Answer answer = createAnswer(request);
+    future.receivedSuccessMessage(request, answer);
+
+    RecordingListener listener = new RecordingListener();
+    future.addListener(listener);
+    assertEquals("Late listener not notified", 1, listener.answers.size());
+    assertSame(answer, listener.answers.get(0));
+    assertSame("Late listener notified by other thread", Thread.currentThread(), listener.thread);
+
+    MyAnswerFuture<Request, Answer> timedOut = new MyAnswerFuture<Request, Answer>(request);
+    timedOut.timeoutExpired(request);
+    RecordingListener timeoutListener = new RecordingListener();
+    timedOut.addListener(timeoutListener);
+    assertEquals(1, timeoutListener.timeouts.size());
+    assertEquals(0, timeoutListener.answers.size());
+  }
+
+  private IMessage createRequest() {
+    IMessage message = parser.createEmptyMessage(272, 4);
+    message.setRequest(true);
+    message.setHopByHopIdentifier(1);
+    return message;
+  }
+
+  private Answer createAnswer(IMessage request) {
+    IMessage answer = parser.createEmptyMessage(request);
+    answer.setRequest(false);
+    return (Answer) answer;
+  }
+
+  /**
+   * Arms request timer the way a session does when it sends the request, with the future as its listener.
+   */
+  private void sendWithTimer(IMessage request, final MyAnswerFuture<Request, Answer> future, long timeout) {
+    request.setListener(new IEventListener() {
+
+      @Override
+      public void receivedSuccessMessage(Request request, Answer answer) {
+        future.receivedSuccessMessage(request, answer);
+      }
+
+      @Override
+      public void timeoutExpired(Request request) {
+        future.timeoutExpired(request);
+      }
+
+      @Override
+      public void setValid(boolean value) {
+      }
+
+      @Override
+      public boolean isValid() {
+        return true;
+      }
+    });
+    request.createTimer(scheduledFacility, timeout, TimeUnit.MILLISECONDS);
+    request.startTimer();
+  }
+
+  private static class RecordingListener implements EventListener<Request, Answer> {
+
+    private final List<Answer> answers = new ArrayList<Answer>();
+    private final List<Request> timeouts = new ArrayList<Request>();
+    private final CountDownLatch notified = new CountDownLatch(1);
+    private Thread thread;
+
+    @Override
+    public void receivedSuccessMessage(Request request, Answer answer) {
+      thread = Thread.currentThread();
+      answers.add(answer);
+      notified.countDown();
+    }
+
+    @Override
+    public void timeoutExpired(Request request) {
+      thread = Thread.currentThread();
+      timeouts.add(request);
+      notified.countDown();
+    }
+  }
+}
@@ -0,0 +1,254 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.controller;
+
+import static org.jdiameter.client.impl.helpers.Parameters.PeerConnectionCount;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jdiameter.api.ApplicationId;
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.Message;
+import org.jdiameter.api.PeerState;
+import org.jdiameter.api.ResultCode;
+import org.jdiameter.api.URI;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.IMetaData;
+import org.jdiameter.client.api.controller.IPeer;
+import org.jdiameter.client.api.fsm.IFsmFactory;
+import org.jdiameter.client.api.fsm.IStateMachine;
+import org.jdiameter.client.api.io.IConnection;
+import org.jdiameter.client.api.io.ITransportLayerFactory;
+import org.jdiameter.client.impl.helpers.AppConfiguration;
+import org.jdiameter.client.impl.helpers.EmptyConfiguration;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.jdiameter.common.api.concurrent.DummyConcurrentFactory;
+import org.jdiameter.common.impl.statistic.StatisticManagerImpl;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestPeerImpl {
+
+  private final MessageParser parser = new MessageParser();
+  private final List<Stub> connections = new ArrayList<Stub>();
+  private PeerImpl peer;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    connections.clear();
+    Stub fsm = new Stub();
+    fsm.values.put("getState", PeerState.OKAY);
+    Stub fsmFactory = new Stub();
+    fsmFactory.values.put("createInstanceFsm", fsm.create(IStateMachine.class));
+    ITransportLayerFactory trFactory = (ITransportLayerFactory) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] {ITransportLayerFactory.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            Stub connection = new Stub();
+            connection.values.put("getKey", "connection" + connections.size());
+            connections.add(connection);
+            return connection.create(IConnection.class);
+          }
+        });
+    Stub localPeer = new Stub();
+    localPeer.values.put("getUri", new URI("aaa://local.test:3868"));
+    localPeer.values.put("getRealmName", "test");
+    localPeer.values.put("getIPAddresses", new InetAddress[0]);
+    localPeer.values.put("getProductName", "jDiameter");
+    localPeer.values.put("getCommonApplications", new HashSet<ApplicationId>());
+    Stub metaData = new Stub();
+    metaData.values.put("getLocalPeer", localPeer.create(IPeer.class));
+    AppConfiguration config = EmptyConfiguration.getInstance();
+    peer = new PeerImpl(new PeerTableImpl(), 0, new URI("aaa://peer.test:3868"), "127.0.0.1", null, metaData.create(IMetaData.class),
+        config, EmptyConfiguration.getInstance().add(PeerConnectionCount, 3), fsmFactory.create(IFsmFactory.class), trFactory,
+        new StatisticManagerImpl(config), new DummyConcurrentFactory(), parser, null);
+  }
+
+  @Test
+  public void testAdditionalConnectionsCreated() {
+    assertEquals("Main connection and two additional ones", 3, connections.size());
+    assertEquals(2, peer.stripes.length);
+    for (PeerImpl.StripeConnection stripe : peer.stripes) {
+      assertFalse("Not ready before capabilities exchange", stripe.isReady());
+    }
+  }
+
+  @Test
+  public void testMainConnectionUsedUntilReady() throws Exception {
+    assertNull(peer.selectStripe(createRequest(null)));
+    assertNull(peer.selectStripe(createRequest("session;1")));
+    readyAll();
+    assertNull("Messages without session use main connection", peer.selectStripe(createRequest(null)));
+  }
+
+  @Test
+  public void testSessionsStayOnConnection() throws Exception {
+    readyAll();
+    Set<PeerImpl.StripeConnection> used = new HashSet<PeerImpl.StripeConnection>();
+    for (int i = 0; i < 100; i++) {
+      IMessage request = createRequest("session;" + i);
+      PeerImpl.StripeConnection stripe = peer.selectStripe(request);
+      used.add(stripe);
+      for (int j = 0; j < 3; j++) {
+        assertSame(stripe, peer.selectStripe(request));
+      }
+    }
+    assertEquals("Sessions spread over main and both additional connections", 3, used.size());
+  }
+
+  @Test
+  public void testRebalance() throws Exception {
+    readyAll();
+    IMessage request = requestOnStripe();
+    PeerImpl.StripeConnection home = peer.selectStripe(request);
+
+    home.ready = false;
+    PeerImpl.StripeConnection failover = peer.selectStripe(request);
+    assertNotSame(home, failover);
+    home.ready = true;
+    assertSame("Session moved back while in use", failover, peer.selectStripe(request));
+
+    Thread.sleep(PeerImpl.REBALANCE_IDLE_TIME + 100);
+    assertSame("Idle session not moved back to its home connection", home, peer.selectStripe(request));
+  }
+
+  @Test
+  public void testUnwritableConnectionSkipped() throws Exception {
+    readyAll();
+    IMessage request = requestOnStripe();
+    PeerImpl.StripeConnection home = peer.selectStripe(request);
+    home.connectionWritabilityChanged(home.connection.getKey(), false);
+    assertNotSame(home, peer.selectStripe(request));
+  }
+
+  @Test
+  public void testCapabilitiesExchange() throws Exception {
+    PeerImpl.StripeConnection stripe = peer.stripes[0];
+    stripe.connectionOpened(stripe.connection.getKey());
+    Stub connection = connections.get(1);
+    assertEquals(1, connection.sent.size());
+    assertEquals(Message.CAPABILITIES_EXCHANGE_REQUEST, connection.sent.get(0).getCommandCode());
+    assertTrue(connection.sent.get(0).isRequest());
+
+    stripe.messageReceived(stripe.connection.getKey(), createCea(ResultCode.SUCCESS));
+    assertTrue(stripe.isReady());
+
+    stripe.messageReceived(stripe.connection.getKey(), createCea(ResultCode.NO_COMMON_APPLICATION));
+    assertFalse(stripe.isReady());
+  }
+
+  @Test
+  public void testInFlightRequests() throws Exception {
+    PeerImpl.StripeConnection stripe = peer.stripes[0];
+    IMessage request = createRequest("session;1");
+    request.setHopByHopIdentifier(7);
+    stripe.sendMessage(request);
+    assertEquals(1, stripe.inFlight.size());
+    assertSame(request, connections.get(1).sent.get(0));
+
+    IMessage answer = parser.createEmptyMessage(request);
+    answer.setRequest(false);
+    answer.setHopByHopIdentifier(7);
+    stripe.messageReceived(stripe.connection.getKey(), answer);
+    assertEquals("Answered request still in flight", 0, stripe.inFlight.size());
+  }
+
+  private void readyAll() {
+    for (PeerImpl.StripeConnection stripe : peer.stripes) {
+      stripe.ready = true;
+    }
+  }
+
+  private IMessage requestOnStripe() {
+    for (int i = 0; ; i++) {
+      IMessage request = createRequest("session;" + i);
+      if (peer.selectStripe(request) != null) {
+        return request;
+      }
+    }
+  }
+
+  private IMessage createRequest(String sessionId) {
+    IMessage message = parser.createEmptyMessage(272, 4);
+    message.setRequest(true);
+    if (sessionId != null) {
+      message.getAvps().addAvp(Avp.SESSION_ID, sessionId, false);
+    }
+    return message;
+  }
+
+  private IMessage createCea(int resultCode) {
+    IMessage message = parser.createEmptyMessage(Message.CAPABILITIES_EXCHANGE_ANSWER, 0);
+    message.setRequest(false);
+    message.getAvps().addAvp(Avp.RESULT_CODE, resultCode, true, false, true);
+    return message;
+  }
+
+  /**
+   * Answers methods by name from given values, others return null, false or zero. Messages sent are recorded.
+   */
+  static class Stub implements InvocationHandler {
+
+    final Map<String, Object> values = new HashMap<String, Object>();
+    final List<IMessage> sent = new ArrayList<IMessage>();
+
+    @SuppressWarnings("unchecked")
+    <T> T create(Class<T> type) {
+      return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, this);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+      String name = method.getName();
+      if (name.equals("sendMessage")) {
+        sent.add((IMessage) args[0]);
+      }
+      if (values.containsKey(name)) {
+        return values.get(name);
+      }
+      Class<?> type = method.getReturnType();
+      if (type == Boolean.TYPE) {
+        return Boolean.FALSE;
+      }
+      if (type == Integer.TYPE) {
+        return 0;
+      }
+      if (type == Long.TYPE) {
+        return 0L;
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.controller;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jdiameter.api.Answer;
+import org.jdiameter.api.Request;
+import org.jdiameter.client.api.IEventListener;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.jdiameter.common.api.concurrent.DummyConcurrentFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of {@link PendingRequestTable}, timeouts are driven by calling expire with chosen time
+ */
+public class TestPendingRequestTable {
+
+  private final MessageParser parser = new MessageParser();
+  private ScheduledExecutorService executor;
+  private PendingRequestTable table;
+  private List<IMessage> timedOut;
+
+  @BeforeMethod
+  public void setUp() {
+    executor = Executors.newSingleThreadScheduledExecutor();
+    table = new PendingRequestTable(new DummyConcurrentFactory() {
+      @Override
+      public ScheduledExecutorService getScheduledExecutorService(String name) {
+        return executor;
+      }
+    });
+    timedOut = new ArrayList<IMessage>();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testPutAndRemove() {
+    // multiples of 16 share one segment, so probing chains get long and the segment grows
+    List<IMessage> messages = new ArrayList<IMessage>();
+    for (long id = 0; id < 2000; id += 16) {
+      IMessage message = createRequest(id, 0);
+      table.put(message);
+      messages.add(message);
+    }
+    assertEquals(messages.size(), table.size());
+    assertEquals(messages.size(), table.values().size());
+    for (IMessage message : messages) {
+      assertSame(message, table.remove(message.getHopByHopIdentifier()));
+      assertNull(table.remove(message.getHopByHopIdentifier()));
+    }
+    assertEquals(0, table.size());
+  }
+
+  @Test
+  public void testBackwardShiftDelete() {
+    // random puts and removes checked against a map, every removal has to keep the rest of the chain reachable
+    Random random = new Random(1);
+    Map<Long, IMessage> expected = new HashMap<Long, IMessage>();
+    for (int i = 0; i < 20000; i++) {
+      long id = random.nextInt(512) * 16L + random.nextInt(2);
+      if (random.nextBoolean()) {
+        IMessage message = createRequest(id, 0);
+        table.put(message);
+        expected.put(id, message);
+      }
+      else {
+        assertSame(expected.remove(id), table.remove(id));
+      }
+      assertEquals(expected.size(), table.size());
+    }
+    for (Map.Entry<Long, IMessage> entry : expected.entrySet()) {
+      assertSame(entry.getValue(), table.remove(entry.getKey()));
+    }
+    assertEquals(0, table.size());
+  }
+
+  @Test
+  public void testExpire() {
+    long now = System.currentTimeMillis();
+    IMessage first = createRequest(1, 60000);
+    IMessage second = createRequest(2, 70000);
+    // due after more than one revolution of the wheel
+    IMessage third = createRequest(3, 300000);
+    table.put(third);
+    table.put(second);
+    table.put(first);
+
+    table.expire(now + 1000);
+    assertEquals(0, timedOut.size());
+    assertEquals(3, table.size());
+
+    table.expire(now + 65000);
+    assertEquals(1, timedOut.size());
+    assertSame(first, timedOut.get(0));
+    assertNull(table.remove(1));
+
+    table.expire(now + 75000);
+    assertEquals(2, timedOut.size());
+    assertSame(second, timedOut.get(1));
+
+    table.expire(now + 200000);
+    assertEquals(2, timedOut.size());
+    assertEquals(1, table.size());
+
+    table.expire(now + 301000);
+    assertEquals(3, timedOut.size());
+    assertSame(third, timedOut.get(2));
+    assertEquals(0, table.size());
+  }
+
+  @Test
+  public void testRemoveAnswered() {
+    long now = System.currentTimeMillis();
+    IMessage answered = createRequest(1, 60000);
+    IMessage pending = createRequest(2, 60000);
+    table.put(answered);
+    table.put(pending);
+    assertEquals(0, table.getAnswerLatency());
+
+    assertSame(answered, table.removeAnswered(1));
+    assertNull(table.removeAnswered(1));
+    assertTrue(table.getAnswerLatency() > 0);
+
+    table.expire(now + 61000);
+    assertEquals(1, timedOut.size());
+    assertSame(pending, timedOut.get(0));
+  }
+
+  @Test
+  public void testConcurrentPut() throws Exception {
+    final long now = System.currentTimeMillis();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final long base = t * 10000L;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (long id = base; id < base + 1000; id++) {
+            table.put(createRequest(id, 60000 + id % 7 * 1000));
+            if (id % 2 == 0) {
+              table.removeAnswered(id);
+            }
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(2000, table.size());
+
+    table.expire(now + 62000);
+    assertTrue(timedOut.size() > 0 && timedOut.size() < 2000);
+    table.expire(now + 70000);
+    assertEquals(2000, timedOut.size());
+    assertEquals(0, table.size());
+  }
+
+  @Test
+  public void testRemoveAll() {
+    for (long id = 0; id < 100; id++) {
+      table.put(createRequest(id, 60000));
+    }
+    assertEquals(100, table.removeAll().length);
+    assertEquals(0, table.size());
+    assertEquals(0, table.values().size());
+
+    table.expire(System.currentTimeMillis() + 61000);
+    assertEquals(0, timedOut.size());
+  }
+
+  private IMessage createRequest(long hopByHopId, long timeout) {
+    IMessage message = parser.createEmptyMessage(272, 4);
+    message.setRequest(true);
+    message.setHopByHopIdentifier(hopByHopId);
+    message.setListener(new IEventListener() {
+
+      @Override
+      public void receivedSuccessMessage(Request request, Answer answer) {
+      }
+
+      @Override
+      public void timeoutExpired(Request request) {
+        timedOut.add((IMessage) request);
+      }
+
+      @Override
+      public void setValid(boolean value) {
+      }
+
+      @Override
+      public boolean isValid() {
+        return true;
+      }
+    });
+    if (timeout > 0) {
+      message.createTimer(executor, timeout, TimeUnit.MILLISECONDS);
+    }
+    return message;
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.controller;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdiameter.api.ApplicationId;
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.AvpSet;
+import org.jdiameter.api.LocalAction;
+import org.jdiameter.api.Realm;
+import org.jdiameter.client.api.IAssembler;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.IRequest;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestRealmTableImpl {
+
+  private static final ApplicationId CCA = ApplicationId.createByAuthAppId(4);
+  private static final ApplicationId GX = ApplicationId.createByAuthAppId(10415, 16777238);
+
+  private final MessageParser parser = new MessageParser();
+  private RealmTableImpl table;
+
+  @BeforeMethod
+  public void setUp() {
+    table = new RealmTableImpl(createContainer());
+    table.addLocalRealm("local.realm", "local.host");
+  }
+
+  @Test
+  public void testLookups() throws Exception {
+    table.addLocalApplicationId(CCA);
+    Realm cca = table.addRealm("remote.realm", CCA, LocalAction.LOCAL, (String) null, false, -1, new String[] {"peer1", "peer2"});
+    Realm gx = table.addRealm("remote.realm", GX, LocalAction.LOCAL, (String) null, false, -1, new String[] {"peer3"});
+
+    assertTrue(table.realmExists("local.realm"));
+    assertTrue(table.realmExists("remote.realm"));
+    assertFalse(table.realmExists("unknown.realm"));
+    assertTrue(table.getRealm("local.realm", CCA).isLocal());
+    assertSame(cca, table.getRealm("remote.realm", CCA));
+    assertSame(gx, table.getRealm("remote.realm", GX));
+    assertNull(table.getRealm("remote.realm", ApplicationId.createByAuthAppId(1)));
+
+    assertEquals(2, table.getRealms("remote.realm").size());
+    assertEquals(3, table.getRealms().size());
+    assertEquals("remote.realm", table.getRealmForPeer("peer3"));
+    assertNull(table.getRealmForPeer("peer4"));
+
+    // returned collections are copies
+    table.getRealms("remote.realm").clear();
+    table.getRealms().clear();
+    assertEquals(2, table.getRealms("remote.realm").size());
+    assertEquals(3, table.getRealms().size());
+  }
+
+  @Test
+  public void testMatchRealm() throws Exception {
+    Realm cca = table.addRealm("remote.realm", CCA, LocalAction.LOCAL, (String) null, false, -1, new String[] {"peer1"});
+    Realm gx = table.addRealm("remote.realm", GX, LocalAction.LOCAL, (String) null, false, -1, new String[] {"peer2"});
+
+    // application of header
+    assertSame(cca, table.matchRealm(createRequest("remote.realm", 4, null)));
+    // header does not identify realm, application id AVP does
+    assertSame(gx, table.matchRealm(createRequest("remote.realm", 0, GX)));
+    assertNull(table.matchRealm(createRequest("unknown.realm", 4, null)));
+  }
+
+  @Test
+  public void testRemove() throws Exception {
+    table.addLocalApplicationId(CCA);
+    table.addRealm("remote.realm", CCA, LocalAction.LOCAL, (String) null, false, -1, new String[] {"peer1"});
+    table.addRealm("remote.realm", GX, LocalAction.LOCAL, (String) null, false, -1, new String[] {"peer2"});
+
+    assertNotNull(table.removeRealmApplicationId("remote.realm", GX));
+    assertNull(table.getRealm("remote.realm", GX));
+    assertTrue(table.realmExists("remote.realm"));
+
+    assertEquals(1, table.removeRealm("remote.realm").size());
+    assertFalse(table.realmExists("remote.realm"));
+    assertNull(table.getRealms("remote.realm"));
+
+    assertNull("Local realm removed", table.removeRealm("local.realm"));
+    assertTrue(table.realmExists("local.realm"));
+  }
+
+  @Test
+  public void testLookupsDuringChanges() throws Exception {
+    table.addRealm("stable.realm", CCA, LocalAction.LOCAL, (String) null, false, -1, new String[] {"peer0"});
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final AtomicInteger failures = new AtomicInteger(0);
+    Thread[] readers = new Thread[4];
+    for (int r = 0; r < readers.length; r++) {
+      readers[r] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          while (running.get()) {
+            try {
+              if (table.getRealm("stable.realm", CCA) == null || !"stable.realm".equals(table.getRealmForPeer("peer0"))) {
+                failures.incrementAndGet();
+              }
+              Collection<Realm> realms = table.getRealms("changing.realm");
+              if (realms != null) {
+                for (Realm realm : realms) {
+                  if (!"changing.realm".equals(realm.getName())) {
+                    failures.incrementAndGet();
+                  }
+                }
+              }
+              table.getRealms();
+            }
+            catch (RuntimeException e) {
+              failures.incrementAndGet();
+            }
+          }
+        }
+      });
+      readers[r].start();
+    }
+    for (int i = 0; i < 2000; i++) {
+      table.addRealm("changing.realm", ApplicationId.createByAuthAppId(i), LocalAction.LOCAL, (String) null, false, -1, new String[] {"peer" + i});
+      if (i % 2 == 1) {
+        table.removeRealmApplicationId("changing.realm", ApplicationId.createByAuthAppId(i - 1));
+      }
+    }
+    running.set(false);
+    for (Thread reader : readers) {
+      reader.join(5000);
+    }
+    assertEquals("Readers saw inconsistent realm table", 0, failures.get());
+    assertEquals(1000, table.getRealms("changing.realm").size());
+  }
+
+  private IRequest createRequest(String destinationRealm, long headerAppId, ApplicationId appId) {
+    IMessage message = parser.createEmptyMessage(272, headerAppId);
+    message.setRequest(true);
+    message.getAvps().addAvp(Avp.DESTINATION_REALM, destinationRealm, true, false, true);
+    if (appId != null) {
+      AvpSet vendorSpecific = message.getAvps().addGroupedAvp(Avp.VENDOR_SPECIFIC_APPLICATION_ID, true, false);
+      vendorSpecific.addAvp(Avp.VENDOR_ID, appId.getVendorId(), true, false, true);
+      vendorSpecific.addAvp(Avp.AUTH_APPLICATION_ID, appId.getAuthAppId(), true, false, true);
+    }
+    return (IRequest) message;
+  }
+
+  private static IContainer createContainer() {
+    final IAssembler assembler = (IAssembler) Proxy.newProxyInstance(IAssembler.class.getClassLoader(), new Class<?>[] {IAssembler.class},
+        new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            return null;
+          }
+        });
+    return (IContainer) Proxy.newProxyInstance(IContainer.class.getClassLoader(), new Class<?>[] {IContainer.class}, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        return method.getName().equals("getAssemblerFacility") ? assembler : null;
+      }
+    });
+  }
+}
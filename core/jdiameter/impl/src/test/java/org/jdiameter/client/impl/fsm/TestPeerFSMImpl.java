@@ -0,0 +1,271 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.fsm;
+
+import static org.jdiameter.client.impl.helpers.Parameters.PeerFSMSharedExecutor;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdiameter.api.Configuration;
+import org.jdiameter.api.app.State;
+import org.jdiameter.api.app.StateEvent;
+import org.jdiameter.client.api.fsm.EventTypes;
+import org.jdiameter.client.api.fsm.FsmEvent;
+import org.jdiameter.client.api.fsm.IContext;
+import org.jdiameter.client.impl.helpers.EmptyConfiguration;
+import org.jdiameter.common.api.concurrent.DummyConcurrentFactory;
+import org.jdiameter.common.impl.statistic.StatisticManagerImpl;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestPeerFSMImpl {
+
+  private ScheduledThreadPoolExecutor executor;
+  private Configuration config;
+  // processed events of all FSMs, in processing order
+  private List<String> processed;
+
+  @BeforeMethod
+  public void setUp() {
+    // single thread, so a peer draining long queue must yield for other peers to progress
+    executor = new ScheduledThreadPoolExecutor(1);
+    config = EmptyConfiguration.getInstance().add(PeerFSMSharedExecutor, true);
+    processed = Collections.synchronizedList(new ArrayList<String>());
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testEventsInOrderAndDrainYields() throws Exception {
+    RecordingFSM busy = new RecordingFSM("busy");
+    RecordingFSM other = new RecordingFSM("other");
+    int count = 500;
+
+    // first event holds the only pool thread until all other events are queued
+    CountDownLatch block = new CountDownLatch(1);
+    busy.block = block;
+    for (int i = 0; i < count; i++) {
+      busy.handleEvent(new FsmEvent(EventTypes.RECEIVE_MSG_EVENT, String.valueOf(i)));
+    }
+    other.handleEvent(new FsmEvent(EventTypes.RECEIVE_MSG_EVENT, "0"));
+    block.countDown();
+
+    assertTrue("Events not processed", busy.done.await(5, TimeUnit.SECONDS, count));
+    assertTrue(other.done.await(5, TimeUnit.SECONDS, 1));
+
+    List<String> order = new ArrayList<String>(processed);
+    int next = 0;
+    for (String event : order) {
+      if (event.startsWith("busy:")) {
+        assertEquals("Events of peer processed out of order", "busy:" + next++, event);
+      }
+    }
+    assertEquals(count, next);
+    assertEquals("Events of peer processed concurrently", 0, busy.overlaps.get());
+    int otherPosition = order.indexOf("other:0");
+    assertTrue("Drain of busy peer did not yield to other peer, position " + otherPosition, otherPosition < count);
+    assertTrue("Events drained by single task", executor.getCompletedTaskCount() >= count / 64);
+  }
+
+  @Test
+  public void testTimerFiresOnce() throws Exception {
+    RecordingFSM fsm = new RecordingFSM("fsm");
+    fsm.state = FsmState.OKAY;
+
+    long start = System.currentTimeMillis();
+    fsm.armTimer(start + 100);
+    Long fired = fsm.timeouts.poll(2, TimeUnit.SECONDS);
+    assertTrue("Timer did not fire", fired != null);
+    assertTrue("Timer fired early", fired - start >= 100);
+    assertNull("Timer fired twice", fsm.timeouts.poll(200, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testTimerMovedEarlier() throws Exception {
+    RecordingFSM fsm = new RecordingFSM("fsm");
+    fsm.state = FsmState.OKAY;
+
+    long start = System.currentTimeMillis();
+    fsm.armTimer(start + 1000);
+    fsm.armTimer(start + 100);
+    Long fired = fsm.timeouts.poll(2, TimeUnit.SECONDS);
+    assertTrue("Timer did not fire", fired != null);
+    assertTrue("Timer moved earlier fired late", fired - start < 900);
+    // task of the later time finds timer cleared by expiry
+    assertNull("Timer fired twice", fsm.timeouts.poll(1200, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testTimerMovedLater() throws Exception {
+    RecordingFSM fsm = new RecordingFSM("fsm");
+    fsm.state = FsmState.OKAY;
+
+    long start = System.currentTimeMillis();
+    fsm.armTimer(start + 100);
+    fsm.armTimer(start + 400);
+    assertEquals("No new task for later time", 1, executor.getQueue().size());
+    Long fired = fsm.timeouts.poll(2, TimeUnit.SECONDS);
+    assertTrue("Timer did not fire", fired != null);
+    assertTrue("Timer moved later fired early", fired - start >= 400);
+    assertNull("Timer fired twice", fsm.timeouts.poll(200, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testTimerCleared() throws Exception {
+    RecordingFSM fsm = new RecordingFSM("fsm");
+    fsm.state = FsmState.OKAY;
+
+    fsm.armTimer(System.currentTimeMillis() + 100);
+    fsm.armTimer(0);
+    assertNull("Cleared timer fired", fsm.timeouts.poll(300, TimeUnit.MILLISECONDS));
+
+    // timer can be armed again after being cleared
+    fsm.armTimer(System.currentTimeMillis() + 50);
+    assertTrue("Timer did not fire", fsm.timeouts.poll(2, TimeUnit.SECONDS) != null);
+  }
+
+  /**
+   * FSM whose states only record events they process
+   */
+  private class RecordingFSM extends PeerFSMImpl {
+
+    private final String name;
+    private final Counter done = new Counter();
+    private final AtomicInteger running = new AtomicInteger(0);
+    private final AtomicInteger overlaps = new AtomicInteger(0);
+    private final BlockingQueue<Long> timeouts = new LinkedBlockingQueue<Long>();
+    private volatile CountDownLatch block;
+
+    RecordingFSM(String name) {
+      super(createContext(name), new DummyConcurrentFactory() {
+        @Override
+        public ScheduledExecutorService getScheduledExecutorService(String name) {
+          return executor;
+        }
+      }, config, new StatisticManagerImpl(config));
+      this.name = name;
+    }
+
+    @Override
+    protected State[] getStates() {
+      if (states == null) {
+        State[] recording = new State[16];
+        for (int i = 0; i < recording.length; i++) {
+          recording[i] = new MyState() {
+            @Override
+            public boolean processEvent(StateEvent event) {
+              if (running.incrementAndGet() > 1) {
+                overlaps.incrementAndGet();
+              }
+              try {
+                process((FsmEvent) event);
+              }
+              finally {
+                running.decrementAndGet();
+              }
+              return true;
+            }
+          };
+        }
+        states = recording;
+      }
+      return states;
+    }
+
+    private void process(FsmEvent event) {
+      if (event.getType() == EventTypes.TIMEOUT_EVENT) {
+        timeouts.add(System.currentTimeMillis());
+        return;
+      }
+      CountDownLatch latch = block;
+      if (latch != null) {
+        block = null;
+        try {
+          latch.await(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      processed.add(name + ":" + event.getKey());
+      done.increment();
+    }
+  }
+
+  private static class Counter {
+
+    private int value;
+
+    synchronized void increment() {
+      value++;
+      notifyAll();
+    }
+
+    synchronized boolean await(long timeout, TimeUnit unit, int expected) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+      while (value < expected) {
+        long left = deadline - System.currentTimeMillis();
+        if (left <= 0) {
+          return false;
+        }
+        wait(left);
+      }
+      return true;
+    }
+  }
+
+  private static IContext createContext(final String name) {
+    return (IContext) Proxy.newProxyInstance(IContext.class.getClassLoader(), new Class<?>[] {IContext.class}, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        if (method.getName().equals("getPeerDescription") || method.getName().equals("toString")) {
+          return name;
+        }
+        Class<?> type = method.getReturnType();
+        if (type == Boolean.TYPE) {
+          return Boolean.FALSE;
+        }
+        if (type == Integer.TYPE) {
+          return 0;
+        }
+        return null;
+      }
+    });
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.helpers;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.testng.annotations.Test;
+
+public class TestUIDGenerator {
+
+  @Test
+  public void testUniqueAcrossThreads() throws Exception {
+    final UIDGenerator generator = new UIDGenerator(0);
+    final int threads = 8;
+    final int count = 10000;
+    final long[][] ids = new long[threads][count];
+    final CountDownLatch start = new CountDownLatch(1);
+    Thread[] workers = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      final long[] own = ids[t];
+      workers[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          }
+          catch (InterruptedException e) {
+            return;
+          }
+          for (int i = 0; i < count; i++) {
+            own[i] = generator.nextLong();
+          }
+        }
+      });
+      workers[t].start();
+    }
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    Set<Long> all = new HashSet<Long>();
+    for (long[] own : ids) {
+      for (int i = 0; i < count; i++) {
+        assertTrue("Duplicate uid " + own[i], all.add(own[i]));
+        if (i > 0) {
+          assertTrue("Uids of one thread not increasing", own[i] > own[i - 1]);
+        }
+      }
+    }
+    // blocks are reserved from start value, none is skipped except the unused rest of last blocks
+    for (long id : all) {
+      assertTrue(id >= 0 && id < (long) threads * (count + 1024));
+    }
+  }
+
+  @Test
+  public void testStartValueAndBlocks() {
+    UIDGenerator generator = new UIDGenerator(5000);
+    for (int i = 0; i < 3000; i++) {
+      assertEquals("Single thread gets consecutive uids across blocks", 5000L + i, generator.nextLong());
+    }
+    assertEquals(8000, generator.nextInt());
+  }
+
+  @Test
+  public void testAppendNext() {
+    long start = 0x100000002L;
+    UIDGenerator builderGenerator = new UIDGenerator(start);
+    UIDGenerator arrayGenerator = new UIDGenerator(start);
+    char[] buffer = new char[32];
+    for (int i = 0; i < 3; i++) {
+      long id = start + i;
+      String expected = (id >>> 32) + ";" + (id & 0xFFFFFFFFL);
+      assertEquals(expected, builderGenerator.appendNext(new StringBuilder()).toString());
+      int end = arrayGenerator.appendNext(buffer, 4);
+      assertEquals(expected, new String(buffer, 4, end - 4));
+    }
+
+    // widest value fits 21 characters
+    UIDGenerator max = new UIDGenerator(-1L);
+    int end = max.appendNext(buffer, 0);
+    assertEquals("4294967295;4294967295", new String(buffer, 0, end));
+    assertEquals("0;0", new UIDGenerator(0).appendNext(new StringBuilder()).toString());
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.router;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests of {@link AnswerRouteTable}
+ */
+public class TestAnswerRouteTable {
+
+  @Test
+  public void testPutGetRemove() {
+    AnswerRouteTable table = new AnswerRouteTable(16, 0);
+    table.put(1, 10, "session;1", "host1", "realm1");
+    table.put(2, 20, "session;2", "host2", "realm2");
+    assertEquals(2, table.size());
+
+    assertRoute(table.get(1, 10, "session;1"), "host1", "realm1");
+    assertRoute(table.get(2, 20, "session;2"), "host2", "realm2");
+    // all parts of key have to match
+    assertNull(table.get(1, 11, "session;1"));
+    assertNull(table.get(1, 10, "session;2"));
+    assertNull(table.get(1, 10, null));
+
+    table.remove(1, 10, "session;1");
+    assertNull(table.get(1, 10, "session;1"));
+    assertRoute(table.get(2, 20, "session;2"), "host2", "realm2");
+    assertEquals(1, table.size());
+
+    table.clear();
+    assertEquals(0, table.size());
+    assertNull(table.get(2, 20, "session;2"));
+  }
+
+  @Test
+  public void testReplace() {
+    AnswerRouteTable table = new AnswerRouteTable(16, 0);
+    table.put(1, 10, null, "host1", "realm1");
+    table.put(1, 10, null, "host2", "realm2");
+    assertEquals(1, table.size());
+    assertRoute(table.get(1, 10, null), "host2", "realm2");
+  }
+
+  @Test
+  public void testCapacityEviction() {
+    AnswerRouteTable table = new AnswerRouteTable(10, 0);
+    assertEquals(16, table.getCapacity());
+    for (int i = 0; i < 20; i++) {
+      table.put(i, i, null, "host" + i, "realm");
+    }
+    // the oldest entries gave place to new ones
+    assertEquals(16, table.size());
+    assertEquals(4, table.getEvictions());
+    for (int i = 0; i < 4; i++) {
+      assertNull(table.get(i, i, null));
+    }
+    for (int i = 4; i < 20; i++) {
+      assertRoute(table.get(i, i, null), "host" + i, "realm");
+    }
+
+    // removed entries are not counted as evictions, removing the oldest one frees its place in ring
+    table.remove(4, 4, null);
+    table.put(20, 20, null, "host20", "realm");
+    assertEquals(16, table.size());
+    assertEquals(4, table.getEvictions());
+    assertRoute(table.get(5, 5, null), "host5", "realm");
+  }
+
+  @Test
+  public void testAgeEviction() {
+    AnswerRouteTable table = new AnswerRouteTable(16, 1000);
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < 10; i++) {
+      table.put(i, i, null, "host" + i, "realm");
+    }
+    table.expire(now + 500, 100);
+    assertEquals(10, table.size());
+
+    // eviction is incremental
+    table.expire(now + 5000, 4);
+    assertEquals(6, table.size());
+    assertEquals(4, table.getEvictions());
+    assertNull(table.get(3, 3, null));
+    assertRoute(table.get(4, 4, null), "host4", "realm");
+
+    table.expire(now + 5000, 100);
+    assertEquals(0, table.size());
+    assertEquals(10, table.getEvictions());
+  }
+
+  @Test
+  public void testAgainstReference() {
+    // random operations with colliding keys, every removal has to keep the rest of probing chain reachable
+    // ring is large enough for all insertions, so nothing is evicted
+    AnswerRouteTable table = new AnswerRouteTable(32 * 1024, 0);
+    String[] hosts = new String[256];
+    Random random = new Random(1);
+    int size = 0;
+    for (int i = 0; i < 20000; i++) {
+      int id = random.nextInt(hosts.length);
+      if (random.nextBoolean()) {
+        if (hosts[id] == null) {
+          size++;
+        }
+        hosts[id] = "host" + i;
+        table.put(id, id >> 2, "session;" + (id & 3), hosts[id], "realm");
+      }
+      else {
+        if (hosts[id] != null) {
+          size--;
+        }
+        hosts[id] = null;
+        table.remove(id, id >> 2, "session;" + (id & 3));
+      }
+      assertEquals(size, table.size());
+    }
+    for (int id = 0; id < hosts.length; id++) {
+      String[] route = table.get(id, id >> 2, "session;" + (id & 3));
+      if (hosts[id] == null) {
+        assertNull(route);
+      }
+      else {
+        assertRoute(route, hosts[id], "realm");
+      }
+    }
+    assertEquals(0, table.getEvictions());
+  }
+
+  @Test
+  public void testStoredRouteReturned() {
+    AnswerRouteTable table = new AnswerRouteTable(16, 0);
+    table.put(1, 10, null, "host1", "realm1");
+    assertSame("Route copied on lookup", table.get(1, 10, null), table.get(1, 10, null));
+  }
+
+  @Test
+  public void testConcurrentAccess() throws Exception {
+    // large table is striped, each thread works with its own keys while others hit other stripes
+    final AnswerRouteTable table = new AnswerRouteTable(64 * 1024, 0);
+    final AtomicInteger failures = new AtomicInteger();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final long base = t * 100000L;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (long id = base; id < base + 10000; id++) {
+            table.put(id, id, "session;" + id, "host" + id, "realm");
+            String[] route = table.get(id, id, "session;" + id);
+            if (route == null || !route[0].equals("host" + id)) {
+              failures.incrementAndGet();
+            }
+            if (id % 2 == 0) {
+              table.remove(id, id, "session;" + id);
+            }
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, failures.get());
+    assertEquals(4 * 5000, table.size());
+    assertEquals(0, table.getEvictions());
+    for (int t = 0; t < threads.length; t++) {
+      assertNull(table.get(t * 100000L, t * 100000L, "session;" + t * 100000L));
+      assertRoute(table.get(t * 100000L + 1, t * 100000L + 1, "session;" + (t * 100000L + 1)), "host" + (t * 100000L + 1), "realm");
+    }
+  }
+
+  private static void assertRoute(String[] route, String host, String realm) {
+    assertEquals(host, route[0]);
+    assertEquals(realm, route[1]);
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.router;
+
+import static org.jdiameter.client.impl.router.RouterImpl.ALL_APPLICATION;
+import static org.jdiameter.client.impl.router.RouterImpl.ALL_HOST;
+import static org.jdiameter.client.impl.router.RouterImpl.ALL_REALM;
+import static org.jdiameter.client.impl.router.RouterImpl.ALL_SESSION;
+import static org.jdiameter.client.impl.router.RouterImpl.ALL_USER;
+import static org.jdiameter.client.impl.router.RouterImpl.DONT_CACHE;
+import static org.jdiameter.client.impl.router.RouterImpl.REALM_AND_APPLICATION;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import org.jdiameter.api.ApplicationId;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of {@link RedirectCache}
+ */
+public class TestRedirectCache {
+
+  private static final ApplicationId APP = ApplicationId.createByAuthAppId(4);
+  private static final ApplicationId OTHER_APP = ApplicationId.createByAuthAppId(16777238);
+
+  @Test
+  public void testUsages() {
+    RedirectCache cache = new RedirectCache(100);
+    assertTrue(cache.put(ALL_SESSION, "session", null, 60, hosts("session-host")));
+    assertTrue(cache.put(ALL_USER, "user", null, 60, hosts("user-host")));
+    assertTrue(cache.put(REALM_AND_APPLICATION, "realm", APP, 60, hosts("realm-app-host")));
+    assertTrue(cache.put(ALL_REALM, "other.realm", null, 60, hosts("realm-host")));
+    assertTrue(cache.put(ALL_APPLICATION, null, OTHER_APP, 60, hosts("app-host")));
+    assertTrue(cache.put(ALL_HOST, "host", null, 60, hosts("host-host")));
+    assertEquals(6, cache.size());
+
+    assertEquals("session-host", cache.get("session", null, null, null, null));
+    assertEquals("user-host", cache.get(null, "user", null, null, null));
+    assertEquals("realm-app-host", cache.get(null, null, "realm", APP, null));
+    assertNull(cache.get(null, null, "realm", ApplicationId.createByAuthAppId(5), null));
+    assertEquals("realm-host", cache.get(null, null, "other.realm", APP, null));
+    assertEquals("app-host", cache.get(null, null, "realm", OTHER_APP, null));
+    assertEquals("host-host", cache.get(null, null, null, null, "host"));
+    assertNull(cache.get("other", "other", "none", null, "other"));
+  }
+
+  @Test
+  public void testPrecedence() {
+    RedirectCache cache = new RedirectCache(100);
+    cache.put(ALL_HOST, "host", null, 60, hosts("host-host"));
+    cache.put(ALL_APPLICATION, null, APP, 60, hosts("app-host"));
+    cache.put(ALL_REALM, "realm", null, 60, hosts("realm-host"));
+    cache.put(REALM_AND_APPLICATION, "realm", APP, 60, hosts("realm-app-host"));
+    cache.put(ALL_USER, "user", null, 60, hosts("user-host"));
+    cache.put(ALL_SESSION, "session", null, 60, hosts("session-host"));
+
+    assertEquals("session-host", cache.get("session", "user", "realm", APP, "host"));
+    assertEquals("user-host", cache.get("other", "user", "realm", APP, "host"));
+    assertEquals("realm-app-host", cache.get("other", null, "realm", APP, "host"));
+    assertEquals("realm-host", cache.get("other", null, "realm", OTHER_APP, "host"));
+    assertEquals("app-host", cache.get("other", null, "other.realm", APP, "host"));
+    assertEquals("host-host", cache.get("other", null, "other.realm", OTHER_APP, "host"));
+  }
+
+  @Test
+  public void testNotCached() {
+    RedirectCache cache = new RedirectCache(100);
+    assertFalse(cache.put(DONT_CACHE, "session", null, 60, hosts("host")));
+    assertFalse(cache.put(ALL_SESSION, null, null, 60, hosts("host")));
+    assertFalse(cache.put(REALM_AND_APPLICATION, "realm", null, 60, hosts("host")));
+    assertFalse(cache.put(ALL_SESSION, "session", null, 60, new String[0]));
+    // Redirect-Max-Cache-Time of 0 allows no caching
+    assertFalse(cache.put(ALL_SESSION, "session", null, 0, hosts("host")));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testReplaceAndLastHost() {
+    RedirectCache cache = new RedirectCache(100);
+    cache.put(ALL_SESSION, "session", null, 60, hosts("first"));
+    cache.put(ALL_SESSION, "session", null, 60, hosts("second", "third"));
+    assertEquals(1, cache.size());
+    assertEquals("third", cache.get("session", null, null, null, null));
+  }
+
+  @Test
+  public void testExpiry() throws Exception {
+    RedirectCache cache = new RedirectCache(100);
+    cache.put(ALL_SESSION, "expiring", null, 1, hosts("host"));
+    cache.put(ALL_SESSION, "kept", null, 60, hosts("host"));
+    assertEquals("host", cache.get("expiring", null, null, null, null));
+
+    Thread.sleep(1100);
+    assertNull(cache.get("expiring", null, null, null, null));
+    assertEquals(1, cache.size());
+    assertEquals("host", cache.get("kept", null, null, null, null));
+  }
+
+  @Test
+  public void testSizeLimit() {
+    RedirectCache cache = new RedirectCache(3);
+    for (int i = 0; i < 5; i++) {
+      cache.put(ALL_SESSION, "session" + i, null, 60, hosts("host" + i));
+    }
+    assertEquals(3, cache.size());
+    assertNull(cache.get("session0", null, null, null, null));
+    assertNull(cache.get("session1", null, null, null, null));
+    for (int i = 2; i < 5; i++) {
+      assertEquals("host" + i, cache.get("session" + i, null, null, null, null));
+    }
+
+    // replacing an entry does not evict others
+    cache.put(ALL_SESSION, "session4", null, 60, hosts("host4"));
+    assertEquals(3, cache.size());
+    assertEquals("host2", cache.get("session2", null, null, null, null));
+  }
+
+  @Test
+  public void testStatistics() {
+    RedirectCache cache = new RedirectCache(100);
+    // lookups of empty cache are not counted
+    cache.get("session", null, null, null, null);
+    cache.put(ALL_SESSION, "session", null, 60, hosts("host"));
+    cache.get("session", null, null, null, null);
+    cache.get("other", null, null, null, null);
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertNull(cache.get("session", null, null, null, null));
+  }
+
+  private static String[] hosts(String... hosts) {
+    return hosts;
+  }
+}
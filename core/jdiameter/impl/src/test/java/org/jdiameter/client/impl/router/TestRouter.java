@@ -25,6 +25,8 @@ import org.jdiameter.client.api.IAnswer;
 import org.jdiameter.client.api.IMessage;
 import org.jdiameter.client.api.IRequest;
 import org.jdiameter.client.api.controller.IPeer;
+import org.jdiameter.client.api.controller.IPeerTable;
+import org.jdiameter.client.api.controller.IRealm;
 import org.jdiameter.client.api.controller.IRealmTable;
 import org.jdiameter.client.api.fsm.EventTypes;
 import org.jdiameter.client.api.io.IConnectionListener;
@@ -39,15 +41,26 @@ import org.jdiameter.server.api.agent.IAgentConfiguration;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.net.InetAddress;
 import java.net.URISyntaxException;
 import java.net.UnknownServiceException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
 
 /**
  * Various testcases for Router implementations
@@ -61,6 +74,7 @@ public class TestRouter {
 
         Configuration config = new XMLConfiguration("src/test/resources/jdiameter-weightedroundrobin-config.xml");
         WeightedRoundRobinRouter router = new WeightedRoundRobinRouter(new RealmTableTest(), config);
+        assertEquals(1024, router.REDIRECT_TABLE_SIZE);
 
         IStatisticManager manager = new StatisticManagerImpl(config);
         PeerTest p1 = new PeerTest(1, 1, true, manager);
@@ -161,6 +175,7 @@ public class TestRouter {
 
         Configuration config = new XMLConfiguration("src/test/resources/jdiameter-weightedleastconnections-config.xml");
         WeightedLeastConnectionsRouter router = new WeightedLeastConnectionsRouter(new RealmTableTest(), config);
+        assertEquals(512, router.REDIRECT_TABLE_SIZE);
 
         IStatisticManager manager = new StatisticManagerImpl(config);
         PeerTest p1 = new PeerTest(1, 1, true, manager);
@@ -243,6 +258,230 @@ public class TestRouter {
 
     }
 
+    @Test
+    public void testPowerOfTwoChoices() throws Exception {
+
+        Configuration config = new XMLConfiguration("src/test/resources/jdiameter-weightedroundrobin-config.xml");
+        PowerOfTwoChoicesRouter router = new PowerOfTwoChoicesRouter(new RealmTableTest(), config);
+
+        IStatisticManager manager = new StatisticManagerImpl(config);
+        PeerTest p1 = new PeerTest(1, 1, true, manager);
+        PeerTest p2 = new PeerTest(2, 1, true, manager);
+        PeerTest p3 = new PeerTest(3, 1, true, manager);
+
+        // with two peers both are always compared
+        List<IPeer> peers = new ArrayList<IPeer>(2);
+        peers.add(p1);
+        peers.add(p2);
+
+        // p1 has more requests in flight
+        p1.setPendingRequestCount(5);
+        p2.setPendingRequestCount(2);
+        assertEquals(p2.toString(), router.selectPeer(peers).toString());
+        assertEquals(p2.toString(), router.selectPeer(peers).toString());
+
+        // p2 answers much slower, no statistics needed
+        p1.setAnswerLatency(1000);
+        p2.setAnswerLatency(10000);
+        assertEquals(p1.toString(), router.selectPeer(peers).toString());
+        assertEquals(p1.toString(), router.selectPeer(peers).toString());
+
+        // rating of p2 outweighs its latency
+        p2.setRating(10);
+        p2.setAnswerLatency(2000);
+        assertEquals(p2.toString(), router.selectPeer(peers).toString());
+        assertEquals(p2.toString(), router.selectPeer(peers).toString());
+
+        // peer with no answers yet is compared by requests in flight
+        p1.setAnswerLatency(0);
+        p1.setPendingRequestCount(0);
+        p2.setRating(1);
+        assertEquals(p1.toString(), router.selectPeer(peers).toString());
+
+        // heavily loaded peer is never selected out of three
+        p3.setPendingRequestCount(100);
+        p3.setAnswerLatency(10000);
+        peers.add(p3);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(router.selectPeer(peers) != p3);
+        }
+    }
+
+    @Test
+    public void testConsistentHash() throws Exception {
+
+        Configuration config = new XMLConfiguration("src/test/resources/jdiameter-weightedroundrobin-config.xml");
+        ConsistentHashRouter router = new ConsistentHashRouter(new RealmTableTest(), config);
+
+        IStatisticManager manager = new StatisticManagerImpl(config);
+        PeerTest p1 = new PeerTest(1, 1, true, manager);
+        PeerTest p2 = new PeerTest(2, 1, true, manager);
+        PeerTest p3 = new PeerTest(3, 1, true, manager);
+
+        List<IPeer> peers = new ArrayList<IPeer>(3);
+        peers.add(p1);
+        peers.add(p2);
+        peers.add(p3);
+
+        // sessions stick to their peer and are spread over all peers
+        IPeer[] selected = new IPeer[300];
+        int[] counts = new int[3];
+        for (int i = 0; i < selected.length; i++) {
+            selected[i] = router.selectPeer("session;" + i, peers);
+            assertEquals(selected[i], router.selectPeer("session;" + i, peers));
+            counts[peers.indexOf(selected[i])]++;
+        }
+        for (int count : counts) {
+            assertTrue(count > 50);
+        }
+
+        // only sessions of peer which left move
+        List<IPeer> remaining = new ArrayList<IPeer>(peers);
+        remaining.remove(p2);
+        for (int i = 0; i < selected.length; i++) {
+            IPeer peer = router.selectPeer("session;" + i, remaining);
+            if (selected[i] != p2) {
+                assertEquals(selected[i], peer);
+            }
+            else {
+                assertTrue(peer != p2);
+            }
+        }
+
+        // overloaded peer is passed over until it drains
+        String sessionId = "session;0";
+        IPeer owner = selected[0];
+        ((PeerTest) owner).setPendingRequestCount(100);
+        assertTrue(router.selectPeer(sessionId, peers) != owner);
+        ((PeerTest) owner).setPendingRequestCount(0);
+        assertEquals(owner, router.selectPeer(sessionId, peers));
+    }
+
+    @Test
+    public void testConsistentHashAffinity() throws Exception {
+
+        Configuration config = new XMLConfiguration("src/test/resources/jdiameter-weightedroundrobin-config.xml");
+        ConsistentHashRouter router = new ConsistentHashRouter(new RealmTableTest(), config);
+
+        IStatisticManager manager = new StatisticManagerImpl(config);
+        PeerTest[] peerArray = new PeerTest[] {new PeerTest(1, 1, true, manager), new PeerTest(2, 1, true, manager),
+            new PeerTest(3, 1, true, manager)};
+        List<IPeer> peers = new ArrayList<IPeer>(Arrays.asList(peerArray));
+
+        IPeer[] selected = new IPeer[100];
+        for (int i = 0; i < selected.length; i++) {
+            selected[i] = router.selectPeer("session;" + i, peers);
+        }
+
+        // pending requests jitter while sessions go on, no peer really falls behind, so no session moves
+        Random random = new Random(1);
+        for (int round = 0; round < 200; round++) {
+            for (PeerTest peer : peerArray) {
+                peer.setPendingRequestCount(random.nextInt(5));
+            }
+            for (int i = 0; i < selected.length; i++) {
+                assertSame("Session moved with pending requests " + Arrays.toString(pendingCounts(peerArray)), selected[i],
+                    router.selectPeer("session;" + i, peers));
+            }
+        }
+
+        // skewed but moderate load, eg. 2 pending on one peer and none on others
+        for (PeerTest peer : peerArray) {
+            peer.setPendingRequestCount(0);
+        }
+        ((PeerTest) selected[0]).setPendingRequestCount(2);
+        assertSame(selected[0], router.selectPeer("session;0", peers));
+
+        // the same peers in another list instance map sessions the same way
+        List<IPeer> copy = new ArrayList<IPeer>(peers);
+        for (int i = 0; i < selected.length; i++) {
+            assertSame(selected[i], router.selectPeer("session;" + i, copy));
+        }
+    }
+
+    private static int[] pendingCounts(PeerTest[] peers) {
+        int[] counts = new int[peers.length];
+        for (int i = 0; i < peers.length; i++) {
+            counts[i] = peers[i].getPendingRequestCount();
+        }
+        return counts;
+    }
+
+    @Test
+    public void testCandidateCache() throws Exception {
+
+        Configuration config = new XMLConfiguration("src/test/resources/jdiameter-weightedroundrobin-config.xml");
+        RouterImpl router = new WeightedRoundRobinRouter(new RealmTableTest(), config);
+
+        IStatisticManager manager = new StatisticManagerImpl(config);
+        final Map<String, IPeer> peerTable = new HashMap<String, IPeer>();
+        PeerTest p1 = new PeerTest(1, 1, true, manager);
+        PeerTest p2 = new PeerTest(2, 1, true, manager);
+        PeerTest p3 = new PeerTest(3, 1, true, manager);
+        for (PeerTest peer : new PeerTest[] {p1, p2, p3}) {
+            peerTable.put(peer.getUri().getFQDN(), peer);
+        }
+        IPeerTable peers = (IPeerTable) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {IPeerTable.class},
+            new InvocationHandler() {
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    return method.getName().equals("getPeer") ? peerTable.get(args[0]) : null;
+                }
+            });
+        IRealm realmA = createRealm("a.realm", p1, p2);
+        IRealm realmB = createRealm("b.realm", p3);
+
+        RouterImpl.CandidateSet a = router.getCandidates(realmA, peers);
+        RouterImpl.CandidateSet b = router.getCandidates(realmB, peers);
+        assertEquals(2, a.peerList.size());
+        assertSame("Candidates not cached", a, router.getCandidates(realmA, peers));
+        try {
+            a.peerList.remove(0);
+            fail("Candidates shared by routing calls are modifiable");
+        }
+        catch (UnsupportedOperationException e) {
+            // expected
+        }
+
+        // only realm of peer whose state changed is rebuilt
+        p1.setState(PeerState.DOWN);
+        assertSame(b, router.getCandidates(realmB, peers));
+        RouterImpl.CandidateSet changed = router.getCandidates(realmA, peers);
+        assertNotSame(a, changed);
+        assertEquals(1, changed.peerList.size());
+        assertSame(p2, changed.peerList.get(0));
+
+        p1.setState(PeerState.OKAY);
+        assertEquals(2, router.getCandidates(realmA, peers).peerList.size());
+        assertSame(b, router.getCandidates(realmB, peers));
+    }
+
+    private static IRealm createRealm(final String name, PeerTest... peers) {
+        final String[] peerNames = new String[peers.length];
+        for (int i = 0; i < peers.length; i++) {
+            peerNames[i] = peers[i].getUri().getFQDN();
+        }
+        return (IRealm) Proxy.newProxyInstance(TestRouter.class.getClassLoader(), new Class<?>[] {IRealm.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getName")) {
+                    return name;
+                }
+                if (method.getName().equals("getPeerNames")) {
+                    return peerNames;
+                }
+                if (method.getName().equals("getPeerNamesVersion")) {
+                    return 0;
+                }
+                if (method.getName().equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                }
+                if (method.getName().equals("equals")) {
+                    return proxy == args[0];
+                }
+                return null;
+            }
+        });
+    }
+
     private static class RealmTableTest implements IRealmTable {
 
         public Realm matchRealm(IRequest request) {
@@ -319,6 +558,10 @@ public class TestRouter {
         private int id;
         private int rating;
         private boolean connected;
+        private int pendingRequests;
+        private long answerLatency;
+        private PeerState state = PeerState.OKAY;
+        private final List<PeerStateListener> stateListeners = new ArrayList<PeerStateListener>();
 
         public PeerTest(int id, int rating, boolean connected, IStatisticManager manager) throws URISyntaxException, UnknownServiceException {
             super(new URI("aaa://"+id), manager);
@@ -364,6 +607,26 @@ public class TestRouter {
             return connected;
         }
 
+        public boolean isWritable() {
+            return true;
+        }
+
+        public void setPendingRequestCount(int pendingRequests) {
+            this.pendingRequests = pendingRequests;
+        }
+
+        public int getPendingRequestCount() {
+            return pendingRequests;
+        }
+
+        public void setAnswerLatency(long answerLatency) {
+            this.answerLatency = answerLatency;
+        }
+
+        public long getAnswerLatency() {
+            return answerLatency;
+        }
+
         public void setRealm(String realm) {
 
         }
@@ -401,8 +664,17 @@ public class TestRouter {
 
         }
 
+        @SuppressWarnings("unchecked")
         public <E> E getState(Class<E> enumc) {
-            return null;
+            return (E) state;
+        }
+
+        public void setState(PeerState state) {
+            PeerState oldState = this.state;
+            this.state = state;
+            for (PeerStateListener listener : stateListeners) {
+                listener.stateChanged(oldState, state);
+            }
         }
 
         public URI getUri() {
@@ -434,11 +706,11 @@ public class TestRouter {
         }
 
         public void addPeerStateListener(PeerStateListener listener) {
-
+            stateListeners.add(listener);
         }
 
         public void removePeerStateListener(PeerStateListener listener) {
-
+            stateListeners.remove(listener);
         }
 
         @Override
@@ -0,0 +1,113 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.transport;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import org.testng.annotations.Test;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class TestBatchingFlushHandler {
+
+  @Test
+  public void testBurstIsFlushedOnce() {
+    FlushCounter counter = new FlushCounter();
+    EmbeddedChannel channel = new EmbeddedChannel(counter, new BatchingFlushHandler(100, 1024 * 1024));
+
+    for (int i = 0; i < 10; i++) {
+      channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[20]));
+    }
+    assertEquals("Flush not postponed", 0, counter.flushes);
+    assertEquals(0, channel.outboundMessages().size());
+
+    channel.runPendingTasks();
+    assertEquals("Burst not coalesced", 1, counter.flushes);
+    assertEquals(10, channel.outboundMessages().size());
+
+    // nothing pending, flush passes through
+    channel.flush();
+    assertEquals(2, counter.flushes);
+    channel.finish();
+  }
+
+  @Test
+  public void testMessageThreshold() {
+    FlushCounter counter = new FlushCounter();
+    EmbeddedChannel channel = new EmbeddedChannel(counter, new BatchingFlushHandler(4, 1024 * 1024));
+
+    for (int i = 0; i < 10; i++) {
+      channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[20]));
+    }
+    // each threshold flush is followed by the flush of the sender, which passes through as nothing is pending
+    assertEquals("Pending writes not flushed at message threshold", 4, counter.flushes);
+    assertEquals(8, channel.outboundMessages().size());
+
+    channel.runPendingTasks();
+    assertEquals(5, counter.flushes);
+    assertEquals(10, channel.outboundMessages().size());
+    channel.finish();
+  }
+
+  @Test
+  public void testByteThreshold() {
+    FlushCounter counter = new FlushCounter();
+    EmbeddedChannel channel = new EmbeddedChannel(counter, new BatchingFlushHandler(100, 100));
+
+    channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[60]));
+    assertEquals(0, counter.flushes);
+    channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[60]));
+    assertEquals("Pending writes not flushed at byte threshold", 2, channel.outboundMessages().size());
+    int flushes = counter.flushes;
+
+    // already flushed, scheduled task has nothing to do
+    channel.runPendingTasks();
+    assertEquals(flushes, counter.flushes);
+    channel.finish();
+  }
+
+  @Test
+  public void testCloseFlushesPending() {
+    FlushCounter counter = new FlushCounter();
+    EmbeddedChannel channel = new EmbeddedChannel(counter, new BatchingFlushHandler(100, 1024 * 1024));
+
+    channel.write(Unpooled.wrappedBuffer(new byte[20]));
+    channel.write(Unpooled.wrappedBuffer(new byte[20]));
+    channel.close();
+    assertEquals("Pending writes lost on close", 1, counter.flushes);
+  }
+
+  /**
+   * Sits between batching handler and the head of pipeline and counts flushes reaching the socket
+   */
+  private static class FlushCounter extends ChannelOutboundHandlerAdapter {
+
+    private int flushes;
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+      flushes++;
+      ctx.flush();
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.client.impl.transport;
+
+import static org.jdiameter.client.impl.helpers.Parameters.TransportAcceptorCount;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportEpoll;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportThreadCount;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.net.InetSocketAddress;
+
+import org.jdiameter.api.Configuration;
+import org.jdiameter.client.impl.helpers.EmptyConfiguration;
+import org.jdiameter.common.impl.concurrent.ConcurrentEntityFactory;
+import org.jdiameter.common.impl.concurrent.ConcurrentFactory;
+import org.jdiameter.common.impl.statistic.StatisticManagerImpl;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+public class TestNettyUtils {
+
+  private ConcurrentFactory factory;
+
+  @AfterMethod
+  public void tearDown() {
+    if (factory != null) {
+      factory.shutdownTransportEventLoopGroup();
+    }
+  }
+
+  @Test
+  public void testNioByDefault() throws Exception {
+    Configuration config = EmptyConfiguration.getInstance().add(TransportThreadCount, 1).add(TransportAcceptorCount, 4);
+    EventLoopGroup group = createFactory(config).getTransportEventLoopGroup();
+
+    assertFalse(NettyUtils.isEpoll(group));
+    assertSame(NioSocketChannel.class, NettyUtils.getSocketChannelClass(group));
+    assertSame(NioServerSocketChannel.class, NettyUtils.getServerSocketChannelClass(group));
+    assertEquals("NIO can not share port between acceptors", 1, NettyUtils.getAcceptorCount(config, group));
+  }
+
+  @Test
+  public void testEpollWhenAvailable() throws Exception {
+    Configuration config = EmptyConfiguration.getInstance().add(TransportThreadCount, 2).add(TransportEpoll, true)
+        .add(TransportAcceptorCount, 2);
+    EventLoopGroup group = createFactory(config).getTransportEventLoopGroup();
+
+    if (!Epoll.isAvailable()) {
+      // stack falls back to NIO instead of failing
+      assertFalse(NettyUtils.isEpoll(group));
+      assertEquals(1, NettyUtils.getAcceptorCount(config, group));
+      return;
+    }
+    assertTrue(group instanceof EpollEventLoopGroup);
+    assertSame(EpollSocketChannel.class, NettyUtils.getSocketChannelClass(group));
+    assertSame(EpollServerSocketChannel.class, NettyUtils.getServerSocketChannelClass(group));
+    assertEquals(2, NettyUtils.getAcceptorCount(config, group));
+
+    // acceptors bind the same address, which needs SO_REUSEPORT
+    ServerBootstrap bootstrap = new ServerBootstrap().group(group).channel(NettyUtils.getServerSocketChannelClass(group))
+        .childHandler(new ChannelInboundHandlerAdapter());
+    NettyUtils.configure(bootstrap, config, group);
+    Channel first = bootstrap.bind(new InetSocketAddress("127.0.0.1", 0)).sync().channel();
+    int port = ((InetSocketAddress) first.localAddress()).getPort();
+    try {
+      Channel second = bootstrap.bind(new InetSocketAddress("127.0.0.1", port)).sync().channel();
+      assertTrue(second.isActive());
+      second.close().sync();
+    }
+    finally {
+      first.close().sync();
+    }
+  }
+
+  private ConcurrentFactory createFactory(Configuration config) throws Exception {
+    factory = new ConcurrentFactory(config, new StatisticManagerImpl(config), new ConcurrentEntityFactory());
+    return factory;
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.concurrent;
+
+import static org.jdiameter.client.impl.helpers.Parameters.TransportCpuAffinity;
+import static org.jdiameter.client.impl.helpers.Parameters.TransportThreadCount;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.jdiameter.api.Configuration;
+import org.jdiameter.client.impl.helpers.EmptyConfiguration;
+import org.jdiameter.common.impl.statistic.StatisticManagerImpl;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
+
+public class TestConcurrentFactory {
+
+  private ConcurrentFactory factory;
+
+  @AfterMethod
+  public void tearDown() {
+    if (factory != null) {
+      factory.shutdownTransportEventLoopGroup();
+    }
+  }
+
+  @Test
+  public void testTransportGroupShared() throws Exception {
+    factory = createFactory(EmptyConfiguration.getInstance().add(TransportThreadCount, 2));
+
+    EventLoopGroup group = factory.getTransportEventLoopGroup();
+    assertSame("Connections do not share event loop group", group, factory.getTransportEventLoopGroup());
+    EventExecutorGroup handlerGroup = factory.getTransportHandlerExecutorGroup();
+    assertSame("Connections do not share handler executor group", handlerGroup, factory.getTransportHandlerExecutorGroup());
+
+    // configured number of threads, all in stack thread group
+    Set<Thread> threads = new HashSet<Thread>();
+    for (int i = 0; i < 8; i++) {
+      EventLoop loop = group.next();
+      threads.add(loop.submit(new Callable<Thread>() {
+        @Override
+        public Thread call() {
+          return Thread.currentThread();
+        }
+      }).get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(2, threads.size());
+    for (Thread thread : threads) {
+      assertSame(factory.getThreadGroup(), thread.getThreadGroup());
+      assertTrue(thread.getName(), thread.getName().startsWith(ConcurrentFactory.TRANSPORT_ENTITY_NAME));
+    }
+
+    factory.shutdownTransportEventLoopGroup();
+    assertTrue(group.isTerminated());
+    assertTrue(handlerGroup.isTerminated());
+    EventLoopGroup next = factory.getTransportEventLoopGroup();
+    assertNotSame("Group shut down with stack is reused", group, next);
+  }
+
+  @Test
+  public void testCpuAffinityWithoutLibrary() throws Exception {
+    // Java-Thread-Affinity is not on test classpath, threads must start unbound
+    factory = createFactory(EmptyConfiguration.getInstance().add(TransportThreadCount, 1).add(TransportCpuAffinity, "0"));
+    Boolean ran = factory.getTransportEventLoopGroup().next().submit(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return Boolean.TRUE;
+      }
+    }).get(5, TimeUnit.SECONDS);
+    assertTrue(ran);
+  }
+
+  @Test
+  public void testParseCpuList() {
+    assertEquals("[0, 1, 2, 3, 6]", Arrays.toString(TransportThreadFactory.parseCpuList("0-3,6")));
+    assertEquals("[4, 1]", Arrays.toString(TransportThreadFactory.parseCpuList(" 4 , ,1 ")));
+    assertEquals("[]", Arrays.toString(TransportThreadFactory.parseCpuList("")));
+    assertEquals("[]", Arrays.toString(TransportThreadFactory.parseCpuList(null)));
+  }
+
+  private static ConcurrentFactory createFactory(Configuration config) throws Exception {
+    return new ConcurrentFactory(config, new StatisticManagerImpl(config), new ConcurrentEntityFactory());
+  }
+}
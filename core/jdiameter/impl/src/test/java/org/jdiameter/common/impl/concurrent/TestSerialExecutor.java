@@ -0,0 +1,243 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.concurrent;
+
+import static org.jdiameter.client.impl.helpers.Parameters.SessionExecutorThreads;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionSerialExecution;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdiameter.api.Configuration;
+import org.jdiameter.client.impl.helpers.EmptyConfiguration;
+import org.jdiameter.common.impl.statistic.StatisticManagerImpl;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestSerialExecutor {
+
+  private ExecutorService pool;
+
+  @BeforeMethod
+  public void setUp() {
+    pool = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    pool.shutdownNow();
+  }
+
+  @Test
+  public void testFifoWithConcurrentSubmitters() throws Exception {
+    final int submitters = 4;
+    final int tasksPerSubmitter = 2000;
+    final SerialExecutor executor = new SerialExecutor(pool);
+    // not synchronized, tasks of one mailbox never run concurrently
+    final List<int[]> executed = new ArrayList<int[]>();
+    final AtomicInteger running = new AtomicInteger(0);
+    final AtomicInteger overlaps = new AtomicInteger(0);
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(submitters * tasksPerSubmitter);
+
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int s = 0; s < submitters; s++) {
+      final int submitter = s;
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          }
+          catch (InterruptedException e) {
+            return;
+          }
+          for (int i = 0; i < tasksPerSubmitter; i++) {
+            final int[] task = new int[] {submitter, i};
+            executor.execute(new Runnable() {
+              @Override
+              public void run() {
+                if (running.incrementAndGet() > 1) {
+                  overlaps.incrementAndGet();
+                }
+                executed.add(task);
+                running.decrementAndGet();
+                done.countDown();
+              }
+            });
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertTrue("Tasks did not complete", done.await(10, TimeUnit.SECONDS));
+    assertEquals("Tasks of mailbox ran concurrently", 0, overlaps.get());
+    assertEquals(submitters * tasksPerSubmitter, executed.size());
+    int[] next = new int[submitters];
+    for (int[] task : executed) {
+      assertEquals("Tasks of submitter " + task[0] + " ran out of order", next[task[0]]++, task[1]);
+    }
+    awaitEmpty(executor);
+  }
+
+  @Test
+  public void testHandBackAfterMaxBatch() {
+    ManualExecutor manual = new ManualExecutor();
+    SerialExecutor executor = new SerialExecutor(manual);
+    final AtomicInteger executed = new AtomicInteger(0);
+    int total = 2 * SerialExecutor.MAX_BATCH_SIZE + 5;
+    for (int i = 0; i < total; i++) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          executed.incrementAndGet();
+        }
+      });
+    }
+    assertEquals("Mailbox scheduled more than once", 1, manual.pending.size());
+
+    manual.runNext();
+    assertEquals(SerialExecutor.MAX_BATCH_SIZE, executed.get());
+    assertEquals("Mailbox not handed back after batch", 1, manual.pending.size());
+
+    manual.runNext();
+    assertEquals(2 * SerialExecutor.MAX_BATCH_SIZE, executed.get());
+    assertEquals(1, manual.pending.size());
+
+    manual.runNext();
+    assertEquals(total, executed.get());
+    assertEquals("Empty mailbox still scheduled", 0, manual.pending.size());
+    assertEquals(3, manual.scheduled);
+    assertEquals(0, executor.size());
+  }
+
+  @Test
+  public void testThrowingTask() {
+    ManualExecutor manual = new ManualExecutor();
+    SerialExecutor executor = new SerialExecutor(manual);
+    final AtomicInteger executed = new AtomicInteger(0);
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        throw new IllegalStateException("Failing task");
+      }
+    });
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        executed.incrementAndGet();
+      }
+    });
+
+    manual.runNext();
+    assertEquals("Task after failing one did not run", 1, executed.get());
+    assertEquals(0, executor.size());
+    assertEquals(0, manual.pending.size());
+
+    // mailbox is still usable
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        executed.incrementAndGet();
+      }
+    });
+    manual.runNext();
+    assertEquals(2, executed.get());
+  }
+
+  @Test
+  public void testRejectedAfterShutdown() throws Exception {
+    Configuration config = EmptyConfiguration.getInstance().add(SessionSerialExecution, true).add(SessionExecutorThreads, 2);
+    ConcurrentFactory factory = new ConcurrentFactory(config, new StatisticManagerImpl(config), new ConcurrentEntityFactory());
+    SerialExecutor executor = new SerialExecutor(factory.getSessionExecutorService());
+
+    final CountDownLatch executed = new CountDownLatch(1);
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        executed.countDown();
+      }
+    });
+    assertTrue("Task did not run", executed.await(5, TimeUnit.SECONDS));
+    awaitEmpty(executor);
+
+    factory.shutdownSessionExecutorService();
+    for (int i = 0; i < 2; i++) {
+      try {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+          }
+        });
+        fail("Task accepted after shutdown");
+      }
+      catch (RejectedExecutionException e) {
+        // expected, mailbox is emptied so next task is rejected again instead of waiting forever
+        assertEquals(0, executor.size());
+      }
+    }
+  }
+
+  private static void awaitEmpty(SerialExecutor executor) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (executor.size() > 0) {
+      assertTrue("Mailbox not emptied", System.currentTimeMillis() < deadline);
+      Thread.sleep(1);
+    }
+  }
+
+  /**
+   * Executor running tasks only when asked to, counting how many times it was given one.
+   */
+  private static class ManualExecutor implements Executor {
+
+    private final Queue<Runnable> pending = new LinkedList<Runnable>();
+    private int scheduled;
+
+    @Override
+    public void execute(Runnable command) {
+      scheduled++;
+      pending.add(command);
+    }
+
+    void runNext() {
+      pending.poll().run();
+    }
+  }
+}
@@ -0,0 +1,332 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+
+package org.jdiameter.common.impl.data;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.jdiameter.api.app.AppSession;
+import org.jdiameter.api.cca.ClientCCASession;
+import org.jdiameter.api.cca.ServerCCASession;
+import org.jdiameter.common.api.timer.ITimerFacility;
+import org.jdiameter.common.api.timer.ITimerHandle;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of {@link JournaledSessionDataStore}, a store is restarted on the same journal to check what is recovered
+ */
+public class TestJournaledSessionDataStore {
+
+  private static final long COMPACT_SIZE = 64 * 1024 * 1024;
+
+  private File file;
+  private JournaledSessionDataStore store;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    file = File.createTempFile("jdiameter-journal", ".dat");
+    assertTrue(file.delete());
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    if (store != null) {
+      store.stop();
+      store = null;
+    }
+    file.delete();
+    new File(file.getPath() + ".tmp").delete();
+    new File(file.getPath() + ".old").delete();
+  }
+
+  @Test
+  public void testReplaySync() {
+    testReplay(true);
+  }
+
+  @Test
+  public void testReplayAsync() {
+    testReplay(false);
+  }
+
+  private void testReplay(boolean sync) {
+    start(sync, COMPACT_SIZE);
+    byte[] bytes = new byte[] {1, 2, 3};
+    assertTrue(store.create("s1", ClientCCASession.class));
+    store.put("s1", 0, Boolean.TRUE);
+    store.put("s1", 1, Boolean.FALSE);
+    store.put("s1", 2, -7);
+    store.put("s1", 3, Long.MIN_VALUE);
+    store.put("s1", 4, "value");
+    store.put("s1", 5, bytes);
+    store.put("s1", 6, new Object());
+    store.put("s1", 127, 1);
+    store.create("s2", ServerCCASession.class);
+    store.put("s2", 0, 1);
+    store.remove("s2");
+    store.create("s3", ServerCCASession.class);
+    store.put("s3", 0, "temporary");
+    store.put("s3", 0, null);
+    for (int i = 0; i < 1000; i++) {
+      store.create("bulk" + i, ClientCCASession.class);
+      store.put("bulk" + i, 0, i);
+    }
+
+    restart(sync, COMPACT_SIZE);
+    assertEquals(1002, store.size());
+    assertEquals(ClientCCASession.class, store.getAppSessionIface("s1"));
+    assertEquals(Boolean.TRUE, store.get("s1", 0));
+    assertEquals(Boolean.FALSE, store.get("s1", 1));
+    assertEquals(-7, store.get("s1", 2));
+    assertEquals(Long.MIN_VALUE, store.get("s1", 3));
+    assertEquals("value", store.get("s1", 4));
+    assertTrue(Arrays.equals(bytes, (byte[]) store.get("s1", 5)));
+    // kept in memory only
+    assertNull(store.get("s1", 6));
+    assertEquals(1, store.get("s1", 127));
+    assertFalse(store.exists("s2"));
+    assertEquals(ServerCCASession.class, store.getAppSessionIface("s3"));
+    assertNull(store.get("s3", 0));
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, store.get("bulk" + i, 0));
+    }
+  }
+
+  @Test
+  public void testSyncChangeWrittenBeforeReturn() {
+    start(true, COMPACT_SIZE);
+    long size = file.length();
+    store.create("s1", ClientCCASession.class);
+    assertTrue(file.length() > size);
+    size = file.length();
+    store.put("s1", 0, "value");
+    assertTrue(file.length() > size);
+    assertEquals(file.length(), store.getJournalSize());
+  }
+
+  @Test
+  public void testTornEntryDropped() throws IOException {
+    start(true, COMPACT_SIZE);
+    store.create("s1", ClientCCASession.class);
+    store.put("s1", 0, 1);
+    store.stop();
+    store = null;
+
+    // entry cut short by crash
+    FileOutputStream out = new FileOutputStream(file, true);
+    try {
+      out.write(new byte[] {0, 0, 0, 100, 1, 2, 3});
+    }
+    finally {
+      out.close();
+    }
+    start(true, COMPACT_SIZE);
+    assertEquals(1, store.get("s1", 0));
+
+    // journal was rewritten without torn entry, so later changes are recovered too
+    store.put("s1", 1, 2);
+    restart(true, COMPACT_SIZE);
+    assertEquals(1, store.get("s1", 0));
+    assertEquals(2, store.get("s1", 1));
+  }
+
+  @Test
+  public void testCorruptedEntryDropped() throws IOException {
+    start(true, COMPACT_SIZE);
+    store.create("s1", ClientCCASession.class);
+    store.put("s1", 0, 1);
+    store.put("s1", 1, 2);
+    store.stop();
+    store = null;
+
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.seek(raf.length() - 1);
+      int last = raf.read();
+      raf.seek(raf.length() - 1);
+      raf.write(last ^ 0xFF);
+    }
+    finally {
+      raf.close();
+    }
+    start(true, COMPACT_SIZE);
+    assertEquals(1, store.get("s1", 0));
+    assertNull(store.get("s1", 1));
+  }
+
+  @Test
+  public void testCompaction() {
+    start(true, 4096);
+    store.create("s1", ClientCCASession.class);
+    store.create("s2", ClientCCASession.class);
+    for (int i = 0; i < 10000; i++) {
+      store.put("s1", 0, i);
+    }
+    store.remove("s2");
+    // compacted whenever journal grows past 4096 bytes
+    assertTrue("Journal of " + store.getJournalSize() + " bytes", store.getJournalSize() < 2 * 4096);
+    assertFalse(new File(file.getPath() + ".tmp").exists());
+    assertFalse(new File(file.getPath() + ".old").exists());
+
+    restart(true, 4096);
+    assertEquals(9999, store.get("s1", 0));
+    assertFalse(store.exists("s2"));
+    assertEquals(1, store.size());
+  }
+
+  @Test
+  public void testRecoveredFromOldJournal() {
+    start(true, COMPACT_SIZE);
+    store.create("s1", ClientCCASession.class);
+    store.put("s1", 0, 1);
+    store.stop();
+    store = null;
+
+    // crash after journal was moved aside, before snapshot took its place
+    File old = new File(file.getPath() + ".old");
+    assertTrue(file.renameTo(old));
+    start(true, COMPACT_SIZE);
+    assertEquals(1, store.get("s1", 0));
+    assertTrue(file.exists());
+    assertFalse(old.exists());
+  }
+
+  @Test
+  public void testRecoveredTimersScheduledByType() {
+    start(true, COMPACT_SIZE);
+    store.create("s1", ClientCCASession.class);
+    store.create("s2", ServerCCASession.class);
+    store.create("s3", ServerCCASession.class);
+    store.put("s1", 0, new TestTimerHandle("s1", "TX_TIMER", 60000));
+    store.put("s2", 0, new TestTimerHandle("s2", "TCC_TIMER", 0));
+    store.put("s3", 0, 1);
+    restart(true, COMPACT_SIZE);
+    assertEquals(new HashSet<Class<? extends AppSession>>(Arrays.<Class<? extends AppSession>>asList(ClientCCASession.class,
+        ServerCCASession.class)), store.getRecoveredTimerTypes());
+
+    TestTimerFacility timerFacility = new TestTimerFacility();
+    List<Class<? extends AppSession>> client = new ArrayList<Class<? extends AppSession>>();
+    client.add(ClientCCASession.class);
+    assertEquals(1, store.rescheduleTimers(timerFacility, client));
+    assertEquals(1, timerFacility.scheduled.size());
+    TestTimerHandle handle = timerFacility.scheduled.get(0);
+    assertEquals("s1", handle.sessionId);
+    assertEquals("TX_TIMER", handle.timerName);
+    assertTrue(handle.delay > 50000 && handle.delay <= 60000);
+    assertSame(handle, store.get("s1", 0));
+    assertEquals(Collections.<Class<? extends AppSession>>singleton(ServerCCASession.class), store.getRecoveredTimerTypes());
+    // timer not scheduled yet is journaled again by compaction
+    assertNotNull(store.get("s2", 0));
+
+    List<Class<? extends AppSession>> server = new ArrayList<Class<? extends AppSession>>();
+    server.add(ServerCCASession.class);
+    assertEquals(1, store.rescheduleTimers(timerFacility, server));
+    assertEquals("TCC_TIMER", timerFacility.scheduled.get(1).timerName);
+    assertEquals(0, timerFacility.scheduled.get(1).delay);
+    assertTrue(store.getRecoveredTimerTypes().isEmpty());
+    assertEquals(0, store.rescheduleTimers(timerFacility, server));
+  }
+
+  @Test
+  public void testRecoveredTimerKeptUntilScheduled() {
+    start(true, COMPACT_SIZE);
+    store.create("s1", ClientCCASession.class);
+    store.put("s1", 0, new TestTimerHandle("s1", "TX_TIMER", 60000));
+    restart(true, COMPACT_SIZE);
+    // restarted before application registered its session factory
+    restart(true, COMPACT_SIZE);
+    assertEquals(Collections.<Class<? extends AppSession>>singleton(ClientCCASession.class), store.getRecoveredTimerTypes());
+  }
+
+  private void start(boolean sync, long compactSize) {
+    store = new JournaledSessionDataStore(file, sync, compactSize, null);
+    store.start();
+  }
+
+  private void restart(boolean sync, long compactSize) {
+    store.stop();
+    start(sync, compactSize);
+  }
+
+  private static class TestTimerHandle implements ITimerHandle {
+
+    private static final long serialVersionUID = 1L;
+
+    final String sessionId;
+    final String timerName;
+    final long delay;
+
+    TestTimerHandle(String sessionId, String timerName, long delay) {
+      this.sessionId = sessionId;
+      this.timerName = timerName;
+      this.delay = delay;
+    }
+
+    @Override
+    public String getSessionId() {
+      return sessionId;
+    }
+
+    @Override
+    public String getTimerName() {
+      return timerName;
+    }
+
+    @Override
+    public long getDelay() {
+      return delay;
+    }
+  }
+
+  private static class TestTimerFacility implements ITimerFacility {
+
+    final List<TestTimerHandle> scheduled = new ArrayList<TestTimerHandle>();
+
+    @Override
+    public Serializable schedule(String sessionId, String timerName, long miliseconds) {
+      TestTimerHandle handle = new TestTimerHandle(sessionId, timerName, miliseconds);
+      scheduled.add(handle);
+      return handle;
+    }
+
+    @Override
+    public void cancel(Serializable id) {
+      scheduled.remove(id);
+    }
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+
+package org.jdiameter.common.impl.data;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jdiameter.api.cca.ClientCCASession;
+import org.jdiameter.api.cca.ServerCCASession;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of {@link MappedSessionDataStore}
+ */
+public class TestMappedSessionDataStore {
+
+  private static final int MIN_BLOCK = 64;
+
+  private MappedSessionDataStore store;
+
+  @AfterMethod
+  public void tearDown() {
+    if (store != null) {
+      store.stop();
+      store = null;
+    }
+  }
+
+  @Test
+  public void testRoundTrip() {
+    start(1 << 20);
+    assertTrue(store.create("s1", ClientCCASession.class));
+    assertFalse(store.create("s1", ClientCCASession.class));
+    Object reference = new Object();
+    byte[] bytes = new byte[] {0, 1, -1, 127, -128};
+
+    store.put("s1", 0, Boolean.TRUE);
+    store.put("s1", 1, Boolean.FALSE);
+    store.put("s1", 2, Integer.MIN_VALUE);
+    store.put("s1", 3, -1);
+    store.put("s1", 4, Long.MAX_VALUE);
+    store.put("s1", 5, -2L);
+    store.put("s1", 6, "Credit-Control \u00e9\u4e2d");
+    store.put("s1", 7, "");
+    store.put("s1", 8, bytes);
+    store.put("s1", 9, new byte[0]);
+    store.put("s1", 127, reference);
+
+    assertEquals(Boolean.TRUE, store.get("s1", 0));
+    assertEquals(Boolean.FALSE, store.get("s1", 1));
+    assertEquals(Integer.MIN_VALUE, store.get("s1", 2));
+    assertEquals(-1, store.get("s1", 3));
+    assertEquals(Long.MAX_VALUE, store.get("s1", 4));
+    assertEquals(-2L, store.get("s1", 5));
+    assertEquals("Credit-Control \u00e9\u4e2d", store.get("s1", 6));
+    assertEquals("", store.get("s1", 7));
+    assertTrue(Arrays.equals(bytes, (byte[]) store.get("s1", 8)));
+    assertEquals(0, ((byte[]) store.get("s1", 9)).length);
+    assertSame(reference, store.get("s1", 127));
+    assertNull(store.get("s1", 10));
+    assertEquals(ClientCCASession.class, store.getAppSessionIface("s1"));
+  }
+
+  @Test
+  public void testOverwriteAndRemoveAttribute() {
+    start(1 << 20);
+    store.create("s1", ServerCCASession.class);
+    store.put("s1", 1, new Object());
+    store.put("s1", 1, "value");
+    assertEquals("value", store.get("s1", 1));
+    store.put("s1", 1, 42);
+    assertEquals(42, store.get("s1", 1));
+    store.put("s1", 1, null);
+    assertNull(store.get("s1", 1));
+    assertEquals(ServerCCASession.class, store.getAppSessionIface("s1"));
+  }
+
+  @Test
+  public void testUnknownSession() {
+    start(1 << 20);
+    assertFalse(store.exists("s1"));
+    assertNull(store.get("s1", 0));
+    assertNull(store.getAppSessionIface("s1"));
+    assertFalse(store.put("s1", 0, 1));
+    assertFalse(store.remove("s1"));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testAttributeOutOfRange() {
+    start(1 << 20);
+    store.create("s1", ClientCCASession.class);
+    store.put("s1", 128, 1);
+  }
+
+  @Test
+  public void testRecordGrowsToLargerBlock() {
+    start(1 << 20);
+    store.create("s1", ClientCCASession.class);
+    store.create("s2", ClientCCASession.class);
+    store.put("s1", 0, 7L);
+    store.put("s2", 0, "neighbour");
+    assertEquals(2 * MIN_BLOCK, store.getUsedBytes());
+
+    char[] chars = new char[100];
+    Arrays.fill(chars, 'a');
+    String medium = new String(chars);
+    store.put("s1", 1, medium);
+    assertEquals(MIN_BLOCK + 2 * MIN_BLOCK, store.getUsedBytes());
+
+    chars = new char[5000];
+    Arrays.fill(chars, 'b');
+    String large = new String(chars);
+    store.put("s1", 2, large);
+    assertEquals(MIN_BLOCK + 8192, store.getUsedBytes());
+
+    assertEquals(7L, store.get("s1", 0));
+    assertEquals(medium, store.get("s1", 1));
+    assertEquals(large, store.get("s1", 2));
+    assertEquals("neighbour", store.get("s2", 0));
+
+    // shrinking value keeps the block
+    store.put("s1", 2, null);
+    assertEquals(MIN_BLOCK + 8192, store.getUsedBytes());
+    assertEquals(medium, store.get("s1", 1));
+  }
+
+  @Test
+  public void testFreeBlocksReused() {
+    start(4 * MIN_BLOCK);
+    for (int i = 0; i < 4; i++) {
+      assertTrue(store.create("s" + i, ClientCCASession.class));
+    }
+    assertEquals(4 * MIN_BLOCK, store.getUsedBytes());
+
+    store.remove("s1");
+    assertEquals(3 * MIN_BLOCK, store.getUsedBytes());
+    assertTrue(store.create("s4", ServerCCASession.class));
+    assertEquals(4 * MIN_BLOCK, store.getUsedBytes());
+    assertEquals(ServerCCASession.class, store.getAppSessionIface("s4"));
+    assertNull(store.get("s4", 0));
+    assertEquals(4, store.size());
+  }
+
+  @Test
+  public void testStoreFull() {
+    start(4 * MIN_BLOCK);
+    for (int i = 0; i < 4; i++) {
+      store.create("s" + i, ClientCCASession.class);
+    }
+    try {
+      store.create("s4", ClientCCASession.class);
+      fail("Record created in full store");
+    }
+    catch (IllegalStateException e) {
+      // expected
+    }
+    assertFalse(store.exists("s4"));
+
+    // record which does not fit in a larger block stays as it was
+    store.put("s0", 0, 1);
+    try {
+      store.put("s0", 1, new byte[MIN_BLOCK]);
+      fail("Record grown in full store");
+    }
+    catch (IllegalStateException e) {
+      // expected
+    }
+    assertEquals(1, store.get("s0", 0));
+    assertNull(store.get("s0", 1));
+  }
+
+  @Test
+  public void testManySessions() {
+    int count = 500000;
+    start((long) count * MIN_BLOCK);
+    for (int i = 0; i < count; i++) {
+      assertTrue(store.create("host;" + i, ClientCCASession.class));
+      store.put("host;" + i, 0, i);
+    }
+    assertEquals(count, store.size());
+    assertEquals((long) count * MIN_BLOCK, store.getUsedBytes());
+    for (int i = 0; i < count; i++) {
+      assertEquals(i, store.get("host;" + i, 0));
+    }
+
+    // index shrinks and grows again while blocks are reused
+    for (int i = 0; i < count; i += 2) {
+      assertTrue(store.remove("host;" + i));
+    }
+    assertEquals(count / 2, store.size());
+    for (int i = 1; i < count; i += 2) {
+      assertEquals(i, store.get("host;" + i, 0));
+    }
+    for (int i = 0; i < count; i += 2) {
+      assertFalse(store.exists("host;" + i));
+      assertTrue(store.create("other;" + i, ServerCCASession.class));
+    }
+    assertEquals(count, store.size());
+    assertEquals(ServerCCASession.class, store.getAppSessionIface("other;0"));
+    assertEquals(ClientCCASession.class, store.getAppSessionIface("host;1"));
+  }
+
+  @Test
+  public void testConcurrentAccess() throws Exception {
+    start(1 << 24);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final String prefix = "thread" + t + ";";
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < 20000; i++) {
+              String sessionId = prefix + i;
+              assertTrue(store.create(sessionId, ClientCCASession.class));
+              // records move between size classes
+              store.put(sessionId, 0, new byte[i % 200]);
+              assertEquals(i % 200, ((byte[]) store.get(sessionId, 0)).length);
+              if (i % 2 == 0) {
+                assertTrue(store.remove(sessionId));
+              }
+            }
+          }
+          catch (Throwable e) {
+            failure.set(e);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(failure.get());
+    assertEquals(threads.length * 10000, store.size());
+    for (int t = 0; t < threads.length; t++) {
+      for (int i = 1; i < 20000; i += 2) {
+        assertEquals(i % 200, ((byte[]) store.get("thread" + t + ";" + i, 0)).length);
+      }
+    }
+  }
+
+  @Test
+  public void testAccessAfterStop() {
+    start(1 << 20);
+    store.create("s1", ClientCCASession.class);
+    store.put("s1", 0, 1);
+    store.stop();
+
+    assertFalse(store.exists("s1"));
+    assertNull(store.get("s1", 0));
+    assertNull(store.getAppSessionIface("s1"));
+    assertFalse(store.put("s1", 0, 2));
+    assertEquals(0, store.size());
+    assertEquals(0, store.getUsedBytes());
+  }
+
+  private void start(long capacity) {
+    store = new MappedSessionDataStore(null, capacity);
+    store.start();
+  }
+}
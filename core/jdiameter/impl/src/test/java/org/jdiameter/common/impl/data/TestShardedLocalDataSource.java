@@ -0,0 +1,232 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+
+package org.jdiameter.common.impl.data;
+
+import static org.jdiameter.client.impl.helpers.Parameters.SessionDatasourceShards;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionIdleTimeout;
+import static org.jdiameter.client.impl.helpers.Parameters.SessionMaxCount;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import org.jdiameter.api.BaseSession;
+import org.jdiameter.api.Configuration;
+import org.jdiameter.client.impl.helpers.EmptyConfiguration;
+import org.jdiameter.common.api.app.cca.ICCASessionData;
+import org.jdiameter.common.api.data.SessionLimitException;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of {@link ShardedLocalDataSource}, idle sessions are swept by calling sweep with chosen time
+ */
+public class TestShardedLocalDataSource {
+
+  private static final long IDLE_TIMEOUT = 1000;
+
+  @Test
+  public void testSessionLimit() {
+    ShardedLocalDataSource ds = createDataSource(4, 2);
+    ds.addSession(new TestSession(ds, "s1"));
+    ds.addSession(new TestSession(ds, "s2"));
+    try {
+      ds.addSession(new TestSession(ds, "s3"));
+      fail("Session added over limit");
+    }
+    catch (SessionLimitException e) {
+      // expected
+    }
+    assertFalse(ds.exists("s3"));
+    assertEquals(2, ds.getLiveSessions());
+    assertEquals(1, ds.getRejectedSessions());
+
+    ds.removeSession("s1");
+    ds.addSession(new TestSession(ds, "s3"));
+    assertTrue(ds.exists("s3"));
+    assertEquals(2, ds.getLiveSessions());
+  }
+
+  @Test
+  public void testNoSessionLimit() {
+    ShardedLocalDataSource ds = createDataSource(4, 0);
+    for (int i = 0; i < 1000; i++) {
+      ds.addSession(new TestSession(ds, "s" + i));
+    }
+    assertEquals(1000, ds.getLiveSessions());
+    assertEquals(0, ds.getRejectedSessions());
+  }
+
+  @Test
+  public void testIdleSessionReleased() {
+    ShardedLocalDataSource ds = createDataSource(1, 0);
+    TestSession session = new TestSession(ds, "s1");
+    ds.addSession(session);
+    long now = System.currentTimeMillis();
+
+    ds.sweep(now + IDLE_TIMEOUT / 2);
+    assertTrue(ds.exists("s1"));
+    assertFalse(session.released);
+
+    ds.sweep(now + IDLE_TIMEOUT * 2);
+    assertTrue(session.released);
+    assertFalse(ds.exists("s1"));
+    assertEquals(0, ds.getLiveSessions());
+    assertEquals(1, ds.getExpiredSessions());
+  }
+
+  @Test
+  public void testSessionAccessDefersExpiry() {
+    ShardedLocalDataSource ds = createDataSource(1, 0);
+    TestSession session = new TestSession(ds, "s1");
+    ds.addSession(session);
+    long now = System.currentTimeMillis();
+
+    // session used directly by application
+    session.lastAccessedTime = now + IDLE_TIMEOUT * 3 / 2;
+    ds.sweep(now + IDLE_TIMEOUT * 2);
+    assertTrue(ds.exists("s1"));
+    assertFalse(session.released);
+
+    ds.sweep(now + IDLE_TIMEOUT * 3);
+    assertTrue(session.released);
+    assertEquals(1, ds.getExpiredSessions());
+  }
+
+  @Test
+  public void testIdleSessionRemovedWhenReleaseFails() {
+    ShardedLocalDataSource ds = createDataSource(1, 0);
+    TestSession session = new TestSession(ds, "s1") {
+      @Override
+      public void release() {
+        throw new IllegalStateException("broken session");
+      }
+    };
+    ds.addSession(session);
+
+    ds.sweep(System.currentTimeMillis() + IDLE_TIMEOUT * 2);
+    assertFalse(ds.exists("s1"));
+    assertEquals(0, ds.getLiveSessions());
+    assertEquals(1, ds.getExpiredSessions());
+  }
+
+  @Test
+  public void testSessionAddedDuringReleaseKept() {
+    final ShardedLocalDataSource ds = createDataSource(1, 0);
+    final TestSession replacement = new TestSession(ds, "s1");
+    TestSession session = new TestSession(ds, "s1") {
+      @Override
+      public void release() {
+        super.release();
+        // session with the same id is created while idle one is released
+        ds.addSession(replacement);
+      }
+    };
+    ds.addSession(session);
+
+    ds.sweep(System.currentTimeMillis() + IDLE_TIMEOUT * 2);
+    assertTrue(session.released);
+    assertSame(replacement, ds.getSession("s1"));
+    assertEquals(1, ds.getLiveSessions());
+    assertEquals(1, ds.getExpiredSessions());
+  }
+
+  @Test
+  public void testSweepVisitsAllShards() {
+    ShardedLocalDataSource ds = createDataSource(8, 0);
+    for (int i = 0; i < 100; i++) {
+      ds.addSession(new TestSession(ds, "s" + i));
+    }
+    long later = System.currentTimeMillis() + IDLE_TIMEOUT * 2;
+    for (int i = 0; i < 8; i++) {
+      ds.sweep(later);
+    }
+    assertEquals(0, ds.getLiveSessions());
+    assertEquals(100, ds.getExpiredSessions());
+  }
+
+  @Test
+  public void testGetSessionAndDataFactory() {
+    ShardedLocalDataSource ds = createDataSource(4, 0);
+    TestSession session = new TestSession(ds, "s1");
+    ds.addSession(session);
+    assertSame(session, ds.getSession("s1"));
+    assertNotNull(ds.getDataFactory(ICCASessionData.class));
+    assertFalse(ds.isClustered());
+  }
+
+  private ShardedLocalDataSource createDataSource(int shards, int maxSessions) {
+    Configuration config = EmptyConfiguration.getInstance().add(SessionDatasourceShards, shards).
+        add(SessionIdleTimeout, IDLE_TIMEOUT).add(SessionMaxCount, maxSessions);
+    return new ShardedLocalDataSource(null, config);
+  }
+
+  private static class TestSession implements BaseSession {
+
+    private final ShardedLocalDataSource ds;
+    private final String sessionId;
+    private final long creationTime = System.currentTimeMillis();
+    long lastAccessedTime = creationTime;
+    boolean released;
+
+    TestSession(ShardedLocalDataSource ds, String sessionId) {
+      this.ds = ds;
+      this.sessionId = sessionId;
+    }
+
+    @Override
+    public long getCreationTime() {
+      return creationTime;
+    }
+
+    @Override
+    public long getLastAccessedTime() {
+      return lastAccessedTime;
+    }
+
+    @Override
+    public boolean isValid() {
+      return !released;
+    }
+
+    @Override
+    public void release() {
+      released = true;
+      ds.removeSession(sessionId);
+    }
+
+    @Override
+    public boolean isAppSession() {
+      return false;
+    }
+
+    @Override
+    public boolean isReplicable() {
+      return false;
+    }
+
+    @Override
+    public String getSessionId() {
+      return sessionId;
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+
+package org.jdiameter.common.impl.data;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.lang.ref.WeakReference;
+
+import org.jdiameter.api.ApplicationId;
+import org.jdiameter.api.cca.ClientCCASession;
+import org.jdiameter.client.api.ISessionFactory;
+import org.jdiameter.client.impl.StackImpl;
+import org.jdiameter.client.impl.app.cca.IClientCCASessionData;
+import org.jdiameter.client.impl.helpers.XMLConfiguration;
+import org.jdiameter.common.api.app.cca.ClientCCASessionState;
+import org.jdiameter.common.api.app.cca.ICCASessionData;
+import org.jdiameter.common.api.data.ISessionDatasource;
+import org.jdiameter.common.impl.app.cca.CCASessionFactoryImpl;
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of {@link StoredSessionDatasource} with CCA sessions of client stack, which keeps one stored session in memory
+ */
+public class TestStoredSessionDatasource {
+
+  private static final ApplicationId CCA_APP_ID = ApplicationId.createByAuthAppId(0, 4);
+
+  private StackImpl stack;
+  private ISessionFactory sessionFactory;
+  private StoredSessionDatasource datasource;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    stack = new StackImpl();
+    sessionFactory = (ISessionFactory) stack.init(new XMLConfiguration("src/test/resources/jdiameter-stored-sessions-config.xml"));
+    sessionFactory.registerAppFacory(ClientCCASession.class, new CCASessionFactoryImpl(sessionFactory));
+    datasource = (StoredSessionDatasource) stack.getAssemblerFacility().getComponentInstance(ISessionDatasource.class);
+    datasource.start();
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    datasource.stop();
+    stack.destroy();
+  }
+
+  @Test
+  public void testSessionRecreatedFromStore() throws Exception {
+    ClientCCASession session = createSession("cca-1");
+    WeakReference<ClientCCASession> dropped = new WeakReference<ClientCCASession>(session);
+    session = null;
+    createSession("cca-2");
+    assertEquals(2, datasource.getStoredSessions());
+    assertEquals(1, datasource.getHotSessions());
+
+    for (int i = 0; i < 50 && dropped.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    if (dropped.get() != null) {
+      throw new SkipException("Dropped session was not garbage collected");
+    }
+
+    ClientCCASession recreated = (ClientCCASession) datasource.getSession("cca-1");
+    assertNotNull(recreated);
+    assertEquals("cca-1", recreated.getSessionId());
+    assertEquals(ClientCCASessionState.OPEN, recreated.getState(ClientCCASessionState.class));
+    assertEquals(CCA_APP_ID, recreated.getSessionAppId());
+    assertSame(recreated, datasource.getSessionListener("cca-1"));
+    assertEquals(1, datasource.getHotSessions());
+  }
+
+  @Test
+  public void testSessionInUseTakenBack() throws Exception {
+    ClientCCASession session = createSession("cca-1");
+    createSession("cca-2");
+    assertEquals(1, datasource.getHotSessions());
+
+    // still referenced, e.g. by pending request, so the same instance is used
+    assertSame(session, datasource.getSession("cca-1"));
+    assertSame(session, datasource.getSessionListener("cca-1"));
+    assertEquals(ClientCCASessionState.OPEN, session.getState(ClientCCASessionState.class));
+  }
+
+  @Test
+  public void testReleasedSessionRemovedFromStore() throws Exception {
+    ClientCCASession session = createSession("cca-1");
+    session.release();
+    assertFalse(datasource.exists("cca-1"));
+    assertNull(datasource.getSession("cca-1"));
+    assertEquals(0, datasource.getStoredSessions());
+  }
+
+  @Test
+  public void testAccessAfterStop() throws Exception {
+    createSession("cca-1");
+    createSession("cca-2");
+    datasource.stop();
+    // data of session dropped from memory is gone with the store
+    assertFalse(datasource.exists("cca-1"));
+    assertNull(datasource.getSession("cca-1"));
+    assertNull(datasource.getSessionListener("cca-1"));
+    datasource.start();
+  }
+
+  private ClientCCASession createSession(String sessionId) throws Exception {
+    ClientCCASession session = sessionFactory.getNewAppSession(sessionId, CCA_APP_ID, ClientCCASession.class, (Object[]) null);
+    IClientCCASessionData data = (IClientCCASessionData) datasource.getDataFactory(ICCASessionData.class).
+        getAppSessionData(ClientCCASession.class, sessionId);
+    data.setClientCCASessionState(ClientCCASessionState.OPEN);
+    assertTrue(datasource.exists(sessionId));
+    // sessions created later are used more recently
+    Thread.sleep(5);
+    return session;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.common.impl.timer;
+
+import static org.jdiameter.client.impl.helpers.Parameters.TimerWheelSize;
+import static org.jdiameter.client.impl.helpers.Parameters.TimerWheelTickDuration;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.Serializable;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jdiameter.api.Configuration;
+import org.jdiameter.client.impl.helpers.EmptyConfiguration;
+import org.jdiameter.common.api.timer.ITimerHandle;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of {@link HashedWheelTimerFacilityImpl} with 10 ms ticks
+ */
+public class TestHashedWheelTimerFacility {
+
+  private ScheduledExecutorService executor;
+
+  @BeforeMethod
+  public void setUp() {
+    executor = Executors.newScheduledThreadPool(1);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testSchedule() throws Exception {
+    RecordingTimerFacility facility = createFacility(8);
+    long start = System.nanoTime();
+    Serializable handle = facility.schedule("session", "timer", 50);
+    assertEquals("session", ((ITimerHandle) handle).getSessionId());
+    assertEquals("timer", ((ITimerHandle) handle).getTimerName());
+
+    assertEquals("session:timer", facility.expired.poll(2, TimeUnit.SECONDS));
+    assertTrue("Timer fired early", System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    assertNull("Expired timer still tells its name", ((ITimerHandle) handle).getTimerName());
+  }
+
+  @Test
+  public void testCancel() throws Exception {
+    RecordingTimerFacility facility = createFacility(8);
+    Serializable cancelled = facility.schedule("session", "cancelled", 30);
+    facility.schedule("session", "kept", 60);
+    facility.cancel(cancelled);
+
+    assertEquals("session:kept", facility.expired.poll(2, TimeUnit.SECONDS));
+    assertNull("Cancelled timer fired", facility.expired.poll(100, TimeUnit.MILLISECONDS));
+    assertNull(((ITimerHandle) cancelled).getTimerName());
+  }
+
+  @Test
+  public void testExpiryOrderAcrossRounds() throws Exception {
+    // wheel spans 40 ms, all these timers fall into the same bucket and differ only in rounds
+    RecordingTimerFacility facility = createFacility(4);
+    facility.schedule("session", "170", 170);
+    facility.schedule("session", "90", 90);
+    facility.schedule("session", "130", 130);
+    facility.schedule("session", "50", 50);
+
+    assertEquals("session:50", facility.expired.poll(2, TimeUnit.SECONDS));
+    assertEquals("session:90", facility.expired.poll(2, TimeUnit.SECONDS));
+    assertEquals("session:130", facility.expired.poll(2, TimeUnit.SECONDS));
+    assertEquals("session:170", facility.expired.poll(2, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testStop() throws Exception {
+    RecordingTimerFacility facility = createFacility(8);
+    Serializable dropped = facility.schedule("session", "dropped", 50);
+    facility.stop();
+    assertNull("Timer fired after stop", facility.expired.poll(150, TimeUnit.MILLISECONDS));
+    assertNull(((ITimerHandle) dropped).getTimerName());
+
+    // started again by next timer
+    facility.schedule("session", "restarted", 20);
+    assertEquals("session:restarted", facility.expired.poll(2, TimeUnit.SECONDS));
+  }
+
+  private RecordingTimerFacility createFacility(int wheelSize) {
+    Configuration config = EmptyConfiguration.getInstance().add(TimerWheelSize, wheelSize).add(TimerWheelTickDuration, 10L);
+    return new RecordingTimerFacility(executor, config);
+  }
+
+  private static class RecordingTimerFacility extends HashedWheelTimerFacilityImpl {
+
+    final BlockingQueue<String> expired = new LinkedBlockingQueue<String>();
+
+    RecordingTimerFacility(ScheduledExecutorService executor, Configuration config) {
+      super(executor, null, config);
+    }
+
+    @Override
+    protected void timerExpired(String sessionId, String timerName) {
+      expired.add(sessionId + ":" + timerName);
+    }
+  }
+}
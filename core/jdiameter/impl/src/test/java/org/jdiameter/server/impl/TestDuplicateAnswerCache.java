@@ -0,0 +1,162 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.server.impl;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNotSame;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import org.jdiameter.api.Avp;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of {@link DuplicateAnswerCache}
+ */
+public class TestDuplicateAnswerCache {
+
+  private final MessageParser parser = new MessageParser();
+
+  @Test
+  public void testStoreClones() throws Exception {
+    DuplicateAnswerCache cache = new DuplicateAnswerCache(100, null);
+    IMessage answer = createAnswer(1);
+    assertTrue(cache.put("client.domain", 1, answer));
+
+    IMessage found = cache.get("client.domain", 1);
+    assertNotNull(found);
+    assertNotSame(answer, found);
+    assertEquals(1, found.getEndToEndIdentifier());
+    assertEquals(2001, found.getAvps().getAvp(Avp.RESULT_CODE).getInteger32());
+    assertNull(cache.get("client.domain", 2));
+    assertNull(cache.get("other.domain", 1));
+  }
+
+  @Test
+  public void testStoreEncoded() throws Exception {
+    DuplicateAnswerCache cache = new DuplicateAnswerCache(100, parser);
+    assertTrue(cache.put("client.domain", 1, createAnswer(1)));
+
+    IMessage found = cache.get("client.domain", 1);
+    assertNotNull(found);
+    assertEquals(272, found.getCommandCode());
+    assertFalse(found.isRequest());
+    assertEquals(1, found.getEndToEndIdentifier());
+    assertEquals(2001, found.getAvps().getAvp(Avp.RESULT_CODE).getInteger32());
+  }
+
+  @Test
+  public void testRotation() {
+    DuplicateAnswerCache cache = new DuplicateAnswerCache(100, parser);
+    cache.put("client.domain", 1, createAnswer(1));
+    // entry lives for whole lifetime, which is BUCKETS rotations
+    for (int i = 0; i < DuplicateAnswerCache.BUCKETS; i++) {
+      cache.rotate();
+      assertNotNull(cache.get("client.domain", 1));
+    }
+    cache.rotate();
+    assertNull(cache.get("client.domain", 1));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testMaxSize() {
+    DuplicateAnswerCache cache = new DuplicateAnswerCache(2, parser);
+    assertTrue(cache.put("client.domain", 1, createAnswer(1)));
+    cache.rotate();
+    assertTrue(cache.put("client.domain", 2, createAnswer(2)));
+    // the oldest bucket is dropped to make room
+    assertTrue(cache.put("client.domain", 3, createAnswer(3)));
+    assertEquals(2, cache.size());
+    assertNull(cache.get("client.domain", 1));
+    assertNotNull(cache.get("client.domain", 2));
+    assertNotNull(cache.get("client.domain", 3));
+
+    // the current bucket is dropped if it holds all answers
+    assertTrue(cache.put("client.domain", 4, createAnswer(4)));
+    assertEquals(1, cache.size());
+    assertNull(cache.get("client.domain", 2));
+    assertNotNull(cache.get("client.domain", 4));
+
+    assertFalse(new DuplicateAnswerCache(0, parser).put("client.domain", 1, createAnswer(1)));
+  }
+
+  @Test
+  public void testConcurrentPutAndRotate() throws Exception {
+    final DuplicateAnswerCache cache = new DuplicateAnswerCache(1000, null);
+    final IMessage answer = createAnswer(1);
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final String host = "client" + t + ".domain";
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 20000; i++) {
+            // every id is stored twice, replacing the first answer
+            cache.put(host, i / 2, answer);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (int i = 0; i < 200; i++) {
+      cache.rotate();
+      Thread.sleep(1);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertTrue(cache.size() <= 1000);
+    // counter matches entries, it drops to 0 once all buckets are dropped
+    for (int i = 0; i <= DuplicateAnswerCache.BUCKETS; i++) {
+      cache.rotate();
+    }
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testManyHosts() {
+    DuplicateAnswerCache cache = new DuplicateAnswerCache(200000, parser);
+    for (int i = 0; i < 100000; i++) {
+      assertTrue(cache.put("client" + i + ".domain", 7, createAnswer(7)));
+    }
+    // answers of first hosts are still found after many others were seen
+    assertNotNull(cache.get("client0.domain", 7));
+    assertNotNull(cache.get("client99999.domain", 7));
+    assertEquals(100000, cache.size());
+
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertNull(cache.get("client0.domain", 7));
+  }
+
+  private IMessage createAnswer(long endToEndId) {
+    IMessage answer = parser.createEmptyMessage(272, 4);
+    answer.setRequest(false);
+    answer.setHopByHopIdentifier(endToEndId);
+    answer.setEndToEndIdentifier(endToEndId);
+    answer.getAvps().addAvp(Avp.RESULT_CODE, 2001, true, false, true);
+    return answer;
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.server.impl;
+
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.jdiameter.api.Answer;
+import org.jdiameter.api.ApplicationId;
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.Message;
+import org.jdiameter.api.NetworkReqListener;
+import org.jdiameter.api.Request;
+import org.jdiameter.api.Selector;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.controller.IRealmTable;
+import org.jdiameter.client.impl.helpers.EmptyConfiguration;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.jdiameter.common.impl.statistic.StatisticManagerImpl;
+import org.jdiameter.server.api.IMetaData;
+import org.jdiameter.server.api.IRouter;
+import org.jdiameter.server.impl.helpers.ApplicationIdSelector;
+import org.jdiameter.server.impl.helpers.CommandCodeSelector;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestNetworkImpl {
+
+  private static final ApplicationId CCA = ApplicationId.createByAuthAppId(4);
+  private static final ApplicationId SH = ApplicationId.createByAuthAppId(10415, 16777217);
+
+  private final MessageParser parser = new MessageParser();
+  private NetworkImpl network;
+
+  @BeforeMethod
+  public void setUp() {
+    network = new NetworkImpl(new StatisticManagerImpl(EmptyConfiguration.getInstance()), proxy(IMetaData.class, null), createRouter());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testCommandCodeBeforeApplication() throws Exception {
+    NetworkReqListener ccr = new TestListener();
+    NetworkReqListener application = new TestListener();
+    network.addNetworkReqListener(ccr, new CommandCodeSelector(272, CCA));
+    network.addNetworkReqListener(application, new ApplicationIdSelector(CCA));
+
+    assertSame(ccr, network.getListener(createRequest(272, CCA)));
+    assertSame("Other command of application not dispatched by application", application, network.getListener(createRequest(258, CCA)));
+    assertNull(network.getListener(createRequest(272, SH)));
+    assertNull(network.getListener(null));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testGenericSelectorsAndApplicationListeners() throws Exception {
+    NetworkReqListener generic = new TestListener();
+    NetworkReqListener byAppId = new TestListener();
+    network.addNetworkReqListener(generic, new Selector<Message, ApplicationId>() {
+      @Override
+      public boolean checkRule(Message message) {
+        return message.getCommandCode() == 306;
+      }
+
+      @Override
+      public ApplicationId getMetaData() {
+        return SH;
+      }
+    });
+    network.addNetworkReqListener(byAppId, SH);
+
+    assertSame(generic, network.getListener(createRequest(306, SH)));
+    assertSame("Listener registered by application id not used when no selector matches", byAppId,
+        network.getListener(createRequest(307, SH)));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testSubclassedSelectorKeepsItsRule() throws Exception {
+    NetworkReqListener never = new TestListener();
+    // subclass overrides rule, so it must not be dispatched by command code lookup
+    network.addNetworkReqListener(never, new CommandCodeSelector(272, CCA) {
+      @Override
+      public boolean checkRule(Message message) {
+        return false;
+      }
+    });
+    assertNull(network.getListener(createRequest(272, CCA)));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testRemoveSelector() throws Exception {
+    NetworkReqListener ccr = new TestListener();
+    NetworkReqListener other = new TestListener();
+    CommandCodeSelector selector = new CommandCodeSelector(272, CCA);
+    network.addNetworkReqListener(ccr, selector);
+    network.addNetworkReqListener(other, new CommandCodeSelector(258, CCA));
+    assertSame(ccr, network.getListener(createRequest(272, CCA)));
+
+    network.removeNetworkReqListener(selector);
+    assertNull("Removed selector still dispatched", network.getListener(createRequest(272, CCA)));
+    assertSame(other, network.getListener(createRequest(258, CCA)));
+  }
+
+  private IMessage createRequest(int commandCode, ApplicationId appId) throws Exception {
+    IMessage message = parser.createEmptyMessage(commandCode, appId.getAuthAppId());
+    message.setRequest(true);
+    if (appId.getVendorId() == 0) {
+      message.getAvps().addAvp(Avp.AUTH_APPLICATION_ID, appId.getAuthAppId(), true, false, true);
+    }
+    else {
+      message.getAvps().addGroupedAvp(Avp.VENDOR_SPECIFIC_APPLICATION_ID, true, false)
+          .addAvp(Avp.VENDOR_ID, appId.getVendorId(), true, false, true);
+      message.getAvps().getAvp(Avp.VENDOR_SPECIFIC_APPLICATION_ID).getGrouped()
+          .addAvp(Avp.AUTH_APPLICATION_ID, appId.getAuthAppId(), true, false, true);
+    }
+    return message;
+  }
+
+  private static IRouter createRouter() {
+    return proxy(IRouter.class, proxy(IRealmTable.class, null));
+  }
+
+  /**
+   * @return proxy returning given value from methods of its type and null from others
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> type, final Object value) {
+    return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        if (value != null && method.getReturnType().isInstance(value)) {
+          return value;
+        }
+        if (method.getReturnType() == Boolean.TYPE) {
+          return Boolean.FALSE;
+        }
+        return null;
+      }
+    });
+  }
+
+  private static class TestListener implements NetworkReqListener {
+
+    @Override
+    public Answer processRequest(Request request) {
+      return null;
+    }
+  }
+}
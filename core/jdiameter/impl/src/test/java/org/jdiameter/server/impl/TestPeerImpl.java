@@ -0,0 +1,234 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2016, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ */
+
+package org.jdiameter.server.impl;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jdiameter.api.ApplicationId;
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.Configuration;
+import org.jdiameter.api.Message;
+import org.jdiameter.api.MetaData;
+import org.jdiameter.api.PeerState;
+import org.jdiameter.api.ResultCode;
+import org.jdiameter.api.URI;
+import org.jdiameter.client.api.IAssembler;
+import org.jdiameter.client.api.IContainer;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.IMetaData;
+import org.jdiameter.client.api.ISessionFactory;
+import org.jdiameter.client.api.fsm.EventTypes;
+import org.jdiameter.client.api.io.IConnection;
+import org.jdiameter.client.api.io.ITransportLayerFactory;
+import org.jdiameter.client.api.parser.IMessageParser;
+import org.jdiameter.client.impl.helpers.AppConfiguration;
+import org.jdiameter.client.impl.helpers.EmptyConfiguration;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.jdiameter.common.api.concurrent.DummyConcurrentFactory;
+import org.jdiameter.common.api.concurrent.IConcurrentFactory;
+import org.jdiameter.common.api.data.ISessionDatasource;
+import org.jdiameter.common.api.statistic.IStatisticManager;
+import org.jdiameter.common.impl.statistic.StatisticManagerImpl;
+import org.jdiameter.server.api.IFsmFactory;
+import org.jdiameter.server.api.INetwork;
+import org.jdiameter.server.api.IOverloadManager;
+import org.jdiameter.server.api.IPeer;
+import org.jdiameter.server.api.IRouter;
+import org.jdiameter.server.api.IStateMachine;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestPeerImpl {
+
+  private static final ApplicationId CCA = ApplicationId.createByAuthAppId(4);
+
+  private final MessageParser parser = new MessageParser();
+  private Stub fsm;
+  private StripedPeer peer;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    Stub localPeer = new Stub();
+    localPeer.values.put("getUri", new URI("aaa://local.test:3868"));
+    localPeer.values.put("getRealmName", "test");
+    localPeer.values.put("getIPAddresses", new InetAddress[0]);
+    localPeer.values.put("getProductName", "jDiameter");
+    localPeer.values.put("getCommonApplications", Collections.singleton(CCA));
+    Stub metaData = new Stub();
+    metaData.values.put("getLocalPeer", localPeer.create(IPeer.class));
+    Stub container = new Stub();
+    container.values.put("getAssemblerFacility", new Stub().create(IAssembler.class));
+    fsm = new Stub();
+    fsm.values.put("getState", PeerState.OKAY);
+    Stub fsmFactory = new Stub();
+    fsmFactory.values.put("createInstanceFsm", fsm.create(IStateMachine.class));
+
+    AppConfiguration config = EmptyConfiguration.getInstance();
+    StatisticManagerImpl statisticManager = new StatisticManagerImpl(config);
+    DummyConcurrentFactory concurrentFactory = new DummyConcurrentFactory();
+    MutablePeerTableImpl peerTable = new MutablePeerTableImpl(config, metaData.create(MetaData.class), container.create(IContainer.class),
+        new Stub().create(IRouter.class), null, fsmFactory.create(IFsmFactory.class),
+        new Stub().create(org.jdiameter.server.api.io.ITransportLayerFactory.class), parser,
+        new Stub().create(INetwork.class), null, statisticManager, concurrentFactory);
+    peer = new StripedPeer(0, new URI("aaa://peer.test:3868"), "127.0.0.1", null, false, createConnection("main"), peerTable,
+        metaData.create(IMetaData.class), config, EmptyConfiguration.getInstance(), null, fsmFactory.create(IFsmFactory.class),
+        new Stub().create(ITransportLayerFactory.class), statisticManager, concurrentFactory, parser, null, null, null);
+  }
+
+  @Test
+  public void testIncomingConnectionAddedAsStripe() throws Exception {
+    peer.addIncomingConnection(createConnection("inbound"));
+    assertEquals(1, peer.getStripeCount());
+    assertFalse("Not ready before capabilities exchange", peer.isStripeReady(0));
+  }
+
+  @Test
+  public void testIncomingConnectionReplacesMainWhenDown() throws Exception {
+    fsm.values.put("getState", PeerState.DOWN);
+    IConnection connection = createConnection("inbound");
+    peer.addIncomingConnection(connection);
+    assertEquals(0, peer.getStripeCount());
+    assertSame(connection, peer.getConnection());
+  }
+
+  @Test
+  public void testCerOverStripe() throws Exception {
+    Stub stub = new Stub();
+    stub.values.put("getKey", "inbound");
+    stub.values.put("isConnected", true);
+    peer.addIncomingConnection(stub.create(IConnection.class));
+
+    assertTrue(peer.handleMessage(EventTypes.CER_EVENT, createCer(CCA), "inbound"));
+    assertEquals(1, stub.sent.size());
+    IMessage cea = stub.sent.get(0);
+    assertEquals(Message.CAPABILITIES_EXCHANGE_ANSWER, cea.getCommandCode());
+    assertFalse(cea.isRequest());
+    assertEquals(ResultCode.SUCCESS, cea.getAvps().getAvp(Avp.RESULT_CODE).getInteger32());
+    assertTrue(peer.isStripeReady(0));
+    assertFalse("CER of main connection handled by stripe", fsm.calls.contains("handleEvent"));
+  }
+
+  @Test
+  public void testCerWithoutCommonApplication() throws Exception {
+    Stub stub = new Stub();
+    stub.values.put("getKey", "inbound");
+    stub.values.put("isConnected", true);
+    peer.addIncomingConnection(stub.create(IConnection.class));
+
+    assertTrue(peer.handleMessage(EventTypes.CER_EVENT, createCer(ApplicationId.createByAuthAppId(1)), "inbound"));
+    assertEquals(ResultCode.NO_COMMON_APPLICATION, stub.sent.get(0).getAvps().getAvp(Avp.RESULT_CODE).getInteger32());
+    assertFalse(peer.isStripeReady(0));
+    assertTrue("Connection not closed", stub.calls.contains("disconnect"));
+  }
+
+  @Test
+  public void testCerOfMainConnection() throws Exception {
+    peer.addIncomingConnection(createConnection("inbound"));
+    peer.handleMessage(EventTypes.CER_EVENT, createCer(CCA), "main");
+    assertTrue("CER of main connection not passed to state machine", fsm.calls.contains("handleEvent"));
+    assertFalse(peer.isStripeReady(0));
+  }
+
+  private static class StripedPeer extends PeerImpl {
+
+    StripedPeer(int rating, URI remotePeer, String ip, String portRange, boolean attCnn, IConnection connection,
+        MutablePeerTableImpl peerTable, IMetaData metaData, Configuration config, Configuration peerConfig,
+        ISessionFactory sessionFactory, IFsmFactory fsmFactory, ITransportLayerFactory trFactory,
+        IStatisticManager statisticFactory, IConcurrentFactory concurrentFactory,
+        IMessageParser parser, INetwork nWork, IOverloadManager oManager, ISessionDatasource sessionDataSource) throws Exception {
+      super(rating, remotePeer, ip, portRange, attCnn, connection, peerTable, metaData, config, peerConfig, sessionFactory, fsmFactory, trFactory,
+          statisticFactory, concurrentFactory, parser, nWork, oManager, sessionDataSource);
+    }
+
+    int getStripeCount() {
+      return stripes.length;
+    }
+
+    boolean isStripeReady(int index) {
+      return stripes[index].isReady();
+    }
+  }
+
+  private IConnection createConnection(String key) {
+    Stub connection = new Stub();
+    connection.values.put("getKey", key);
+    connection.values.put("isConnected", true);
+    return connection.create(IConnection.class);
+  }
+
+  private IMessage createCer(ApplicationId appId) {
+    IMessage message = parser.createEmptyMessage(Message.CAPABILITIES_EXCHANGE_REQUEST, 0);
+    message.setRequest(true);
+    message.getAvps().addAvp(Avp.ORIGIN_HOST, "peer.test", true, false, true);
+    message.getAvps().addAvp(Avp.AUTH_APPLICATION_ID, appId.getAuthAppId(), true, false, true);
+    return message;
+  }
+
+  /**
+   * Answers methods by name from given values, others return null, false or zero. Calls and messages sent are recorded.
+   */
+  private static class Stub implements InvocationHandler {
+
+    final Map<String, Object> values = new HashMap<String, Object>();
+    final List<String> calls = new ArrayList<String>();
+    final List<IMessage> sent = new ArrayList<IMessage>();
+
+    @SuppressWarnings("unchecked")
+    <T> T create(Class<T> type) {
+      return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, this);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+      String name = method.getName();
+      calls.add(name);
+      if (name.equals("sendMessage")) {
+        sent.add((IMessage) args[0]);
+      }
+      if (values.containsKey(name)) {
+        return values.get(name);
+      }
+      Class<?> type = method.getReturnType();
+      if (type == Boolean.TYPE) {
+        return Boolean.FALSE;
+      }
+      if (type == Integer.TYPE) {
+        return 0;
+      }
+      if (type == Long.TYPE) {
+        return 0L;
+      }
+      return null;
+    }
+  }
+}
@@ -42,7 +42,14 @@
 
 package org.mobicents.diameter.api;
 
+import org.jdiameter.api.Answer;
+import org.jdiameter.api.AnswerFuture;
+import org.jdiameter.api.IllegalDiameterStateException;
+import org.jdiameter.api.InternalException;
 import org.jdiameter.api.Message;
+import org.jdiameter.api.OverloadException;
+import org.jdiameter.api.Request;
+import org.jdiameter.api.RouteException;
 
 public interface DiameterProvider {
   /**
@@ -55,4 +62,18 @@ public interface DiameterProvider {
   String sendMessage(Message message);
 
   Message sendMessageSync(Message message);
+
+  /**
+   * Sends a Diameter request through the provider without waiting for the answer. Creates a new session if the
+   * Session-Id AVP is not present.
+   *
+   * @param message
+   * @return future notified with the answer or the request timeout
+   * @throws InternalException if session can not be created or the request can not be sent
+   * @throws IllegalDiameterStateException if the stack or the session is not in a state to send the request
+   * @throws RouteException if no route exists for the request
+   * @throws OverloadException if the destination peer is overloaded
+   */
+  AnswerFuture<Request, Answer> sendMessageAsync(Message message)
+      throws InternalException, IllegalDiameterStateException, RouteException, OverloadException;
 }
@@ -65,12 +65,15 @@ import javax.ejb.Singleton;
 import javax.ejb.Startup;
 
 import org.jdiameter.api.Answer;
+import org.jdiameter.api.AnswerFuture;
 import org.jdiameter.api.ApplicationAlreadyUseException;
 import org.jdiameter.api.ApplicationId;
 import org.jdiameter.api.Avp;
+import org.jdiameter.api.AvpDataException;
 import org.jdiameter.api.Configuration;
 import org.jdiameter.api.DisconnectCause;
 import org.jdiameter.api.EventListener;
+import org.jdiameter.api.IllegalDiameterStateException;
 import org.jdiameter.api.InternalException;
 import org.jdiameter.api.LocalAction;
 import org.jdiameter.api.Message;
@@ -78,9 +81,11 @@ import org.jdiameter.api.MutableConfiguration;
 import org.jdiameter.api.MutablePeerTable;
 import org.jdiameter.api.Network;
 import org.jdiameter.api.NetworkReqListener;
+import org.jdiameter.api.OverloadException;
 import org.jdiameter.api.PeerTable;
 import org.jdiameter.api.Request;
 import org.jdiameter.api.ResultCode;
+import org.jdiameter.api.RouteException;
 import org.jdiameter.api.Session;
 import org.jdiameter.api.Stack;
 import org.jdiameter.client.api.controller.IRealm;
@@ -360,6 +365,27 @@ public class DiameterStackMultiplexerAS7Bean implements DiameterStackMultiplexer
     return null;
   }
 
+  @Override
+  public AnswerFuture<Request, Answer> sendMessageAsync(Message message)
+      throws InternalException, IllegalDiameterStateException, RouteException, OverloadException {
+    Avp sessionId = null;
+    Session session = null;
+
+    if ((sessionId = message.getAvps().getAvp(Avp.SESSION_ID)) == null) {
+      session = stack.getSessionFactory().getNewSession();
+    }
+    else {
+      try {
+        session = stack.getSessionFactory().getNewSession(sessionId.getUTF8String());
+      }
+      catch (AvpDataException e) {
+        throw new InternalException("Invalid Session-Id AVP", e);
+      }
+    }
+
+    return session.sendAsync(message);
+  }
+
   @Override
   public Message createMessage(boolean isRequest, int commandCode, long applicationId) {
     try {
@@ -55,6 +55,7 @@ import org.jdiameter.api.InternalException;
 import org.jdiameter.api.MetaData;
 import org.jdiameter.api.Mode;
 import org.jdiameter.api.NetworkReqListener;
+import org.jdiameter.api.OverloadException;
 import org.jdiameter.api.RouteException;
 import org.jdiameter.api.SessionFactory;
 import org.jdiameter.api.Stack;
@@ -165,7 +166,8 @@ public class DiameterStackProxy implements Stack, IContainer {
   }
 
   @Override
-  public void sendMessage(IMessage session) throws RouteException, AvpDataException, IllegalDiameterStateException, IOException {
+  public void sendMessage(IMessage session) throws RouteException, AvpDataException, IllegalDiameterStateException, IOException,
+      OverloadException {
     ((IContainer) realStack).sendMessage(session);
   }
 
@@ -2,6 +2,10 @@ package org.mobicents.diameter.stack.parser;
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jdiameter.api.Avp;
 import org.jdiameter.api.AvpDataException;
@@ -59,5 +63,113 @@ public class AvpSetTest {
 
   }
 
+  @Test
+  public void indexedLookupTest() throws IOException, AvpDataException {
+    AvpSet set = elementParser.decodeAvpSet(new byte[0], 1);
+    for (int i = 0; i < 40; i++) {
+      set.addAvp(_CODE + (i % 20), i, true);
+    }
+    set.addAvp(_CODE, 100L, _VENDOR, true, false, true);
+    Assert.assertEquals("Wrong avp value", 0, set.getAvp(_CODE).getInteger32());
+    Assert.assertEquals("Wrong avp value", 100L, set.getAvp(_CODE, _VENDOR).getUnsigned32());
+    Assert.assertNull("Unexpected avp", set.getAvp(_CODE - 1));
+
+    AvpSet found = set.getAvps(_CODE + 5);
+    Assert.assertEquals("Wrong set size", 2, found.size());
+    Assert.assertEquals("Wrong avp value", 5, found.getAvpByIndex(0).getInteger32());
+    Assert.assertEquals("Wrong avp value", 25, found.getAvpByIndex(1).getInteger32());
+    Assert.assertEquals("Wrong set size", 1, set.getAvps(_CODE, _VENDOR).size());
+    Assert.assertEquals("Wrong set size", 0, set.getAvps(_CODE - 1).size());
+
+    // index must follow appends, inserts and removals
+    set.addAvp(_CODE - 1, 200, true);
+    Assert.assertEquals("Wrong avp value", 200, set.getAvp(_CODE - 1).getInteger32());
+    set.insertAvp(0, _CODE + 5, 300, true, false);
+    Assert.assertEquals("Wrong avp value", 300, set.getAvp(_CODE + 5).getInteger32());
+    Assert.assertEquals("Wrong set size", 3, set.removeAvp(_CODE + 5).size());
+    Assert.assertNull("Unexpected avp", set.getAvp(_CODE + 5));
+    Assert.assertEquals("Wrong avp value", 6, set.getAvp(_CODE + 6).getInteger32());
+
+    Iterator<Avp> it = set.iterator();
+    while (it.hasNext()) {
+      if (it.next().getCode() == _CODE + 6) {
+        it.remove();
+      }
+    }
+    Assert.assertNull("Unexpected avp", set.getAvp(_CODE + 6));
+    Assert.assertEquals("Wrong avp value", 7, set.getAvp(_CODE + 7).getInteger32());
+  }
+
+  @Test
+  public void emptyResultTest() throws IOException, AvpDataException {
+    for (int size : new int[] {1, 40}) {
+      AvpSet set = elementParser.decodeAvpSet(new byte[0], 1);
+      for (int i = 0; i < size; i++) {
+        set.addAvp(_CODE, i, true);
+      }
+      AvpSet missing = set.getAvps(_CODE + 1);
+      Assert.assertEquals("Wrong set size", 0, missing.size());
+      missing.addAvp(_CODE, 1, true);
+      Assert.assertEquals("Wrong set size", 1, missing.size());
+      set.removeAvp(_CODE + 1).addAvp(_CODE, 1, true);
+      set.getAvps(_CODE + 1, _VENDOR).addAvp(_CODE, 1, true);
+
+      Assert.assertEquals("Empty result is shared", 0, set.getAvps(_CODE + 2).size());
+      Assert.assertEquals("Empty result is shared", 0, set.removeAvp(_CODE + 2).size());
+      Assert.assertEquals("Wrong set size", size, set.size());
+    }
+  }
+
+  @Test
+  public void concurrentLookupTest() throws Exception {
+    final AvpSet set = elementParser.decodeAvpSet(new byte[0], 1);
+    for (int i = 0; i < 40; i++) {
+      set.addAvp(_CODE + (i % 10), i, true);
+    }
+    final int readers = 4;
+    final int rounds = 200;
+    final CyclicBarrier barrier = new CyclicBarrier(readers + 1);
+    final AtomicInteger failures = new AtomicInteger(0);
+    Thread[] threads = new Thread[readers];
+    for (int r = 0; r < readers; r++) {
+      threads[r] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            for (int round = 0; round < rounds; round++) {
+              // set was modified before each round, so readers race to build code index
+              barrier.await(10, TimeUnit.SECONDS);
+              for (int code = _CODE; code < _CODE + 10; code++) {
+                if (set.getAvp(code) == null || set.getAvps(code).size() != 4) {
+                  failures.incrementAndGet();
+                }
+              }
+              if (set.getAvps(_CODE + 100 + round).size() != 1) {
+                failures.incrementAndGet();
+              }
+              barrier.await(10, TimeUnit.SECONDS);
+            }
+          }
+          catch (Exception e) {
+            failures.incrementAndGet();
+          }
+        }
+      });
+      threads[r].start();
+    }
+    for (int round = 0; round < rounds; round++) {
+      set.addAvp(_CODE + 100 + round, round, true);
+      // replace first avp with one of the same code, so index must be rebuilt
+      Avp first = set.removeAvpByIndex(0);
+      set.insertAvp(0, first.getCode(), round, true, false);
+      barrier.await(10, TimeUnit.SECONDS);
+      barrier.await(10, TimeUnit.SECONDS);
+    }
+    for (Thread thread : threads) {
+      thread.join(10000);
+    }
+    Assert.assertEquals("Readers saw incomplete index", 0, failures.get());
+  }
+
 
 }
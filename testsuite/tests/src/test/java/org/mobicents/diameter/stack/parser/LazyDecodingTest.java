@@ -0,0 +1,72 @@
+package org.mobicents.diameter.stack.parser;
+
+import java.nio.ByteBuffer;
+
+import org.jdiameter.api.Avp;
+import org.jdiameter.api.AvpDataException;
+import org.jdiameter.api.AvpSet;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.impl.helpers.EmptyConfiguration;
+import org.jdiameter.client.impl.helpers.Parameters;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LazyDecodingTest {
+
+  private static final int _CODE = 600;
+  private static final long _VENDOR = 10415;
+
+  private MessageParser eagerParser = new MessageParser();
+  private MessageParser lazyParser = new MessageParser(EmptyConfiguration.getInstance().add(Parameters.LazyAvpDecoding, true));
+
+  private byte[] createEncodedMessage() throws Exception {
+    IMessage message = eagerParser.createEmptyMessage(272, 4);
+    message.getAvps().addAvp(Avp.SESSION_ID, "lazy;1;2;3", false);
+    message.getAvps().addAvp(Avp.ORIGIN_HOST, "origin.host", true, false, true);
+    message.getAvps().addAvp(Avp.CC_REQUEST_NUMBER, 7L, true);
+    message.getAvps().addAvp(_CODE, 1234567890123L, _VENDOR, true, false);
+    AvpSet grouped = message.getAvps().addGroupedAvp(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL);
+    grouped.addAvp(Avp.RATING_GROUP, 100L, true);
+    grouped.addAvp(Avp.SERVICE_IDENTIFIER_CCA, 5L, true);
+    ByteBuffer buffer = eagerParser.encodeMessage(message);
+    return buffer.array();
+  }
+
+  @Test
+  public void testLazyValues() throws Exception {
+    IMessage message = lazyParser.createMessage(createEncodedMessage());
+    AvpSet avps = message.getAvps();
+    Assert.assertEquals("Wrong set size", 5, avps.size());
+    Assert.assertEquals("Wrong Session-Id", "lazy;1;2;3", avps.getAvp(Avp.SESSION_ID).getUTF8String());
+    Assert.assertEquals("Wrong Origin-Host", "origin.host", avps.getAvp(Avp.ORIGIN_HOST).getDiameterIdentity());
+    Assert.assertEquals("Wrong CC-Request-Number", 7L, avps.getAvp(Avp.CC_REQUEST_NUMBER).getUnsigned32());
+    Avp vendorAvp = avps.getAvp(_CODE, _VENDOR);
+    Assert.assertNotNull("Missing vendor AVP", vendorAvp);
+    Assert.assertEquals("Wrong vendor AVP value", 1234567890123L, vendorAvp.getUnsigned64());
+
+    AvpSet grouped = avps.getAvp(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL).getGrouped();
+    Assert.assertEquals("Wrong grouped size", 2, grouped.size());
+    Assert.assertEquals("Wrong Rating-Group", 100L, grouped.getAvp(Avp.RATING_GROUP).getUnsigned32());
+  }
+
+  @Test
+  public void testLazyReencode() throws Exception {
+    byte[] encoded = createEncodedMessage();
+    IMessage message = lazyParser.createMessage(encoded);
+    Assert.assertArrayEquals("Re-encoded message differs", encoded, lazyParser.encodeMessage(message).array());
+
+    // modify grouped AVP content, it must be encoded from the decoded set and not from the frame
+    message.getAvps().getAvp(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL).getGrouped().addAvp(Avp.RATING_GROUP, 200L, true);
+    IMessage decoded = eagerParser.createMessage(lazyParser.encodeMessage(message).array());
+    Assert.assertEquals("Wrong grouped size", 3, decoded.getAvps().getAvp(Avp.MULTIPLE_SERVICES_CREDIT_CONTROL).getGrouped().size());
+  }
+
+  @Test(expected = AvpDataException.class)
+  public void testTruncatedAvp() throws Exception {
+    byte[] encoded = createEncodedMessage();
+    // corrupt length of first AVP so it exceeds the message
+    encoded[21 + 4] = (byte) 0xFF;
+    lazyParser.createMessage(encoded);
+  }
+}
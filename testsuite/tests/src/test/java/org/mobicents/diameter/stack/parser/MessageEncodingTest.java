@@ -0,0 +1,91 @@
+package org.mobicents.diameter.stack.parser;
+
+import java.nio.ByteBuffer;
+
+import org.jdiameter.api.AvpSet;
+import org.jdiameter.client.api.IMessage;
+import org.jdiameter.client.api.parser.ParseException;
+import org.jdiameter.client.impl.parser.MessageParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MessageEncodingTest {
+
+  private MessageParser parser = new MessageParser();
+
+  private IMessage createMessage() {
+    IMessage message = parser.createEmptyMessage(272, 4);
+    message.setHopByHopIdentifier(0x01020304L);
+    message.setEndToEndIdentifier(0x05060708L);
+    message.getAvps().addAvp(263, "abc", false);
+    AvpSet grouped = message.getAvps().addGroupedAvp(456, 10415, true, false);
+    grouped.addAvp(432, 1L, true);
+    return message;
+  }
+
+  @Test
+  public void testEncodedBytes() throws Exception {
+    byte[] expected = new byte[] {
+        // version, length
+        0x01, 0x00, 0x00, 0x38,
+        // flags, command code
+        0x00, 0x00, 0x01, 0x10,
+        // application id, hop-by-hop, end-to-end
+        0x00, 0x00, 0x00, 0x04, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08,
+        // Session-Id "abc", padded
+        0x00, 0x00, 0x01, 0x07, 0x00, 0x00, 0x00, 0x0B, 0x61, 0x62, 0x63, 0x00,
+        // vendor specific grouped AVP
+        0x00, 0x00, 0x01, (byte) 0xC8, (byte) 0xC0, 0x00, 0x00, 0x18, 0x00, 0x00, 0x28, (byte) 0xAF,
+        // Rating-Group
+        0x00, 0x00, 0x01, (byte) 0xB0, 0x00, 0x00, 0x00, 0x0C, 0x00, 0x00, 0x00, 0x01
+    };
+    IMessage message = createMessage();
+    Assert.assertEquals("Wrong message length", expected.length, parser.getMessageLength(message));
+    Assert.assertArrayEquals("Wrong encoded message", expected, parser.encodeMessage(message).array());
+  }
+
+  @Test
+  public void testEncodeIntoBuffer() throws Exception {
+    IMessage message = createMessage();
+    byte[] expected = parser.encodeMessage(message).array();
+
+    ByteBuffer buffer = ByteBuffer.allocateDirect(expected.length + 10);
+    buffer.position(10);
+    parser.encodeMessage(message, buffer);
+    Assert.assertEquals("Wrong buffer position", expected.length + 10, buffer.position());
+
+    byte[] encoded = new byte[expected.length];
+    buffer.position(10);
+    buffer.get(encoded);
+    Assert.assertArrayEquals("Wrong encoded message", expected, encoded);
+  }
+
+  @Test
+  public void testNestedGroupedAvps() throws Exception {
+    IMessage message = parser.createEmptyMessage(272, 4);
+    AvpSet group = message.getAvps();
+    for (int depth = 0; depth < 5; depth++) {
+      group.addAvp(263, "level" + depth, false);
+      group = group.addGroupedAvp(456, true, false);
+    }
+    group.addAvp(432, 7L, true);
+
+    ByteBuffer buffer = ByteBuffer.allocate(parser.getMessageLength(message));
+    parser.encodeMessage(message, buffer);
+    Assert.assertEquals("Wrong buffer position", buffer.capacity(), buffer.position());
+
+    IMessage decoded = parser.createMessage(buffer.array());
+    group = decoded.getAvps();
+    for (int depth = 0; depth < 5; depth++) {
+      Assert.assertEquals("Wrong AVP at depth " + depth, "level" + depth, group.getAvp(263).getUTF8String());
+      group = group.getAvp(456).getGrouped();
+    }
+    Assert.assertEquals("Wrong innermost AVP", 7L, group.getAvp(432).getUnsigned32());
+  }
+
+  @Test(expected = ParseException.class)
+  public void testBufferTooSmall() throws Exception {
+    IMessage message = createMessage();
+    parser.encodeMessage(message, ByteBuffer.allocate(parser.getMessageLength(message) - 1));
+  }
+}